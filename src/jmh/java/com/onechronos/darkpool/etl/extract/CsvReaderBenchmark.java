@@ -0,0 +1,82 @@
+package com.onechronos.darkpool.etl.extract;
+
+import com.onechronos.darkpool.etl.exception.CsvReaderException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the CSV reader engines over the sample trades.csv repeated into a larger file.
+ * - readAndMapTrades: every field is decoded and mapped into a TradeRecord
+ * - readTradeIdOnly: a single field is read per row, showing the cost of the tokenizer alone
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvReaderBenchmark {
+
+    @Param({"BUFFERED", "MAPPED"})
+    public CsvReaderEngine engine;
+
+    @Param({"20"})
+    public int copies;
+
+    private Path tradesFile;
+    private CsvReader csvReader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] sample;
+        try (InputStream in = Objects.requireNonNull(getClass().getResourceAsStream("/data/trades.csv"))) {
+            sample = in.readAllBytes();
+        }
+        int headerEnd = indexOf(sample, (byte) '\n') + 1;
+
+        tradesFile = Files.createTempFile("trades-benchmark", ".csv");
+        try (OutputStream out = Files.newOutputStream(tradesFile)) {
+            out.write(sample, 0, headerEnd);
+            for (int i = 0; i < copies; i++) {
+                out.write(sample, headerEnd, sample.length - headerEnd);
+            }
+        }
+        csvReader = CsvReader.build(engine);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(tradesFile);
+    }
+
+    @Benchmark
+    public void readAndMapTrades(Blackhole blackhole) throws CsvReaderException {
+        try (var stream = csvReader.readFile(tradesFile, row -> CsvMappers.toTradeRecord(row, tradesFile))) {
+            stream.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void readTradeIdOnly(Blackhole blackhole) throws CsvReaderException {
+        try (var stream = csvReader.readFile(tradesFile, row -> CsvReaderRowResult.success(row.data().get("trade_id")))) {
+            stream.forEach(blackhole::consume);
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte value) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,103 @@
+package com.onechronos.darkpool.etl.extract;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tokenizer cost alone, over every line of the sample trades.csv held in memory.
+ * - parseLine: CsvReader.parseLine on decoded lines, as used for headers
+ * - tokenizeScalar / tokenizeVector: field boundaries of the lines in a direct buffer, as read by the MAPPED engine
+ * - lineEndScalar / lineEndVector: line terminator search over the same buffer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class CsvTokenizerBenchmark {
+
+    private static final int TRADE_COLUMNS = 8;
+
+    private List<String> lines;
+    private ByteBuffer buffer;
+    private int[] lineStarts;
+    private int[] lineEnds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] sample;
+        try (InputStream in = Objects.requireNonNull(getClass().getResourceAsStream("/data/trades.csv"))) {
+            sample = in.readAllBytes();
+        }
+        buffer = ByteBuffer.allocateDirect(sample.length).put(sample).flip();
+
+        lines = new ArrayList<>();
+        List<int[]> offsets = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= sample.length; i++) {
+            if (i == sample.length || sample[i] == '\n') {
+                int end = i > start && sample[i - 1] == '\r' ? i - 1 : i;
+                if (end > start) {
+                    lines.add(new String(sample, start, end - start, StandardCharsets.UTF_8));
+                    offsets.add(new int[]{start, end});
+                }
+                start = i + 1;
+            }
+        }
+        lineStarts = offsets.stream().mapToInt(o -> o[0]).toArray();
+        lineEnds = offsets.stream().mapToInt(o -> o[1]).toArray();
+    }
+
+    @Benchmark
+    public void parseLine(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(CsvReader.parseLine(line));
+        }
+    }
+
+    @Benchmark
+    public void tokenizeScalar(Blackhole blackhole) {
+        tokenize(CsvTokenizer.SCALAR, blackhole);
+    }
+
+    @Benchmark
+    public void tokenizeVector(Blackhole blackhole) {
+        tokenize(CsvTokenizer.VECTOR, blackhole);
+    }
+
+    @Benchmark
+    public void lineEndScalar(Blackhole blackhole) {
+        lineEnds(CsvTokenizer.SCALAR, blackhole);
+    }
+
+    @Benchmark
+    public void lineEndVector(Blackhole blackhole) {
+        lineEnds(CsvTokenizer.VECTOR, blackhole);
+    }
+
+    private void tokenize(CsvTokenizer tokenizer, Blackhole blackhole) {
+        for (int i = 0; i < lineStarts.length; i++) {
+            blackhole.consume(tokenizer.tokenize(buffer, lineStarts[i], lineEnds[i], TRADE_COLUMNS));
+        }
+    }
+
+    private void lineEnds(CsvTokenizer tokenizer, Blackhole blackhole) {
+        int position = 0;
+        int limit = buffer.limit();
+        while (position < limit) {
+            int end = tokenizer.lineEnd(buffer, position, limit);
+            blackhole.consume(end);
+            position = end < 0 ? limit : end + 1;
+        }
+    }
+}
@@ -9,20 +9,26 @@ import com.onechronos.darkpool.etl.exception.ConfigLoadException;
 import com.onechronos.darkpool.etl.exception.JsonWriterException;
 import com.onechronos.darkpool.etl.exception.TransformerException;
 import com.onechronos.darkpool.etl.extract.CsvReader;
+import com.onechronos.darkpool.etl.extract.FollowMode;
 import com.onechronos.darkpool.etl.metrics.AppMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.util.Optional;
+
 /**
  * Application Entry point.
  * - Start Metrics collection
  * - Parse Command Line arguments
  * - Load Config File
- * - Run ETL pipeline
+ * - Run ETL pipeline, until stopped in follow mode
  */
 public class Main {
     private static final Logger log = LoggerFactory.getLogger(Main.class);
 
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+
     public static void main(String[] args) {
         try (AppMetrics appMetrics = AppMetrics.build()) {
             // Parse command line arguments
@@ -32,7 +38,10 @@ public class Main {
             AppConfig config = AppConfigLoader.build().load(cliArgs.configFilePath());
 
             // Run pipeline
-            Pipeline.runPipeline(CsvReader.build(), config, appMetrics);
+            Optional<FollowMode> follow = cliArgs.follow()
+                    ? Optional.of(followUntilShutdown(config.readConfig().followPollInterval()))
+                    : Optional.empty();
+            Pipeline.runPipeline(CsvReader.build(config.readConfig()), config, appMetrics, follow, cliArgs.resume());
 
             appMetrics.stopAppExecutionTime();
             appMetrics.printSummary();
@@ -49,4 +58,23 @@ public class Main {
             System.exit(1);
         }
     }
+
+    /**
+     * Stops following on shutdown (e.g. Ctrl+C or SIGTERM), then waits for the pipeline to read the lines already
+     * appended, close the output files and print the metrics.
+     */
+    private static FollowMode followUntilShutdown(Duration pollInterval) {
+        FollowMode follow = FollowMode.build(pollInterval);
+        Thread main = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            log.info("Shutting down, stopping follow mode");
+            follow.stop();
+            try {
+                main.join(SHUTDOWN_TIMEOUT.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "follow-shutdown"));
+        return follow;
+    }
 }
\ No newline at end of file
@@ -1,35 +1,130 @@
 package com.onechronos.darkpool.etl;
 
+import com.onechronos.darkpool.etl.checkpoint.Checkpoint;
+import com.onechronos.darkpool.etl.checkpoint.Checkpoints;
 import com.onechronos.darkpool.etl.config.AppConfig;
+import com.onechronos.darkpool.etl.config.JoinConfig;
 import com.onechronos.darkpool.etl.exception.CsvReaderException;
+import com.onechronos.darkpool.etl.exception.TransformerException;
 import com.onechronos.darkpool.etl.extract.CsvMappers;
 import com.onechronos.darkpool.etl.extract.CsvReader;
+import com.onechronos.darkpool.etl.extract.CsvReaderRowResult;
 import com.onechronos.darkpool.etl.extract.CsvRow;
+import com.onechronos.darkpool.etl.extract.FieldParsers;
+import com.onechronos.darkpool.etl.extract.FollowMode;
+import com.onechronos.darkpool.etl.extract.ReadPosition;
+import com.onechronos.darkpool.etl.extract.ReadProgress;
+import com.onechronos.darkpool.etl.extract.Snapshot;
+import com.onechronos.darkpool.etl.extract.SnapshotCache;
+import com.onechronos.darkpool.etl.extract.SnapshotCodec;
+import com.onechronos.darkpool.etl.extract.StringDictionaries;
 import com.onechronos.darkpool.etl.load.JsonWriter;
 import com.onechronos.darkpool.etl.metrics.AppMetrics;
+import com.onechronos.darkpool.etl.model.ExceptionRecord;
 import com.onechronos.darkpool.etl.model.FillRecord;
 import com.onechronos.darkpool.etl.model.SymbolRefRecord;
 import com.onechronos.darkpool.etl.model.TradeRecord;
-import com.onechronos.darkpool.etl.model.enums.TradeStatus;
+import com.onechronos.darkpool.etl.model.enums.TimestampFormat;
+import com.onechronos.darkpool.etl.transform.FillLookup;
+import com.onechronos.darkpool.etl.transform.FillsJoin;
+import com.onechronos.darkpool.etl.transform.GraceHashJoin;
+import com.onechronos.darkpool.etl.transform.MergeJoinFills;
+import com.onechronos.darkpool.etl.transform.ShardedTransformer;
+import com.onechronos.darkpool.etl.transform.TradeIdDedup;
+import com.onechronos.darkpool.etl.transform.TradeIdSet;
 import com.onechronos.darkpool.etl.transform.Transformer;
+import com.onechronos.darkpool.etl.transform.TransformerResult;
+import com.onechronos.darkpool.etl.transform.WatermarkJoin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class Pipeline {
     private final static Logger log = LoggerFactory.getLogger(Pipeline.class);
 
+    /**
+     * Trade parsed from one of the trades files, kept with its file for the exception report.
+     */
+    private record SourcedTrade(TradeRecord trade, Path file) {
+    }
+
+    /**
+     * Event handed by a reader thread of a STREAM join to the joining thread.
+     */
+    private sealed interface FeedEvent {
+        /**
+         * Event time of a parsed row, by which the joining thread merges both feeds.
+         */
+        default Optional<Instant> timestamp() {
+            return Optional.empty();
+        }
+
+        record TradeRow(CsvReaderRowResult<SourcedTrade> row) implements FeedEvent {
+            @Override
+            public Optional<Instant> timestamp() {
+                return row.parsedRow().map(trade -> trade.trade().timestamp());
+            }
+        }
+
+        record FillRow(CsvReaderRowResult<FillRecord> row) implements FeedEvent {
+            @Override
+            public Optional<Instant> timestamp() {
+                return row.parsedRow().map(FillRecord::timestamp);
+            }
+        }
+
+        /**
+         * The trades or fills feed ended, or failed.
+         */
+        record End(boolean trades, Optional<RuntimeException> failure) implements FeedEvent {
+        }
+
+        /**
+         * The followed trades or fills file was read to its end.
+         */
+        record CaughtUp() implements FeedEvent {
+        }
+    }
+
+    private static final int FEED_QUEUE_CAPACITY = 8192;
+    // Share of the fills arriving behind the fill watermark above which the watermark lag is reported as too short
+    private static final double LATE_FILLS_WARNING_RATIO = 0.01;
+
     /**
      * Runs the full ETL pipeline:
-     * - Loads symbol reference and fill data eagerly into memory
-     * - Streams trades.csv, routing each row to one of:
+     * - Loads symbol reference and fill data eagerly into memory, from binary snapshots when enabled and up to date,
+     * or streams the fills alongside the trades when both files are sorted by trade ID (fills-join = merge), or joins
+     * them with the trades as both are read concurrently, e.g. live feeds (fills-join = stream)
+     * - Streams trades.csv (or several trades files, read concurrently and processed in order), routing each row to one of
+     * (transformed on transform-parallelism shards by trade ID, and still written in row order):
      * - valid trades, with discrepancy flag set if fill mismatches to cleaned trades output file
      * - parse failures, duplicates, invalid/inactive symbols, fill mismatches exception report output file
-     * - Note: Cancelled trades are filtered silently and not written to either output
+     * - Note: Cancelled trades are skipped by the reader instead of being mapped to trade records, and not written to
+     * either output. A cancelled row with an invalid field is still reported as a parse error
      *
      * @param csvReader streaming CSV reader
      * @param config    application configuration
@@ -40,108 +135,740 @@ public class Pipeline {
             AppConfig config,
             AppMetrics metrics
     ) throws CsvReaderException, IOException {
+        runPipeline(csvReader, config, metrics, Optional.empty(), false);
+    }
 
-        // Load reference data eagerly
-        Map<String, SymbolRefRecord> symbolMap = loadSymbolsMap(csvReader, config, metrics);
-        Map<String, FillRecord> fillMap = loadFillsMap(csvReader, config, metrics);
-        log.info("Loaded {} symbols, {} fills", symbolMap.size(), fillMap.size());
+    /**
+     * Runs the full ETL pipeline, optionally following lines appended to trades.csv until the FollowMode is stopped.
+     * In follow mode, appended trades go through the same Transformer, so duplicates are detected across the whole
+     * run, and both output files are flushed each time the reader catches up with the end of trades.csv.
+     * Their JSON arrays are only closed once the FollowMode is stopped.
+     * With a checkpoint-dir, the run is checkpointed every checkpoint-interval trade rows (see Checkpoints), and a
+     * resumed run continues from the last checkpoint, writing the same outputs and metrics as an uninterrupted run.
+     *
+     * @param csvReader streaming CSV reader
+     * @param config    application configuration
+     * @param metrics   counters incremented throughout the pipeline
+     * @param follow    follow mode of the trades file, empty to stop at its current end
+     * @param resume    resume from the last checkpoint of an interrupted run, if there is one
+     */
+    public static void runPipeline(
+            CsvReader csvReader,
+            AppConfig config,
+            AppMetrics metrics,
+            Optional<FollowMode> follow,
+            boolean resume
+    ) throws CsvReaderException, IOException {
 
-        Transformer transformer = Transformer.build(config.validationConfig(), symbolMap, fillMap);
+        // Load reference data eagerly, from snapshots when the files did not change since the last run
+        // Dictionaries shared by all files, so that symbols and ids of fills and trades are the same instances
+        SnapshotCache snapshots = SnapshotCache.build(config.readConfig());
+        StringDictionaries dictionaries = StringDictionaries.build(config.readConfig().dictionarySizeLimit());
+        Map<String, SymbolRefRecord> symbolMap = loadSymbolsMap(csvReader, snapshots, dictionaries, config, metrics);
+        log.info("Loaded {} symbols", symbolMap.size());
+
+        final List<Path> tradesFiles = config.readConfig().tradesFiles();
+        if (follow.isPresent() && config.readConfig().joinConfig().fillsJoin() == FillsJoin.GRACE) {
+            throw new CsvReaderException("A trades file cannot be followed with fills-join = grace, which joins once every trade is read");
+        }
+        final int shards = transformShards(config, follow);
+        final Checkpoints checkpoints = checkpoints(config, follow, resume, shards);
+        final Optional<Checkpoint> checkpoint = resume ? checkpoints.load() : Optional.empty();
+        final ReadProgress progress = ReadProgress.from(checkpoint.map(Checkpoint::position).orElse(ReadPosition.START));
+        final Map<TimestampFormat, Long> restoredFormats = checkpoint.map(Checkpoint::timestampFormats).orElse(Map.of());
+        checkpoint.ifPresent(c -> metrics.incrementTradeCounts(c.tradeCounts()));
 
-        final Path tradesFile = config.readConfig().tradesFile();
+        // One set of parsers per file, so that timestamp formats are counted per file
+        final Map<Path, FieldParsers> fieldParsers = new LinkedHashMap<>();
+        tradesFiles.forEach(file -> fieldParsers.put(file, FieldParsers.build(config.readConfig().priceParser(), dictionaries)));
+        final Function<Path, Predicate<CsvRow>> skipRow = file -> {
+            FieldParsers parsers = fieldParsers.get(file);
+            return (CsvRow row) -> cancelledTrade(metrics, row, parsers);
+        };
+        final Function<Path, Function<CsvRow, CsvReaderRowResult<SourcedTrade>>> mapper = file -> {
+            FieldParsers parsers = fieldParsers.get(file);
+            return (CsvRow row) -> CsvMappers.toTradeRecord(row, file, parsers).map(trade -> new SourcedTrade(trade, file));
+        };
 
         try (
-                var tradeStream = csvReader.readFile(tradesFile, (CsvRow row) -> CsvMappers.toTradeRecord(row, tradesFile));
-                var writer = JsonWriter.open(config.writeConfig().cleanedTradesFile(), config.writeConfig().exceptionsReportFile())
+                checkpoints;
+                FillLookup fills = openFills(csvReader, snapshots, dictionaries, config, metrics);
+                TradeIdDedup tradeIds = TradeIdDedup.build(shards > 1
+                        ? config.validationConfig().dedupConfig().perShard(shards)
+                        : config.validationConfig().dedupConfig())
         ) {
-            log.info("Processing trade records....");
-            tradeStream
-                    .peek(r -> metrics.incrementTradesRead())
-                    // Parse failures → exceptions
-                    .peek(r -> r.exception().ifPresent(e -> {
+            TradeIdDedup seenTradeIds = checkpoints.start(checkpoint, tradeIds);
+            Transformer transformer = Transformer.build(config.validationConfig(), symbolMap, fills, seenTradeIds);
+
+            try (
+                    var tradeStream = readTrades(csvReader, tradesFiles, follow, checkpoints, progress, skipRow, mapper);
+                    var writer = checkpoint.isPresent()
+                            ? JsonWriter.resume(config.writeConfig().cleanedTradesFile(), config.writeConfig().exceptionsReportFile(), checkpoint.get().outputs())
+                            : JsonWriter.open(config.writeConfig().cleanedTradesFile(), config.writeConfig().exceptionsReportFile())
+            ) {
+                follow.ifPresent(f -> f.onIdle(() -> {
+                    log.debug("Caught up with {}, flushing outputs", tradesFiles.get(0));
+                    writer.flush();
+                }));
+                log.info("Processing trade records....");
+                if (config.readConfig().joinConfig().fillsJoin() == FillsJoin.GRACE) {
+                    graceHashJoin(csvReader, tradeStream, transformer, writer, symbolMap, dictionaries, config, metrics);
+                } else if (config.readConfig().joinConfig().fillsJoin() == FillsJoin.STREAM) {
+                    streamJoin(csvReader, tradeStream, follow, seenTradeIds, writer, symbolMap, dictionaries, config, metrics);
+                } else if (shards > 1) {
+                    shardedTransform(tradeStream, shards, transformer, fills, writer, symbolMap, config, metrics);
+                } else {
+                    tradeStream
+                            .peek(r -> metrics.incrementTradesRead())
+                            // Parse failures → exceptions
+                            .peek(r -> r.exception().ifPresent(e -> {
+                                log.debug("Parse failure: {}", e.details());
+                                metrics.incrementTradesParseFailed();
+                                writer.writeException(e);
+                            }))
+                            // Skipped cancelled trades have neither a parsed row nor an exception
+                            .forEach(r -> {
+                                r.parsedRow()
+                                        // Transform — dedup across every trades file, symbol validation, discrepancy flag
+                                        .map((SourcedTrade trade) -> transformer.transform(trade.trade(), trade.file()))
+                                        // Route to output files
+                                        .ifPresent(result -> write(result, writer, metrics));
+                                checkpoints.rowProcessed(() -> new Checkpoint(
+                                        progress.position(),
+                                        writer.position(),
+                                        seenTradeIds.count(),
+                                        metrics.tradeCounts(),
+                                        mergeCounts(restoredFormats, fieldParsers.get(tradesFiles.get(0)).timestamps().formatCounts())
+                                ));
+                            });
+                }
+                log.info("Trade records processing complete.");
+                log.debug("Dictionary sizes: {}", dictionaries);
+            }
+            checkpoints.complete();
+        }
+        fieldParsers.forEach((file, parsers) -> metrics.recordTimestampFormats(file.getFileName().toString(),
+                mergeCounts(restoredFormats, parsers.timestamps().formatCounts())));
+    }
+
+    private static void write(TransformerResult result, JsonWriter writer, AppMetrics metrics) {
+        result.cleanedTrade().ifPresent(trade -> {
+            metrics.incrementTradesCleanedWritten();
+            writer.writeCleanedTrade(trade);
+        });
+        result.exception().ifPresent(e -> {
+            metrics.incrementTradesExceptionWritten();
+            metrics.incrementTradesRejected(e.exceptionType());
+            writer.writeException(e);
+        });
+    }
+
+    /**
+     * Transforms the trades on several shards by hash of their trade ID (see ShardedTransformer): the first one is the
+     * Transformer of the run, the others record their trade IDs in a dedup backend of their own. Every backend is sized
+     * for its share of the trade IDs. Both outputs are written in trade row order as results come back.
+     */
+    private static void shardedTransform(
+            Stream<CsvReaderRowResult<SourcedTrade>> tradeStream,
+            int shards,
+            Transformer transformer,
+            FillLookup fills,
+            JsonWriter writer,
+            Map<String, SymbolRefRecord> symbolMap,
+            AppConfig config,
+            AppMetrics metrics
+    ) throws IOException {
+        log.info("Transforming trade records on {} shards", shards);
+        List<TradeIdDedup> shardTradeIds = new ArrayList<>();
+        try {
+            List<Transformer> transformers = new ArrayList<>(List.of(transformer));
+            while (transformers.size() < shards) {
+                TradeIdDedup tradeIds = TradeIdDedup.build(config.validationConfig().dedupConfig().perShard(shards));
+                shardTradeIds.add(tradeIds);
+                transformers.add(Transformer.build(config.validationConfig(), symbolMap, fills, tradeIds));
+            }
+            try (ShardedTransformer sharded = ShardedTransformer.start(transformers, result -> write(result, writer, metrics))) {
+                for (CsvReaderRowResult<SourcedTrade> r : (Iterable<CsvReaderRowResult<SourcedTrade>>) tradeStream::iterator) {
+                    metrics.incrementTradesRead();
+                    if (r.exception().isPresent()) {
+                        ExceptionRecord e = r.exception().get();
                         log.debug("Parse failure: {}", e.details());
                         metrics.incrementTradesParseFailed();
-                        writer.writeException(e);
-                    }))
-                    .filter(r -> r.parsedRow().isPresent())
-                    .map(r -> r.parsedRow().get())
-                    // Cancelled trades → skip with debug log
-                    .filter(trade -> notCancelledTrade(metrics, trade))
-                    // Transform — dedup, symbol validation, discrepancy flag
-                    .map((TradeRecord trade) -> transformer.transform(trade, tradesFile))
-                    // Route to output files
-                    .forEach(result -> {
-                        result.cleanedTrade().ifPresent(trade -> {
-                            metrics.incrementTradesCleanedWritten();
-                            writer.writeCleanedTrade(trade);
-                        });
-                        result.exception().ifPresent(e -> {
-                            metrics.incrementTradesExceptionWritten();
-                            writer.writeException(e);
-                        });
+                        sharded.inOrder(() -> writer.writeException(e));
+                    } else if (r.parsedRow().isPresent()) {
+                        sharded.submit(r.parsedRow().get().trade(), r.parsedRow().get().file());
+                    }
+                }
+                sharded.finish();
+            }
+        } finally {
+            for (TradeIdDedup tradeIds : shardTradeIds) {
+                tradeIds.close();
+            }
+        }
+    }
+
+    /**
+     * STREAM join: trades and fills are read concurrently, each by a reader thread of its own, and joined on the calling
+     * thread as they arrive (see WatermarkJoin), so that both outputs are written from a single thread, in trade row
+     * order.
+     * - The joining thread merges both feeds by timestamp: a fill is joined once the next trade is past it, never ahead
+     * of the trades, so that the results depend on the rows only, not on how far ahead either reader thread got
+     * - In follow mode, the fills file is followed too, until the trades file is stopped, and trades wait for the next
+     * fill
+     * - A warning suggests a longer join-watermark-lag when many fills arrive behind the fill watermark
+     */
+    private static void streamJoin(
+            CsvReader csvReader,
+            Stream<CsvReaderRowResult<SourcedTrade>> tradeStream,
+            Optional<FollowMode> follow,
+            TradeIdDedup seenTradeIds,
+            JsonWriter writer,
+            Map<String, SymbolRefRecord> symbolMap,
+            StringDictionaries dictionaries,
+            AppConfig config,
+            AppMetrics metrics
+    ) throws CsvReaderException {
+        final Path fillsFile = config.readConfig().fillsFile();
+        final FieldParsers fieldParsers = FieldParsers.build(config.readConfig().priceParser(), dictionaries);
+        final Function<CsvRow, CsvReaderRowResult<FillRecord>> fillMapper = row -> CsvMappers.toFillRecord(row, fillsFile, fieldParsers);
+        final Optional<FollowMode> fillsFollow = follow.map(f -> FollowMode.build(f.pollInterval()));
+        final BlockingQueue<FeedEvent> tradeEvents = new ArrayBlockingQueue<>(FEED_QUEUE_CAPACITY);
+        final BlockingQueue<FeedEvent> fillEvents = new ArrayBlockingQueue<>(FEED_QUEUE_CAPACITY);
+        final AtomicLong lateFills = new AtomicLong();
+        final Duration lag = config.readConfig().joinConfig().watermarkLag();
+        log.info("Joining trades with fills as both arrive, watermark lag {}", lag);
+
+        WatermarkJoin join = WatermarkJoin.build(lag,
+                fills -> Transformer.build(config.validationConfig(), symbolMap, fills, seenTradeIds),
+                result -> write(result, writer, metrics),
+                new WatermarkJoin.Metrics() {
+                    @Override
+                    public void buffered(int trades, int fills) {
+                        metrics.recordJoinBuffers(trades, fills);
+                    }
+
+                    @Override
+                    public void watermarkLag(Duration watermarkLag) {
+                        metrics.recordJoinWatermarkLag(watermarkLag);
+                    }
+
+                    @Override
+                    public void lateFill() {
+                        lateFills.incrementAndGet();
+                        metrics.incrementJoinLateFills();
+                    }
+
+                    @Override
+                    public void matchedLate() {
+                        metrics.incrementJoinMatchedLate();
+                    }
+                });
+        // Outputs are only written by this thread, so the readers only signal that they caught up
+        follow.ifPresent(f -> f.onIdle(() -> putEvent(tradeEvents, new FeedEvent.CaughtUp())));
+        fillsFollow.ifPresent(f -> f.onIdle(() -> putEvent(fillEvents, new FeedEvent.CaughtUp())));
+
+        long fillRows = 0;
+        long fillParseFailures = 0;
+        List<Thread> readers = new ArrayList<>();
+        try (var fillStream = fillsFollow.isPresent()
+                ? csvReader.followFile(fillsFile, fillsFollow.get(), row -> false, fillMapper)
+                : csvReader.readFile(fillsFile, fillMapper)) {
+            // Ending the fills with the trades, rather than when the joining thread gets to the end of the trades,
+            // as it may be waiting for the next fill; and the trades with failed fills, for the next trade
+            readers.add(startFeed("trades-reader", tradeStream, FeedEvent.TradeRow::new, true, tradeEvents,
+                    failure -> fillsFollow.ifPresent(FollowMode::stop)));
+            readers.add(startFeed("fills-reader", fillStream, FeedEvent.FillRow::new, false, fillEvents,
+                    failure -> failure.ifPresent(e -> follow.ifPresent(FollowMode::stop))));
+
+            boolean tradesEnded = false;
+            boolean fillsEnded = false;
+            FeedEvent nextTrade = null;
+            FeedEvent nextFill = null;
+            while (!tradesEnded || !fillsEnded) {
+                if (!tradesEnded && Objects.isNull(nextTrade)) {
+                    nextTrade = takeEvent(tradeEvents);
+                }
+                if (!fillsEnded && Objects.isNull(nextFill)) {
+                    nextFill = takeEvent(fillEvents);
+                }
+                FeedEvent event;
+                if (Objects.nonNull(nextTrade) && isTradeFirst(nextTrade, nextFill)) {
+                    event = nextTrade;
+                    nextTrade = null;
+                } else {
+                    event = nextFill;
+                    nextFill = null;
+                }
+                if (event instanceof FeedEvent.TradeRow trade) {
+                    CsvReaderRowResult<SourcedTrade> r = trade.row();
+                    metrics.incrementTradesRead();
+                    if (r.exception().isPresent()) {
+                        ExceptionRecord e = r.exception().get();
+                        log.debug("Parse failure: {}", e.details());
+                        metrics.incrementTradesParseFailed();
+                        join.inOrder(() -> writer.writeException(e));
+                    } else if (r.parsedRow().isPresent()) {
+                        join.addTrade(r.parsedRow().get().trade(), r.parsedRow().get().file());
+                    }
+                } else if (event instanceof FeedEvent.FillRow fill) {
+                    fillRows++;
+                    if (fill.row().exception().isPresent()) {
+                        fillParseFailures++;
+                        log.debug("Skipping invalid fill row: {}", fill.row().exception().get().details());
+                    } else {
+                        fill.row().parsedRow().ifPresent(join::addFill);
+                    }
+                } else if (event instanceof FeedEvent.CaughtUp) {
+                    log.debug("Caught up with {} or {}, flushing outputs", config.readConfig().tradesFiles().get(0), fillsFile);
+                    writer.flush();
+                } else if (event instanceof FeedEvent.End end) {
+                    if (end.failure().isPresent()) {
+                        throw end.failure().get();
+                    }
+                    if (end.trades()) {
+                        tradesEnded = true;
+                        fillsFollow.ifPresent(FollowMode::stop);
+                    } else {
+                        fillsEnded = true;
+                        join.endOfFills();
+                    }
+                }
+            }
+            if (lateFills.get() > fillRows * LATE_FILLS_WARNING_RATIO) {
+                log.warn("{} of {} fills arrived behind the fill watermark, their trades may have been written unconfirmed: "
+                        + "join-watermark-lag ({}) is shorter than the delay or disorder of the fills", lateFills.get(), fillRows, lag);
+            }
+        } finally {
+            follow.ifPresent(FollowMode::stop);
+            fillsFollow.ifPresent(FollowMode::stop);
+            for (Thread reader : readers) {
+                reader.interrupt();
+            }
+            for (Thread reader : readers) {
+                try {
+                    reader.join(TimeUnit.MINUTES.toMillis(1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            metrics.incrementFillsRead(fillRows);
+            metrics.incrementFillsParsesFailed(fillParseFailures);
+            metrics.recordTimestampFormats(fillsFile.getFileName().toString(), fieldParsers.timestamps().formatCounts());
+        }
+    }
+
+    /**
+     * Starts a daemon thread handing every row of the stream to the joining thread, then the end of the feed, after
+     * running onEnd with the failure of the feed if any.
+     */
+    private static <T> Thread startFeed(String name, Stream<T> rows, Function<T, FeedEvent> event, boolean trades,
+                                        BlockingQueue<FeedEvent> events, Consumer<Optional<RuntimeException>> onEnd) {
+        Thread reader = new Thread(() -> {
+            RuntimeException failure = null;
+            try {
+                rows.forEach(row -> putEvent(events, event.apply(row)));
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            onEnd.accept(Optional.ofNullable(failure));
+            if (!Thread.currentThread().isInterrupted()) {
+                putEvent(events, new FeedEvent.End(trades, Optional.ofNullable(failure)));
+            }
+        }, name);
+        reader.setDaemon(true);
+        reader.start();
+        return reader;
+    }
+
+    /**
+     * Whether the next trade event is joined before the next fill event: rows in timestamp order, a trade first on a
+     * tie, and events without a timestamp (parse failures, ends, catch-ups) as soon as they are next in their feed.
+     */
+    private static boolean isTradeFirst(FeedEvent nextTrade, FeedEvent nextFill) {
+        if (Objects.isNull(nextFill) || nextTrade.timestamp().isEmpty()) {
+            return true;
+        }
+        if (nextFill.timestamp().isEmpty()) {
+            return false;
+        }
+        return !nextTrade.timestamp().get().isAfter(nextFill.timestamp().get());
+    }
+
+    private static void putEvent(BlockingQueue<FeedEvent> events, FeedEvent event) {
+        try {
+            events.put(event);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Stream join stopped");
+        }
+    }
+
+    private static FeedEvent takeEvent(BlockingQueue<FeedEvent> events) {
+        try {
+            return events.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransformerException("Interrupted while waiting for trades and fills", e);
+        }
+    }
+
+    /**
+     * transform-parallelism, unless the Transformers would share mutable state: a MERGE join reads its fills as
+     * trades are looked up, a STREAM join as fills arrive, and a followed file is flushed from the reading thread.
+     * A GRACE join validates its partitions on every core already, and deduplicates on a single thread.
+     */
+    private static int transformShards(AppConfig config, Optional<FollowMode> follow) {
+        int shards = config.validationConfig().transformParallelism();
+        if (config.readConfig().joinConfig().fillsJoin() == FillsJoin.GRACE) {
+            return 1;
+        }
+        if (shards > 1 && config.readConfig().joinConfig().fillsJoin() == FillsJoin.MERGE) {
+            log.warn("Trades are transformed on a single thread with fills-join = merge");
+            return 1;
+        }
+        if (shards > 1 && config.readConfig().joinConfig().fillsJoin() == FillsJoin.STREAM) {
+            log.warn("Trades are transformed on a single thread with fills-join = stream");
+            return 1;
+        }
+        if (shards > 1 && follow.isPresent()) {
+            log.warn("Trades are transformed on a single thread in follow mode");
+            return 1;
+        }
+        return shards;
+    }
+
+    /**
+     * GRACE join: partitions the fills, then the trades deduplicated in row order, and validates them partition by
+     * partition on every core (see GraceHashJoin). Both outputs are written in trade row order once every partition is
+     * joined.
+     */
+    private static void graceHashJoin(
+            CsvReader csvReader,
+            Stream<CsvReaderRowResult<SourcedTrade>> tradeStream,
+            Transformer transformer,
+            JsonWriter writer,
+            Map<String, SymbolRefRecord> symbolMap,
+            StringDictionaries dictionaries,
+            AppConfig config,
+            AppMetrics metrics
+    ) throws CsvReaderException, IOException {
+        final JoinConfig joinConfig = config.readConfig().joinConfig();
+        final int workers = Runtime.getRuntime().availableProcessors();
+        final int partitions = gracePartitions(joinConfig, config.readConfig().fillsFile(), workers);
+        try (GraceHashJoin join = GraceHashJoin.open(joinConfig.directory(), partitions, config.readConfig().tradesFiles())) {
+            partitionFills(csvReader, join, dictionaries, config, metrics);
+            for (CsvReaderRowResult<SourcedTrade> r : (Iterable<CsvReaderRowResult<SourcedTrade>>) tradeStream::iterator) {
+                metrics.incrementTradesRead();
+                if (r.exception().isPresent()) {
+                    log.debug("Parse failure: {}", r.exception().get().details());
+                    metrics.incrementTradesParseFailed();
+                    join.addParseFailure(r.exception().get());
+                } else if (r.parsedRow().isPresent()) {
+                    SourcedTrade trade = r.parsedRow().get();
+                    Optional<TransformerResult> duplicate = transformer.deduplicate(trade.trade(), trade.file());
+                    if (duplicate.isPresent()) {
+                        join.addResult(duplicate.get());
+                    } else {
+                        join.addTrade(trade.trade(), trade.file());
+                    }
+                }
+            }
+            log.info("Partitioned trade records, joining them with their fills");
+            join.join(workers, fills -> Transformer.build(config.validationConfig(), symbolMap, fills, TradeIdSet.build()),
+                    new GraceHashJoin.Output() {
+                        @Override
+                        public void parseFailure(ExceptionRecord exception) {
+                            writer.writeException(exception);
+                        }
+
+                        @Override
+                        public void result(TransformerResult result) {
+                            write(result, writer, metrics);
+                        }
                     });
-            log.info("Trade records processing complete.");
         }
     }
 
     /**
-     * Loads symbols_reference.csv into a map keyed by symbol (uppercased).
+     * join-partitions if set, else enough partitions for the fills of one partition per worker to fit in
+     * join-memory-budget, estimated from the size of the fills file.
+     */
+    private static int gracePartitions(JoinConfig joinConfig, Path fillsFile, int workers) throws IOException {
+        if (joinConfig.partitions().isPresent()) {
+            return joinConfig.partitions().get();
+        }
+        if (!Files.isRegularFile(fillsFile)) {
+            log.warn("Size of {} is unknown, joining it in {} partitions: set join-partitions to fit its fills in join-memory-budget",
+                    fillsFile, workers);
+            return workers;
+        }
+        return GraceHashJoin.partitions(Files.size(fillsFile), joinConfig.memoryBudget(), workers);
+    }
+
+    /**
+     * Streams counterparty_fills.csv into the partitions of a GRACE join, counting its rows like loadFillsMap.
+     * Rows that fail to parse are logged and skipped.
+     */
+    private static void partitionFills(
+            CsvReader csvReader,
+            GraceHashJoin join,
+            StringDictionaries dictionaries,
+            AppConfig config,
+            AppMetrics metrics
+    ) throws CsvReaderException, IOException {
+        final Path fillsFile = config.readConfig().fillsFile();
+        final FieldParsers fieldParsers = FieldParsers.build(config.readConfig().priceParser(), dictionaries);
+        long rowsRead = 0;
+        long parseFailures = 0;
+        try (var stream = csvReader.readFile(fillsFile, (CsvRow row) -> CsvMappers.toFillRecord(row, fillsFile, fieldParsers))) {
+            for (CsvReaderRowResult<FillRecord> r : (Iterable<CsvReaderRowResult<FillRecord>>) stream::iterator) {
+                rowsRead++;
+                if (r.exception().isPresent()) {
+                    parseFailures++;
+                    log.debug("Skipping invalid fill row: {}", r.exception().get().details());
+                } else if (r.parsedRow().isPresent()) {
+                    join.addFill(r.parsedRow().get());
+                }
+            }
+        }
+        log.info("Partitioned {} fills", rowsRead - parseFailures);
+        metrics.incrementFillsRead(rowsRead);
+        metrics.incrementFillsParsesFailed(parseFailures);
+        metrics.recordTimestampFormats(fillsFile.getFileName().toString(), fieldParsers.timestamps().formatCounts());
+    }
+
+    /**
+     * A followed or checkpointed run reads its single trades file, other runs read every trades file concurrently.
+     */
+    private static Stream<CsvReaderRowResult<SourcedTrade>> readTrades(
+            CsvReader csvReader,
+            List<Path> tradesFiles,
+            Optional<FollowMode> follow,
+            Checkpoints checkpoints,
+            ReadProgress progress,
+            Function<Path, Predicate<CsvRow>> skipRow,
+            Function<Path, Function<CsvRow, CsvReaderRowResult<SourcedTrade>>> mapper
+    ) throws CsvReaderException {
+        Path tradesFile = tradesFiles.get(0);
+        if (follow.isPresent()) {
+            if (tradesFiles.size() > 1) {
+                throw new CsvReaderException("Only a single trades file can be followed, %d configured".formatted(tradesFiles.size()));
+            }
+            return csvReader.followFile(tradesFile, follow.get(), skipRow.apply(tradesFile), mapper.apply(tradesFile));
+        }
+        if (checkpoints.isEnabled()) {
+            return csvReader.readFile(tradesFile, progress, skipRow.apply(tradesFile), mapper.apply(tradesFile));
+        }
+        return csvReader.readFiles(tradesFiles, skipRow, mapper);
+    }
+
+    /**
+     * Checkpoints of the run over trades.csv. A followed file keeps growing, several trades files are read
+     * concurrently, sharded trade IDs are not journaled and a STREAM join holds trades and fills that a checkpoint
+     * would not record, so none of these runs is checkpointed.
+     */
+    private static Checkpoints checkpoints(AppConfig config, Optional<FollowMode> follow, boolean resume, int shards) {
+        List<Path> tradesFiles = config.readConfig().tradesFiles();
+        Checkpoints checkpoints = Checkpoints.build(config.writeConfig(), tradesFiles.get(0));
+        if (checkpoints.isEnabled() && follow.isPresent()) {
+            log.warn("Checkpoints are not taken in follow mode");
+            return Checkpoints.disabled();
+        }
+        if (checkpoints.isEnabled() && config.readConfig().joinConfig().fillsJoin() == FillsJoin.GRACE) {
+            log.warn("Checkpoints are not taken with fills-join = grace");
+            return Checkpoints.disabled();
+        }
+        if (checkpoints.isEnabled() && config.readConfig().joinConfig().fillsJoin() == FillsJoin.STREAM) {
+            log.warn("Checkpoints are not taken with fills-join = stream");
+            return Checkpoints.disabled();
+        }
+        if (checkpoints.isEnabled() && shards > 1) {
+            log.warn("Checkpoints are not taken with transform-parallelism > 1");
+            return Checkpoints.disabled();
+        }
+        if (checkpoints.isEnabled() && tradesFiles.size() > 1) {
+            log.warn("Checkpoints are only taken on a single trades file, {} configured", tradesFiles.size());
+            return Checkpoints.disabled();
+        }
+        if (resume && !checkpoints.isEnabled()) {
+            log.warn("Nothing to resume from without a checkpoint-dir, starting from the beginning");
+        }
+        return checkpoints;
+    }
+
+    private static Map<TimestampFormat, Long> mergeCounts(Map<TimestampFormat, Long> restored, Map<TimestampFormat, Long> counts) {
+        if (restored.isEmpty()) {
+            return counts;
+        }
+        Map<TimestampFormat, Long> merged = new EnumMap<>(restored);
+        counts.forEach((format, count) -> merged.merge(format, count, Long::sum));
+        return merged;
+    }
+
+    /**
+     * Loads symbols_reference.csv into a map keyed by symbol (uppercased), from its snapshot when unchanged.
      * Rows that fail to parse are logged and skipped.
      */
     private static Map<String, SymbolRefRecord> loadSymbolsMap(
             CsvReader csvReader,
+            SnapshotCache snapshots,
+            StringDictionaries dictionaries,
             AppConfig config,
             AppMetrics metrics
     ) throws CsvReaderException {
         final Path symbolsRefFile = config.readConfig().symbolsRefFile();
-        try (var stream = csvReader.readFile(symbolsRefFile, (CsvRow row) -> CsvMappers.toSymbolRefRecord(row, symbolsRefFile))) {
-            return stream
-                    .peek(r -> metrics.incrementSymbolsRead())
+        final FieldParsers fieldParsers = FieldParsers.build(config.readConfig().priceParser(), dictionaries);
+        Snapshot<SymbolRefRecord> symbols = snapshots.load(symbolsRefFile, SnapshotCodec.symbols(dictionaries),
+                () -> readSymbols(csvReader, symbolsRefFile, fieldParsers));
+        metrics.incrementSymbolsRead(symbols.rowsRead());
+        metrics.incrementSymbolsParsesFailed(symbols.parseFailures());
+        return symbols.records().stream()
+                .collect(Collectors.toMap(
+                        SymbolRefRecord::symbol,
+                        s -> s
+                ));
+    }
+
+    private static Snapshot<SymbolRefRecord> readSymbols(CsvReader csvReader, Path symbolsRefFile, FieldParsers fieldParsers) throws CsvReaderException {
+        AtomicLong rowsRead = new AtomicLong();
+        AtomicLong parseFailures = new AtomicLong();
+        try (var stream = csvReader.readFile(symbolsRefFile, (CsvRow row) -> CsvMappers.toSymbolRefRecord(row, symbolsRefFile, fieldParsers))) {
+            List<SymbolRefRecord> symbols = stream
+                    .peek(r -> rowsRead.incrementAndGet())
                     .peek(r -> r.exception().ifPresent(e -> {
-                        metrics.incrementSymbolsParsesFailed();
+                        parseFailures.incrementAndGet();
                         log.debug("Skipping invalid symbol row: {}", e.details());
                     }))
                     .filter(r -> r.parsedRow().isPresent())
                     .map(r -> r.parsedRow().get())
-                    .collect(Collectors.toMap(
-                            SymbolRefRecord::symbol,
-                            s -> s
-                    ));
+                    .toList();
+            return new Snapshot<>(symbols, rowsRead.get(), parseFailures.get(), Map.of());
+        }
+    }
+
+    /**
+     * HASH join: loads every fill before the first trade. MERGE join: streams counterparty_fills.csv alongside the
+     * trades, see MergeJoinFills. GRACE join: fills are partitioned with the trades instead, see graceHashJoin.
+     * STREAM join: fills are read alongside the trades instead, see streamJoin.
+     */
+    private static FillLookup openFills(
+            CsvReader csvReader,
+            SnapshotCache snapshots,
+            StringDictionaries dictionaries,
+            AppConfig config,
+            AppMetrics metrics
+    ) throws CsvReaderException {
+        switch (config.readConfig().joinConfig().fillsJoin()) {
+            case HASH -> {
+                Map<String, FillRecord> fillMap = loadFillsMap(csvReader, snapshots, dictionaries, config, metrics);
+                log.info("Loaded {} fills", fillMap.size());
+                return FillLookup.of(fillMap);
+            }
+            case MERGE -> {
+                log.info("Streaming fills sorted by trade ID alongside the trades");
+                return streamFills(csvReader, snapshots, dictionaries, config, metrics);
+            }
+            default -> {
+                return FillLookup.of(Map.of());
+            }
         }
     }
 
     /**
-     * Loads counterparty_fills.csv into a map keyed by ourTradeId.
+     * Streams counterparty_fills.csv for a MERGE join. Its rows are counted once the join closes it, unless the join
+     * fell back to loadFillsMap, which counts them itself.
+     * Rows that fail to parse are logged and skipped.
+     */
+    private static FillLookup streamFills(
+            CsvReader csvReader,
+            SnapshotCache snapshots,
+            StringDictionaries dictionaries,
+            AppConfig config,
+            AppMetrics metrics
+    ) throws CsvReaderException {
+        final Path fillsFile = config.readConfig().fillsFile();
+        final FieldParsers fieldParsers = FieldParsers.build(config.readConfig().priceParser(), dictionaries);
+        AtomicLong rowsRead = new AtomicLong();
+        AtomicLong parseFailures = new AtomicLong();
+        AtomicBoolean fellBack = new AtomicBoolean();
+        Stream<FillRecord> fills = csvReader.readFile(fillsFile, (CsvRow row) -> CsvMappers.toFillRecord(row, fillsFile, fieldParsers))
+                .peek(r -> rowsRead.incrementAndGet())
+                .peek(r -> r.exception().ifPresent(e -> {
+                    parseFailures.incrementAndGet();
+                    log.debug("Skipping invalid fill row: {}", e.details());
+                }))
+                .filter(r -> r.parsedRow().isPresent())
+                .map(r -> r.parsedRow().get())
+                .onClose(() -> {
+                    if (!fellBack.get()) {
+                        metrics.incrementFillsRead(rowsRead.get());
+                        metrics.incrementFillsParsesFailed(parseFailures.get());
+                        metrics.recordTimestampFormats(fillsFile.getFileName().toString(), fieldParsers.timestamps().formatCounts());
+                    }
+                });
+        return MergeJoinFills.open(fills, () -> {
+            fellBack.set(true);
+            return loadFillsMap(csvReader, snapshots, dictionaries, config, metrics);
+        });
+    }
+
+    /**
+     * Loads counterparty_fills.csv into a map keyed by ourTradeId, from its snapshot when unchanged.
      * Rows that fail to parse are logged and skipped.
      */
     private static Map<String, FillRecord> loadFillsMap(
             CsvReader csvReader,
+            SnapshotCache snapshots,
+            StringDictionaries dictionaries,
             AppConfig config,
             AppMetrics metrics
     ) throws CsvReaderException {
         final Path fillsFile = config.readConfig().fillsFile();
-        try (var stream = csvReader.readFile(fillsFile, (CsvRow row) -> CsvMappers.toFillRecord(row, fillsFile))) {
-            return stream
-                    .peek(r -> metrics.incrementFillsRead())
+        final FieldParsers fieldParsers = FieldParsers.build(config.readConfig().priceParser(), dictionaries);
+        Snapshot<FillRecord> fills = snapshots.load(fillsFile, SnapshotCodec.fills(dictionaries),
+                () -> readFills(csvReader, fillsFile, fieldParsers));
+        metrics.incrementFillsRead(fills.rowsRead());
+        metrics.incrementFillsParsesFailed(fills.parseFailures());
+        metrics.recordTimestampFormats(fillsFile.getFileName().toString(), fills.timestampFormats());
+        return fills.records().stream()
+                .collect(Collectors.toMap(
+                        FillRecord::ourTradeId,
+                        f -> f
+                ));
+    }
+
+    private static Snapshot<FillRecord> readFills(CsvReader csvReader, Path fillsFile, FieldParsers fieldParsers) throws CsvReaderException {
+        AtomicLong rowsRead = new AtomicLong();
+        AtomicLong parseFailures = new AtomicLong();
+        try (var stream = csvReader.readFile(fillsFile, (CsvRow row) -> CsvMappers.toFillRecord(row, fillsFile, fieldParsers))) {
+            List<FillRecord> fills = stream
+                    .peek(r -> rowsRead.incrementAndGet())
                     .peek(r -> r.exception().ifPresent(e -> {
-                        metrics.incrementFillsParsesFailed();
+                        parseFailures.incrementAndGet();
                         log.debug("Skipping invalid fill row: {}", e.details());
                     }))
                     .filter(r -> r.parsedRow().isPresent())
                     .map(r -> r.parsedRow().get())
-                    .collect(Collectors.toMap(
-                            FillRecord::ourTradeId,
-                            f -> f
-                    ));
+                    .toList();
+            return new Snapshot<>(fills, rowsRead.get(), parseFailures.get(), fieldParsers.timestamps().formatCounts());
         }
     }
 
-    private static boolean notCancelledTrade(AppMetrics metrics, TradeRecord trade) {
-        if (trade.tradeStatus() == TradeStatus.CANCELLED) {
-            log.debug("Skipping cancelled trade: {}", trade.tradeId());
+    /**
+     * Skip predicate pushed down to the reader: cancelled trades are dropped instead of being mapped to trade records.
+     * Other rows only have their trade_status decoded, while a cancelled row has every field checked and its timestamp
+     * parsed, so that one with an invalid field still reaches the mapper as a parse error.
+     * Called concurrently when the reader runs in parallel.
+     */
+    private static boolean cancelledTrade(AppMetrics metrics, CsvRow row, FieldParsers fieldParsers) {
+        if (CsvMappers.isCancelledTrade(row, fieldParsers)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Skipping cancelled trade: {}", row.get("trade_id"));
+            }
             metrics.incrementTradesCancelled();
-            return false;
+            return true;
         }
-        return true;
+        return false;
     }
 }
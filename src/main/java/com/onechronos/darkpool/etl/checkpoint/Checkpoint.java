@@ -0,0 +1,26 @@
+package com.onechronos.darkpool.etl.checkpoint;
+
+import com.onechronos.darkpool.etl.extract.ReadPosition;
+import com.onechronos.darkpool.etl.load.JsonWriterPosition;
+import com.onechronos.darkpool.etl.metrics.TradeCounts;
+import com.onechronos.darkpool.etl.model.enums.TimestampFormat;
+
+import java.util.Map;
+
+/**
+ * State of a run over trades.csv after its last fully processed row, from which the run can resume.
+ *
+ * @param position         position in trades.csv of the first row not processed yet
+ * @param outputs          position of both output files, with every record of the processed rows written
+ * @param tradeIds         number of trade IDs journaled so far
+ * @param tradeCounts      trade counters of AppMetrics
+ * @param timestampFormats number of trade timestamps parsed per format
+ */
+public record Checkpoint(
+        ReadPosition position,
+        JsonWriterPosition outputs,
+        long tradeIds,
+        TradeCounts tradeCounts,
+        Map<TimestampFormat, Long> timestampFormats
+) {
+}
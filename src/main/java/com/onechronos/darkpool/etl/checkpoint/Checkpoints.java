@@ -0,0 +1,265 @@
+package com.onechronos.darkpool.etl.checkpoint;
+
+import com.onechronos.darkpool.etl.config.WriteConfig;
+import com.onechronos.darkpool.etl.extract.ReadPosition;
+import com.onechronos.darkpool.etl.load.JsonWriterPosition;
+import com.onechronos.darkpool.etl.metrics.TradeCounts;
+import com.onechronos.darkpool.etl.model.enums.TimestampFormat;
+import com.onechronos.darkpool.etl.transform.TradeIdDedup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Periodic checkpoints of a run over trades.csv, so that a run interrupted by a crash can resume from its last
+ * checkpoint and still produce the output of an uninterrupted run.
+ * - Every interval rows, once a row is fully processed, the outputs are flushed and a Checkpoint is written
+ * - Seen trade IDs are appended to a journal as they are added, and the checkpoint records how many are in it
+ * - The checkpoint file is written to a temporary file then moved into place, so there always is one whole checkpoint
+ * - The checkpoint is bound to the trades file it was taken on, and is deleted once the run completes
+ * A checkpoint that cannot be read or does not match the trades file fails the resumed run.
+ */
+public final class Checkpoints implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(Checkpoints.class);
+
+    public static final long DEFAULT_INTERVAL = 1_000_000;
+
+    static final String CHECKPOINT_FILE = "checkpoint";
+    static final String JOURNAL_FILE = "trade-ids.journal";
+
+    private static final int MAGIC = 0x4F434350; // "OCCP"
+    // 2: journal entries carry the trade timestamp, 3: rejections per type, 4: journal timestamps in seconds and nanos
+    private static final int FORMAT_VERSION = 4;
+    private static final TimestampFormat[] TIMESTAMP_FORMATS = TimestampFormat.values();
+
+    private final Path directory;
+    private final long interval;
+    private final Path tradesFile;
+
+    private TradeIdJournal journal;
+    private long rowsSinceCheckpoint;
+
+    private Checkpoints(Path directory, long interval, Path tradesFile) {
+        this.directory = directory;
+        this.interval = interval;
+        this.tradesFile = tradesFile;
+    }
+
+    /**
+     * @param directory  where the checkpoint and trade ID journal are written, created if it does not exist
+     * @param interval   number of trade rows processed between checkpoints
+     * @param tradesFile file the checkpoints are taken on
+     */
+    public static Checkpoints build(Path directory, long interval, Path tradesFile) {
+        return new Checkpoints(directory, interval, tradesFile);
+    }
+
+    /**
+     * Checkpoints that are never written nor loaded.
+     */
+    public static Checkpoints disabled() {
+        return new Checkpoints(null, 0, null);
+    }
+
+    public static Checkpoints build(WriteConfig writeConfig, Path tradesFile) {
+        return writeConfig.checkpointDir()
+                .map(directory -> build(directory, writeConfig.checkpointInterval(), tradesFile))
+                .orElseGet(Checkpoints::disabled);
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Loads the last checkpoint of an interrupted run.
+     *
+     * @return the checkpoint, or empty if checkpoints are disabled or there is none
+     * @throws IOException if the checkpoint is unreadable or was taken on another version of the trades file
+     */
+    public Optional<Checkpoint> load() throws IOException {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+        Path checkpointFile = directory.resolve(CHECKPOINT_FILE);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpointFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new StreamCorruptedException("Not a checkpoint, or written by another version: " + checkpointFile);
+            }
+            String source = in.readUTF();
+            long size = in.readLong();
+            long lastModified = in.readLong();
+            if (!source.equals(tradesFile.toAbsolutePath().toString())
+                    || size != Files.size(tradesFile)
+                    || lastModified != Files.getLastModifiedTime(tradesFile).toMillis()) {
+                throw new IOException("Checkpoint %s was taken on %s, which has changed or is not the trades file %s"
+                        .formatted(checkpointFile, source, tradesFile));
+            }
+
+            ReadPosition position = new ReadPosition(in.readLong(), in.readLong());
+            JsonWriterPosition outputs = new JsonWriterPosition(in.readLong(), in.readLong(), in.readLong(), in.readLong());
+            long tradeIds = in.readLong();
+            long read = in.readLong();
+            long cancelled = in.readLong();
+            long cleanedWritten = in.readLong();
+            long exceptionsWritten = in.readLong();
+            long parseFailed = in.readLong();
+            Map<String, Long> rejected = new TreeMap<>();
+            int typeCount = in.readInt();
+            for (int i = 0; i < typeCount; i++) {
+                rejected.put(in.readUTF(), in.readLong());
+            }
+            TradeCounts tradeCounts = new TradeCounts(read, cancelled, cleanedWritten, exceptionsWritten, parseFailed,
+                    Collections.unmodifiableMap(rejected));
+            Map<TimestampFormat, Long> timestampFormats = new EnumMap<>(TimestampFormat.class);
+            int formatCount = in.readInt();
+            for (int i = 0; i < formatCount; i++) {
+                int format = in.readInt();
+                if (format < 0 || format >= TIMESTAMP_FORMATS.length) {
+                    throw new StreamCorruptedException("Invalid timestamp format in checkpoint: " + format);
+                }
+                timestampFormats.put(TIMESTAMP_FORMATS[format], in.readLong());
+            }
+            if (in.readInt() != MAGIC) {
+                throw new StreamCorruptedException("Missing end of checkpoint: " + checkpointFile);
+            }
+
+            log.info("Loaded checkpoint {}: {} trades read, resuming {} at line {}",
+                    checkpointFile, tradeCounts.read(), tradesFile.getFileName(), position.lineNumber());
+            return Optional.of(new Checkpoint(
+                    position, outputs, tradeIds, tradeCounts, Collections.unmodifiableMap(timestampFormats)));
+
+        } catch (NoSuchFileException e) {
+            log.info("No checkpoint in {}, starting from the beginning of {}", directory, tradesFile);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Starts checkpointing the run. When resuming, the trade IDs seen before the checkpoint are restored from the
+     * journal; otherwise the checkpoint and journal of any previous run are removed.
+     *
+     * @param resumeFrom checkpoint the run resumes from, empty for a run from the beginning
+     * @param tradeIds   empty dedup backend of the run, closed by the caller
+     * @return trade IDs seen so far, for the Transformer to add every new trade ID to
+     */
+    public TradeIdDedup start(Optional<Checkpoint> resumeFrom, TradeIdDedup tradeIds) throws IOException {
+        if (!isEnabled()) {
+            return tradeIds;
+        }
+        Files.createDirectories(directory);
+        if (resumeFrom.isEmpty()) {
+            Files.deleteIfExists(directory.resolve(CHECKPOINT_FILE));
+        }
+        journal = TradeIdJournal.open(directory.resolve(JOURNAL_FILE), resumeFrom.map(Checkpoint::tradeIds).orElse(0L), tradeIds);
+        log.info("Checkpointing every {} trade rows to {}", interval, directory);
+        return journal;
+    }
+
+    /**
+     * Called each time a trade row is fully processed, with all of its records written.
+     *
+     * @param checkpoint state of the run right after the row, only taken every interval rows
+     * @throws UncheckedIOException if the checkpoint cannot be written
+     */
+    public void rowProcessed(Supplier<Checkpoint> checkpoint) {
+        if (journal == null || ++rowsSinceCheckpoint < interval) {
+            return;
+        }
+        rowsSinceCheckpoint = 0;
+        try {
+            save(checkpoint.get());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write checkpoint to %s".formatted(directory), e);
+        }
+    }
+
+    /**
+     * The run completed: its checkpoint and journal are deleted, a later resume starts from the beginning.
+     */
+    public void complete() throws IOException {
+        if (journal == null) {
+            return;
+        }
+        close();
+        Files.deleteIfExists(directory.resolve(CHECKPOINT_FILE));
+        Files.deleteIfExists(directory.resolve(JOURNAL_FILE));
+        log.info("Run complete, removed checkpoint from {}", directory);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    private void save(Checkpoint checkpoint) throws IOException {
+        // The journal has to hold every trade ID the checkpoint counts before the checkpoint replaces the last one
+        journal.sync();
+
+        Path checkpointFile = directory.resolve(CHECKPOINT_FILE);
+        Path temporary = Files.createTempFile(directory, CHECKPOINT_FILE, ".tmp");
+        try {
+            FileOutputStream file = new FileOutputStream(temporary.toFile());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(tradesFile.toAbsolutePath().toString());
+                out.writeLong(Files.size(tradesFile));
+                out.writeLong(Files.getLastModifiedTime(tradesFile).toMillis());
+
+                out.writeLong(checkpoint.position().offset());
+                out.writeLong(checkpoint.position().lineNumber());
+                out.writeLong(checkpoint.outputs().cleanedTradesBytes());
+                out.writeLong(checkpoint.outputs().cleanedTrades());
+                out.writeLong(checkpoint.outputs().exceptionsBytes());
+                out.writeLong(checkpoint.outputs().exceptions());
+                out.writeLong(checkpoint.tradeIds());
+                out.writeLong(checkpoint.tradeCounts().read());
+                out.writeLong(checkpoint.tradeCounts().cancelled());
+                out.writeLong(checkpoint.tradeCounts().cleanedWritten());
+                out.writeLong(checkpoint.tradeCounts().exceptionsWritten());
+                out.writeLong(checkpoint.tradeCounts().parseFailed());
+                out.writeInt(checkpoint.tradeCounts().rejected().size());
+                for (Map.Entry<String, Long> entry : checkpoint.tradeCounts().rejected().entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue());
+                }
+                out.writeInt(checkpoint.timestampFormats().size());
+                for (Map.Entry<TimestampFormat, Long> entry : checkpoint.timestampFormats().entrySet()) {
+                    out.writeInt(entry.getKey().ordinal());
+                    out.writeLong(entry.getValue());
+                }
+                out.writeInt(MAGIC);
+                out.flush();
+                file.getFD().sync();
+            }
+            Files.move(temporary, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        log.debug("Checkpoint at line {} of {}", checkpoint.position().lineNumber(), tradesFile.getFileName());
+    }
+}
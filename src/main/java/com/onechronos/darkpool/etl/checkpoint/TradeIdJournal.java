@@ -0,0 +1,153 @@
+package com.onechronos.darkpool.etl.checkpoint;
+
+import com.onechronos.darkpool.etl.transform.TradeIdDedup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+/**
+ * Trade ID dedup that appends every new ID to a journal file before passing it to the dedup backend, so that the
+ * dedup state of a run can be restored without writing the whole backend at every checkpoint.
+ * Entries are a UTF-8 byte length, the bytes, and the trade timestamp in epoch seconds and nanos (NO_TIMESTAMP seconds
+ * if the ID was added without one), so that a windowed backend expires restored IDs like it did before the checkpoint.
+ * Seconds and nanos cover every Instant the timestamp parsers accept, unlike epoch milliseconds.
+ * A checkpoint records the number of entries; entries after it belong to rows that are processed again on resume, and
+ * are dropped when the journal is reopened.
+ */
+final class TradeIdJournal implements TradeIdDedup {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_ID_BYTES = 1 << 20;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE; // Below Instant.MIN
+    private static final int TIMESTAMP_BYTES = Long.BYTES + Integer.BYTES;
+
+    private final TradeIdDedup tradeIds;
+    private final FileChannel channel;
+    private final DataOutputStream out;
+    private long entries;
+
+    private TradeIdJournal(TradeIdDedup tradeIds, FileChannel channel, long entries) {
+        this.tradeIds = tradeIds;
+        this.channel = channel;
+        this.entries = entries;
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+    }
+
+    /**
+     * Opens a journal, keeping its first entries and truncating the rest.
+     *
+     * @param entries  number of entries to keep, 0 to start an empty journal
+     * @param tradeIds empty dedup backend, the kept entries are added to it
+     * @throws IOException if the journal has fewer entries or cannot be read
+     */
+    static TradeIdJournal open(Path path, long entries, TradeIdDedup tradeIds) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = 0;
+            if (entries > 0) {
+                // Not closed: closing it would close the channel
+                DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+                for (long i = 0; i < entries; i++) {
+                    int length = in.readInt();
+                    if (length < 0 || length > MAX_ID_BYTES) {
+                        throw new StreamCorruptedException("Invalid trade ID length in %s: %d".formatted(path, length));
+                    }
+                    byte[] bytes = new byte[length];
+                    in.readFully(bytes);
+                    String tradeId = new String(bytes, StandardCharsets.UTF_8);
+                    long seconds = in.readLong();
+                    int nanos = in.readInt();
+                    if (seconds == NO_TIMESTAMP) {
+                        tradeIds.add(tradeId);
+                    } else {
+                        tradeIds.add(tradeId, Instant.ofEpochSecond(seconds, nanos));
+                    }
+                    size += Integer.BYTES + length + TIMESTAMP_BYTES;
+                }
+            }
+            channel.truncate(size);
+            channel.position(size);
+            return new TradeIdJournal(tradeIds, channel, entries);
+        } catch (EOFException e) {
+            channel.close();
+            throw new IOException("%s has fewer than the %d trade IDs of the checkpoint".formatted(path, entries), e);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean add(String tradeId) {
+        return tradeIds.add(tradeId) && journal(tradeId, NO_TIMESTAMP, 0);
+    }
+
+    @Override
+    public boolean add(String tradeId, Instant timestamp) {
+        return tradeIds.add(tradeId, timestamp) && journal(tradeId, timestamp.getEpochSecond(), timestamp.getNano());
+    }
+
+    /**
+     * Not journaled: only a ShardedTransformer moves the event time without adding IDs, and sharded runs are not
+     * checkpointed.
+     */
+    @Override
+    public void advanceTo(Instant latest) {
+        tradeIds.advanceTo(latest);
+    }
+
+    @Override
+    public boolean contains(String tradeId) {
+        return tradeIds.contains(tradeId);
+    }
+
+    /**
+     * @return number of entries in the journal, including IDs a windowed backend has expired since
+     */
+    @Override
+    public long count() {
+        return entries;
+    }
+
+    private boolean journal(String tradeId, long seconds, int nanos) {
+        try {
+            byte[] bytes = tradeId.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeLong(seconds);
+            out.writeInt(nanos);
+            entries++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to journal trade ID " + tradeId, e);
+        }
+        return true;
+    }
+
+    /**
+     * Writes every entry added so far to disk.
+     */
+    void sync() throws IOException {
+        out.flush();
+        channel.force(false);
+    }
+
+    /**
+     * Closes the journal file. The dedup backend is owned, and closed, by the caller.
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -7,7 +7,9 @@ import java.util.Optional;
  * Record for Command Line Args
  *
  * @param configFilePath path for HOCON config file
+ * @param follow         keep following the trades file for appended lines until the process is stopped
+ * @param resume         resume an interrupted run from its last checkpoint
  */
-public record CliArgs(Optional<Path> configFilePath) {
+public record CliArgs(Optional<Path> configFilePath, boolean follow, boolean resume) {
 }
 
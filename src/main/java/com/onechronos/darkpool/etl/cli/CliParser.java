@@ -19,6 +19,8 @@ public class CliParser {
     private static final Logger log = LoggerFactory.getLogger(CliParser.class);
 
     private static final String CONFIG_FILE_PATH_SHORT_OPT = "c";
+    private static final String FOLLOW_SHORT_OPT = "f";
+    private static final String RESUME_SHORT_OPT = "r";
 
     private final Options options;
 
@@ -36,6 +38,16 @@ public class CliParser {
                 .argName("FILE")
                 .get());
 
+        opts.addOption(Option.builder(FOLLOW_SHORT_OPT)
+                .longOpt("follow")
+                .desc("Keep processing lines appended to the trades file until stopped (Optional)")
+                .get());
+
+        opts.addOption(Option.builder(RESUME_SHORT_OPT)
+                .longOpt("resume")
+                .desc("Resume an interrupted run from the last checkpoint in checkpoint-dir (Optional)")
+                .get());
+
         return opts;
     }
 
@@ -48,7 +60,9 @@ public class CliParser {
             String configValue = cmd.getOptionValue(CONFIG_FILE_PATH_SHORT_OPT);
 
             CliArgs cliArgs = new CliArgs(
-                    configValue != null ? Optional.of(Path.of(configValue)) : Optional.empty()
+                    configValue != null ? Optional.of(Path.of(configValue)) : Optional.empty(),
+                    cmd.hasOption(FOLLOW_SHORT_OPT),
+                    cmd.hasOption(RESUME_SHORT_OPT)
             );
 
             log.info("Command line args parsed {}", cliArgs);
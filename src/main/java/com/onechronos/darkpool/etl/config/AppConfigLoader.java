@@ -1,16 +1,42 @@
 package com.onechronos.darkpool.etl.config;
 
+import com.onechronos.darkpool.etl.checkpoint.Checkpoints;
 import com.onechronos.darkpool.etl.exception.ConfigLoadException;
+import com.onechronos.darkpool.etl.extract.CsvReader;
+import com.onechronos.darkpool.etl.extract.CsvReaderEngine;
+import com.onechronos.darkpool.etl.extract.CsvTokenizer;
+import com.onechronos.darkpool.etl.extract.FollowMode;
+import com.onechronos.darkpool.etl.extract.PriceParser;
+import com.onechronos.darkpool.etl.extract.StringDictionary;
+import com.onechronos.darkpool.etl.transform.DedupBackend;
+import com.onechronos.darkpool.etl.transform.DedupWindow;
+import com.onechronos.darkpool.etl.transform.FillsJoin;
+import com.onechronos.darkpool.etl.transform.GraceHashJoin;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigException;
 import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigValueType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Class for loading application config file from an external config file.
@@ -18,6 +44,8 @@ import java.util.Optional;
 public class AppConfigLoader {
     private static final Logger log = LoggerFactory.getLogger(AppConfigLoader.class);
 
+    private static final String GLOB_CHARACTERS = "*?[{";
+
     private AppConfigLoader() {
     }
 
@@ -65,29 +93,267 @@ public class AppConfigLoader {
         return new ReadConfig(
                 getPath(conf, "symbols-ref-file"),
                 getPath(conf, "fills-file"),
-                getPath(conf, "trades-file")
+                parseTradesFiles(conf),
+                conf.hasPath("reader-engine")
+                        ? CsvReaderEngine.parse(conf.getString("reader-engine"))
+                        : CsvReaderEngine.BUFFERED,
+                conf.hasPath("tokenizer")
+                        ? CsvTokenizer.parse(conf.getString("tokenizer"))
+                        : CsvTokenizer.SCALAR,
+                parseParallelism(conf),
+                parseChunkSize(conf),
+                conf.hasPath("price-parser")
+                        ? PriceParser.parse(conf.getString("price-parser"))
+                        : PriceParser.DECIMAL,
+                conf.hasPath("snapshot-dir")
+                        ? Optional.of(getPath(conf, "snapshot-dir"))
+                        : Optional.empty(),
+                parseFollowPollInterval(conf),
+                parseDictionarySizeLimit(conf),
+                parseJoinConfig(conf)
+        );
+    }
+
+    /**
+     * trades-file is a path or a list of paths, where each path can be a glob such as "data/trades-*.csv".
+     * Files matched by a glob are sorted by path, so the order in which duplicates are found is always the same.
+     */
+    private List<Path> parseTradesFiles(Config conf) {
+        List<String> patterns = conf.getValue("trades-file").valueType() == ConfigValueType.LIST
+                ? conf.getStringList("trades-file")
+                : List.of(conf.getString("trades-file"));
+
+        List<Path> files = new ArrayList<>();
+        for (String pattern : patterns) {
+            if (isGlob(pattern)) {
+                files.addAll(expandGlob(pattern));
+            } else {
+                files.add(toPath(pattern, "trades-file"));
+            }
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No trades file configured at config key: trades-file");
+        }
+        return List.copyOf(new LinkedHashSet<>(files));
+    }
+
+    private boolean isGlob(String pattern) {
+        return pattern.chars().anyMatch(c -> GLOB_CHARACTERS.indexOf(c) >= 0);
+    }
+
+    /**
+     * Matches the glob against the files under the directory part of the pattern that has no glob characters.
+     */
+    private List<Path> expandGlob(String pattern) {
+        int globStart = 0;
+        while (GLOB_CHARACTERS.indexOf(pattern.charAt(globStart)) < 0) {
+            globStart++;
+        }
+        int separator = pattern.lastIndexOf('/', globStart);
+        Path directory = toPath(separator < 0 ? "." : pattern.substring(0, separator + 1), "trades-file");
+        String relativeGlob = pattern.substring(separator + 1);
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + relativeGlob);
+        int maxDepth = relativeGlob.contains("**") ? Integer.MAX_VALUE : relativeGlob.split("/").length;
+
+        try (Stream<Path> candidates = Files.walk(directory, maxDepth)) {
+            List<Path> files = candidates
+                    .filter(Files::isRegularFile)
+                    .filter(file -> matcher.matches(directory.relativize(file)))
+                    .sorted()
+                    .toList();
+            if (files.isEmpty()) {
+                throw new IllegalArgumentException("No trades file matches: " + pattern);
+            }
+            log.info("Trades files matching {}: {}", pattern, files);
+            return files;
+        } catch (IOException | UncheckedIOException e) {
+            throw new IllegalArgumentException("Failed to list trades files matching %s: %s".formatted(pattern, e.getMessage()));
+        }
+    }
+
+    /**
+     * Parallelism of 0 uses every available core.
+     */
+    private int parseParallelism(Config conf) {
+        if (!conf.hasPath("parallelism")) {
+            return 1;
+        }
+        int parallelism = conf.getInt("parallelism");
+        if (parallelism < 0) {
+            throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+        }
+        return parallelism == 0 ? Runtime.getRuntime().availableProcessors() : parallelism;
+    }
+
+    private long parseChunkSize(Config conf) {
+        if (!conf.hasPath("chunk-size")) {
+            return CsvReader.DEFAULT_CHUNK_SIZE;
+        }
+        long chunkSize = conf.getBytes("chunk-size");
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Invalid chunk-size: " + chunkSize);
+        }
+        return chunkSize;
+    }
+
+    private Duration parseFollowPollInterval(Config conf) {
+        if (!conf.hasPath("follow-poll-interval")) {
+            return FollowMode.DEFAULT_POLL_INTERVAL;
+        }
+        Duration pollInterval = conf.getDuration("follow-poll-interval");
+        if (pollInterval.isNegative() || pollInterval.isZero()) {
+            throw new IllegalArgumentException("Invalid follow-poll-interval: " + pollInterval);
+        }
+        return pollInterval;
+    }
+
+    private int parseDictionarySizeLimit(Config conf) {
+        if (!conf.hasPath("dictionary-size-limit")) {
+            return StringDictionary.DEFAULT_SIZE_LIMIT;
+        }
+        int sizeLimit = conf.getInt("dictionary-size-limit");
+        if (sizeLimit < 0) {
+            throw new IllegalArgumentException("Invalid dictionary-size-limit: " + sizeLimit);
+        }
+        return sizeLimit;
+    }
+
+    private JoinConfig parseJoinConfig(Config conf) {
+        JoinConfig defaults = JoinConfig.HASH;
+        long memoryBudget = conf.hasPath("join-memory-budget") ? conf.getBytes("join-memory-budget") : defaults.memoryBudget();
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("Invalid join-memory-budget: " + memoryBudget);
+        }
+        Optional<Integer> partitions = conf.hasPath("join-partitions") ? Optional.of(conf.getInt("join-partitions")) : Optional.empty();
+        if (partitions.isPresent() && (partitions.get() <= 0 || partitions.get() > GraceHashJoin.MAX_PARTITIONS)) {
+            throw new IllegalArgumentException("Invalid join-partitions: " + partitions.get());
+        }
+        Duration watermarkLag = conf.hasPath("join-watermark-lag") ? conf.getDuration("join-watermark-lag") : defaults.watermarkLag();
+        if (watermarkLag.isNegative()) {
+            throw new IllegalArgumentException("Invalid join-watermark-lag: " + watermarkLag);
+        }
+        return new JoinConfig(
+                conf.hasPath("fills-join")
+                        ? FillsJoin.parse(conf.getString("fills-join"))
+                        : defaults.fillsJoin(),
+                conf.hasPath("join-dir")
+                        ? getPath(conf, "join-dir")
+                        : defaults.directory(),
+                memoryBudget,
+                partitions,
+                watermarkLag
         );
     }
 
     private WriteConfig parseWriteConfig(Config conf) {
         return new WriteConfig(
                 getPath(conf, "cleaned-trades-file"),
-                getPath(conf, "exceptions-report-file")
+                getPath(conf, "exceptions-report-file"),
+                conf.hasPath("checkpoint-dir")
+                        ? Optional.of(getPath(conf, "checkpoint-dir"))
+                        : Optional.empty(),
+                parseCheckpointInterval(conf)
         );
     }
 
+    private long parseCheckpointInterval(Config conf) {
+        if (!conf.hasPath("checkpoint-interval")) {
+            return Checkpoints.DEFAULT_INTERVAL;
+        }
+        long interval = conf.getLong("checkpoint-interval");
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Invalid checkpoint-interval: " + interval);
+        }
+        return interval;
+    }
+
+    /**
+     * Price differences are whole hundredths, so the threshold is rounded down to hundredths without changing
+     * which differences exceed it.
+     */
     private ValidationConfig parserValidationConfig(Config conf) {
+        return new ValidationConfig(
+                parsePriceDiscrepancyThreshold(conf),
+                parseDedupConfig(conf),
+                parseTransformParallelism(conf)
+        );
+    }
+
+    private int parseTransformParallelism(Config conf) {
+        if (!conf.hasPath("transform-parallelism")) {
+            return 1;
+        }
+        int parallelism = conf.getInt("transform-parallelism");
+        if (parallelism < 0) {
+            throw new IllegalArgumentException("Invalid transform-parallelism: " + parallelism);
+        }
+        return parallelism == 0 ? Runtime.getRuntime().availableProcessors() : parallelism;
+    }
+
+    private long parsePriceDiscrepancyThreshold(Config conf) {
         try {
-            return new ValidationConfig(
-                    new BigDecimal(conf.getString("price-discrepancy-threshold"))
-            );
-        } catch (NumberFormatException e) {
+            return new BigDecimal(conf.getString("price-discrepancy-threshold"))
+                    .setScale(2, RoundingMode.FLOOR)
+                    .unscaledValue()
+                    .longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
             throw new IllegalArgumentException("Invalid price-discrepancy-threshold: " + e.getMessage());
         }
     }
 
+    private DedupConfig parseDedupConfig(Config conf) {
+        DedupConfig defaults = DedupConfig.MEMORY;
+        long expectedIds = conf.hasPath("dedup-expected-ids") ? conf.getLong("dedup-expected-ids") : defaults.expectedIds();
+        if (expectedIds <= 0) {
+            throw new IllegalArgumentException("Invalid dedup-expected-ids: " + expectedIds);
+        }
+        double falsePositiveRate = conf.hasPath("dedup-false-positive-rate")
+                ? conf.getDouble("dedup-false-positive-rate")
+                : defaults.falsePositiveRate();
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("Invalid dedup-false-positive-rate: " + falsePositiveRate);
+        }
+        int memoryIds = conf.hasPath("dedup-memory-ids") ? conf.getInt("dedup-memory-ids") : defaults.memoryIds();
+        if (memoryIds <= 0) {
+            throw new IllegalArgumentException("Invalid dedup-memory-ids: " + memoryIds);
+        }
+        return new DedupConfig(
+                conf.hasPath("dedup-backend")
+                        ? DedupBackend.parse(conf.getString("dedup-backend"))
+                        : defaults.backend(),
+                conf.hasPath("dedup-dir")
+                        ? getPath(conf, "dedup-dir")
+                        : defaults.directory(),
+                expectedIds,
+                falsePositiveRate,
+                memoryIds,
+                parseDedupWindow(conf)
+        );
+    }
+
+    /**
+     * dedup-window is a duration such as "24h", or "day" to expire trade IDs at day boundaries in dedup-window-zone.
+     */
+    private Optional<DedupWindow> parseDedupWindow(Config conf) {
+        if (!conf.hasPath("dedup-window")) {
+            return Optional.empty();
+        }
+        if (conf.getString("dedup-window").trim().equalsIgnoreCase("day")) {
+            try {
+                ZoneId zone = conf.hasPath("dedup-window-zone") ? ZoneId.of(conf.getString("dedup-window-zone")) : ZoneOffset.UTC;
+                return Optional.of(DedupWindow.daily(zone));
+            } catch (DateTimeException e) {
+                throw new IllegalArgumentException("Invalid dedup-window-zone: " + e.getMessage());
+            }
+        }
+        return Optional.of(DedupWindow.sliding(conf.getDuration("dedup-window")));
+    }
+
     private Path getPath(Config conf, String key) {
-        String path = conf.getString(key);
+        return toPath(conf.getString(key), key);
+    }
+
+    private Path toPath(String path, String key) {
         try {
             return Path.of(path);
         } catch (InvalidPathException e) {
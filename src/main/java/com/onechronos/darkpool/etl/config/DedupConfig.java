@@ -0,0 +1,57 @@
+package com.onechronos.darkpool.etl.config;
+
+import com.onechronos.darkpool.etl.transform.DedupBackend;
+import com.onechronos.darkpool.etl.transform.DedupWindow;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Config record of the trade ID deduplication backend
+ *
+ * @param backend           where the trade IDs seen so far are kept
+ * @param directory         DISK: directory under which each run spills its trade IDs, in a directory of its own
+ * @param expectedIds       DISK: number of distinct trade IDs the Bloom filter is sized for; more IDs are still
+ *                          deduplicated exactly, with more disk lookups. With a window, distinct trade IDs per window
+ * @param falsePositiveRate DISK: rate of new IDs the Bloom filter reports as possible duplicates at expectedIds
+ * @param memoryIds         DISK: trade IDs buffered in heap before they are spilled as a sorted run
+ * @param window            event-time window after which trade IDs expire, empty to keep them for the whole run
+ */
+public record DedupConfig(
+        DedupBackend backend,
+        Path directory,
+        long expectedIds,
+        double falsePositiveRate,
+        int memoryIds,
+        Optional<DedupWindow> window
+) {
+    public static final long DEFAULT_EXPECTED_IDS = 10_000_000;
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+    public static final int DEFAULT_MEMORY_IDS = 1_000_000;
+
+    /**
+     * Keeps every trade ID in heap.
+     */
+    public static final DedupConfig MEMORY = new DedupConfig(DedupBackend.MEMORY,
+            Path.of(System.getProperty("java.io.tmpdir")), DEFAULT_EXPECTED_IDS, DEFAULT_FALSE_POSITIVE_RATE, DEFAULT_MEMORY_IDS, Optional.empty());
+
+    /**
+     * Config of the backend of one of several shards, each seeing about 1/shards of the trade IDs, so that the shards
+     * together take the memory of a single backend.
+     */
+    public DedupConfig perShard(int shards) {
+        return divided(shards);
+    }
+
+    /**
+     * Config of the backend of one bucket of the window, each holding 1/bucketsPerWindow of the trade IDs of a window.
+     */
+    public DedupConfig perBucket(int bucketsPerWindow) {
+        return divided(bucketsPerWindow);
+    }
+
+    private DedupConfig divided(int parts) {
+        return new DedupConfig(backend, directory, Math.max(1, expectedIds / parts), falsePositiveRate,
+                Math.max(1, memoryIds / parts), window);
+    }
+}
@@ -0,0 +1,34 @@
+package com.onechronos.darkpool.etl.config;
+
+import com.onechronos.darkpool.etl.transform.FillsJoin;
+import com.onechronos.darkpool.etl.transform.GraceHashJoin;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Config record of the join of trades with their fills
+ *
+ * @param fillsJoin    how trades are joined with their fills
+ * @param directory    GRACE: directory under which each run writes its partition files, in a directory of its own
+ * @param memoryBudget GRACE: heap in bytes for the fills of the partitions joined at once, which sets the number of
+ *                     partitions from the size of the fills file
+ * @param partitions   GRACE: number of partitions, overriding the one derived from memoryBudget
+ * @param watermarkLag STREAM: how far the fill watermark trails the latest fill, at least the longest delay of a fill
+ *                     after its trade; a trade without its fill is written unconfirmed once the watermark passes it
+ */
+public record JoinConfig(
+        FillsJoin fillsJoin,
+        Path directory,
+        long memoryBudget,
+        Optional<Integer> partitions,
+        Duration watermarkLag
+) {
+    /**
+     * Loads every fill into a map before the first trade.
+     */
+    public static final JoinConfig HASH = new JoinConfig(FillsJoin.HASH,
+            Path.of(System.getProperty("java.io.tmpdir")), GraceHashJoin.DEFAULT_MEMORY_BUDGET, Optional.empty(),
+            Duration.ofMinutes(1));
+}
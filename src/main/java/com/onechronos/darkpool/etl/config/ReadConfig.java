@@ -1,17 +1,43 @@
 package com.onechronos.darkpool.etl.config;
 
+import com.onechronos.darkpool.etl.extract.CsvReaderEngine;
+import com.onechronos.darkpool.etl.extract.CsvTokenizer;
+import com.onechronos.darkpool.etl.extract.PriceParser;
+
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
 
 /**
  * Config record encapsulating input file paths
  *
  * @param symbolsRefFile
  * @param fillsFile
- * @param tradesFile
+ * @param tradesFiles         trades files, read concurrently and processed in this order as one input
+ * @param readerEngine        engine used by CsvReader to read all input files
+ * @param tokenizer           tokenizer of memory-mapped files (MAPPED engine and parallel chunks)
+ * @param parallelism         number of workers parsing chunks of a file concurrently (1 reads sequentially)
+ * @param chunkSize           size in bytes of the newline-aligned chunks handed to each worker
+ * @param priceParser         parser turning prices into hundredths
+ * @param snapshotDir         directory of the binary snapshots of parsed symbols and fills, empty to always parse the CSV files
+ * @param followPollInterval  longest wait between checks of the trades file for appended lines in follow mode
+ * @param dictionarySizeLimit most distinct values kept per low-cardinality column (symbols, participant ids, status),
+ *                            0 to disable dictionary encoding
+ * @param joinConfig          how trades are joined with their fills
  */
 public record ReadConfig(
         Path symbolsRefFile,
         Path fillsFile,
-        Path tradesFile
+        List<Path> tradesFiles,
+        CsvReaderEngine readerEngine,
+        CsvTokenizer tokenizer,
+        int parallelism,
+        long chunkSize,
+        PriceParser priceParser,
+        Optional<Path> snapshotDir,
+        Duration followPollInterval,
+        int dictionarySizeLimit,
+        JoinConfig joinConfig
 ) {
 }
@@ -1,8 +1,15 @@
 package com.onechronos.darkpool.etl.config;
 
-import java.math.BigDecimal;
-
+/**
+ * Config record encapsulating validation thresholds
+ *
+ * @param priceDiscrepancyThreshold maximum allowed price difference between trade and fill, in hundredths like prices
+ * @param dedupConfig               backend keeping the trade IDs seen so far, to reject duplicates
+ * @param transformParallelism      shards transforming trades concurrently, each with trade IDs of its own (see ShardedTransformer)
+ */
 public record ValidationConfig(
-        BigDecimal priceDiscrepancyThreshold
+        long priceDiscrepancyThreshold,
+        DedupConfig dedupConfig,
+        int transformParallelism
 ) {
-}
\ No newline at end of file
+}
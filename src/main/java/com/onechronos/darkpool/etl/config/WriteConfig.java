@@ -1,15 +1,20 @@
 package com.onechronos.darkpool.etl.config;
 
 import java.nio.file.Path;
+import java.util.Optional;
 
 /**
  * Config record encapsulating output file paths
  *
  * @param cleanedTradesFile
  * @param exceptionsReportFile
+ * @param checkpointDir        directory of the checkpoints of the run over trades.csv, empty to not checkpoint
+ * @param checkpointInterval   number of trade rows processed between checkpoints
  */
 public record WriteConfig(
         Path cleanedTradesFile,
-        Path exceptionsReportFile
+        Path exceptionsReportFile,
+        Optional<Path> checkpointDir,
+        long checkpointInterval
 ) {
 }
@@ -0,0 +1,206 @@
+package com.onechronos.darkpool.etl.extract;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the rows of a CSV file in newline-aligned byte ranges on a pool of workers.
+ * - Chunk boundaries are placed right after the first \n found at or past every chunkSize bytes
+ * - A first pass counts the lines of every chunk, so each chunk knows the row number it starts at
+ * - Each chunk is then tokenized and mapped on its own worker
+ * - Results are handed out in chunk order, so consumers see exactly the rows of a sequential read
+ * At most two chunks per worker are in flight, which bounds memory to a few chunks of mapped results.
+ */
+final class ChunkedCsvReader {
+    private static final Logger log = LoggerFactory.getLogger(ChunkedCsvReader.class);
+
+    private static final int SCAN_BUFFER_SIZE = 8192;
+
+    private record Chunk(long start, long end) {
+    }
+
+    private ChunkedCsvReader() {
+    }
+
+    /**
+     * @param path      of csv file
+     * @param schema    compiled header line
+     * @param dataStart file offset of the first line after the header
+     * @param tokenizer finds line ends and field boundaries, already resolved for this JVM
+     * @param mapper    functions that maps a row map into a CsvReaderRowResult, called concurrently
+     * @return lazy stream of results in file order
+     */
+    static <T> Stream<CsvReaderRowResult<T>> read(
+            Path path,
+            CsvSchema schema,
+            long dataStart,
+            int parallelism,
+            long chunkSize,
+            CsvTokenizer tokenizer,
+            Function<CsvRow, CsvReaderRowResult<T>> mapper
+    ) throws IOException {
+        List<Chunk> chunks = split(path, dataStart, chunkSize);
+        log.debug("Split {} into {} chunks", path.getFileName(), chunks.size());
+
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, workerThreadFactory(path));
+        try {
+            long[] firstLineNumbers = countLines(workers, path, chunks, tokenizer);
+
+            Iterator<CsvReaderRowResult<T>> results = new Iterator<>() {
+                private final Deque<Future<List<CsvReaderRowResult<T>>>> inFlight = new ArrayDeque<>();
+                private int nextChunk = 0;
+                private Iterator<CsvReaderRowResult<T>> current = Collections.emptyIterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext()) {
+                        while (inFlight.size() < parallelism * 2 && nextChunk < chunks.size()) {
+                            Chunk chunk = chunks.get(nextChunk);
+                            long firstLineNumber = firstLineNumbers[nextChunk++];
+                            inFlight.add(workers.submit(() -> mapChunk(path, chunk, schema, firstLineNumber, tokenizer, mapper)));
+                        }
+                        if (inFlight.isEmpty()) {
+                            return false;
+                        }
+                        current = await(inFlight.poll(), path).iterator();
+                    }
+                    return true;
+                }
+
+                @Override
+                public CsvReaderRowResult<T> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return current.next();
+                }
+            };
+
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .onClose(workers::shutdownNow);
+        } catch (RuntimeException e) {
+            workers.shutdownNow();
+            throw e;
+        }
+    }
+
+    /**
+     * Splits [dataStart, size) into ranges of roughly chunkSize bytes that each end right after a \n.
+     */
+    private static List<Chunk> split(Path path, long dataStart, long chunkSize) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            long start = dataStart;
+            while (start < size) {
+                long end = start + chunkSize >= size ? size : nextLineStart(channel, buffer, start + chunkSize - 1, size);
+                chunks.add(new Chunk(start, end));
+                start = end;
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Offset right after the first \n at or after from, or size if there is none.
+     */
+    private static long nextLineStart(FileChannel channel, ByteBuffer buffer, long from, long size) throws IOException {
+        long position = from;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Counts the lines of every chunk in parallel and turns them into the line number each chunk starts at.
+     * The header is line 1, so the first chunk starts at line 2.
+     */
+    private static long[] countLines(ExecutorService workers, Path path, List<Chunk> chunks, CsvTokenizer tokenizer) {
+        List<Future<Long>> counts = new ArrayList<>(chunks.size());
+        for (Chunk chunk : chunks) {
+            counts.add(workers.submit(() -> {
+                try (MappedCsvFile file = MappedCsvFile.open(path, chunk.start(), chunk.end(), MappedCsvFile.DEFAULT_WINDOW_SIZE, tokenizer)) {
+                    return file.countLines();
+                }
+            }));
+        }
+
+        long[] firstLineNumbers = new long[chunks.size()];
+        long lineNumber = 2;
+        for (int i = 0; i < chunks.size(); i++) {
+            firstLineNumbers[i] = lineNumber;
+            lineNumber += await(counts.get(i), path);
+        }
+        return firstLineNumbers;
+    }
+
+    private static <T> List<CsvReaderRowResult<T>> mapChunk(
+            Path path,
+            Chunk chunk,
+            CsvSchema schema,
+            long firstLineNumber,
+            CsvTokenizer tokenizer,
+            Function<CsvRow, CsvReaderRowResult<T>> mapper
+    ) throws IOException {
+        List<CsvReaderRowResult<T>> results = new ArrayList<>();
+        try (MappedCsvFile file = MappedCsvFile.open(path, chunk.start(), chunk.end(), MappedCsvFile.DEFAULT_WINDOW_SIZE, tokenizer)) {
+            MappedRowIterator rows = new MappedRowIterator(file, path, schema, firstLineNumber);
+            while (rows.hasNext()) {
+                results.add(mapper.apply(rows.next()));
+            }
+        }
+        return results;
+    }
+
+    private static <V> V await(Future<V> future, Path path) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted while reading %s".formatted(path)));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof IOException cause) {
+                throw new UncheckedIOException("Failed to read CSV file: %s".formatted(path), cause);
+            }
+            throw new IllegalStateException("Failed to read CSV file: %s".formatted(path), e.getCause());
+        }
+    }
+
+    private static ThreadFactory workerThreadFactory(Path path) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "csv-reader-%s-%d".formatted(path.getFileName(), counter.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
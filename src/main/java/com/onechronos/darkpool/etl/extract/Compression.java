@@ -0,0 +1,93 @@
+package com.onechronos.darkpool.etl.extract;
+
+import com.github.luben.zstd.ZstdInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Enum to represent the compression formats of input files.
+ * - NONE: plain CSV
+ * - GZIP: detected from a .gz extension or the 1F 8B magic bytes
+ * - ZSTD: detected from a .zst extension or the 28 B5 2F FD magic bytes
+ */
+enum Compression {
+    NONE {
+        @Override
+        InputStream decompress(InputStream in) {
+            return in;
+        }
+    },
+    GZIP {
+        @Override
+        InputStream decompress(InputStream in) throws IOException {
+            return new GZIPInputStream(in, STREAM_BUFFER_SIZE);
+        }
+    },
+    ZSTD {
+        @Override
+        InputStream decompress(InputStream in) throws IOException {
+            return new ZstdInputStream(in);
+        }
+    };
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final int MAGIC_LENGTH = 4;
+
+    /**
+     * Wraps a raw input stream into a stream of decompressed bytes.
+     */
+    abstract InputStream decompress(InputStream in) throws IOException;
+
+    /**
+     * Detects the compression of a file from its extension, then from its first bytes.
+     */
+    static Compression detect(Path path) throws IOException {
+        Compression compression = fromExtension(path);
+        if (compression != NONE || !Files.isRegularFile(path)) {
+            return compression;
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            return fromMagic(in.readNBytes(MAGIC_LENGTH));
+        }
+    }
+
+    /**
+     * Detects the compression of a stream from its first bytes, leaving them in the stream.
+     *
+     * @param in stream supporting mark and reset
+     */
+    static Compression detect(InputStream in) throws IOException {
+        in.mark(MAGIC_LENGTH);
+        byte[] magic = in.readNBytes(MAGIC_LENGTH);
+        in.reset();
+        return fromMagic(magic);
+    }
+
+    static Compression fromExtension(Path path) {
+        Path fileName = path.getFileName();
+        String name = fileName == null ? "" : fileName.toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".gz") || name.endsWith(".gzip")) {
+            return GZIP;
+        }
+        if (name.endsWith(".zst") || name.endsWith(".zstd")) {
+            return ZSTD;
+        }
+        return NONE;
+    }
+
+    private static Compression fromMagic(byte[] magic) {
+        if (magic.length >= 2 && (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B) {
+            return GZIP;
+        }
+        if (magic.length == 4 && (magic[0] & 0xFF) == 0x28 && (magic[1] & 0xFF) == 0xB5
+                && (magic[2] & 0xFF) == 0x2F && (magic[3] & 0xFF) == 0xFD) {
+            return ZSTD;
+        }
+        return NONE;
+    }
+}
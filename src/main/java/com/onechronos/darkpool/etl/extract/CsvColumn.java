@@ -0,0 +1,43 @@
+package com.onechronos.darkpool.etl.extract;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Column read by a mapper, resolved to its position in a CsvSchema.
+ * Each schema caches the index of the columns read from it (see CsvSchema.indexOf(CsvColumn)), so mappers read fields
+ * by index instead of hashing column names on every row, even when rows of several files are mapped concurrently.
+ */
+public final class CsvColumn {
+
+    private static final AtomicInteger IDS = new AtomicInteger();
+
+    private final String name;
+    private final int id;
+
+    private CsvColumn(String name) {
+        this.name = name;
+        this.id = IDS.getAndIncrement();
+    }
+
+    public static CsvColumn named(String name) {
+        return new CsvColumn(name);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Position of the column in the index caches of the schemas.
+     */
+    int id() {
+        return id;
+    }
+
+    /**
+     * @return index of this column in the schema, or -1 if the schema has no such column
+     */
+    int indexIn(CsvSchema schema) {
+        return schema.indexOf(this);
+    }
+}
@@ -1,5 +1,6 @@
 package com.onechronos.darkpool.etl.extract;
 
+import com.onechronos.darkpool.etl.model.ExceptionDetails;
 import com.onechronos.darkpool.etl.model.FillRecord;
 import com.onechronos.darkpool.etl.model.SymbolRefRecord;
 import com.onechronos.darkpool.etl.model.TradeRecord;
@@ -7,38 +8,55 @@ import com.onechronos.darkpool.etl.model.enums.Sector;
 import com.onechronos.darkpool.etl.model.enums.TradeStatus;
 import com.onechronos.darkpool.etl.model.ExceptionRecord;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.nio.file.Path;
 import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
-import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Stream;
 
 public class CsvMappers {
     private CsvMappers() {
     }
 
-    /**
-     * Holds the result of parsing a single field — either a value or an error message.
-     */
-    private record Field<T>(T value, String error) {
-        static <T> Field<T> of(T value) {
-            return new Field<>(value, null);
-        }
-
-        static <T> Field<T> error(String msg) {
-            return new Field<>(null, msg);
-        }
-
-        boolean isError() {
-            return Objects.nonNull(error);
-        }
-    }
+    // Columns are bound to their index on the first row of each file
+    private static final CsvColumn TRADE_ID = CsvColumn.named("trade_id");
+    private static final CsvColumn TRADE_SYMBOL = CsvColumn.named("symbol");
+    private static final CsvColumn TRADE_BUYER_ID = CsvColumn.named("buyer_id");
+    private static final CsvColumn TRADE_SELLER_ID = CsvColumn.named("seller_id");
+    private static final CsvColumn TRADE_TIMESTAMP = CsvColumn.named("timestamp");
+    private static final CsvColumn TRADE_PRICE = CsvColumn.named("price");
+    private static final CsvColumn TRADE_QUANTITY = CsvColumn.named("quantity");
+    private static final CsvColumn TRADE_STATUS = CsvColumn.named("trade_status");
+
+    private static final CsvColumn FILL_EXTERNAL_REF_ID = CsvColumn.named("external_ref_id");
+    private static final CsvColumn FILL_OUR_TRADE_ID = CsvColumn.named("our_trade_id");
+    private static final CsvColumn FILL_SYMBOL = CsvColumn.named("symbol");
+    private static final CsvColumn FILL_COUNTERPARTY_ID = CsvColumn.named("counterparty_id");
+    private static final CsvColumn FILL_TIMESTAMP = CsvColumn.named("timestamp");
+    private static final CsvColumn FILL_PRICE = CsvColumn.named("price");
+    private static final CsvColumn FILL_QUANTITY = CsvColumn.named("quantity");
+
+    private static final CsvColumn SYMBOL_REF_SYMBOL = CsvColumn.named("symbol");
+    private static final CsvColumn SYMBOL_REF_COMPANY_NAME = CsvColumn.named("company_name");
+    private static final CsvColumn SYMBOL_REF_IS_ACTIVE = CsvColumn.named("is_active");
+    private static final CsvColumn SYMBOL_REF_SECTOR = CsvColumn.named("sector");
+
+    // Used by callers that do not track the timestamp formats of their file
+    private static final FieldParsers SHARED_FIELD_PARSERS = FieldParsers.build();
+
+    private static final long UNPARSABLE_INTEGER = Long.MIN_VALUE;
+
+    // Details of parse errors, only rendered when the exception record is written
+    private static final ExceptionDetails.Template ROW_ERRORS = ExceptionDetails.template("Row %s: %s");
+    private static final ExceptionDetails.Template MISSING_FIELD = ExceptionDetails.template("Missing required field: %s");
+    private static final ExceptionDetails.Template UNPARSABLE_TIMESTAMP = ExceptionDetails.template("Field %s contains unparsable timestamp: %s");
+    private static final ExceptionDetails.Template UNPARSABLE_PRICE = ExceptionDetails.template("Field %s contains unparsable price: %s");
+    private static final ExceptionDetails.Template NON_POSITIVE_PRICE = ExceptionDetails.template("Price must be positive: %s");
+    private static final ExceptionDetails.Template UNPARSABLE_INTEGER_FIELD = ExceptionDetails.template("Field %s contains unparsable integer: %s");
+    private static final ExceptionDetails.Template NON_POSITIVE_INTEGER = ExceptionDetails.template("Integer must be positive: %s");
+    private static final ExceptionDetails.Template UNPARSABLE_TRADE_STATUS = ExceptionDetails.template("Field %s contains unparsable trade status: %s");
+    private static final ExceptionDetails.Template UNPARSABLE_SECTOR = ExceptionDetails.template("Field %s contains unparsable sector: %s");
+
+    // Reused by every row mapped on the same thread
+    private static final ThreadLocal<ParseErrors> PARSE_ERRORS = ThreadLocal.withInitial(ParseErrors::new);
 
     /**
      * Function that maps a csv row map to a CsvReaderRowResult
@@ -48,34 +66,74 @@ public class CsvMappers {
      * @return CsvReaderRowResult which contains either parsed Trade record or an ExceptionRecord
      */
     public static CsvReaderRowResult<TradeRecord> toTradeRecord(CsvRow row, Path sourceFile) {
-        Field<String> tradeId = requiredStringField(row.data(), "trade_id");
-        Field<String> symbol = requiredStringFieldUpperCase(row.data(), "symbol");
-        Field<String> buyerId = requiredStringField(row.data(), "buyer_id");
-        Field<String> sellerId = requiredStringField(row.data(), "seller_id");
-        Field<Instant> timestamp = requiredTimestampField(row.data(), "timestamp");
-        Field<BigDecimal> price = requiredPriceField(row.data(), "price");
-        Field<Integer> quantity = requiredIntegerField(row.data(), "quantity");
-        Field<TradeStatus> tradeStatus = requiredTradeStatusField(row.data(), "trade_status");
-
-        List<String> parseErrors = errors(tradeId, symbol, buyerId, sellerId, timestamp, price, quantity, tradeStatus);
-        if (!parseErrors.isEmpty()) {
-            String recordId = tradeId.isError() ? "UNKNOWN" : tradeId.value();
-            return CsvReaderRowResult.failure(parseError(recordId, sourceFile.toString(), parseErrors, row));
+        return toTradeRecord(row, sourceFile, SHARED_FIELD_PARSERS);
+    }
+
+    /**
+     * Function that maps a csv row map to a CsvReaderRowResult
+     *
+     * @param row          input row with map
+     * @param sourceFile   of source file for reporting purposes
+     * @param fieldParsers parsers of the source file
+     * @return CsvReaderRowResult which contains either parsed Trade record or an ExceptionRecord
+     */
+    public static CsvReaderRowResult<TradeRecord> toTradeRecord(CsvRow row, Path sourceFile, FieldParsers fieldParsers) {
+        ParseErrors errors = PARSE_ERRORS.get();
+        errors.clear();
+
+        StringDictionaries dictionaries = fieldParsers.dictionaries();
+
+        String tradeId = requiredStringField(row, TRADE_ID, errors);
+        String symbol = requiredStringFieldUpperCase(row, TRADE_SYMBOL, dictionaries.symbols(), errors);
+        String buyerId = requiredStringField(row, TRADE_BUYER_ID, dictionaries.buyerIds(), errors);
+        String sellerId = requiredStringField(row, TRADE_SELLER_ID, dictionaries.sellerIds(), errors);
+        Instant timestamp = requiredTimestampField(row, TRADE_TIMESTAMP, fieldParsers.timestamps(), errors);
+        long price = requiredPriceField(row, TRADE_PRICE, fieldParsers.prices(), errors);
+        int quantity = requiredIntegerField(row, TRADE_QUANTITY, errors);
+        TradeStatus tradeStatus = requiredTradeStatusField(row, TRADE_STATUS, dictionaries.tradeStatuses(), errors);
+
+        if (!errors.isEmpty()) {
+            String recordId = Objects.isNull(tradeId) ? "UNKNOWN" : tradeId;
+            return CsvReaderRowResult.failure(parseError(recordId, sourceFile.toString(), errors, row));
         }
 
         return CsvReaderRowResult.success(new TradeRecord(
-                tradeId.value(),
-                timestamp.value(),
-                symbol.value(),
-                quantity.value(),
-                price.value(),
-                buyerId.value(),
-                sellerId.value(),
-                tradeStatus.value(),
-                row.data()
+                tradeId,
+                timestamp,
+                symbol,
+                quantity,
+                price,
+                buyerId,
+                sellerId,
+                tradeStatus,
+                row.raw()
         ));
     }
 
+    /**
+     * Row predicate that lets CsvReader skip cancelled trades before they are mapped.
+     * Reads trade_status first, so other rows only pay for decoding that one column.
+     * A cancelled row with an invalid field is not matched, so that it is still reported as a parse error by toTradeRecord.
+     *
+     * @param row          input row
+     * @param fieldParsers parsers of the source file
+     * @return true if toTradeRecord would successfully parse the row into a CANCELLED trade
+     */
+    public static boolean isCancelledTrade(CsvRow row, FieldParsers fieldParsers) {
+        if (TradeStatus.find(row.get(TRADE_STATUS, fieldParsers.dictionaries().tradeStatuses())) != TradeStatus.CANCELLED) {
+            return false;
+        }
+        // Timestamp last: it is only parsed, and counted in the format counts, once the row is known to be skipped
+        return hasValue(row, TRADE_ID)
+                && hasValue(row, TRADE_SYMBOL)
+                && hasValue(row, TRADE_BUYER_ID)
+                && hasValue(row, TRADE_SELLER_ID)
+                && isValidPrice(row.get(TRADE_PRICE), fieldParsers.prices())
+                && isValidQuantity(row.get(TRADE_QUANTITY))
+                && hasValue(row, TRADE_TIMESTAMP)
+                && Objects.nonNull(fieldParsers.timestamps().parse(row.get(TRADE_TIMESTAMP)));
+    }
+
     /**
      * Function that maps a csv row map to a CsvReaderRowResult
      *
@@ -84,28 +142,44 @@ public class CsvMappers {
      * @return CsvReaderRowResult which contains either parsed Fill record or an ExceptionRecord
      */
     public static CsvReaderRowResult<FillRecord> toFillRecord(CsvRow row, Path sourceFile) {
-        Field<String> externalRefId = requiredStringField(row.data(), "external_ref_id");
-        Field<String> ourTradeId = requiredStringField(row.data(), "our_trade_id");
-        Field<String> symbol = requiredStringFieldUpperCase(row.data(), "symbol");
-        Field<String> counterpartyId = requiredStringField(row.data(), "counterparty_id");
-        Field<Instant> timestamp = requiredTimestampField(row.data(), "timestamp");
-        Field<BigDecimal> price = requiredPriceField(row.data(), "price");
-        Field<Integer> quantity = requiredIntegerField(row.data(), "quantity");
-
-        List<String> parseErrors = errors(externalRefId, ourTradeId, symbol, counterpartyId, timestamp, price, quantity);
-        if (!parseErrors.isEmpty()) {
-            String recordId = externalRefId.isError() ? "UNKNOWN" : externalRefId.value();
-            return CsvReaderRowResult.failure(parseError(recordId, sourceFile.toString(), parseErrors, row));
+        return toFillRecord(row, sourceFile, SHARED_FIELD_PARSERS);
+    }
+
+    /**
+     * Function that maps a csv row map to a CsvReaderRowResult
+     *
+     * @param row          input row with map
+     * @param sourceFile   of source file for reporting purposes
+     * @param fieldParsers parsers of the source file
+     * @return CsvReaderRowResult which contains either parsed Fill record or an ExceptionRecord
+     */
+    public static CsvReaderRowResult<FillRecord> toFillRecord(CsvRow row, Path sourceFile, FieldParsers fieldParsers) {
+        ParseErrors errors = PARSE_ERRORS.get();
+        errors.clear();
+
+        StringDictionaries dictionaries = fieldParsers.dictionaries();
+
+        String externalRefId = requiredStringField(row, FILL_EXTERNAL_REF_ID, errors);
+        String ourTradeId = requiredStringField(row, FILL_OUR_TRADE_ID, errors);
+        String symbol = requiredStringFieldUpperCase(row, FILL_SYMBOL, dictionaries.symbols(), errors);
+        String counterpartyId = requiredStringField(row, FILL_COUNTERPARTY_ID, dictionaries.counterpartyIds(), errors);
+        Instant timestamp = requiredTimestampField(row, FILL_TIMESTAMP, fieldParsers.timestamps(), errors);
+        long price = requiredPriceField(row, FILL_PRICE, fieldParsers.prices(), errors);
+        int quantity = requiredIntegerField(row, FILL_QUANTITY, errors);
+
+        if (!errors.isEmpty()) {
+            String recordId = Objects.isNull(externalRefId) ? "UNKNOWN" : externalRefId;
+            return CsvReaderRowResult.failure(parseError(recordId, sourceFile.toString(), errors, row));
         }
 
         return CsvReaderRowResult.success(new FillRecord(
-                externalRefId.value(),
-                ourTradeId.value(),
-                timestamp.value(),
-                symbol.value(),
-                quantity.value(),
-                price.value(),
-                counterpartyId.value()
+                externalRefId,
+                ourTradeId,
+                timestamp,
+                symbol,
+                quantity,
+                price,
+                counterpartyId
         ));
     }
 
@@ -117,173 +191,220 @@ public class CsvMappers {
      * @return CsvReaderRowResult which contains either parsed SymbolRef record or an ExceptionRecord
      */
     public static CsvReaderRowResult<SymbolRefRecord> toSymbolRefRecord(CsvRow row, Path sourceFile) {
-        Field<String> symbol = requiredStringFieldUpperCase(row.data(), "symbol");
-        Field<String> companyName = requiredStringField(row.data(), "company_name");
-        Field<String> isActiveRaw = requiredStringField(row.data(), "is_active");
-        Field<Sector> sector = requiredSectorField(row.data(), "sector");
-
-        List<String> parseErrors = errors(symbol, companyName, isActiveRaw, sector);
-        if (!parseErrors.isEmpty()) {
-            String recordId = symbol.isError() ? "UNKNOWN" : symbol.value();
-            return CsvReaderRowResult.failure(parseError(recordId, sourceFile.toString(), parseErrors, row));
+        return toSymbolRefRecord(row, sourceFile, SHARED_FIELD_PARSERS);
+    }
+
+    /**
+     * Function that maps a csv row map to a CsvReaderRowResult
+     *
+     * @param row          input row with map
+     * @param sourceFile   of source file for reporting purposes
+     * @param fieldParsers parsers of the source file, whose symbol dictionary the symbols are taken from
+     * @return CsvReaderRowResult which contains either parsed SymbolRef record or an ExceptionRecord
+     */
+    public static CsvReaderRowResult<SymbolRefRecord> toSymbolRefRecord(CsvRow row, Path sourceFile, FieldParsers fieldParsers) {
+        ParseErrors errors = PARSE_ERRORS.get();
+        errors.clear();
+
+        String symbol = requiredStringFieldUpperCase(row, SYMBOL_REF_SYMBOL, fieldParsers.dictionaries().symbols(), errors);
+        String companyName = requiredStringField(row, SYMBOL_REF_COMPANY_NAME, errors);
+        String isActiveRaw = requiredStringField(row, SYMBOL_REF_IS_ACTIVE, errors);
+        Sector sector = requiredSectorField(row, SYMBOL_REF_SECTOR, errors);
+
+        if (!errors.isEmpty()) {
+            String recordId = Objects.isNull(symbol) ? "UNKNOWN" : symbol;
+            return CsvReaderRowResult.failure(parseError(recordId, sourceFile.toString(), errors, row));
         }
 
         return CsvReaderRowResult.success(new SymbolRefRecord(
-                symbol.value(),
-                companyName.value(),
-                sector.value(),
-                Boolean.parseBoolean(isActiveRaw.value().trim())
+                symbol,
+                companyName,
+                sector,
+                Boolean.parseBoolean(isActiveRaw)
         ));
     }
 
     // -------------------------------------------------------------------------
-    // Field parsers
+    // Field parsers: each returns the parsed value, or adds a message to errors and returns a placeholder
     // -------------------------------------------------------------------------
 
-    private static Field<String> requiredStringFieldUpperCase(Map<String, String> row, String fieldName) {
-        String value = row.get(fieldName);
-        return (Objects.isNull(value) || value.isBlank())
-                ? Field.error("Missing required field: " + fieldName)
-                : Field.of(value.trim().toUpperCase());
+    private static String requiredStringFieldUpperCase(CsvRow row, CsvColumn column, StringDictionary dictionary, ParseErrors errors) {
+        String value = requiredStringField(row, column, dictionary, errors);
+        if (Objects.isNull(value)) {
+            return null;
+        }
+        String upperCase = value.toUpperCase();
+        return upperCase == value ? value : dictionary.canonical(upperCase);
     }
 
-    private static Field<String> requiredStringField(Map<String, String> row, String fieldName) {
-        String value = row.get(fieldName);
-        return (Objects.isNull(value) || value.isBlank())
-                ? Field.error("Missing required field: " + fieldName)
-                : Field.of(value.trim());
+    private static String requiredStringField(CsvRow row, CsvColumn column, StringDictionary dictionary, ParseErrors errors) {
+        String value = row.get(column, dictionary);
+        if (Objects.isNull(value) || value.isBlank()) {
+            errors.add(MISSING_FIELD.with(column.name()));
+            return null;
+        }
+        String trimmed = value.trim(); // Only rows built from a map are not trimmed by the reader
+        return trimmed == value ? value : dictionary.canonical(trimmed);
     }
 
-    private static Field<Instant> requiredTimestampField(Map<String, String> row, String fieldName) {
-        String value = row.get(fieldName);
-        return (Objects.isNull(value) || value.isBlank())
-                ? Field.error("Missing required field: " + fieldName)
-                : parseTimestamp(value, fieldName);
+    private static String requiredStringField(CsvRow row, CsvColumn column, ParseErrors errors) {
+        String value = requiredValue(row, column, errors);
+        return Objects.isNull(value) ? null : value.trim();
     }
 
-    private static Field<Instant> parseTimestamp(String raw, String fieldName) {
-        for (TimestampParser parser : TimestampParser.values()) {
-            try {
-                return Field.of(parser.parse(raw));
-            } catch (Exception ignored) {
-            }
+    private static Instant requiredTimestampField(CsvRow row, CsvColumn column, TimestampParser timestampParser, ParseErrors errors) {
+        String value = requiredValue(row, column, errors);
+        if (Objects.isNull(value)) {
+            return null;
+        }
+        Instant timestamp = timestampParser.parse(value);
+        if (Objects.isNull(timestamp)) {
+            errors.add(UNPARSABLE_TIMESTAMP.with(column.name(), value));
         }
-        return Field.error("Field %s contains unparsable timestamp: %s".formatted(fieldName, raw));
+        return timestamp;
     }
 
-    private static Field<BigDecimal> requiredPriceField(Map<String, String> row, String fieldName) {
-        String value = row.get(fieldName);
-        return (Objects.isNull(value) || value.isBlank())
-                ? Field.error("Missing required field: " + fieldName)
-                : parsePrice(value, fieldName);
+    private static long requiredPriceField(CsvRow row, CsvColumn column, PriceParser priceParser, ParseErrors errors) {
+        String value = requiredValue(row, column, errors);
+        if (Objects.isNull(value)) {
+            return 0;
+        }
+        long price = priceParser.hundredths(value);
+        if (price == PriceParser.UNPARSABLE) {
+            errors.add(UNPARSABLE_PRICE.with(column.name(), value));
+        } else if (price <= 0) {
+            errors.add(NON_POSITIVE_PRICE.with(value));
+        }
+        return price;
     }
 
-    private static Field<BigDecimal> parsePrice(String raw, String fieldName) {
-        try {
-            BigDecimal price = new BigDecimal(raw.trim()).setScale(2, RoundingMode.HALF_UP);
-            return price.compareTo(BigDecimal.ZERO) <= 0
-                    ? Field.error("Price must be positive: " + raw)
-                    : Field.of(price);
-        } catch (NumberFormatException e) {
-            return Field.error("Field %s contains unparsable price: %s".formatted(fieldName, raw));
+    private static int requiredIntegerField(CsvRow row, CsvColumn column, ParseErrors errors) {
+        String value = requiredValue(row, column, errors);
+        if (Objects.isNull(value)) {
+            return 0;
         }
+        long quantity = parseInteger(value);
+        if (quantity == UNPARSABLE_INTEGER) {
+            errors.add(UNPARSABLE_INTEGER_FIELD.with(column.name(), value));
+        } else if (quantity <= 0) {
+            errors.add(NON_POSITIVE_INTEGER.with(value));
+        }
+        return (int) quantity;
     }
 
-    private static Field<Integer> requiredIntegerField(Map<String, String> row, String fieldName) {
-        String value = row.get(fieldName);
-        return (Objects.isNull(value) || value.isBlank())
-                ? Field.error("Missing required field: " + fieldName)
-                : parseInteger(value, fieldName);
+    private static TradeStatus requiredTradeStatusField(CsvRow row, CsvColumn column, StringDictionary dictionary, ParseErrors errors) {
+        String value = requiredStringField(row, column, dictionary, errors);
+        if (Objects.isNull(value)) {
+            return null;
+        }
+        TradeStatus tradeStatus = TradeStatus.find(value);
+        if (Objects.isNull(tradeStatus)) {
+            errors.add(UNPARSABLE_TRADE_STATUS.with(column.name(), value));
+        }
+        return tradeStatus;
     }
 
-    private static Field<Integer> parseInteger(String raw, String fieldName) {
-        try {
-            int quantity = Integer.parseInt(raw.trim());
-            return quantity <= 0
-                    ? Field.error("Integer must be positive: " + raw)
-                    : Field.of(quantity);
-        } catch (NumberFormatException e) {
-            return Field.error("Field %s contains unparsable integer: %s".formatted(fieldName, raw));
+    private static Sector requiredSectorField(CsvRow row, CsvColumn column, ParseErrors errors) {
+        String value = requiredValue(row, column, errors);
+        if (Objects.isNull(value)) {
+            return null;
+        }
+        Sector sector = Sector.find(value);
+        if (Objects.isNull(sector)) {
+            errors.add(UNPARSABLE_SECTOR.with(column.name(), value));
         }
+        return sector;
     }
 
-    private static Field<TradeStatus> requiredTradeStatusField(Map<String, String> row, String fieldName) {
-        String value = row.get(fieldName);
-        return (Objects.isNull(value) || value.isBlank())
-                ? Field.error("Missing required field: " + fieldName)
-                : parseTradeStatus(value, fieldName);
+    /**
+     * @return untrimmed value of the column, or null after adding a missing field error
+     */
+    private static String requiredValue(CsvRow row, CsvColumn column, ParseErrors errors) {
+        String value = row.get(column);
+        if (Objects.isNull(value) || value.isBlank()) {
+            errors.add(MISSING_FIELD.with(column.name()));
+            return null;
+        }
+        return value;
     }
 
-    private static Field<TradeStatus> parseTradeStatus(String raw, String fieldName) {
-        try {
-            return Field.of(TradeStatus.parse(raw));
-        } catch (IllegalArgumentException e) {
-            return Field.error("Field %s contains unparsable trade status: %s".formatted(fieldName, raw));
-        }
+    private static boolean hasValue(CsvRow row, CsvColumn column) {
+        String value = row.get(column);
+        return Objects.nonNull(value) && !value.isBlank();
     }
 
-    private static Field<Sector> requiredSectorField(Map<String, String> row, String fieldName) {
-        String value = row.get(fieldName);
-        return (Objects.isNull(value) || value.isBlank())
-                ? Field.error("Missing required field: " + fieldName)
-                : parseSector(value, fieldName);
+    private static boolean isValidPrice(String value, PriceParser priceParser) {
+        if (Objects.isNull(value) || value.isBlank()) {
+            return false;
+        }
+        long price = priceParser.hundredths(value);
+        return price != PriceParser.UNPARSABLE && price > 0;
     }
 
-    private static Field<Sector> parseSector(String raw, String fieldName) {
-        try {
-            return Field.of(Sector.parse(raw));
-        } catch (IllegalArgumentException e) {
-            return Field.error("Field %s contains unparsable sector: %s".formatted(fieldName, raw));
+    private static boolean isValidQuantity(String value) {
+        if (Objects.isNull(value) || value.isBlank()) {
+            return false;
         }
+        long quantity = parseInteger(value);
+        return quantity != UNPARSABLE_INTEGER && quantity > 0;
     }
 
     /**
-     * Timestamp formats: first match wins
+     * Parses an int like Integer.parseInt, without throwing on invalid input.
+     *
+     * @return parsed value, or UNPARSABLE_INTEGER
      */
-    private enum TimestampParser {
-        EPOCH {
-            @Override
-            Instant parse(String raw) {
-                return Instant.ofEpochSecond(Long.parseLong(raw.trim()));
+    private static long parseInteger(String raw) {
+        String value = raw.trim();
+        int length = value.length();
+        int position = 0;
+        boolean negative = false;
+        if (length > 0 && (value.charAt(0) == '+' || value.charAt(0) == '-')) {
+            negative = value.charAt(0) == '-';
+            position++;
+        }
+        if (position == length) {
+            return UNPARSABLE_INTEGER;
+        }
+
+        long result = 0;
+        for (; position < length; position++) {
+            char c = value.charAt(position);
+            if (c > 0x7F) {
+                return parseNonAsciiInteger(value); // Integer.parseInt also accepts non-ASCII digits
             }
-        },
-        ISO_8601 {
-            @Override
-            Instant parse(String raw) {
-                return Instant.parse(raw.trim());
+            if (c < '0' || c > '9') {
+                return UNPARSABLE_INTEGER;
             }
-        },
-        US_FORMAT {
-            @Override
-            Instant parse(String raw) {
-                return LocalDateTime
-                        .parse(raw.trim(), DateTimeFormatter.ofPattern("M/d/yyyy H:m:s"))
-                        .toInstant(ZoneOffset.UTC);
+            result = result * 10 + (c - '0');
+            if (result > (long) Integer.MAX_VALUE + 1) {
+                return UNPARSABLE_INTEGER;
             }
-        };
+        }
+        result = negative ? -result : result;
+        return result > Integer.MAX_VALUE ? UNPARSABLE_INTEGER : result;
+    }
 
-        abstract Instant parse(String raw) throws Exception;
+    private static long parseNonAsciiInteger(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return UNPARSABLE_INTEGER;
+        }
     }
 
     // -------------------------------------------------------------------------
     // Helpers
     // -------------------------------------------------------------------------
 
-    private static List<String> errors(Field<?>... fields) {
-        return Stream.of(fields)
-                .filter(Field::isError)
-                .map(Field::error)
-                .toList();
-    }
-
     private static ExceptionRecord parseError(
             String recordId,
             String sourceFile,
-            List<String> parseErrors,
+            ParseErrors parseErrors,
             CsvRow csvRow
     ) {
-        String detailsWithRow = "Row %d: %s".formatted(csvRow.rowNumber(), String.join("; ", parseErrors));
-        return new ExceptionRecord(recordId, sourceFile, "PARSE_ERROR", detailsWithRow, csvRow.data());
+        ExceptionDetails detailsWithRow = ROW_ERRORS.with(csvRow.rowNumber(), parseErrors.copy());
+        return new ExceptionRecord(recordId, sourceFile, "PARSE_ERROR", detailsWithRow, csvRow.raw());
     }
 
 }
\ No newline at end of file
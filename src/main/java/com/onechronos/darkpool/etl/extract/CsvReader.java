@@ -1,29 +1,90 @@
 package com.onechronos.darkpool.etl.extract;
 
+import com.onechronos.darkpool.etl.config.ReadConfig;
 import com.onechronos.darkpool.etl.exception.CsvReaderException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Generic streaming CSV reader.
+ * Reads files through one of two engines (see CsvReaderEngine) behind the same readFile contract.
+ * With a parallelism above 1, files are split into newline-aligned chunks that are parsed and mapped concurrently.
+ * Several files can be read as one stream (see readFiles), each on its own worker.
+ * Memory-mapped files are tokenized by the configured CsvTokenizer, scalar or vectorized.
+ * Gzip and zstd files are detected and decompressed on a read-ahead thread, then read sequentially line by line.
+ * Standard input ("-") and other non-regular files such as named pipes are read as a stream, without seeking.
+ * A file still being appended to can be followed (see followFile), handing out rows as their lines are completed.
+ * A plain file can also be read from a ReadPosition, tracking its progress so that an interrupted run can resume.
  */
 public class CsvReader {
     private static final Logger log = LoggerFactory.getLogger(CsvReader.class);
 
-    private CsvReader() {
+    public static final long DEFAULT_CHUNK_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Input path that reads standard input.
+     */
+    public static final String STDIN = "-";
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    // Decompressed bytes buffered ahead of the parser: up to 4 chunks of 1 MiB
+    private static final int READ_AHEAD_CHUNK_SIZE = 1024 * 1024;
+    private static final int READ_AHEAD_CHUNKS = 4;
+
+    private final CsvReaderEngine engine;
+    private final int parallelism;
+    private final long chunkSize;
+    private final CsvTokenizer tokenizer;
+
+    private CsvReader(CsvReaderEngine engine, int parallelism, long chunkSize, CsvTokenizer tokenizer) {
+        this.engine = engine;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.tokenizer = tokenizer.resolve();
+        if (this.tokenizer != tokenizer) {
+            log.warn("{} tokenizer needs a build with -Pvector and the JVM option --add-modules {}, falling back to {}",
+                    tokenizer, CsvTokenizer.VECTOR_MODULE, this.tokenizer);
+        }
     }
 
     public static CsvReader build() {
-        return new CsvReader();
+        return new CsvReader(CsvReaderEngine.BUFFERED, 1, DEFAULT_CHUNK_SIZE, CsvTokenizer.SCALAR);
+    }
+
+    public static CsvReader build(CsvReaderEngine engine) {
+        return new CsvReader(engine, 1, DEFAULT_CHUNK_SIZE, CsvTokenizer.SCALAR);
+    }
+
+    public static CsvReader build(CsvReaderEngine engine, CsvTokenizer tokenizer) {
+        return new CsvReader(engine, 1, DEFAULT_CHUNK_SIZE, tokenizer);
+    }
+
+    public static CsvReader build(int parallelism, long chunkSize) {
+        return new CsvReader(CsvReaderEngine.MAPPED, parallelism, chunkSize, CsvTokenizer.SCALAR);
+    }
+
+    public static CsvReader build(ReadConfig readConfig) {
+        return new CsvReader(readConfig.readerEngine(), readConfig.parallelism(), readConfig.chunkSize(),
+                readConfig.tokenizer());
     }
 
     private record LineWithNumber(long lineNumber, String line) {
@@ -42,20 +103,294 @@ public class CsvReader {
     public <T> Stream<CsvReaderRowResult<T>> readFile(
             Path path,
             Function<CsvRow, CsvReaderRowResult<T>> mapper
+    ) throws CsvReaderException {
+        return readFile(path, row -> false, mapper);
+    }
+
+    /**
+     * Opens the given CSV file and returns a lazy stream of parsed records, skipping rows before they are mapped.
+     * Fields are decoded on first read, so a predicate reading a single column leaves the rest of a skipped row undecoded.
+     *
+     * @param path      of csv file
+     * @param skipRow   predicate tested on every row before mapping; matching rows are returned as CsvReaderRowResult.skipped()
+     * @param rowMapper functions that maps a row map into a CsvReaderRowResult
+     * @param <T>       result type
+     * @return lazy stream of ParseResult, with one result per non-blank row
+     * @throws CsvReaderException if error occurs while reading or mapping csv file
+     */
+    public <T> Stream<CsvReaderRowResult<T>> readFile(
+            Path path,
+            Predicate<CsvRow> skipRow,
+            Function<CsvRow, CsvReaderRowResult<T>> rowMapper
+    ) throws CsvReaderException {
+        Function<CsvRow, CsvReaderRowResult<T>> mapper = row -> skipRow.test(row) ? CsvReaderRowResult.skipped() : rowMapper.apply(row);
+        if (isStream(path)) {
+            return readStream(path, mapper);
+        }
+        Compression compression = detectCompression(path);
+        if (compression != Compression.NONE) {
+            return readCompressed(path, compression, mapper);
+        }
+        if (parallelism > 1) {
+            return readChunked(path, mapper);
+        }
+        return switch (engine) {
+            case BUFFERED -> readBuffered(path, mapper);
+            case MAPPED -> readMapped(path, mapper);
+        };
+    }
+
+    /**
+     * Opens the given CSV files and returns a lazy stream of the parsed records of all of them, in the order of paths.
+     * Files are read and mapped concurrently, one worker per file up to the number of cores, each through readFile,
+     * while their results are handed out file after file, exactly as if the files had been concatenated.
+     * A file is only opened by its worker, so files waiting for a worker hold no buffer or read-ahead thread. Files
+     * are checked up front instead, so that a missing, unreadable or empty file fails before anything is read.
+     *
+     * @param paths     of csv files, in the order their records are handed out
+     * @param skipRow   predicate tested on every row of a file before mapping, called concurrently across files
+     * @param rowMapper functions that maps a row of a file into a CsvReaderRowResult, called concurrently across files
+     * @param <T>       result type
+     * @return lazy stream of ParseResult, with one result per non-blank row of every file
+     * @throws CsvReaderException if error occurs while opening one of the files
+     */
+    public <T> Stream<CsvReaderRowResult<T>> readFiles(
+            List<Path> paths,
+            Function<Path, Predicate<CsvRow>> skipRow,
+            Function<Path, Function<CsvRow, CsvReaderRowResult<T>>> rowMapper
+    ) throws CsvReaderException {
+        if (paths.size() == 1) {
+            Path path = paths.get(0);
+            return readFile(path, skipRow.apply(path), rowMapper.apply(path));
+        }
+
+        for (Path path : paths) {
+            checkReadable(path);
+        }
+        return MultiFileCsvReader.read(paths, path -> readFile(path, skipRow.apply(path), rowMapper.apply(path)));
+    }
+
+    /**
+     * Checks that a file exists, is readable and is not empty, without opening it. Streams are only checked when opened.
+     */
+    private void checkReadable(Path path) throws CsvReaderException {
+        if (isStream(path)) {
+            return;
+        }
+        if (!Files.isRegularFile(path) || !Files.isReadable(path)) {
+            throw new CsvReaderException("CSV file is missing or unreadable: %s".formatted(path));
+        }
+        try {
+            if (Files.size(path) == 0) {
+                throw new CsvReaderException("Empty CSV file: %s".formatted(path));
+            }
+        } catch (IOException e) {
+            throw new CsvReaderException("Failed to read CSV file: %s".formatted(path), e);
+        }
+    }
+
+    /**
+     * Opens the given CSV file and returns a lazy stream of parsed records starting at the position of a ReadProgress,
+     * which then follows the rows handed out so that a later read can resume after them.
+     * The file is always read memory-mapped and sequentially, whatever the engine and parallelism, as byte offsets are
+     * only known on the mapped bytes and parallel chunks are mapped ahead of the consumer.
+     * It must be a plain (uncompressed) regular file.
+     *
+     * @param path      of csv file
+     * @param progress  position to start from, moved past every row handed out
+     * @param skipRow   predicate tested on every row before mapping; matching rows are returned as CsvReaderRowResult.skipped()
+     * @param rowMapper functions that maps a row map into a CsvReaderRowResult
+     * @param <T>       result type
+     * @return lazy stream of ParseResult, with one result per non-blank row from the start position
+     * @throws CsvReaderException if the file cannot be read from a position or fails to open
+     */
+    public <T> Stream<CsvReaderRowResult<T>> readFile(
+            Path path,
+            ReadProgress progress,
+            Predicate<CsvRow> skipRow,
+            Function<CsvRow, CsvReaderRowResult<T>> rowMapper
+    ) throws CsvReaderException {
+        if (isStream(path) || detectCompression(path) != Compression.NONE) {
+            throw new CsvReaderException("Only plain regular files can be read from a position: %s".formatted(path));
+        }
+        Function<CsvRow, CsvReaderRowResult<T>> mapper = row -> skipRow.test(row) ? CsvReaderRowResult.skipped() : rowMapper.apply(row);
+        ReadPosition start = progress.position();
+        MappedCsvFile file = null;
+        try {
+            log.info("Opening CSV file (memory-mapped, from line {}): {}", start.isStart() ? 2 : start.lineNumber(), path);
+            if (engine != CsvReaderEngine.MAPPED || parallelism > 1) {
+                log.info("{} is read memory-mapped and sequentially to track its position", path.getFileName());
+            }
+
+            file = MappedCsvFile.open(path, tokenizer);
+            if (!file.nextLine()) {
+                throw new CsvReaderException("Empty CSV file: %s".formatted(path));
+            }
+            CsvSchema schema = CsvSchema.compile(parseLine(file.lineAsString()));
+            log.debug("Headers for {}: {}", path.getFileName(), schema);
+
+            long firstLineNumber = 2;
+            if (start.isStart()) {
+                progress.advance(file.offset(), firstLineNumber);
+            } else {
+                file.close();
+                file = MappedCsvFile.open(path, start.offset(), -1, MappedCsvFile.DEFAULT_WINDOW_SIZE, tokenizer);
+                firstLineNumber = start.lineNumber();
+            }
+
+            MappedCsvFile rowsFile = file;
+            Iterator<CsvRow> rows = new MappedRowIterator(rowsFile, path, schema, firstLineNumber, progress);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .map(mapper)
+                    .onClose(() -> closeFile(rowsFile, path));
+
+        } catch (IOException e) {
+            if (file != null) {
+                closeFile(file, path);
+            }
+            throw new CsvReaderException("Failed to read CSV file: %s".formatted(path), e);
+        } catch (CsvReaderException | RuntimeException e) {
+            if (file != null) {
+                closeFile(file, path);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Decodes the file line by line and splits every line into a row.
+     */
+    private <T> Stream<CsvReaderRowResult<T>> readBuffered(
+            Path path,
+            Function<CsvRow, CsvReaderRowResult<T>> mapper
     ) throws CsvReaderException {
         try {
             log.info("Opening CSV file: {}", path);
+            return readLines(path, Files.newBufferedReader(path), mapper);
+        } catch (IOException e) {
+            throw new CsvReaderException("Failed to read CSV file: %s".formatted(path), e);
+        }
+    }
 
-            BufferedReader reader = Files.newBufferedReader(path);
+    /**
+     * Decompresses the file on a read-ahead thread and reads the decompressed lines like the buffered engine.
+     * Compressed files cannot be memory-mapped or split, so they are always read sequentially.
+     */
+    private <T> Stream<CsvReaderRowResult<T>> readCompressed(
+            Path path,
+            Compression compression,
+            Function<CsvRow, CsvReaderRowResult<T>> mapper
+    ) throws CsvReaderException {
+        try {
+            log.info("Opening CSV file ({}, read ahead): {}", compression, path);
+            if (engine != CsvReaderEngine.BUFFERED || parallelism > 1) {
+                log.info("Compressed file {} is read sequentially", path.getFileName());
+            }
 
+            return readLines(path, decompressingReader(path, compression, Files.newInputStream(path)), mapper);
+        } catch (IOException e) {
+            throw new CsvReaderException("Failed to read CSV file: %s".formatted(path), e);
+        }
+    }
+
+    /**
+     * Opens the given CSV file and returns a stream of parsed records that keeps following lines appended to the file,
+     * until the FollowMode is stopped. Rows are handed to the mapper as soon as their line is complete.
+     * The file is always decoded sequentially, whatever the engine, and must be a plain (uncompressed) regular file.
+     *
+     * @param path      of csv file
+     * @param follow    poll interval, idle action and stop signal of the follow mode
+     * @param skipRow   predicate tested on every row before mapping; matching rows are returned as CsvReaderRowResult.skipped()
+     * @param rowMapper functions that maps a row map into a CsvReaderRowResult
+     * @param <T>       result type
+     * @return lazy stream of ParseResult, ending once the FollowMode is stopped and the file is read to its end
+     * @throws CsvReaderException if the file cannot be followed or opened
+     */
+    public <T> Stream<CsvReaderRowResult<T>> followFile(
+            Path path,
+            FollowMode follow,
+            Predicate<CsvRow> skipRow,
+            Function<CsvRow, CsvReaderRowResult<T>> rowMapper
+    ) throws CsvReaderException {
+        if (!Files.isRegularFile(path) || detectCompression(path) != Compression.NONE) {
+            throw new CsvReaderException("Only plain regular files can be followed: %s".formatted(path));
+        }
+        Function<CsvRow, CsvReaderRowResult<T>> mapper = row -> skipRow.test(row) ? CsvReaderRowResult.skipped() : rowMapper.apply(row);
+        try {
+            log.info("Following CSV file (poll interval {}): {}", follow.pollInterval(), path);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    FollowInputStream.open(path, follow), StandardCharsets.UTF_8.newDecoder()));
+            return readLines(path, reader, mapper);
+        } catch (IOException e) {
+            throw new CsvReaderException("Failed to read CSV file: %s".formatted(path), e);
+        }
+    }
+
+    /**
+     * Reads standard input or a named pipe front to back as bytes arrive, detecting compression from the first bytes.
+     * Rows are handed to the mapper as soon as their line is complete.
+     */
+    private <T> Stream<CsvReaderRowResult<T>> readStream(
+            Path path,
+            Function<CsvRow, CsvReaderRowResult<T>> mapper
+    ) throws CsvReaderException {
+        try {
+            log.info("Opening CSV stream: {}", STDIN.equals(path.toString()) ? "standard input" : path);
+            if (engine != CsvReaderEngine.BUFFERED || parallelism > 1) {
+                log.info("Stream {} is read sequentially", path);
+            }
+
+            // FileInputStream rather than Files.newInputStream, whose available() seeks and fails on pipes
+            InputStream in = new BufferedInputStream(
+                    STDIN.equals(path.toString()) ? System.in : new FileInputStream(path.toFile()), STREAM_BUFFER_SIZE);
+            Compression compression = Compression.fromExtension(path);
+            if (compression == Compression.NONE) {
+                compression = Compression.detect(in);
+            }
+
+            BufferedReader reader = compression == Compression.NONE
+                    ? new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8.newDecoder()))
+                    : decompressingReader(path, compression, in);
+            return readLines(path, reader, mapper);
+        } catch (IOException e) {
+            throw new CsvReaderException("Failed to read CSV file: %s".formatted(path), e);
+        }
+    }
+
+    /**
+     * Reader over the decompressed bytes of a raw input stream, decompressed on a read-ahead thread.
+     * Closes the raw stream if the decompressor cannot be created.
+     */
+    private BufferedReader decompressingReader(Path path, Compression compression, InputStream raw) throws IOException {
+        InputStream decompressed;
+        try {
+            decompressed = compression.decompress(raw);
+        } catch (IOException e) {
+            raw.close();
+            throw e;
+        }
+        InputStream readAhead = new ReadAheadInputStream(
+                decompressed, "csv-read-ahead-%s".formatted(path.getFileName()), READ_AHEAD_CHUNK_SIZE, READ_AHEAD_CHUNKS);
+        return new BufferedReader(new InputStreamReader(readAhead, StandardCharsets.UTF_8.newDecoder()));
+    }
+
+    /**
+     * Reads the header then streams the remaining lines of a reader as rows. The reader is closed with the stream.
+     */
+    private <T> Stream<CsvReaderRowResult<T>> readLines(
+            Path path,
+            BufferedReader reader,
+            Function<CsvRow, CsvReaderRowResult<T>> mapper
+    ) throws CsvReaderException, IOException {
+        try {
             String headerLine = reader.readLine();
             if (Objects.isNull(headerLine)) {   // readLine returns null only if EOF is reached.
                 reader.close();
                 throw new CsvReaderException("Empty CSV file: %s".formatted(path));
             }
 
-            String[] headers = parseLine(headerLine);
-            log.debug("Headers for {}: {}", path.getFileName(), List.of(headers));
+            CsvSchema schema = CsvSchema.compile(parseLine(headerLine));
+            log.debug("Headers for {}: {}", path.getFileName(), schema);
 
             // Simple counter for line number
             AtomicInteger lineNumber = new AtomicInteger(2);
@@ -64,43 +399,104 @@ public class CsvReader {
                     .peek(line -> log.debug("Processing Row {}: {}", lineNumber.get(), line))
                     .map(line -> new LineWithNumber(lineNumber.getAndIncrement(), line))
                     .filter(lineWithNumber -> shouldProcessLine(lineWithNumber.line(), path))
-                    .map(l -> new CsvRow(l.lineNumber(), toRow(headers, l.line())))
+                    .map(l -> new CsvRow(l.lineNumber(), schema, l.line()))
                     .map(mapper)
                     .onClose(() -> closeFile(reader, path));
 
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Memory-maps the file and tokenizes rows on the raw bytes; field strings are only built when the mapper reads them.
+     */
+    private <T> Stream<CsvReaderRowResult<T>> readMapped(
+            Path path,
+            Function<CsvRow, CsvReaderRowResult<T>> mapper
+    ) throws CsvReaderException {
+        try {
+            log.info("Opening CSV file (memory-mapped): {}", path);
+
+            MappedCsvFile file = MappedCsvFile.open(path, tokenizer);
+
+            if (!file.nextLine()) {
+                file.close();
+                throw new CsvReaderException("Empty CSV file: %s".formatted(path));
+            }
+
+            CsvSchema schema = CsvSchema.compile(parseLine(file.lineAsString()));
+            log.debug("Headers for {}: {}", path.getFileName(), schema);
+
+            Iterator<CsvRow> rows = new MappedRowIterator(file, path, schema, 2);
+
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .map(mapper)
+                    .onClose(() -> closeFile(file, path));
+
         } catch (IOException e) {
             throw new CsvReaderException("Failed to read CSV file: %s".formatted(path), e);
         }
     }
 
     /**
-     * Checks if a line is empty.
+     * Reads the header, then parses and maps newline-aligned chunks of the file on parallel workers.
+     * Chunks are always tokenized on the mapped bytes, as a BufferedReader cannot start mid-file.
      */
-    private boolean shouldProcessLine(String line, Path path) {
-        if (!line.isBlank()) return true;
-        log.debug("Skipping empty line in {}", path.getFileName());
-        return false;
+    private <T> Stream<CsvReaderRowResult<T>> readChunked(
+            Path path,
+            Function<CsvRow, CsvReaderRowResult<T>> mapper
+    ) throws CsvReaderException {
+        try {
+            log.info("Opening CSV file ({} workers, {} byte chunks): {}", parallelism, chunkSize, path);
+
+            CsvSchema schema;
+            long dataStart;
+            try (MappedCsvFile file = MappedCsvFile.open(path)) {
+                if (!file.nextLine()) {
+                    throw new CsvReaderException("Empty CSV file: %s".formatted(path));
+                }
+                schema = CsvSchema.compile(parseLine(file.lineAsString()));
+                dataStart = file.offset();
+            }
+            log.debug("Headers for {}: {}", path.getFileName(), schema);
+
+            return ChunkedCsvReader.read(path, schema, dataStart, parallelism, chunkSize, tokenizer, mapper);
+
+        } catch (IOException e) {
+            throw new CsvReaderException("Failed to read CSV file: %s".formatted(path), e);
+        }
     }
 
     /**
-     * Maps a header array and a CSV line into a column-keyed map.
+     * Standard input, named pipes and other non-regular files cannot be memory-mapped, split or re-read.
      */
-    private Map<String, String> toRow(String[] headers, String line) {
-        Map<String, String> row = new HashMap<>();
-        String[] values = parseLine(line);
+    private boolean isStream(Path path) {
+        return STDIN.equals(path.toString()) || (Files.exists(path) && !Files.isRegularFile(path) && !Files.isDirectory(path));
+    }
 
-        for (int i = 0; i < headers.length; i++) {
-            String value = (i < values.length) ? values[i].trim() : null;
-            row.put(headers[i], (Objects.isNull(value) || value.isEmpty()) ? null : value);
+    private Compression detectCompression(Path path) throws CsvReaderException {
+        try {
+            return Compression.detect(path);
+        } catch (IOException e) {
+            throw new CsvReaderException("Failed to read CSV file: %s".formatted(path), e);
         }
+    }
 
-        return row;
+    /**
+     * Checks if a line is empty.
+     */
+    private boolean shouldProcessLine(String line, Path path) {
+        if (!line.isBlank()) return true;
+        log.debug("Skipping empty line in {}", path.getFileName());
+        return false;
     }
 
     /**
      * Splits a CSV line into tokens, respecting double-quoted fields that may contain commas.
      */
-    private String[] parseLine(String line) {
+    static String[] parseLine(String line) {
         List<String> tokens = new ArrayList<>();
         StringBuilder current = new StringBuilder();
         boolean inQuotes = false;
@@ -124,7 +520,7 @@ public class CsvReader {
     /**
      * Close csv safely.
      */
-    private void closeFile(BufferedReader reader, Path path) {
+    private void closeFile(Closeable reader, Path path) {
         try {
             log.debug("Closing CSV file: {}", path);
             reader.close();
@@ -0,0 +1,28 @@
+package com.onechronos.darkpool.etl.extract;
+
+/**
+ * Enum to represent the available CSV reader engines.
+ * - BUFFERED: decodes the file line by line through a BufferedReader (default)
+ * - MAPPED: memory-maps the file and tokenizes directly on the bytes, decoding fields lazily
+ */
+public enum CsvReaderEngine {
+    BUFFERED,
+    MAPPED;
+
+    /**
+     * Parse string to CsvReaderEngine enum
+     *
+     * @param value to be parsed
+     * @return CsvReaderEngine enum
+     */
+    public static CsvReaderEngine parse(String value) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Reader engine is null or blank");
+        }
+        return switch (value.trim().toUpperCase()) {
+            case "BUFFERED" -> BUFFERED;
+            case "MAPPED" -> MAPPED;
+            default -> throw new IllegalArgumentException("Unknown reader engine: " + value);
+        };
+    }
+}
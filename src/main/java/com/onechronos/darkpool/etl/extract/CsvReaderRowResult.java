@@ -3,11 +3,12 @@ package com.onechronos.darkpool.etl.extract;
 import com.onechronos.darkpool.etl.model.ExceptionRecord;
 
 import java.util.Optional;
+import java.util.function.Function;
 
 
 /**
  * The result of reading and mapping a single CSV row.
- * One only parsedRow or exception can be present at once.
+ * One only parsedRow or exception can be present at once; neither is present for rows skipped by the reader.
  *
  * @param parsedRow successfully parsed row (if present then exception is not present)
  * @param exception exception record if parsing failed  (if present then value is not present)
@@ -22,6 +23,13 @@ public record CsvReaderRowResult<T>(
         return parsedRow.isPresent();
     }
 
+    /**
+     * @return result with the parsed row mapped, and the same exception or skip
+     */
+    public <R> CsvReaderRowResult<R> map(Function<T, R> mapper) {
+        return new CsvReaderRowResult<>(parsedRow.map(mapper), exception);
+    }
+
     public static <T> CsvReaderRowResult<T> success(T value) {
         return new CsvReaderRowResult<>(Optional.of(value), Optional.empty());
     }
@@ -29,4 +37,15 @@ public record CsvReaderRowResult<T>(
     public static <T> CsvReaderRowResult<T> failure(ExceptionRecord exception) {
         return new CsvReaderRowResult<>(Optional.empty(), Optional.of(exception));
     }
+
+    /**
+     * Result of a row that matched the skip predicate of CsvReader and was never mapped.
+     */
+    public static <T> CsvReaderRowResult<T> skipped() {
+        return new CsvReaderRowResult<>(Optional.empty(), Optional.empty());
+    }
+
+    public boolean isSkipped() {
+        return parsedRow.isEmpty() && exception.isEmpty();
+    }
 }
@@ -1,9 +1,272 @@
 package com.onechronos.darkpool.etl.extract;
 
-import java.util.Map;
+import com.onechronos.darkpool.etl.model.RawData;
+
+import java.nio.ByteBuffer;
+import java.util.*;
 
 /**
- * Row to encapsulate row number and map containing row contents.
+ * Row to encapsulate row number and row contents.
+ * A flyweight over a values array indexed by the shared CsvSchema of the file.
+ * Rows read from a file only hold field boundaries in their line (decoded or mapped bytes) and decode a field
+ * the first time it is read, so columns a mapper never reads are never materialized.
+ * The original line stays reachable through {@link #raw()} for exception reporting.
  */
-public record CsvRow(Long rowNumber, Map<String, String> data) {
+public final class CsvRow {
+
+    private static final String NOT_DECODED = new String();
+
+    /**
+     * Original line of a row: either the decoded line or the bytes [start, end) of a mapped buffer.
+     */
+    private record RawLine(long rowNumber, CsvSchema schema, String line, ByteBuffer buffer, int start, int end) implements RawData {
+        @Override
+        public Map<String, String> expand() {
+            CsvRow row = line != null
+                    ? new CsvRow(rowNumber, schema, line)
+                    : new CsvRow(rowNumber, schema, buffer, start, end, MappedCsvFile.tokenize(buffer, start, end, schema.width()));
+            return row.data();
+        }
+    }
+
+    private final long rowNumber;
+    private final CsvSchema schema;
+    private final String[] values;
+
+    private final String line;
+    private final ByteBuffer buffer;
+    private final int lineStart;
+    private final int lineEnd;
+    private final int[] bounds;
+
+    /**
+     * @param line decoded line, split into one value per schema column on first read: trimmed and null for empty fields
+     */
+    CsvRow(long rowNumber, CsvSchema schema, String line) {
+        this.rowNumber = rowNumber;
+        this.schema = schema;
+        this.values = new String[schema.width()];
+        this.line = line;
+        this.buffer = null;
+        this.lineStart = 0;
+        this.lineEnd = 0;
+        this.bounds = tokenize(line, schema.width());
+        Arrays.fill(values, NOT_DECODED);
+    }
+
+    /**
+     * @param bounds field boundaries of the bytes [lineStart, lineEnd) produced by MappedCsvFile.tokenize
+     */
+    CsvRow(long rowNumber, CsvSchema schema, ByteBuffer buffer, int lineStart, int lineEnd, int[] bounds) {
+        this.rowNumber = rowNumber;
+        this.schema = schema;
+        this.values = new String[schema.width()];
+        this.line = null;
+        this.buffer = buffer;
+        this.lineStart = lineStart;
+        this.lineEnd = lineEnd;
+        this.bounds = bounds;
+        Arrays.fill(values, NOT_DECODED);
+    }
+
+    /**
+     * Builds a row from a column-keyed map, compiling a schema from its keys.
+     */
+    public CsvRow(long rowNumber, Map<String, String> data) {
+        this.rowNumber = rowNumber;
+        this.schema = CsvSchema.compile(data.keySet().toArray(new String[0]));
+        this.values = data.values().toArray(new String[0]);
+        this.line = null;
+        this.buffer = null;
+        this.lineStart = 0;
+        this.lineEnd = 0;
+        this.bounds = null;
+    }
+
+    public long rowNumber() {
+        return rowNumber;
+    }
+
+    public CsvSchema schema() {
+        return schema;
+    }
+
+    /**
+     * @return value of the field at index, or null if the field is empty or missing
+     */
+    public String get(int index) {
+        if (index < 0) {
+            return null;
+        }
+        String value = values[index];
+        if (value == NOT_DECODED) {
+            value = line != null ? decodeField(line, bounds, index) : MappedCsvFile.decodeField(buffer, bounds, index);
+            values[index] = value;
+        }
+        return value;
+    }
+
+    /**
+     * @return value of the column, or null if the field is empty or the column does not exist
+     */
+    public String get(CsvColumn column) {
+        return get(column.indexIn(schema));
+    }
+
+    /**
+     * Reads a low-cardinality column through its dictionary. Unquoted ASCII fields of mapped rows are looked up on
+     * their bytes, so values already in the dictionary are never decoded.
+     *
+     * @return canonical value of the column, or null if the field is empty or the column does not exist
+     */
+    public String get(CsvColumn column, StringDictionary dictionary) {
+        int index = column.indexIn(schema);
+        if (index < 0) {
+            return null;
+        }
+        String value = values[index];
+        if (value == NOT_DECODED) {
+            value = buffer != null ? MappedCsvFile.decodeField(buffer, bounds, index, dictionary) : decodeField(line, bounds, index);
+        }
+        value = dictionary.canonical(value);
+        values[index] = value;
+        return value;
+    }
+
+    /**
+     * @return value of the column, or null if the field is empty or the column does not exist
+     */
+    public String get(String columnName) {
+        return get(schema.indexOf(columnName));
+    }
+
+    /**
+     * Cheap handle to the original line. Holds the decoded line or a slice of the mapped file, not the parsed values,
+     * and only re-tokenizes it when expanded.
+     */
+    public RawData raw() {
+        return (line != null || buffer != null)
+                ? new RawLine(rowNumber, schema, line, buffer, lineStart, lineEnd)
+                : RawData.of(data());
+    }
+
+    /**
+     * Read-only column-keyed view of the row, iterated in header order.
+     */
+    public Map<String, String> data() {
+        return new AbstractMap<>() {
+            @Override
+            public String get(Object key) {
+                return key instanceof String columnName ? CsvRow.this.get(columnName) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return key instanceof String columnName && schema.indexOf(columnName) >= 0;
+            }
+
+            @Override
+            public int size() {
+                return schema.columnNames().size();
+            }
+
+            @Override
+            public Set<Entry<String, String>> entrySet() {
+                return new AbstractSet<>() {
+                    @Override
+                    public Iterator<Entry<String, String>> iterator() {
+                        Iterator<String> columnNames = schema.columnNames().iterator();
+                        return new Iterator<>() {
+                            @Override
+                            public boolean hasNext() {
+                                return columnNames.hasNext();
+                            }
+
+                            @Override
+                            public Entry<String, String> next() {
+                                String columnName = columnNames.next();
+                                return new AbstractMap.SimpleImmutableEntry<>(columnName, CsvRow.this.get(columnName));
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return schema.columnNames().size();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Splits a decoded line into at most maxFields fields, with the same rules and bounds layout as
+     * MappedCsvFile.tokenize.
+     */
+    private static int[] tokenize(String line, int maxFields) {
+        int[] bounds = new int[maxFields * MappedCsvFile.FIELD_STRIDE];
+        int count = 0;
+        int fieldStart = 0;
+        boolean quoted = false;
+        boolean inQuotes = false;
+
+        for (int i = 0; i < line.length() && count < maxFields; i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                inQuotes = !inQuotes;
+                quoted = true;
+            } else if (c == ',' && !inQuotes) {
+                count = addField(bounds, count, fieldStart, i, quoted);
+                fieldStart = i + 1;
+                quoted = false;
+            }
+        }
+        if (count < maxFields) {
+            count = addField(bounds, count, fieldStart, line.length(), quoted);
+        }
+
+        return count == maxFields ? bounds : Arrays.copyOf(bounds, count * MappedCsvFile.FIELD_STRIDE);
+    }
+
+    private static int addField(int[] bounds, int count, int start, int end, boolean quoted) {
+        int offset = count * MappedCsvFile.FIELD_STRIDE;
+        bounds[offset] = start;
+        bounds[offset + 1] = end;
+        bounds[offset + 2] = quoted ? 1 : 0;
+        return count + 1;
+    }
+
+    /**
+     * Decodes one field of a decoded line: drops quotes, trims, and maps empty values to null.
+     */
+    private static String decodeField(String line, int[] bounds, int field) {
+        int offset = field * MappedCsvFile.FIELD_STRIDE;
+        if (offset >= bounds.length) {
+            return null;
+        }
+        int start = bounds[offset];
+        int end = bounds[offset + 1];
+
+        String value;
+        if (bounds[offset + 2] == 0) {
+            while (start < end && line.charAt(start) <= ' ') start++;
+            while (end > start && line.charAt(end - 1) <= ' ') end--;
+            value = line.substring(start, end);
+        } else {
+            StringBuilder unquoted = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) {
+                char c = line.charAt(i);
+                if (c != '"') {
+                    unquoted.append(c);
+                }
+            }
+            value = unquoted.toString().trim();
+        }
+        return value.isEmpty() ? null : value;
+    }
+
+    @Override
+    public String toString() {
+        return "CsvRow[rowNumber=%d, data=%s]".formatted(rowNumber, data());
+    }
 }
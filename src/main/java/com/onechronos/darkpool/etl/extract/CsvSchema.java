@@ -0,0 +1,84 @@
+package com.onechronos.darkpool.etl.extract;
+
+import java.util.*;
+
+/**
+ * Header of a CSV file compiled once into a column name to index lookup.
+ * Shared by every CsvRow of the file.
+ */
+public final class CsvSchema {
+
+    private final String[] headers;
+    private final List<String> columnNames;
+    private final Map<String, Integer> index;
+    // Index of each CsvColumn read from this schema by column id, plus 2: 0 is a column not resolved yet, 1 a missing one.
+    // Grown and filled under the lock, read without it; a reader that misses an entry resolves it again.
+    private volatile int[] columnIndices = new int[0];
+
+    private CsvSchema(String[] headers) {
+        this.headers = headers.clone();
+        this.index = new HashMap<>();
+        for (int i = 0; i < headers.length; i++) {
+            index.put(headers[i], i);  // Later duplicates win, as they do when a row is put into a map
+        }
+        this.columnNames = List.copyOf(new LinkedHashSet<>(Arrays.asList(headers)));
+    }
+
+    /**
+     * Compiles a parsed header line.
+     */
+    public static CsvSchema compile(String[] headers) {
+        return new CsvSchema(headers);
+    }
+
+    /**
+     * @return index of the column, or -1 if the file has no such column
+     */
+    public int indexOf(String columnName) {
+        return index.getOrDefault(columnName, -1);
+    }
+
+    /**
+     * Same as indexOf(column.name()), resolved once per schema and column, then read from an array.
+     *
+     * @return index of the column, or -1 if the file has no such column
+     */
+    int indexOf(CsvColumn column) {
+        int[] indices = columnIndices;
+        int id = column.id();
+        if (id < indices.length && indices[id] != 0) {
+            return indices[id] - 2;
+        }
+        return resolve(column);
+    }
+
+    private synchronized int resolve(CsvColumn column) {
+        int resolved = indexOf(column.name());
+        int[] indices = columnIndices;
+        if (column.id() >= indices.length) {
+            indices = Arrays.copyOf(indices, Math.max(column.id() + 1, 2 * indices.length));
+        }
+        indices[column.id()] = resolved + 2;
+        columnIndices = indices;
+        return resolved;
+    }
+
+    /**
+     * Number of fields kept per row, including duplicated columns.
+     */
+    public int width() {
+        return headers.length;
+    }
+
+    /**
+     * Distinct column names in header order.
+     */
+    public List<String> columnNames() {
+        return columnNames;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(headers);
+    }
+}
@@ -0,0 +1,119 @@
+package com.onechronos.darkpool.etl.extract;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Enum to represent the available tokenizers of memory-mapped files (the MAPPED engine and parallel chunks).
+ * Both find the same line ends and field boundaries.
+ * - SCALAR: scans the mapped bytes one at a time (default)
+ * - VECTOR: scans the mapped bytes a block of 64 at a time with the jdk.incubator.vector API, see VectorCsvScanner.
+ * VectorCsvScanner is only compiled by the vector profile (mvn -Pvector package), so that the default build does not
+ * depend on an incubating module, and the JVM has to be started with --add-modules jdk.incubator.vector, otherwise
+ * SCALAR is used instead
+ */
+public enum CsvTokenizer {
+    SCALAR {
+        @Override
+        int lineEnd(ByteBuffer buffer, int from, int to) {
+            return MappedCsvFile.findLineEnd(buffer, from, to);
+        }
+
+        @Override
+        int[] tokenize(ByteBuffer buffer, int start, int end, int maxFields) {
+            return MappedCsvFile.tokenize(buffer, start, end, maxFields);
+        }
+    },
+    VECTOR {
+        @Override
+        int lineEnd(ByteBuffer buffer, int from, int to) {
+            try {
+                return (int) VectorScanner.LINE_END.invokeExact(buffer, from, to);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        int[] tokenize(ByteBuffer buffer, int start, int end, int maxFields) {
+            try {
+                return (int[]) VectorScanner.TOKENIZE.invokeExact(buffer, start, end, maxFields);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    static final String VECTOR_MODULE = "jdk.incubator.vector";
+    static final String VECTOR_SCANNER = "com.onechronos.darkpool.etl.extract.VectorCsvScanner";
+
+    /**
+     * Method handles of VectorCsvScanner, looked up the first time VECTOR scans, as the class is not compiled by
+     * default.
+     */
+    private static final class VectorScanner {
+        private static final MethodHandle LINE_END = find("lineEnd",
+                MethodType.methodType(int.class, ByteBuffer.class, int.class, int.class));
+        private static final MethodHandle TOKENIZE = find("tokenize",
+                MethodType.methodType(int[].class, ByteBuffer.class, int.class, int.class, int.class));
+
+        private static MethodHandle find(String name, MethodType type) {
+            try {
+                return MethodHandles.lookup().findStatic(Class.forName(VECTOR_SCANNER), name, type);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Vector tokenizer unavailable", e);
+            }
+        }
+    }
+
+    /**
+     * @return offset of the first \n or \r in [from, to) of the buffer, or -1 if there is none
+     */
+    abstract int lineEnd(ByteBuffer buffer, int from, int to);
+
+    /**
+     * Splits the bytes [start, end) of a buffer into at most maxFields fields, see MappedCsvFile.tokenize.
+     */
+    abstract int[] tokenize(ByteBuffer buffer, int start, int end, int maxFields);
+
+    /**
+     * VectorCsvScanner is only loaded once VECTOR is resolved, so the Vector API classes are never touched
+     * in a JVM that was started without the module.
+     *
+     * @return this tokenizer, or SCALAR if it cannot run in this JVM or was built without the vector profile
+     */
+    public CsvTokenizer resolve() {
+        if (this == VECTOR && (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty() || !isVectorScannerBuilt())) {
+            return SCALAR;
+        }
+        return this;
+    }
+
+    private static boolean isVectorScannerBuilt() {
+        return Objects.nonNull(CsvTokenizer.class.getClassLoader().getResource(VECTOR_SCANNER.replace('.', '/') + ".class"));
+    }
+
+    /**
+     * Parse string to CsvTokenizer enum
+     *
+     * @param value to be parsed
+     * @return CsvTokenizer enum
+     */
+    public static CsvTokenizer parse(String value) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Tokenizer is null or blank");
+        }
+        return switch (value.trim().toUpperCase()) {
+            case "SCALAR" -> SCALAR;
+            case "VECTOR" -> VECTOR;
+            default -> throw new IllegalArgumentException("Unknown tokenizer: " + value);
+        };
+    }
+}
@@ -0,0 +1,43 @@
+package com.onechronos.darkpool.etl.extract;
+
+/**
+ * Parsers used by CsvMappers for the fields of one input file.
+ * Built once per file, so that per-file state such as timestamp format counts is not shared across files.
+ * The dictionaries of low-cardinality columns are the exception: they are meant to be shared by the files of a run.
+ */
+public final class FieldParsers {
+
+    private final TimestampParser timestamps;
+    private final PriceParser prices;
+    private final StringDictionaries dictionaries;
+
+    private FieldParsers(TimestampParser timestamps, PriceParser prices, StringDictionaries dictionaries) {
+        this.timestamps = timestamps;
+        this.prices = prices;
+        this.dictionaries = dictionaries;
+    }
+
+    public static FieldParsers build() {
+        return build(PriceParser.DECIMAL);
+    }
+
+    public static FieldParsers build(PriceParser prices) {
+        return build(prices, StringDictionaries.build());
+    }
+
+    public static FieldParsers build(PriceParser prices, StringDictionaries dictionaries) {
+        return new FieldParsers(TimestampParser.build(), prices, dictionaries);
+    }
+
+    public TimestampParser timestamps() {
+        return timestamps;
+    }
+
+    public PriceParser prices() {
+        return prices;
+    }
+
+    public StringDictionaries dictionaries() {
+        return dictionaries;
+    }
+}
@@ -0,0 +1,189 @@
+package com.onechronos.darkpool.etl.extract;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Input stream over a file that is still being appended to.
+ * - Only complete lines are handed out: bytes after the last \n stay buffered until the rest of their line arrives
+ * - At the end of the file, the stream waits for the file to change (WatchService on its directory, bounded by the
+ * poll interval of the FollowMode) instead of returning -1
+ * - Once the FollowMode is stopped, the stream returns -1 at the end of the file, dropping any incomplete last line
+ * A file that shrinks below what was already read has been truncated, and fails the stream. So does a path that
+ * points to another file than the one opened, e.g. after a rotation by rename (mv new.csv trades.csv), once every
+ * byte of the file opened is read. A path that no longer exists is waited for, as a rotation may be under way.
+ */
+final class FollowInputStream extends InputStream {
+    private static final Logger log = LoggerFactory.getLogger(FollowInputStream.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final WatchService watcher;
+    private final FollowMode follow;
+    private final Object fileKey; // Identity of the file opened, null if the file system has none
+
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int start;
+    private int end;
+    private int lineEnd; // Index right after the last \n in [start, end), or start if there is none
+
+    private FollowInputStream(Path path, FileChannel channel, WatchService watcher, FollowMode follow, Object fileKey) {
+        this.path = path;
+        this.channel = channel;
+        this.watcher = watcher;
+        this.follow = follow;
+        this.fileKey = fileKey;
+    }
+
+    static FollowInputStream open(Path path, FollowMode follow) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        WatchService watcher = null;
+        try {
+            Object fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+            watcher = FileSystems.getDefault().newWatchService();
+            path.toAbsolutePath().getParent().register(watcher,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+            return new FollowInputStream(path, channel, watcher, follow, fileKey);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            if (watcher != null) {
+                watcher.close();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        boolean idle = false;
+        while (start == lineEnd) {
+            if (fill() > 0) {
+                idle = false; // The appended bytes may not complete a line, so the reader can catch up again
+                continue;
+            }
+            if (follow.isStopped()) {
+                if (end > start) {
+                    log.info("Stopped following {} before the end of its last line ({} bytes)", path, end - start);
+                }
+                return -1;
+            }
+            if (channel.size() < channel.position()) {
+                throw new IOException("%s was truncated while following it".formatted(path));
+            }
+            if (replaced()) {
+                throw new IOException("%s was replaced by another file while following it".formatted(path));
+            }
+            if (!idle) {
+                idle = true;
+                follow.idle();
+            }
+            awaitChange();
+        }
+        int count = Math.min(length, lineEnd - start);
+        System.arraycopy(buffer, start, target, offset, count);
+        start += count;
+        return count;
+    }
+
+    /**
+     * Complete lines that can be read without waiting.
+     */
+    @Override
+    public int available() {
+        return lineEnd - start;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            watcher.close();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads whatever was appended to the file after the buffered bytes.
+     *
+     * @return number of bytes read, 0 at the end of the file
+     */
+    private int fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            lineEnd -= start;
+            start = 0;
+        }
+        if (end == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2); // A line longer than the buffer
+        }
+
+        int read = channel.read(ByteBuffer.wrap(buffer, end, buffer.length - end));
+        if (read <= 0) {
+            return 0;
+        }
+        for (int i = end + read - 1; i >= end; i--) {
+            if (buffer[i] == '\n') {
+                lineEnd = i + 1;
+                break;
+            }
+        }
+        end += read;
+        return read;
+    }
+
+    /**
+     * Whether the path now points to another file than the one opened.
+     */
+    private boolean replaced() throws IOException {
+        if (fileKey == null) {
+            return false;
+        }
+        try {
+            return !fileKey.equals(Files.readAttributes(path, BasicFileAttributes.class).fileKey());
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private void awaitChange() throws IOException {
+        try {
+            WatchKey key = watcher.poll(follow.pollInterval().toMillis(), TimeUnit.MILLISECONDS);
+            if (key != null) {
+                key.pollEvents();
+                key.reset();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while following %s".formatted(path));
+        }
+    }
+}
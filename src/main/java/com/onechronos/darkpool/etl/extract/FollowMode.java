@@ -0,0 +1,51 @@
+package com.onechronos.darkpool.etl.extract;
+
+import java.time.Duration;
+
+/**
+ * Controls a file read by CsvReader.followFile, which keeps waiting for lines appended to the file instead of
+ * ending at its current end.
+ * - The file is checked for new data on every change notification, and at least every pollInterval
+ * - The onIdle action runs each time every complete line appended so far has been handed out, e.g. to flush outputs
+ * - stop() ends the stream once the lines already appended are read; it is safe to call from any thread
+ */
+public final class FollowMode {
+
+    public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofSeconds(1);
+
+    private final Duration pollInterval;
+    private volatile Runnable onIdle = () -> {
+    };
+    private volatile boolean stopped;
+
+    private FollowMode(Duration pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    public static FollowMode build(Duration pollInterval) {
+        return new FollowMode(pollInterval);
+    }
+
+    public Duration pollInterval() {
+        return pollInterval;
+    }
+
+    /**
+     * @param action run on the reading thread whenever it caught up with the end of the file
+     */
+    public void onIdle(Runnable action) {
+        this.onIdle = action;
+    }
+
+    public void stop() {
+        stopped = true;
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    void idle() {
+        onIdle.run();
+    }
+}
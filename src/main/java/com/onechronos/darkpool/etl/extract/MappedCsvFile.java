@@ -0,0 +1,329 @@
+package com.onechronos.darkpool.etl.extract;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * CSV file memory-mapped with FileChannel.map and tokenized directly on the mapped bytes.
+ * Line terminators, commas and double quotes are ASCII and can never appear inside a multibyte UTF-8
+ * sequence, so lines and field boundaries are located byte by byte without decoding anything.
+ * Files larger than the mapping window are mapped window by window; a line crossing the end of a window
+ * is re-read from a new window starting at that line.
+ * A file can also be opened over a byte range, so that newline-aligned chunks can be read independently.
+ * Line ends and field boundaries are found by the CsvTokenizer the file was opened with.
+ */
+final class MappedCsvFile implements Closeable {
+
+    static final long DEFAULT_WINDOW_SIZE = 1L << 30;
+
+    /**
+     * Number of ints stored per field by {@link #tokenizeLine(int)}: start, end, quoted flag.
+     */
+    static final int FIELD_STRIDE = 3;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long rangeEnd;
+    private final long windowSize;
+    private final CsvTokenizer tokenizer;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int windowLimit;
+    private int position;
+
+    private boolean pendingCarriageReturn;
+
+    private int lineStart;
+    private int lineEnd;
+
+    private MappedCsvFile(Path path, FileChannel channel, long rangeStart, long rangeEnd, long windowSize,
+                          CsvTokenizer tokenizer) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.rangeEnd = rangeEnd;
+        this.windowSize = windowSize;
+        this.tokenizer = tokenizer;
+        map(rangeStart);
+    }
+
+    static MappedCsvFile open(Path path) throws IOException {
+        return open(path, CsvTokenizer.SCALAR);
+    }
+
+    static MappedCsvFile open(Path path, CsvTokenizer tokenizer) throws IOException {
+        return open(path, 0, -1, DEFAULT_WINDOW_SIZE, tokenizer);
+    }
+
+    static MappedCsvFile open(Path path, long windowSize) throws IOException {
+        return open(path, 0, -1, windowSize, CsvTokenizer.SCALAR);
+    }
+
+    /**
+     * Opens the byte range [rangeStart, rangeEnd) of a file. A negative rangeEnd means the end of the file.
+     *
+     * @param tokenizer already resolved for this JVM, see CsvTokenizer.resolve
+     */
+    static MappedCsvFile open(Path path, long rangeStart, long rangeEnd, long windowSize, CsvTokenizer tokenizer)
+            throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long end = rangeEnd < 0 ? channel.size() : Math.min(rangeEnd, channel.size());
+            return new MappedCsvFile(path, channel, rangeStart, end, windowSize, tokenizer);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Advances to the next line. Accepts the same terminators as BufferedReader: \n, \r and \r\n.
+     *
+     * @return false once the end of the file is reached
+     */
+    boolean nextLine() throws IOException {
+        while (windowStart + position < rangeEnd) {
+            if (position == windowLimit) {
+                map(windowStart + position);
+            }
+            // \r was the last byte of the previous window, skip its \n
+            if (pendingCarriageReturn) {
+                pendingCarriageReturn = false;
+                if (window.get(position) == '\n') {
+                    position++;
+                    continue;
+                }
+            }
+
+            int end = tokenizer.lineEnd(window, position, windowLimit);
+            if (end < 0) {
+                if (windowStart + windowLimit >= rangeEnd) {
+                    end = windowLimit;
+                } else if (position == 0) {
+                    throw new IOException("Line at offset %d in %s exceeds the mapping window of %d bytes"
+                            .formatted(windowStart, path, windowSize));
+                } else {
+                    map(windowStart + position);
+                    continue;
+                }
+            }
+
+            lineStart = position;
+            lineEnd = end;
+            position = Math.min(end + 1, windowLimit);
+            if (end < windowLimit && window.get(end) == '\r') {
+                if (position == windowLimit) {
+                    pendingCarriageReturn = true;
+                } else if (window.get(position) == '\n') {
+                    position++;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Counts the remaining lines, including blank ones, without tokenizing them.
+     */
+    long countLines() throws IOException {
+        long count = 0;
+        while (nextLine()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * File offset of the first byte not yet consumed by {@link #nextLine()}.
+     */
+    long offset() {
+        return windowStart + position;
+    }
+
+    /**
+     * Decodes the current line into a String.
+     */
+    String lineAsString() {
+        byte[] bytes = new byte[lineEnd - lineStart];
+        window.get(lineStart, bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks if the current line only contains whitespace, matching String.isBlank.
+     */
+    boolean isBlankLine() {
+        boolean nonAscii = false;
+        for (int i = lineStart; i < lineEnd; i++) {
+            byte b = window.get(i);
+            if (b < 0) {
+                nonAscii = true;
+            } else if (!isAsciiWhitespace(b)) {
+                return false;
+            }
+        }
+        return !nonAscii || lineAsString().isBlank();
+    }
+
+    /**
+     * Splits the current line into at most maxFields fields, respecting double-quoted fields that may contain commas.
+     * Follows the same rules as CsvReader.parseLine: quotes toggle the quoted state and are dropped from the value.
+     *
+     * @return field boundaries as [start, end, quoted] triples, sized to the number of fields found
+     */
+    int[] tokenizeLine(int maxFields) {
+        return tokenizer.tokenize(window, lineStart, lineEnd, maxFields);
+    }
+
+    /**
+     * Offset of the current line in {@link #buffer()}.
+     */
+    int lineStart() {
+        return lineStart;
+    }
+
+    /**
+     * Offset right after the current line (excluding its terminator) in {@link #buffer()}.
+     */
+    int lineEnd() {
+        return lineEnd;
+    }
+
+    /**
+     * Buffer holding the current line. Stays valid after the window moves on.
+     */
+    MappedByteBuffer buffer() {
+        return window;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Decodes one field tokenized by {@link #tokenizeLine(int)}: drops quotes, trims, and maps empty values to null.
+     */
+    static String decodeField(ByteBuffer buffer, int[] bounds, int field) {
+        int offset = field * FIELD_STRIDE;
+        if (offset >= bounds.length) {
+            return null;
+        }
+        int start = bounds[offset];
+        int end = bounds[offset + 1];
+
+        byte[] bytes = new byte[end - start];
+        int length = 0;
+        if (bounds[offset + 2] == 0) {
+            buffer.get(start, bytes, 0, bytes.length);
+            length = bytes.length;
+        } else {
+            for (int i = start; i < end; i++) {
+                byte b = buffer.get(i);
+                if (b != '"') {
+                    bytes[length++] = b;
+                }
+            }
+        }
+
+        int from = 0;
+        while (from < length && (bytes[from] & 0xFF) <= ' ') from++;
+        while (length > from && (bytes[length - 1] & 0xFF) <= ' ') length--;
+
+        return from == length ? null : new String(bytes, from, length - from, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes one field like {@link #decodeField(ByteBuffer, int[], int)}, returning the dictionary instance of an
+     * unquoted field found in the dictionary without allocating.
+     */
+    static String decodeField(ByteBuffer buffer, int[] bounds, int field, StringDictionary dictionary) {
+        int offset = field * FIELD_STRIDE;
+        if (offset < bounds.length && bounds[offset + 2] == 0) {
+            int start = bounds[offset];
+            int end = bounds[offset + 1];
+            while (start < end && (buffer.get(start) & 0xFF) <= ' ') start++;
+            while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') end--;
+            if (start == end) {
+                return null;
+            }
+            String value = dictionary.find(buffer, start, end);
+            if (value != null) {
+                return value;
+            }
+        }
+        return decodeField(buffer, bounds, field);
+    }
+
+    /**
+     * Splits the bytes [start, end) of a buffer into at most maxFields fields, see {@link #tokenizeLine(int)}.
+     */
+    static int[] tokenize(ByteBuffer buffer, int start, int end, int maxFields) {
+        int[] bounds = new int[maxFields * FIELD_STRIDE];
+        int count = 0;
+        int fieldStart = start;
+        boolean quoted = false;
+        boolean inQuotes = false;
+
+        for (int i = start; i < end && count < maxFields; i++) {
+            byte b = buffer.get(i);
+            if (b == '"') {
+                inQuotes = !inQuotes;
+                quoted = true;
+            } else if (b == ',' && !inQuotes) {
+                count = addField(bounds, count, fieldStart, i, quoted);
+                fieldStart = i + 1;
+                quoted = false;
+            }
+        }
+        if (count < maxFields) {
+            count = addField(bounds, count, fieldStart, end, quoted);
+        }
+
+        return count == maxFields ? bounds : Arrays.copyOf(bounds, count * FIELD_STRIDE);
+    }
+
+    static int addField(int[] bounds, int count, int start, int end, boolean quoted) {
+        int offset = count * FIELD_STRIDE;
+        bounds[offset] = start;
+        bounds[offset + 1] = end;
+        bounds[offset + 2] = quoted ? 1 : 0;
+        return count + 1;
+    }
+
+    /**
+     * @return offset of the first \n or \r in [from, to) of the buffer, or -1 if there is none
+     */
+    static int findLineEnd(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void map(long start) throws IOException {
+        long size = Math.min(windowSize, rangeEnd - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        windowStart = start;
+        windowLimit = (int) size;
+        position = 0;
+    }
+
+    /**
+     * Whitespace characters in the ASCII range, as defined by Character.isWhitespace.
+     */
+    private static boolean isAsciiWhitespace(byte b) {
+        return (b >= 0x09 && b <= 0x0D) || (b >= 0x1C && b <= 0x20);
+    }
+}
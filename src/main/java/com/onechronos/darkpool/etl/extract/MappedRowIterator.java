@@ -0,0 +1,81 @@
+package com.onechronos.darkpool.etl.extract;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates the non-blank lines of a MappedCsvFile as CsvRows with lazily decoded fields.
+ * When given a ReadProgress, it is moved past each row as the row is handed out.
+ */
+final class MappedRowIterator implements Iterator<CsvRow> {
+    private static final Logger log = LoggerFactory.getLogger(MappedRowIterator.class);
+
+    private final MappedCsvFile file;
+    private final Path path;
+    private final CsvSchema schema;
+    private final ReadProgress progress;
+
+    private long lineNumber;
+    private CsvRow next;
+    private long nextEnd; // File offset right after the line of the next row
+
+    /**
+     * @param firstLineNumber line number of the first line left in the file
+     */
+    MappedRowIterator(MappedCsvFile file, Path path, CsvSchema schema, long firstLineNumber) {
+        this(file, path, schema, firstLineNumber, null);
+    }
+
+    /**
+     * @param firstLineNumber line number of the first line left in the file
+     * @param progress        moved past each row handed out, or null
+     */
+    MappedRowIterator(MappedCsvFile file, Path path, CsvSchema schema, long firstLineNumber, ReadProgress progress) {
+        this.file = file;
+        this.path = path;
+        this.schema = schema;
+        this.lineNumber = firstLineNumber - 1;
+        this.progress = progress;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (next == null && file.nextLine()) {
+                lineNumber++;
+                if (log.isDebugEnabled()) {
+                    log.debug("Processing Row {}: {}", lineNumber, file.lineAsString());
+                }
+                if (file.isBlankLine()) {
+                    log.debug("Skipping empty line in {}", path.getFileName());
+                    continue;
+                }
+                int[] bounds = file.tokenizeLine(schema.width());
+                next = new CsvRow(lineNumber, schema, file.buffer(), file.lineStart(), file.lineEnd(), bounds);
+                nextEnd = file.offset();
+            }
+            return next != null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read CSV file: %s".formatted(path), e);
+        }
+    }
+
+    @Override
+    public CsvRow next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        CsvRow row = next;
+        next = null;
+        if (progress != null) {
+            progress.advance(nextEnd, lineNumber + 1);
+        }
+        return row;
+    }
+}
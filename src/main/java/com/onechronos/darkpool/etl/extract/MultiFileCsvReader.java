@@ -0,0 +1,185 @@
+package com.onechronos.darkpool.etl.extract;
+
+import com.onechronos.darkpool.etl.exception.CsvReaderException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads several CSV files concurrently and hands out their results as one stream, file after file.
+ * - Each file is opened, read and mapped on its own worker, which queues its results in batches
+ * - Results are handed out in file order then row order, exactly as if the files had been concatenated
+ * - Files are submitted in order to a pool of at most one worker per core, so the file being handed out has always
+ * been started; a worker ahead of it blocks once a few batches are queued, and files beyond the workers are not opened
+ * yet, which bounds memory
+ */
+final class MultiFileCsvReader {
+    private static final Logger log = LoggerFactory.getLogger(MultiFileCsvReader.class);
+
+    private static final int BATCH_SIZE = 1024;
+    private static final int QUEUED_BATCHES = 4;
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Opens the stream of results of a file.
+     */
+    @FunctionalInterface
+    interface Opener<T> {
+        Stream<CsvReaderRowResult<T>> open(Path path) throws CsvReaderException;
+    }
+
+    private MultiFileCsvReader() {
+    }
+
+    /**
+     * @param paths  files in the order their results are handed out
+     * @param opener opens the stream of a file on its worker, which consumes and closes it
+     * @return lazy stream of the results of every file in order, stopping the workers and closing their files on close
+     */
+    static <T> Stream<CsvReaderRowResult<T>> read(List<Path> paths, Opener<T> opener) {
+        int workerCount = Math.min(paths.size(), Runtime.getRuntime().availableProcessors());
+        log.info("Reading {} files on {} workers", paths.size(), workerCount);
+
+        ExecutorService workers = Executors.newFixedThreadPool(workerCount, workerThreadFactory());
+        List<BlockingQueue<List<CsvReaderRowResult<T>>>> queues = new ArrayList<>(paths.size());
+        List<Future<?>> readers = new ArrayList<>(paths.size());
+        try {
+            for (int i = 0; i < paths.size(); i++) {
+                BlockingQueue<List<CsvReaderRowResult<T>>> queue = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+                Path path = paths.get(i);
+                queues.add(queue);
+                readers.add(workers.submit(() -> {
+                    produce(opener, path, queue);
+                    return null;
+                }));
+            }
+        } catch (RuntimeException e) {
+            close(workers);
+            throw e;
+        }
+
+        Iterator<CsvReaderRowResult<T>> results = new Iterator<>() {
+            private int file = 0;
+            private Iterator<CsvReaderRowResult<T>> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    if (file == paths.size()) {
+                        return false;
+                    }
+                    List<CsvReaderRowResult<T>> batch = take(queues.get(file), paths.get(file));
+                    if (batch.isEmpty()) {
+                        // End of the file: surfaces the failure of its worker, if any
+                        await(readers.get(file), paths.get(file));
+                        file++;
+                    }
+                    current = batch.iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public CsvReaderRowResult<T> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> close(workers));
+    }
+
+    /**
+     * Opens a file and queues its results in batches, then an empty batch to mark its end, even if opening or reading
+     * it failed.
+     */
+    private static <T> void produce(Opener<T> opener, Path path, BlockingQueue<List<CsvReaderRowResult<T>>> queue)
+            throws InterruptedException, CsvReaderException {
+        try (Stream<CsvReaderRowResult<T>> stream = opener.open(path)) {
+            List<CsvReaderRowResult<T>> batch = new ArrayList<>(BATCH_SIZE);
+            Iterator<CsvReaderRowResult<T>> results = stream.iterator();
+            while (results.hasNext()) {
+                batch.add(results.next());
+                if (batch.size() == BATCH_SIZE) {
+                    queue.put(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                queue.put(batch);
+            }
+        } finally {
+            queue.put(List.of());
+        }
+    }
+
+    /**
+     * Stops the workers, waiting for them to close the files they were reading. Files not started are never opened.
+     */
+    private static void close(ExecutorService workers) {
+        workers.shutdownNow();
+        try {
+            if (!workers.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("CSV file workers did not stop within {}s", CLOSE_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static <V> V take(BlockingQueue<V> queue, Path path) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted while reading %s".formatted(path)));
+        }
+    }
+
+    private static void await(Future<?> future, Path path) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted while reading %s".formatted(path)));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Failed to read CSV file: %s".formatted(path), e.getCause());
+        }
+    }
+
+    private static ThreadFactory workerThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "csv-files-%d".formatted(counter.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
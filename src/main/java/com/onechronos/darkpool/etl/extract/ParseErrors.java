@@ -0,0 +1,34 @@
+package com.onechronos.darkpool.etl.extract;
+
+import com.onechronos.darkpool.etl.model.ExceptionDetails;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reusable buffer collecting the parse errors of one row.
+ * Valid rows never add an error, so nothing is allocated for them, and errors are only rendered into text when their
+ * exception record is written.
+ */
+final class ParseErrors {
+    private final List<ExceptionDetails> errors = new ArrayList<>();
+
+    void clear() {
+        errors.clear();
+    }
+
+    void add(ExceptionDetails error) {
+        errors.add(error);
+    }
+
+    boolean isEmpty() {
+        return errors.isEmpty();
+    }
+
+    /**
+     * @return errors in the order they were added, rendered joined with "; " as an ExceptionDetails argument
+     */
+    List<ExceptionDetails> copy() {
+        return List.copyOf(errors);
+    }
+}
@@ -0,0 +1,122 @@
+package com.onechronos.darkpool.etl.extract;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Enum to represent the available price parsers. Both parse a price into a long number of hundredths,
+ * rounded HALF_UP, e.g. "171.475" is 17148.
+ * - DECIMAL: parses through BigDecimal (default)
+ * - FIXED_POINT: scans the digits directly into a long, and only falls back to BigDecimal for exponents,
+ * non-ASCII digits or more than 16 digits
+ */
+public enum PriceParser {
+    DECIMAL {
+        @Override
+        public long hundredths(String raw) {
+            try {
+                BigDecimal price = new BigDecimal(raw.trim());
+                // Check the magnitude before rescaling, as exponents such as 1e999999999 would take ages to expand
+                int integerDigits = price.precision() - price.scale();
+                if (integerDigits > 18) {
+                    return UNPARSABLE;
+                }
+                if (integerDigits < -2) {
+                    return 0; // Below 0.001, rounds to zero
+                }
+                return price.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+            } catch (NumberFormatException | ArithmeticException e) {
+                return UNPARSABLE;
+            }
+        }
+    },
+    FIXED_POINT {
+        @Override
+        public long hundredths(String raw) {
+            String value = raw.trim();
+            int length = value.length();
+            int position = 0;
+            boolean negative = false;
+            if (position < length && (value.charAt(position) == '+' || value.charAt(position) == '-')) {
+                negative = value.charAt(position) == '-';
+                position++;
+            }
+
+            long significand = 0;
+            int digits = 0;
+            int fractionDigits = -1;
+            for (; position < length; position++) {
+                char c = value.charAt(position);
+                if (c >= '0' && c <= '9') {
+                    significand = significand * 10 + (c - '0');
+                    digits++;
+                    if (fractionDigits >= 0) {
+                        fractionDigits++;
+                    }
+                } else if (c == '.' && fractionDigits < 0) {
+                    fractionDigits = 0;
+                } else if (c == 'e' || c == 'E' || c > 0x7F) {
+                    return DECIMAL.hundredths(value);
+                } else {
+                    return UNPARSABLE;
+                }
+                if (digits > MAX_FIXED_POINT_DIGITS) {
+                    return DECIMAL.hundredths(value);
+                }
+            }
+            if (digits == 0) {
+                return UNPARSABLE;
+            }
+
+            long hundredths = fractionDigits <= 2
+                    ? significand * POWERS_OF_TEN[2 - Math.max(fractionDigits, 0)]
+                    : roundHalfUp(significand, POWERS_OF_TEN[fractionDigits - 2]);
+            return negative ? -hundredths : hundredths;
+        }
+    };
+
+    /**
+     * Returned by {@link #hundredths(String)} when the value is not a number or does not fit in a long.
+     */
+    public static final long UNPARSABLE = Long.MIN_VALUE;
+
+    // Keeps significand * 100 within a long
+    private static final int MAX_FIXED_POINT_DIGITS = 16;
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_FIXED_POINT_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * @param raw price value
+     * @return price in hundredths, or {@link #UNPARSABLE}
+     */
+    public abstract long hundredths(String raw);
+
+    /**
+     * Parse string to PriceParser enum
+     *
+     * @param value to be parsed
+     * @return PriceParser enum
+     */
+    public static PriceParser parse(String value) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Price parser is null or blank");
+        }
+        return switch (value.trim().toUpperCase().replace('-', '_')) {
+            case "DECIMAL" -> DECIMAL;
+            case "FIXED_POINT" -> FIXED_POINT;
+            default -> throw new IllegalArgumentException("Unknown price parser: " + value);
+        };
+    }
+
+    private static long roundHalfUp(long value, long divisor) {
+        long quotient = value / divisor;
+        return value % divisor * 2 >= divisor ? quotient + 1 : quotient;
+    }
+}
@@ -0,0 +1,117 @@
+package com.onechronos.darkpool.etl.extract;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Input stream that reads its source on a dedicated thread, a few chunks ahead of the consumer.
+ * Used to decompress input files while the previous chunks are being parsed.
+ * - The source is read in chunks of chunkSize bytes into a queue bounded to capacity chunks
+ * - A failure of the source is rethrown to the consumer once the chunks read before it are consumed
+ * - Closing the stream stops the reading thread, which closes the source
+ */
+final class ReadAheadInputStream extends InputStream {
+
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> chunks;
+    private final Thread reader;
+    private final String name;
+
+    // Written by the reading thread before it queues END, read by the consumer after taking END
+    private IOException failure;
+
+    private byte[] current = new byte[0];
+    private int position;
+    private boolean finished;
+    private volatile boolean closed;
+
+    ReadAheadInputStream(InputStream source, String name, int chunkSize, int capacity) {
+        this.chunks = new ArrayBlockingQueue<>(capacity);
+        this.name = name;
+        this.reader = new Thread(() -> fill(source, chunkSize), name);
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    @Override
+    public int read() throws IOException {
+        return nextChunk() ? current[position++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!nextChunk()) {
+            return -1;
+        }
+        int count = Math.min(length, current.length - position);
+        System.arraycopy(current, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        reader.interrupt();
+    }
+
+    private boolean nextChunk() throws IOException {
+        while (position == current.length) {
+            if (finished) {
+                return false;
+            }
+            try {
+                current = chunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for %s".formatted(name));
+            }
+            position = 0;
+            if (current == END) {
+                finished = true;
+                if (failure != null) {
+                    throw new IOException("Failed to read ahead %s".formatted(name), failure);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void fill(InputStream source, int chunkSize) {
+        try (source) {
+            while (!closed) {
+                byte[] chunk = new byte[chunkSize];
+                int length = source.readNBytes(chunk, 0, chunkSize);
+                if (length > 0) {
+                    chunks.put(length == chunkSize ? chunk : Arrays.copyOf(chunk, length));
+                }
+                if (length < chunkSize) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            return; // Closed by the consumer
+        }
+        try {
+            chunks.put(END);
+        } catch (InterruptedException e) {
+            // Closed by the consumer, nobody is waiting for the end
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.onechronos.darkpool.etl.extract;
+
+/**
+ * Position in a CSV file from which a read can resume.
+ *
+ * @param offset     byte offset of the next line to read, 0 to start with the header
+ * @param lineNumber line number of that line
+ */
+public record ReadPosition(long offset, long lineNumber) {
+
+    /**
+     * Start of the file: the header is read, then every row.
+     */
+    public static final ReadPosition START = new ReadPosition(0, 1);
+
+    public boolean isStart() {
+        return offset == 0;
+    }
+}
@@ -0,0 +1,36 @@
+package com.onechronos.darkpool.etl.extract;
+
+/**
+ * Tracks how far CsvReader.readFile has read a file, so that a later read can resume from there.
+ * Updated on the reading thread each time a row is handed out: once the consumer is done with a row, position()
+ * is the line right after it.
+ */
+public final class ReadProgress {
+
+    private long offset;
+    private long lineNumber;
+
+    private ReadProgress(ReadPosition start) {
+        this.offset = start.offset();
+        this.lineNumber = start.lineNumber();
+    }
+
+    /**
+     * @param start position the read starts from, ReadPosition.START for a whole file
+     */
+    public static ReadProgress from(ReadPosition start) {
+        return new ReadProgress(start);
+    }
+
+    /**
+     * @return position right after the last row handed out, or the start position before the first row
+     */
+    public ReadPosition position() {
+        return new ReadPosition(offset, lineNumber);
+    }
+
+    void advance(long offset, long lineNumber) {
+        this.offset = offset;
+        this.lineNumber = lineNumber;
+    }
+}
@@ -0,0 +1,23 @@
+package com.onechronos.darkpool.etl.extract;
+
+import com.onechronos.darkpool.etl.model.enums.TimestampFormat;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parsed rows of a reference file, along with the read statistics of the CSV parse that produced them,
+ * so that metrics stay the same whether the rows come from the CSV file or from a SnapshotCache.
+ *
+ * @param records          rows that parsed successfully, in file order
+ * @param rowsRead         number of non-blank rows read
+ * @param parseFailures    number of rows that failed to parse
+ * @param timestampFormats number of timestamps parsed per format, empty for files without timestamps
+ */
+public record Snapshot<T>(
+        List<T> records,
+        long rowsRead,
+        long parseFailures,
+        Map<TimestampFormat, Long> timestampFormats
+) {
+}
@@ -0,0 +1,235 @@
+package com.onechronos.darkpool.etl.extract;
+
+import com.onechronos.darkpool.etl.config.ReadConfig;
+import com.onechronos.darkpool.etl.exception.CsvReaderException;
+import com.onechronos.darkpool.etl.model.enums.TimestampFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Binary snapshots of parsed reference files, so that unchanged symbols and fills are not parsed again on every run.
+ * - Snapshots are keyed on a SHA-256 of the source file content, and on the settings that change parsed values
+ * (price parser and snapshot format version)
+ * - A snapshot that is missing, stale or unreadable is ignored: the source is parsed as CSV and the snapshot rewritten
+ * - Snapshots are written to a temporary file then moved into place, so a failed run never leaves half a snapshot
+ * - Standard input and named pipes cannot be read twice and are never cached
+ * Snapshot failures are logged and never fail the pipeline.
+ */
+public final class SnapshotCache {
+    private static final Logger log = LoggerFactory.getLogger(SnapshotCache.class);
+
+    /**
+     * Version of the snapshot layout, see SnapshotCodec.
+     */
+    static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0x4F43534E; // "OCSN"
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final int MAX_INITIAL_CAPACITY = 1 << 20;
+    private static final TimestampFormat[] TIMESTAMP_FORMATS = TimestampFormat.values();
+
+    /**
+     * Parses a source file when its snapshot cannot be used.
+     */
+    @FunctionalInterface
+    public interface Parser<T> {
+        Snapshot<T> parse() throws CsvReaderException;
+    }
+
+    private final Path directory;
+    private final String variant;
+
+    private SnapshotCache(Path directory, String variant) {
+        this.directory = directory;
+        this.variant = variant;
+    }
+
+    /**
+     * @param directory where snapshots are written, created if it does not exist
+     * @param variant   settings that change parsed values, a snapshot taken with other settings is stale
+     */
+    public static SnapshotCache build(Path directory, String variant) {
+        return new SnapshotCache(directory, variant);
+    }
+
+    /**
+     * Cache that never reads or writes snapshots.
+     */
+    public static SnapshotCache disabled() {
+        return new SnapshotCache(null, null);
+    }
+
+    public static SnapshotCache build(ReadConfig readConfig) {
+        return readConfig.snapshotDir()
+                .map(directory -> build(directory, readConfig.priceParser().name()))
+                .orElseGet(SnapshotCache::disabled);
+    }
+
+    /**
+     * Loads the parsed records of a source file from its snapshot, or parses the source and snapshots the result.
+     *
+     * @param source of the records
+     * @param codec  binary layout of the records
+     * @param parser parses the source when there is no usable snapshot
+     * @return parsed records and the read statistics of the CSV parse
+     * @throws CsvReaderException if the source has to be parsed and fails to
+     */
+    public <T> Snapshot<T> load(Path source, SnapshotCodec<T> codec, Parser<T> parser) throws CsvReaderException {
+        if (directory == null || !Files.isRegularFile(source)) {
+            return parser.parse();
+        }
+
+        byte[] sourceHash;
+        try {
+            sourceHash = hash(source);
+        } catch (IOException e) {
+            log.warn("Failed to hash {}, snapshot not used", source, e);
+            return parser.parse();
+        }
+
+        Path snapshotFile = snapshotFile(source, codec);
+        Optional<Snapshot<T>> cached = read(snapshotFile, codec, sourceHash);
+        if (cached.isPresent()) {
+            log.info("Loaded {} {} from snapshot {}", cached.get().records().size(), codec.name(), snapshotFile);
+            return cached.get();
+        }
+
+        Snapshot<T> snapshot = parser.parse();
+        write(snapshotFile, codec, sourceHash, snapshot);
+        return snapshot;
+    }
+
+    private Path snapshotFile(Path source, SnapshotCodec<?> codec) {
+        return directory.resolve("%s-%s.snapshot".formatted(codec.name(), source.getFileName()));
+    }
+
+    /**
+     * @return the snapshot, or empty if it is missing, stale or unreadable
+     */
+    private <T> Optional<Snapshot<T>> read(Path snapshotFile, SnapshotCodec<T> codec, byte[] sourceHash) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC
+                    || in.readInt() != FORMAT_VERSION
+                    || !in.readUTF().equals(codec.name())
+                    || !in.readUTF().equals(variant)
+                    || !Arrays.equals(in.readNBytes(sourceHash.length), sourceHash)) {
+                log.info("Snapshot {} is stale, re-reading the source", snapshotFile);
+                return Optional.empty();
+            }
+
+            long rowsRead = in.readLong();
+            long parseFailures = in.readLong();
+            Map<TimestampFormat, Long> timestampFormats = new EnumMap<>(TimestampFormat.class);
+            int formatCount = in.readInt();
+            for (int i = 0; i < formatCount; i++) {
+                int format = in.readInt();
+                if (format < 0 || format >= TIMESTAMP_FORMATS.length) {
+                    throw new StreamCorruptedException("Invalid timestamp format in snapshot: " + format);
+                }
+                timestampFormats.put(TIMESTAMP_FORMATS[format], in.readLong());
+            }
+
+            int recordCount = in.readInt();
+            if (recordCount < 0) {
+                throw new StreamCorruptedException("Invalid record count in snapshot: " + recordCount);
+            }
+            // The count is not trusted for sizing until the records have actually been read
+            List<T> records = new ArrayList<>(Math.min(recordCount, MAX_INITIAL_CAPACITY));
+            for (int i = 0; i < recordCount; i++) {
+                records.add(codec.read(in));
+            }
+            if (in.readInt() != MAGIC) {
+                throw new StreamCorruptedException("Missing end of snapshot");
+            }
+
+            return Optional.of(new Snapshot<>(
+                    Collections.unmodifiableList(records), rowsRead, parseFailures, Collections.unmodifiableMap(timestampFormats)));
+
+        } catch (NoSuchFileException e) {
+            log.info("No snapshot {} yet, reading the source", snapshotFile);
+            return Optional.empty();
+        } catch (IOException e) {
+            log.warn("Failed to read snapshot {}, re-reading the source", snapshotFile, e);
+            return Optional.empty();
+        }
+    }
+
+    private <T> void write(Path snapshotFile, SnapshotCodec<T> codec, byte[] sourceHash, Snapshot<T> snapshot) {
+        Path temporary = null;
+        try {
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, snapshotFile.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(codec.name());
+                out.writeUTF(variant);
+                out.write(sourceHash);
+
+                out.writeLong(snapshot.rowsRead());
+                out.writeLong(snapshot.parseFailures());
+                out.writeInt(snapshot.timestampFormats().size());
+                for (Map.Entry<TimestampFormat, Long> entry : snapshot.timestampFormats().entrySet()) {
+                    out.writeInt(entry.getKey().ordinal());
+                    out.writeLong(entry.getValue());
+                }
+
+                out.writeInt(snapshot.records().size());
+                for (T record : snapshot.records()) {
+                    codec.write(out, record);
+                }
+                out.writeInt(MAGIC);
+            }
+            Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Wrote {} {} to snapshot {}", snapshot.records().size(), codec.name(), snapshotFile);
+
+        } catch (IOException e) {
+            log.warn("Failed to write snapshot {}", snapshotFile, e);
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                    log.debug("Failed to delete {}", temporary);
+                }
+            }
+        }
+    }
+
+    private static byte[] hash(Path source) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required by every Java platform", e);
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(source)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+}
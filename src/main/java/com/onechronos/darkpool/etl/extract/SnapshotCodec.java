@@ -0,0 +1,155 @@
+package com.onechronos.darkpool.etl.extract;
+
+import com.onechronos.darkpool.etl.model.FillRecord;
+import com.onechronos.darkpool.etl.model.SymbolRefRecord;
+import com.onechronos.darkpool.etl.model.enums.Sector;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Binary layout of one record type in a snapshot file.
+ * Strings are written as a UTF-8 byte length followed by the bytes, with a length of -1 for null.
+ * Enums are written as their ordinal. Changing the layout of a record or the order of an enum requires bumping
+ * SnapshotCache.FORMAT_VERSION, so that older snapshots are re-read.
+ */
+public abstract class SnapshotCodec<T> {
+
+    private static final int NULL = -1;
+    private static final int MAX_STRING_BYTES = 1 << 20;
+    private static final Sector[] SECTORS = Sector.values();
+
+    public static final SnapshotCodec<FillRecord> FILLS = fills(StringDictionaries.disabled());
+
+    public static final SnapshotCodec<SymbolRefRecord> SYMBOLS = symbols(StringDictionaries.disabled());
+
+    private final String name;
+
+    private SnapshotCodec(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Fills codec reading symbols and counterparty ids through dictionaries.
+     */
+    public static SnapshotCodec<FillRecord> fills(StringDictionaries dictionaries) {
+        return new SnapshotCodec<>("fills") {
+            @Override
+            void write(DataOutput out, FillRecord fill) throws IOException {
+                writeString(out, fill.externalRefId());
+                writeString(out, fill.ourTradeId());
+                writeInstant(out, fill.timestamp());
+                writeString(out, fill.symbol());
+                writeInteger(out, fill.quantity());
+                out.writeLong(fill.price());
+                writeString(out, fill.counterpartyId());
+            }
+
+            @Override
+            FillRecord read(DataInput in) throws IOException {
+                return new FillRecord(
+                        readString(in),
+                        readString(in),
+                        readInstant(in),
+                        dictionaries.symbols().canonical(readString(in)),
+                        readInteger(in),
+                        in.readLong(),
+                        dictionaries.counterpartyIds().canonical(readString(in))
+                );
+            }
+        };
+    }
+
+    /**
+     * Symbols codec reading symbols through a dictionary.
+     */
+    public static SnapshotCodec<SymbolRefRecord> symbols(StringDictionaries dictionaries) {
+        return new SnapshotCodec<>("symbols") {
+            @Override
+            void write(DataOutput out, SymbolRefRecord symbol) throws IOException {
+                writeString(out, symbol.symbol());
+                writeString(out, symbol.companyName());
+                out.writeByte(symbol.sector() == null ? NULL : symbol.sector().ordinal());
+                out.writeByte(symbol.isActive() == null ? NULL : symbol.isActive() ? 1 : 0);
+            }
+
+            @Override
+            SymbolRefRecord read(DataInput in) throws IOException {
+                String symbol = dictionaries.symbols().canonical(readString(in));
+                String companyName = readString(in);
+                int sector = in.readByte();
+                int isActive = in.readByte();
+                if (sector < NULL || sector >= SECTORS.length) {
+                    throw new StreamCorruptedException("Invalid sector in snapshot: " + sector);
+                }
+                return new SymbolRefRecord(
+                        symbol,
+                        companyName,
+                        sector == NULL ? null : SECTORS[sector],
+                        isActive == NULL ? null : isActive == 1
+                );
+            }
+        };
+    }
+
+    /**
+     * @return name of the record type, part of the snapshot file name and header
+     */
+    public String name() {
+        return name;
+    }
+
+    abstract void write(DataOutput out, T record) throws IOException;
+
+    abstract T read(DataInput in) throws IOException;
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL) {
+            return null;
+        }
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new StreamCorruptedException("Invalid string length in snapshot: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeInteger(DataOutput out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readInteger(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    private static void writeInstant(DataOutput out, Instant value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.getEpochSecond());
+            out.writeInt(value.getNano());
+        }
+    }
+
+    private static Instant readInstant(DataInput in) throws IOException {
+        return in.readBoolean() ? Instant.ofEpochSecond(in.readLong(), in.readInt()) : null;
+    }
+}
@@ -0,0 +1,67 @@
+package com.onechronos.darkpool.etl.extract;
+
+import java.util.List;
+
+/**
+ * Dictionaries of the low-cardinality columns read by CsvMappers.
+ * Shared by every input file of a run, so that a symbol read from the symbols, fills and trades files is one instance.
+ */
+public final class StringDictionaries {
+
+    private final StringDictionary symbols;
+    private final StringDictionary buyerIds;
+    private final StringDictionary sellerIds;
+    private final StringDictionary counterpartyIds;
+    private final StringDictionary tradeStatuses;
+
+    private StringDictionaries(int sizeLimit) {
+        this.symbols = StringDictionary.build("symbol", sizeLimit);
+        this.buyerIds = StringDictionary.build("buyer_id", sizeLimit);
+        this.sellerIds = StringDictionary.build("seller_id", sizeLimit);
+        this.counterpartyIds = StringDictionary.build("counterparty_id", sizeLimit);
+        this.tradeStatuses = StringDictionary.build("trade_status", sizeLimit);
+    }
+
+    /**
+     * @param sizeLimit most distinct values kept per column
+     */
+    public static StringDictionaries build(int sizeLimit) {
+        return new StringDictionaries(sizeLimit);
+    }
+
+    public static StringDictionaries build() {
+        return build(StringDictionary.DEFAULT_SIZE_LIMIT);
+    }
+
+    /**
+     * Dictionaries that return every value as it is.
+     */
+    public static StringDictionaries disabled() {
+        return build(0);
+    }
+
+    public StringDictionary symbols() {
+        return symbols;
+    }
+
+    public StringDictionary buyerIds() {
+        return buyerIds;
+    }
+
+    public StringDictionary sellerIds() {
+        return sellerIds;
+    }
+
+    public StringDictionary counterpartyIds() {
+        return counterpartyIds;
+    }
+
+    public StringDictionary tradeStatuses() {
+        return tradeStatuses;
+    }
+
+    @Override
+    public String toString() {
+        return List.of(symbols, buyerIds, sellerIds, counterpartyIds, tradeStatuses).toString();
+    }
+}
@@ -0,0 +1,165 @@
+package com.onechronos.darkpool.etl.extract;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Canonical String instances of the values of one low-cardinality column, such as symbols or participant ids.
+ * - Every occurrence of a value maps to the same instance, so records keep one copy per distinct value, and equals and
+ * hash lookups on these values short-circuit on identity and a cached hash code
+ * - ASCII fields of memory-mapped rows are looked up on their bytes, without decoding a String
+ * - At most sizeLimit values are kept: once full, new values are returned as they are, so a column that turns out to
+ * have high cardinality costs a failed lookup instead of unbounded memory
+ * Lookups are lock-free and safe from any thread. Adding a value takes a lock.
+ */
+public final class StringDictionary {
+    private static final Logger log = LoggerFactory.getLogger(StringDictionary.class);
+
+    public static final int DEFAULT_SIZE_LIMIT = 1024;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final String column;
+    private final int sizeLimit;
+
+    // Open addressing with linear probing, kept at most half full. Strings are immutable, so a slot filled in place is
+    // safely published to lock-free readers; a reader that misses it just retries under the lock.
+    private volatile String[] table;
+    private int size;
+    private boolean full;
+
+    private StringDictionary(String column, int sizeLimit) {
+        this.column = column;
+        this.sizeLimit = sizeLimit;
+        this.table = new String[INITIAL_CAPACITY];
+    }
+
+    /**
+     * @param column    name of the column, for logging
+     * @param sizeLimit most distinct values kept, 0 to disable the dictionary
+     */
+    public static StringDictionary build(String column, int sizeLimit) {
+        if (sizeLimit < 0) {
+            throw new IllegalArgumentException("Invalid dictionary size limit: " + sizeLimit);
+        }
+        return new StringDictionary(column, sizeLimit);
+    }
+
+    public String column() {
+        return column;
+    }
+
+    /**
+     * @return number of distinct values kept
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the canonical instance equal to value, or value itself if it is new and the dictionary is full
+     */
+    public String canonical(String value) {
+        if (value == null || sizeLimit == 0) {
+            return value;
+        }
+        String found = find(table, value);
+        return found != null ? found : add(value);
+    }
+
+    /**
+     * Looks up the bytes [start, end) of a buffer without decoding them.
+     *
+     * @return the canonical instance of the bytes, or null if they are not ASCII or not in the dictionary
+     */
+    String find(ByteBuffer buffer, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b < 0) {
+                return null;
+            }
+            hash = 31 * hash + b; // Same as String.hashCode for ASCII
+        }
+
+        String[] current = table;
+        int mask = current.length - 1;
+        for (int slot = hash & mask; current[slot] != null; slot = (slot + 1) & mask) {
+            if (matches(current[slot], buffer, start, end)) {
+                return current[slot];
+            }
+        }
+        return null;
+    }
+
+    private synchronized String add(String value) {
+        String found = find(table, value);
+        if (found != null) {
+            return found;
+        }
+        if (size == sizeLimit) {
+            if (!full) {
+                full = true;
+                log.warn("Dictionary of {} is full at {} values, further values are not deduplicated", column, sizeLimit);
+            }
+            return value;
+        }
+
+        String[] current = table;
+        if ((size + 1) * 2 > current.length) {
+            current = rehash(current, current.length * 2);
+        }
+        insert(current, value);
+        table = current;
+        size++;
+        return value;
+    }
+
+    private static String find(String[] current, String value) {
+        int mask = current.length - 1;
+        for (int slot = value.hashCode() & mask; current[slot] != null; slot = (slot + 1) & mask) {
+            if (current[slot].equals(value)) {
+                return current[slot];
+            }
+        }
+        return null;
+    }
+
+    private static String[] rehash(String[] current, int capacity) {
+        String[] resized = new String[capacity];
+        for (String value : current) {
+            if (value != null) {
+                insert(resized, value);
+            }
+        }
+        return resized;
+    }
+
+    private static void insert(String[] current, String value) {
+        int mask = current.length - 1;
+        int slot = value.hashCode() & mask;
+        while (current[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        current[slot] = value;
+    }
+
+    private static boolean matches(String value, ByteBuffer buffer, int start, int end) {
+        if (value.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (value.charAt(i - start) != buffer.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "%s=%d".formatted(column, size());
+    }
+}
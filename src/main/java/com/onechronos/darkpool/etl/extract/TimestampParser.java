@@ -0,0 +1,331 @@
+package com.onechronos.darkpool.etl.extract;
+
+import com.onechronos.darkpool.etl.model.enums.TimestampFormat;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Parses the timestamps of an input file without throwing exceptions.
+ * - The format is sniffed from the shape of the value: digits only (in any script, like Long.parseLong) is EPOCH,
+ * digits followed by '/' is US_FORMAT, anything else is ISO_8601
+ * - Each format is parsed by hand straight into epoch seconds and nanos, accepting exactly what
+ * Long.parseLong, Instant.parse and the M/d/yyyy H:m:s pattern accept
+ * - The last few raw values are memoized, as consecutive trades tend to share the same timestamp
+ * - The number of values parsed in each format is counted, so that format drift in a file can be reported
+ * Safe to use from several threads: cache entries are immutable and counters are LongAdders.
+ */
+public final class TimestampParser {
+
+    private static final int CACHE_SIZE = 16;
+
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final long DAYS_0000_TO_1970 = 719_528;
+
+    private record Parsed(String raw, Instant instant, TimestampFormat format) {
+    }
+
+    private final Parsed[] cache = new Parsed[CACHE_SIZE];
+    private final Map<TimestampFormat, LongAdder> formatCounts = new EnumMap<>(TimestampFormat.class);
+
+    private TimestampParser() {
+        for (TimestampFormat format : TimestampFormat.values()) {
+            formatCounts.put(format, new LongAdder());
+        }
+    }
+
+    public static TimestampParser build() {
+        return new TimestampParser();
+    }
+
+    /**
+     * @param raw timestamp value
+     * @return parsed instant, or null if the value does not match any of the formats
+     */
+    public Instant parse(String raw) {
+        String value = raw.trim();
+        int slot = value.hashCode() & (CACHE_SIZE - 1);
+        Parsed cached = cache[slot];
+        if (cached == null || !cached.raw().equals(value)) {
+            cached = parseUncached(value);
+            if (cached == null) {
+                return null;
+            }
+            cache[slot] = cached;
+        }
+        formatCounts.get(cached.format()).increment();
+        return cached.instant();
+    }
+
+    /**
+     * @return number of values parsed in each format so far
+     */
+    public Map<TimestampFormat, Long> formatCounts() {
+        Map<TimestampFormat, Long> counts = new EnumMap<>(TimestampFormat.class);
+        formatCounts.forEach((format, count) -> counts.put(format, count.sum()));
+        return Collections.unmodifiableMap(counts);
+    }
+
+    private static Parsed parseUncached(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+        TimestampFormat format = sniff(value);
+        Instant instant = switch (format) {
+            case EPOCH -> parseEpoch(value);
+            case ISO_8601 -> parseIso(value);
+            case US_FORMAT -> parseUs(value);
+        };
+        return instant == null ? null : new Parsed(value, instant, format);
+    }
+
+    private static TimestampFormat sniff(String value) {
+        int from = value.charAt(0) == '+' || value.charAt(0) == '-' ? 1 : 0;
+        if (from < value.length() && (digits(value, from, value.length()) || unicodeDigits(value, from))) {
+            return TimestampFormat.EPOCH;
+        }
+        int firstNonDigit = 0;
+        while (firstNonDigit < value.length() && isDigit(value.charAt(firstNonDigit))) {
+            firstNonDigit++;
+        }
+        return firstNonDigit > 0 && value.charAt(firstNonDigit) == '/' ? TimestampFormat.US_FORMAT : TimestampFormat.ISO_8601;
+    }
+
+    // -------------------------------------------------------------------------
+    // EPOCH: [+-]digits, same range as Long.parseLong and Instant.ofEpochSecond
+    // -------------------------------------------------------------------------
+
+    private static Instant parseEpoch(String value) {
+        if (!digits(value, value.charAt(0) == '+' || value.charAt(0) == '-' ? 1 : 0, value.length())) {
+            return parseEpochFallback(value);
+        }
+        boolean negative = value.charAt(0) == '-';
+        int from = value.charAt(0) == '+' || negative ? 1 : 0;
+        // Skip leading zeros so that the digit count reflects the magnitude
+        while (from < value.length() - 1 && value.charAt(from) == '0') {
+            from++;
+        }
+        if (value.length() - from > 17) {
+            return null; // Beyond Instant.MAX / Instant.MIN (about 3.2e16 seconds)
+        }
+        long seconds = number(value, from, value.length());
+        seconds = negative ? -seconds : seconds;
+        if (seconds < Instant.MIN.getEpochSecond() || seconds > Instant.MAX.getEpochSecond()) {
+            return null;
+        }
+        return Instant.ofEpochSecond(seconds);
+    }
+
+    /**
+     * Digits of other scripts, which Long.parseLong accepts too. Rare enough not to be worth a fast path.
+     */
+    private static Instant parseEpochFallback(String value) {
+        try {
+            return Instant.ofEpochSecond(Long.parseLong(value));
+        } catch (NumberFormatException | DateTimeException e) {
+            return null;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // ISO_8601: yyyy-MM-ddTHH:mm:ss[.fraction]Z
+    // -------------------------------------------------------------------------
+
+    private static Instant parseIso(String value) {
+        int length = value.length();
+        if (length < 20
+                || !digits(value, 0, 4) || value.charAt(4) != '-'
+                || !digits(value, 5, 7) || value.charAt(7) != '-'
+                || !digits(value, 8, 10) || (value.charAt(10) != 'T' && value.charAt(10) != 't')
+                || !digits(value, 11, 13) || value.charAt(13) != ':'
+                || !digits(value, 14, 16) || value.charAt(16) != ':'
+                || !digits(value, 17, 19)) {
+            return parseIsoFallback(value);
+        }
+
+        int nanos = 0;
+        int position = 19;
+        if (value.charAt(position) == '.') {
+            int fractionEnd = position + 1;
+            while (fractionEnd < length && isDigit(value.charAt(fractionEnd))) {
+                fractionEnd++;
+            }
+            int fractionDigits = fractionEnd - position - 1;
+            if (fractionDigits == 0 || fractionDigits > 9) {
+                return parseIsoFallback(value);
+            }
+            nanos = (int) number(value, position + 1, fractionEnd);
+            for (int i = fractionDigits; i < 9; i++) {
+                nanos *= 10;
+            }
+            position = fractionEnd;
+        }
+        if (position != length - 1 || (value.charAt(position) != 'Z' && value.charAt(position) != 'z')) {
+            return parseIsoFallback(value); // Offsets other than Z
+        }
+
+        int year = (int) number(value, 0, 4);
+        int month = (int) number(value, 5, 7);
+        int day = (int) number(value, 8, 10);
+        int hour = (int) number(value, 11, 13);
+        int minute = (int) number(value, 14, 16);
+        int second = (int) number(value, 17, 19);
+        if (hour == 24 || second == 60) {
+            return parseIsoFallback(value); // End of day and leap seconds
+        }
+        if (month < 1 || month > 12 || day < 1 || day > monthLength(year, month)
+                || hour > 23 || minute > 59 || second > 59) {
+            return null;
+        }
+        return Instant.ofEpochSecond(epochSecond(year, month, day, hour, minute, second), nanos);
+    }
+
+    /**
+     * Values that are not in the plain UTC form, such as offsets, leap seconds or years beyond 9999, are rare enough
+     * to be left to Instant.parse.
+     */
+    private static Instant parseIsoFallback(String value) {
+        if (value.indexOf('T') < 0 && value.indexOf('t') < 0) {
+            return null;
+        }
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // US_FORMAT: M/d/yyyy H:m:s, resolved like DateTimeFormatter.ofPattern("M/d/yyyy H:m:s")
+    // -------------------------------------------------------------------------
+
+    private static Instant parseUs(String value) {
+        int length = value.length();
+        int monthEnd = value.indexOf('/');
+        int dayEnd = monthEnd < 0 ? -1 : value.indexOf('/', monthEnd + 1);
+        int yearEnd = dayEnd < 0 ? -1 : value.indexOf(' ', dayEnd + 1);
+        int hourEnd = yearEnd < 0 ? -1 : value.indexOf(':', yearEnd + 1);
+        int minuteEnd = hourEnd < 0 ? -1 : value.indexOf(':', hourEnd + 1);
+        if (minuteEnd < 0
+                || !field(value, 0, monthEnd, 2)
+                || !field(value, monthEnd + 1, dayEnd, 2)
+                || !yearField(value, dayEnd + 1, yearEnd)
+                || !field(value, yearEnd + 1, hourEnd, 2)
+                || !field(value, hourEnd + 1, minuteEnd, 2)
+                || !field(value, minuteEnd + 1, length, 2)) {
+            return null;
+        }
+
+        int month = (int) number(value, 0, monthEnd);
+        int day = (int) number(value, monthEnd + 1, dayEnd);
+        int year = (int) number(value, value.charAt(dayEnd + 1) == '+' ? dayEnd + 2 : dayEnd + 1, yearEnd);
+        int hour = (int) number(value, yearEnd + 1, hourEnd);
+        int minute = (int) number(value, hourEnd + 1, minuteEnd);
+        int second = (int) number(value, minuteEnd + 1, length);
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > 31 || minute > 59 || second > 59) {
+            return null;
+        }
+
+        // The smart resolver clamps the day to the end of the month and accepts 24:00:00 as the start of the next day
+        day = Math.min(day, monthLength(year, month));
+        long extraSeconds = 0;
+        if (hour == 24 && minute == 0 && second == 0) {
+            hour = 0;
+            extraSeconds = SECONDS_PER_DAY;
+        } else if (hour > 23) {
+            return null;
+        }
+        return Instant.ofEpochSecond(epochSecond(year, month, day, hour, minute, second) + extraSeconds);
+    }
+
+    /**
+     * Checks that [from, to) holds a yyyy year: exactly 4 digits, or a '+' sign followed by more than 4 digits.
+     */
+    private static boolean yearField(String value, int from, int to) {
+        if (from < to && value.charAt(from) == '+') {
+            return to - from - 1 > 4 && field(value, from + 1, to, 9);
+        }
+        return to - from == 4 && digits(value, from, to);
+    }
+
+    /**
+     * Checks that [from, to) holds between 1 and maxDigits digits; leading zeros are not counted against maxDigits.
+     */
+    private static boolean field(String value, int from, int to, int maxDigits) {
+        if (to <= from || !digits(value, from, to)) {
+            return false;
+        }
+        while (from < to - 1 && value.charAt(from) == '0') {
+            from++;
+        }
+        return to - from <= maxDigits;
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean unicodeDigits(String value, int from) {
+        for (int i = from; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean digits(String value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads [from, to) as a decimal number. Callers check that the range only holds digits and fits in a long.
+     */
+    private static long number(String value, int from, int to) {
+        long result = 0;
+        for (int i = from; i < to; i++) {
+            result = result * 10 + (value.charAt(i) - '0');
+        }
+        return result;
+    }
+
+    private static boolean isLeapYear(long year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int monthLength(long year, int month) {
+        return switch (month) {
+            case 2 -> isLeapYear(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    /**
+     * Same computation as LocalDate.toEpochDay, without building a LocalDate.
+     */
+    private static long epochSecond(long year, int month, int day, int hour, int minute, int second) {
+        long total = 365 * year;
+        total += (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367L * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total -= isLeapYear(year) ? 1 : 2;
+        }
+        long epochDay = total - DAYS_0000_TO_1970;
+        return epochDay * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second;
+    }
+}
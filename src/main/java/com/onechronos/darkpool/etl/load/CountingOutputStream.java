@@ -0,0 +1,48 @@
+package com.onechronos.darkpool.etl.load;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream that counts the bytes written through it, starting from the size of the file it appends to.
+ * While discarding, bytes are dropped instead, which lets JsonWriter replay the opening of an array that is
+ * already in the file.
+ */
+final class CountingOutputStream extends FilterOutputStream {
+
+    private long count;
+    private boolean discarding;
+
+    CountingOutputStream(OutputStream out, long initialCount) {
+        super(out);
+        this.count = initialCount;
+    }
+
+    /**
+     * @return bytes in the file, once flushed
+     */
+    long count() {
+        return count;
+    }
+
+    void discard(boolean discarding) {
+        this.discarding = discarding;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!discarding) {
+            out.write(b);
+            count++;
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (!discarding) {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
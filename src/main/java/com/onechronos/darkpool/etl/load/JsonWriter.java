@@ -4,33 +4,53 @@ import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 import com.fasterxml.jackson.databind.util.StdDateFormat;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.onechronos.darkpool.etl.exception.JsonWriterException;
 import com.onechronos.darkpool.etl.model.CleanedTradeRecord;
+import com.onechronos.darkpool.etl.model.ExceptionDetails;
 import com.onechronos.darkpool.etl.model.ExceptionRecord;
+import com.onechronos.darkpool.etl.model.RawData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
 
 /**
  * Class that allows writing CleanedTradeRecord and ExceptionRecord to two JSON files simultaneously.
+ * The position of both files can be taken between records, and a new writer resumed from it (see resume).
  */
 public class JsonWriter implements AutoCloseable {
 
     private static final Logger log = LoggerFactory.getLogger(JsonWriter.class);
 
     private final ObjectMapper mapper;
+    private final CountingOutputStream cleanedTradesOutput;
+    private final CountingOutputStream exceptionsOutput;
     private final JsonGenerator cleanedTradesGenerator;
     private final JsonGenerator exceptionsGenerator;
 
-    private JsonWriter(Path cleanedTradesPath, Path exceptionsPath) throws IOException {
+    private long cleanedTrades;
+    private long exceptions;
+
+    private JsonWriter(Path cleanedTradesPath, Path exceptionsPath, JsonWriterPosition position) throws IOException {
         this.mapper = new ObjectMapper()
                 .registerModule(new JavaTimeModule()) // Serializes Instant to ISO-8601 format
+                .registerModule(new SimpleModule()
+                        .addSerializer(new RawDataSerializer())
+                        .addSerializer(new ExceptionDetailsSerializer()))
+                .addMixIn(CleanedTradeRecord.class, CleanedTradeRecordMixIn.class)
                 .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
                 .setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)
                 .setDateFormat(new StdDateFormat().withColonInTimeZone(true));
@@ -38,15 +58,13 @@ public class JsonWriter implements AutoCloseable {
         Files.createDirectories(cleanedTradesPath.getParent());
         Files.createDirectories(exceptionsPath.getParent());
 
-        this.cleanedTradesGenerator = mapper.createGenerator(cleanedTradesPath.toFile(), JsonEncoding.UTF8);
-        this.exceptionsGenerator = mapper.createGenerator(exceptionsPath.toFile(), JsonEncoding.UTF8);
-
-        cleanedTradesGenerator.useDefaultPrettyPrinter();
-        exceptionsGenerator.useDefaultPrettyPrinter();
+        this.cleanedTradesOutput = openOutput(cleanedTradesPath, position.cleanedTradesBytes());
+        this.exceptionsOutput = openOutput(exceptionsPath, position.exceptionsBytes());
+        this.cleanedTrades = position.cleanedTrades();
+        this.exceptions = position.exceptions();
 
-
-        cleanedTradesGenerator.writeStartArray();
-        exceptionsGenerator.writeStartArray();
+        this.cleanedTradesGenerator = startArray(cleanedTradesOutput, cleanedTrades);
+        this.exceptionsGenerator = startArray(exceptionsOutput, exceptions);
 
         log.info("Opened output files: {}, {}", cleanedTradesPath, exceptionsPath);
     }
@@ -55,7 +73,18 @@ public class JsonWriter implements AutoCloseable {
      * Create JsonWriter
      */
     public static JsonWriter open(Path cleanedTradesPath, Path exceptionsPath) throws IOException {
-        return new JsonWriter(cleanedTradesPath, exceptionsPath);
+        return new JsonWriter(cleanedTradesPath, exceptionsPath, new JsonWriterPosition(0, 0, 0, 0));
+    }
+
+    /**
+     * Create a JsonWriter that appends to output files left open by an interrupted JsonWriter.
+     * Both files are truncated back to the given position, so that records written after it are written again.
+     *
+     * @param position returned by position() on the interrupted writer
+     * @throws IOException if a file is shorter than the position, i.e. it was rewritten since
+     */
+    public static JsonWriter resume(Path cleanedTradesPath, Path exceptionsPath, JsonWriterPosition position) throws IOException {
+        return new JsonWriter(cleanedTradesPath, exceptionsPath, position);
     }
 
     /**
@@ -64,6 +93,7 @@ public class JsonWriter implements AutoCloseable {
     public void writeCleanedTrade(CleanedTradeRecord trade) throws JsonWriterException {
         try {
             mapper.writeValue(cleanedTradesGenerator, trade);
+            cleanedTrades++;
         } catch (IOException e) {
             throw new JsonWriterException("Failure while writing JSON cleaned trade", e);
         }
@@ -75,17 +105,146 @@ public class JsonWriter implements AutoCloseable {
     public void writeException(ExceptionRecord exception) throws JsonWriterException {
         try {
             mapper.writeValue(exceptionsGenerator, exception);
+            exceptions++;
         } catch (IOException e) {
             throw new JsonWriterException("Failure while writing JSON exception record", e);
         }
     }
 
+    /**
+     * Flush records written so far to both files, leaving their arrays open for more records.
+     */
+    public void flush() throws JsonWriterException {
+        try {
+            cleanedTradesGenerator.flush();
+            exceptionsGenerator.flush();
+        } catch (IOException e) {
+            throw new JsonWriterException("Failure while flushing JSON files", e);
+        }
+    }
+
+    /**
+     * Flush both files and return how far they are written, to resume from with JsonWriter.resume.
+     */
+    public JsonWriterPosition position() throws JsonWriterException {
+        flush();
+        return new JsonWriterPosition(cleanedTradesOutput.count(), cleanedTrades, exceptionsOutput.count(), exceptions);
+    }
+
     @Override
     public void close() throws IOException {
         closeGenerator(cleanedTradesGenerator, "cleaned trades");
         closeGenerator(exceptionsGenerator, "exceptions");
     }
 
+    /**
+     * Expands a RawData handle into raw_data key/value pairs, only once the record is actually written.
+     */
+    private static final class RawDataSerializer extends StdSerializer<RawData> {
+        private RawDataSerializer() {
+            super(RawData.class);
+        }
+
+        @Override
+        public void serialize(RawData rawData, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject();
+            for (Map.Entry<String, String> field : rawData.expand().entrySet()) {
+                generator.writeStringField(field.getKey(), field.getValue());
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Renders ExceptionDetails into a buffer reused for every record, and writes the characters from it, so the
+     * details never become a String. Records are written from one thread, so one buffer per writer is enough.
+     */
+    private static final class ExceptionDetailsSerializer extends StdSerializer<ExceptionDetails> {
+        private final StringBuilder text = new StringBuilder(256);
+        private char[] chars = new char[256];
+
+        private ExceptionDetailsSerializer() {
+            super(ExceptionDetails.class);
+        }
+
+        @Override
+        public void serialize(ExceptionDetails details, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            text.setLength(0);
+            details.renderTo(text);
+            if (chars.length < text.length()) {
+                chars = new char[Math.max(text.length(), chars.length * 2)];
+            }
+            text.getChars(0, text.length(), chars, 0);
+            generator.writeString(chars, 0, text.length());
+        }
+    }
+
+    /**
+     * Writes prices held in hundredths as decimals with two fractional digits, e.g. 17148 as 171.48.
+     */
+    private static final class PriceSerializer extends StdSerializer<Long> {
+        private PriceSerializer() {
+            super(Long.class);
+        }
+
+        @Override
+        public void serialize(Long price, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            long hundredths = price;
+            StringBuilder number = new StringBuilder(24);
+            if (hundredths < 0) {
+                number.append('-');
+            }
+            long units = Math.abs(hundredths / 100);
+            int fraction = (int) Math.abs(hundredths % 100);
+            number.append(units).append('.').append((char) ('0' + fraction / 10)).append((char) ('0' + fraction % 10));
+            generator.writeNumber(number.toString());
+        }
+    }
+
+    private abstract static class CleanedTradeRecordMixIn {
+        @JsonSerialize(using = PriceSerializer.class)
+        abstract long price();
+    }
+
+    /**
+     * Opens a file for writing from the given size, truncating anything after it.
+     */
+    private static CountingOutputStream openOutput(Path path, long size) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < size) {
+                throw new IOException("%s is shorter than the position to resume from (%d < %d bytes)"
+                        .formatted(path, channel.size(), size));
+            }
+            channel.truncate(size);
+            channel.position(size);
+            return new CountingOutputStream(Channels.newOutputStream(channel), size);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts the JSON array of a file. When resuming, the array start and the records already in the file are not
+     * written again: the generator only replays them, with a single empty object standing for the records, so that
+     * the next record is preceded by a separator exactly as in an uninterrupted run.
+     */
+    private JsonGenerator startArray(CountingOutputStream output, long records) throws IOException {
+        JsonGenerator generator = mapper.createGenerator(output, JsonEncoding.UTF8);
+        generator.useDefaultPrettyPrinter();
+
+        output.discard(output.count() > 0);
+        generator.writeStartArray();
+        if (records > 0) {
+            generator.writeStartObject();
+            generator.writeEndObject();
+        }
+        generator.flush();
+        output.discard(false);
+        return generator;
+    }
+
     private void closeGenerator(JsonGenerator generator, String name) throws IOException {
         try {
             generator.writeEndArray();
@@ -0,0 +1,17 @@
+package com.onechronos.darkpool.etl.load;
+
+/**
+ * How far JsonWriter has written both output files, from which a later JsonWriter can resume.
+ *
+ * @param cleanedTradesBytes size of the cleaned trades file, with its array still open
+ * @param cleanedTrades      number of cleaned trades in it
+ * @param exceptionsBytes    size of the exceptions report file, with its array still open
+ * @param exceptions         number of exception records in it
+ */
+public record JsonWriterPosition(
+        long cleanedTradesBytes,
+        long cleanedTrades,
+        long exceptionsBytes,
+        long exceptions
+) {
+}
@@ -1,12 +1,22 @@
 package com.onechronos.darkpool.etl.metrics;
 
+import com.onechronos.darkpool.etl.model.enums.TimestampFormat;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 /**
  * Application metrics using Micrometer.
@@ -25,6 +35,14 @@ public class AppMetrics implements AutoCloseable {
     private final Counter fillsParseFailed;
     private final Counter symbolsRead;
     private final Counter symbolsParseFailed;
+    private final Map<String, Counter> tradesRejected = new ConcurrentHashMap<>();
+    private final AtomicLong joinBufferedTrades = new AtomicLong();
+    private final AtomicLong joinBufferedFills = new AtomicLong();
+    private final AtomicLong joinMaxBufferedTrades = new AtomicLong();
+    private final AtomicLong joinMaxBufferedFills = new AtomicLong();
+    private final DistributionSummary joinWatermarkLag;
+    private final Counter joinLateFills;
+    private final Counter joinMatchedLate;
 
     private final Timer.Sample executionTime;
 
@@ -74,6 +92,27 @@ public class AppMetrics implements AutoCloseable {
         this.symbolsParseFailed = Counter.builder("symbols.parse.failed")
                 .description("Symbol rows that failed to parse")
                 .register(registry);
+
+        Gauge.builder("join.buffered.trades", joinBufferedTrades, AtomicLong::get)
+                .description("Trades held by the stream join, waiting for their fill or the watermark")
+                .register(registry);
+
+        Gauge.builder("join.buffered.fills", joinBufferedFills, AtomicLong::get)
+                .description("Fills kept by the stream join for trades yet to arrive")
+                .register(registry);
+
+        this.joinWatermarkLag = DistributionSummary.builder("join.watermark.lag")
+                .description("Event time by which the fill watermark trails the latest trade in the stream join")
+                .baseUnit("milliseconds")
+                .register(registry);
+
+        this.joinLateFills = Counter.builder("join.fills.late")
+                .description("Fills that reached the stream join behind its watermark")
+                .register(registry);
+
+        this.joinMatchedLate = Counter.builder("join.trades.matched.late")
+                .description("Trades buffered by the stream join until their fill arrived")
+                .register(registry);
     }
 
     public void stopAppExecutionTime() {
@@ -100,20 +139,95 @@ public class AppMetrics implements AutoCloseable {
         tradesParseFailed.increment();
     }
 
-    public void incrementFillsRead() {
-        fillsRead.increment();
+    /**
+     * Counts a trade rejected by deduplication or a validation rule, per exception type.
+     */
+    public void incrementTradesRejected(String exceptionType) {
+        tradesRejected(exceptionType).increment();
+    }
+
+    private Counter tradesRejected(String exceptionType) {
+        return tradesRejected.computeIfAbsent(exceptionType, type -> Counter.builder("trades.rejected")
+                .description("Trades rejected per exception type")
+                .tag("type", type)
+                .register(registry));
+    }
+
+    /**
+     * @return trade counters so far, to be restored with incrementTradeCounts when a run is resumed
+     */
+    public TradeCounts tradeCounts() {
+        return new TradeCounts(
+                (long) tradesRead.count(),
+                (long) tradesCancelled.count(),
+                (long) tradesCleanedWritten.count(),
+                (long) tradesExceptionWritten.count(),
+                (long) tradesParseFailed.count(),
+                tradesRejected.entrySet().stream().collect(Collectors.toMap(
+                        Map.Entry::getKey, entry -> (long) entry.getValue().count(), (a, b) -> a, TreeMap::new))
+        );
+    }
+
+    public void incrementTradeCounts(TradeCounts counts) {
+        tradesRead.increment(counts.read());
+        tradesCancelled.increment(counts.cancelled());
+        tradesCleanedWritten.increment(counts.cleanedWritten());
+        tradesExceptionWritten.increment(counts.exceptionsWritten());
+        tradesParseFailed.increment(counts.parseFailed());
+        counts.rejected().forEach((type, count) -> tradesRejected(type).increment(count));
+    }
+
+    public void incrementFillsRead(long count) {
+        fillsRead.increment(count);
+    }
+
+    public void incrementFillsParsesFailed(long count) {
+        fillsParseFailed.increment(count);
+    }
+
+    public void incrementSymbolsRead(long count) {
+        symbolsRead.increment(count);
+    }
+
+    public void incrementSymbolsParsesFailed(long count) {
+        symbolsParseFailed.increment(count);
+    }
+
+    /**
+     * Records the current buffer sizes of the stream join, keeping their maximum for the summary.
+     */
+    public void recordJoinBuffers(long trades, long fills) {
+        joinBufferedTrades.set(trades);
+        joinBufferedFills.set(fills);
+        joinMaxBufferedTrades.accumulateAndGet(trades, Math::max);
+        joinMaxBufferedFills.accumulateAndGet(fills, Math::max);
+    }
+
+    public void recordJoinWatermarkLag(Duration lag) {
+        joinWatermarkLag.record(lag.toMillis());
     }
 
-    public void incrementFillsParsesFailed() {
-        fillsParseFailed.increment();
+    public void incrementJoinLateFills() {
+        joinLateFills.increment();
     }
 
-    public void incrementSymbolsRead() {
-        symbolsRead.increment();
+    public void incrementJoinMatchedLate() {
+        joinMatchedLate.increment();
     }
 
-    public void incrementSymbolsParsesFailed() {
-        symbolsParseFailed.increment();
+    /**
+     * Records how many timestamps of a file were parsed in each format, to spot format drift in upstream files.
+     *
+     * @param fileName     name of the input file
+     * @param formatCounts number of timestamps parsed per format
+     */
+    public void recordTimestampFormats(String fileName, Map<TimestampFormat, Long> formatCounts) {
+        formatCounts.forEach((format, count) -> Counter.builder("timestamps.format")
+                .description("Timestamps parsed per input file and format")
+                .tag("file", fileName)
+                .tag("format", format.name())
+                .register(registry)
+                .increment(count));
     }
 
     public void printSummary() {
@@ -124,10 +238,26 @@ public class AppMetrics implements AutoCloseable {
         log.info("  Trades Cleaned Written  : {}", (long) tradesCleanedWritten.count());
         log.info("  Trades Exceptions Written : {}", (long) tradesExceptionWritten.count());
         log.info("  Trades Parse Failed    : {}", (long) tradesParseFailed.count());
+        tradesRejected.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> log.info("  Trades Rejected {} : {}", entry.getKey(), (long) entry.getValue().count()));
         log.info("  Fills Read              : {}", (long) fillsRead.count());
         log.info("  Fills Parse Failed     : {}", (long) fillsParseFailed.count());
         log.info("  Symbols Read            : {}", (long) symbolsRead.count());
         log.info("  Symbols Parses Failed   : {}", (long) symbolsParseFailed.count());
+        if (joinWatermarkLag.count() > 0 || joinMaxBufferedTrades.get() > 0) {
+            log.info("  Join Max Buffered Trades : {}", joinMaxBufferedTrades.get());
+            log.info("  Join Max Buffered Fills  : {}", joinMaxBufferedFills.get());
+            log.info("  Join Watermark Lag Max (MS) : {}", (long) joinWatermarkLag.max());
+            log.info("  Join Late Fills          : {}", (long) joinLateFills.count());
+            log.info("  Join Trades Matched Late : {}", (long) joinMatchedLate.count());
+        }
+        registry.find("timestamps.format").counters().stream()
+                .filter(counter -> counter.count() > 0)
+                .sorted(Comparator.comparing((Counter counter) -> counter.getId().getTag("file"))
+                        .thenComparing(counter -> TimestampFormat.valueOf(counter.getId().getTag("format"))))
+                .forEach(counter -> log.info("  Timestamps {} {} : {}",
+                        counter.getId().getTag("file"), counter.getId().getTag("format"), (long) counter.count()));
         log.info("============================");
     }
 
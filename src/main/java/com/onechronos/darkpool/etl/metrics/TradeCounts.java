@@ -0,0 +1,23 @@
+package com.onechronos.darkpool.etl.metrics;
+
+import java.util.Map;
+
+/**
+ * Values of the trade counters of AppMetrics at one point of a run.
+ *
+ * @param read              trade rows read
+ * @param cancelled         cancelled trade rows skipped
+ * @param cleanedWritten    cleaned trades written
+ * @param exceptionsWritten trade exception records written
+ * @param parseFailed       trade rows that failed to parse
+ * @param rejected          trades rejected per exception type, by deduplication or a validation rule
+ */
+public record TradeCounts(
+        long read,
+        long cancelled,
+        long cleanedWritten,
+        long exceptionsWritten,
+        long parseFailed,
+        Map<String, Long> rejected
+) {
+}
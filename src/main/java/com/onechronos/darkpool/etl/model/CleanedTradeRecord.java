@@ -1,17 +1,18 @@
 package com.onechronos.darkpool.etl.model;
 
-import java.math.BigDecimal;
 import java.time.Instant;
 
 /**
  * Validated Trade Record.
+ *
+ * @param price in hundredths, e.g. 17148 for 171.48
  */
 public record CleanedTradeRecord(
         String tradeId,
         Instant timestampUtc,
         String symbol,
         Integer quantity,
-        BigDecimal price,
+        long price,
         String buyerId,
         String sellerId,
         Boolean counterpartyConfirmed,
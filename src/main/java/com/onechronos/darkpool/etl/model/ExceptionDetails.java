@@ -0,0 +1,127 @@
+package com.onechronos.darkpool.etl.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Details of an ExceptionRecord, kept as a Template and its arguments instead of text, like RawData.
+ * Details are only rendered when the exception record is written (or logged), so rejected rows that are only
+ * counted never format them.
+ * - Arguments are rendered with String.valueOf, except a List, whose elements are rendered joined with "; "
+ * - Arguments that are themselves ExceptionDetails are rendered in place, e.g. the errors of a row
+ * - Two details are equal when they render to the same text
+ */
+public final class ExceptionDetails {
+
+    private static final String PLACEHOLDER = "%s";
+    private static final String LIST_SEPARATOR = "; ";
+
+    /**
+     * Text of the details with a %s placeholder per argument, split once when the template is declared.
+     */
+    public static final class Template {
+        private final String[] parts;
+
+        private Template(String[] parts) {
+            this.parts = parts;
+        }
+
+        /**
+         * @param arguments one per %s placeholder of the template, in order; kept as they are, not copied
+         * @throws IllegalArgumentException if the number of arguments does not match the template
+         */
+        public ExceptionDetails with(Object... arguments) {
+            if (arguments.length != parts.length - 1) {
+                throw new IllegalArgumentException("Template \"%s\" takes %d arguments, got %d"
+                        .formatted(String.join(PLACEHOLDER, parts), parts.length - 1, arguments.length));
+            }
+            return new ExceptionDetails(this, arguments);
+        }
+
+        @Override
+        public String toString() {
+            return String.join(PLACEHOLDER, parts);
+        }
+    }
+
+    private static final Template TEXT = template(PLACEHOLDER);
+
+    private final Template template;
+    private final Object[] arguments;
+
+    private ExceptionDetails(Template template, Object[] arguments) {
+        this.template = template;
+        this.arguments = arguments;
+    }
+
+    /**
+     * Declares a template, e.g. "Symbol in trade record is inactive: %s". Templates are meant to be constants.
+     */
+    public static Template template(String text) {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        for (int placeholder = text.indexOf(PLACEHOLDER); placeholder >= 0; placeholder = text.indexOf(PLACEHOLDER, start)) {
+            parts.add(text.substring(start, placeholder));
+            start = placeholder + PLACEHOLDER.length();
+        }
+        parts.add(text.substring(start));
+        return new Template(parts.toArray(String[]::new));
+    }
+
+    /**
+     * Wraps details that are already text, e.g. read back from a file.
+     */
+    public static ExceptionDetails of(String text) {
+        return TEXT.with(text);
+    }
+
+    /**
+     * Appends the rendered details.
+     */
+    public void renderTo(StringBuilder out) {
+        String[] parts = template.parts;
+        for (int i = 0; i < arguments.length; i++) {
+            out.append(parts[i]);
+            renderArgument(out, arguments[i]);
+        }
+        out.append(parts[arguments.length]);
+    }
+
+    private static void renderArgument(StringBuilder out, Object argument) {
+        if (argument instanceof ExceptionDetails details) {
+            details.renderTo(out);
+        } else if (argument instanceof List<?> list) {
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) {
+                    out.append(LIST_SEPARATOR);
+                }
+                renderArgument(out, list.get(i));
+            }
+        } else if (argument instanceof Long number) {
+            out.append(number.longValue());
+        } else {
+            out.append(argument);
+        }
+    }
+
+    /**
+     * @return rendered details
+     */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        renderTo(out);
+        return out.toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof ExceptionDetails details && toString().equals(details.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(toString());
+    }
+}
@@ -1,15 +1,14 @@
 package com.onechronos.darkpool.etl.model;
 
-import java.util.Map;
-
 /**
  * A record that failed one or more validation checks.
+ * Its details are only rendered into text when it is written, see ExceptionDetails.
  */
 public record ExceptionRecord(
         String recordId,
         String sourceFile,
         String exceptionType,
-        String details,
-        Map<String, String> rawData
+        ExceptionDetails details,
+        RawData rawData
 ) {
 }
\ No newline at end of file
@@ -1,10 +1,11 @@
 package com.onechronos.darkpool.etl.model;
 
-import java.math.BigDecimal;
 import java.time.Instant;
 
 /**
  * Type record to represent a fill record row.
+ *
+ * @param price in hundredths, e.g. 17148 for 171.48
  */
 public record FillRecord(
         String externalRefId,
@@ -12,7 +13,7 @@ public record FillRecord(
         Instant timestamp,
         String symbol,
         Integer quantity,
-        BigDecimal price,
+        long price,
         String counterpartyId
 ) {
 }
\ No newline at end of file
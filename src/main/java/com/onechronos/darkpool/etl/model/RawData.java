@@ -0,0 +1,28 @@
+package com.onechronos.darkpool.etl.model;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Handle to the raw input row a record was parsed from.
+ * Records only carry the handle; it is expanded into column/value pairs when an exception record is written.
+ */
+@FunctionalInterface
+public interface RawData {
+
+    RawData EMPTY = Collections::emptyMap;
+
+    /**
+     * Expands the raw row into column/value pairs in source column order.
+     */
+    Map<String, String> expand();
+
+    /**
+     * Wraps already parsed column/value pairs.
+     */
+    static RawData of(Map<String, String> data) {
+        Map<String, String> copy = Collections.unmodifiableMap(new LinkedHashMap<>(data));
+        return () -> copy;
+    }
+}
@@ -2,22 +2,22 @@ package com.onechronos.darkpool.etl.model;
 
 import com.onechronos.darkpool.etl.model.enums.TradeStatus;
 
-import java.math.BigDecimal;
 import java.time.Instant;
-import java.util.Map;
 
 /**
  * Type record to represent a trade record.
+ *
+ * @param price in hundredths, e.g. 17148 for 171.48
  */
 public record TradeRecord(
         String tradeId,
         Instant timestamp,
         String symbol,
         Integer quantity,
-        BigDecimal price,
+        long price,
         String buyerId,
         String sellerId,
         TradeStatus tradeStatus,
-        Map<String, String> rawData
+        RawData rawData
 ) {
 }
\ No newline at end of file
@@ -10,6 +10,8 @@ public enum Sector {
     FINANCIAL_SERVICES("Financial Services"),
     INDUSTRIAL("Industrial");
 
+    private static final Sector[] VALUES = values();
+
     private final String displayName;
 
     Sector(String displayName) {
@@ -26,12 +28,30 @@ public enum Sector {
         if (displayName == null || displayName.isBlank()) {
             throw new IllegalArgumentException("Sector is null or blank");
         }
-        for (Sector sector : values()) {
-            if (sector.displayName.equalsIgnoreCase(displayName.trim())) {
+        Sector sector = find(displayName);
+        if (sector == null) {
+            throw new IllegalArgumentException("Unknown sector: " + displayName);
+        }
+        return sector;
+    }
+
+    /**
+     * Looks up a Sector display name without throwing or allocating, for per-row parsing.
+     *
+     * @param displayName to be looked up, case-insensitive
+     * @return Sector enum, or null if the display name is null or unknown
+     */
+    public static Sector find(String displayName) {
+        if (displayName == null) {
+            return null;
+        }
+        String trimmed = displayName.trim();
+        for (Sector sector : VALUES) {
+            if (sector.displayName.equalsIgnoreCase(trimmed)) {
                 return sector;
             }
         }
-        throw new IllegalArgumentException("Unknown sector: " + displayName);
+        return null;
     }
 
     public String getDisplayName() {
@@ -0,0 +1,13 @@
+package com.onechronos.darkpool.etl.model.enums;
+
+/**
+ * Enum to represent the timestamp formats accepted in input files.
+ * - EPOCH: seconds since 1970-01-01T00:00:00Z, e.g. 1705312800
+ * - ISO_8601: UTC instant, e.g. 2024-01-15T10:00:00.000Z
+ * - US_FORMAT: UTC date time as M/d/yyyy H:m:s, e.g. 1/15/2024 10:5:7
+ */
+public enum TimestampFormat {
+    EPOCH,
+    ISO_8601,
+    US_FORMAT
+}
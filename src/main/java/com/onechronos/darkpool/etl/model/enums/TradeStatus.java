@@ -7,6 +7,8 @@ public enum TradeStatus {
     EXECUTED,
     CANCELLED;
 
+    private static final TradeStatus[] VALUES = values();
+
     /**
      * Parse string to TradeStatus enum
      *
@@ -17,10 +19,29 @@ public enum TradeStatus {
         if (value == null || value.isBlank()) {
             throw new IllegalArgumentException("Trade status is null or blank");
         }
-        return switch (value.trim().toUpperCase()) {
-            case "EXECUTED" -> EXECUTED;
-            case "CANCELLED" -> CANCELLED;
-            default -> throw new IllegalArgumentException("Unknown trade status: " + value);
-        };
+        TradeStatus status = find(value);
+        if (status == null) {
+            throw new IllegalArgumentException("Unknown trade status: " + value);
+        }
+        return status;
+    }
+
+    /**
+     * Looks up a trade status without throwing or allocating, for per-row parsing.
+     *
+     * @param value to be looked up, case-insensitive
+     * @return TradeStatus enum, or null if the value is null or unknown
+     */
+    public static TradeStatus find(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        for (TradeStatus status : VALUES) {
+            if (status.name().equalsIgnoreCase(trimmed)) {
+                return status;
+            }
+        }
+        return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,68 @@
+package com.onechronos.darkpool.etl.transform;
+
+/**
+ * Bloom filter over 64-bit hashes: answers "definitely not added" or "possibly added".
+ * The k bit positions of a hash are derived from its two halves (double hashing), so callers hash each key once.
+ */
+final class BloomFilter {
+
+    private static final int MAX_HASHES = 16;
+
+    private final long[] words;
+    private final long bits;
+    private final int hashes;
+
+    private BloomFilter(long[] words, int hashes) {
+        this.words = words;
+        this.bits = (long) words.length * Long.SIZE;
+        this.hashes = hashes;
+    }
+
+    /**
+     * @param expectedInsertions number of keys the filter is sized for
+     * @param falsePositiveRate  rate of absent keys reported as possibly added once expectedInsertions keys are added
+     */
+    static BloomFilter build(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("Invalid expected insertions: " + expectedInsertions);
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("Invalid false positive rate: " + falsePositiveRate);
+        }
+        double optimalBits = -expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        long wordCount = Math.max(1, (long) Math.ceil(optimalBits / Long.SIZE));
+        if (wordCount > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Bloom filter for %d keys at %s is too large".formatted(expectedInsertions, falsePositiveRate));
+        }
+        int hashes = (int) Math.round(wordCount * Long.SIZE / (double) expectedInsertions * Math.log(2));
+        return new BloomFilter(new long[(int) wordCount], Math.max(1, Math.min(MAX_HASHES, hashes)));
+    }
+
+    void put(long hash) {
+        long step = (hash >>> 32) | 1;
+        long combined = hash;
+        for (int i = 0; i < hashes; i++, combined += step) {
+            long bit = Long.remainderUnsigned(combined, bits);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(long hash) {
+        long step = (hash >>> 32) | 1;
+        long combined = hash;
+        for (int i = 0; i < hashes; i++, combined += step) {
+            long bit = Long.remainderUnsigned(combined, bits);
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return size of the filter in bytes
+     */
+    long sizeInBytes() {
+        return (long) words.length * Long.BYTES;
+    }
+}
@@ -0,0 +1,29 @@
+package com.onechronos.darkpool.etl.transform;
+
+/**
+ * Enum to represent the available trade ID deduplication backends.
+ * - MEMORY: every trade ID seen is kept in heap in a TradeIdSet (default)
+ * - DISK: a Bloom filter in heap answers "definitely new", IDs are spilled to sorted runs on disk that are only
+ * searched when the filter reports a possible duplicate
+ */
+public enum DedupBackend {
+    MEMORY,
+    DISK;
+
+    /**
+     * Parse string to DedupBackend enum
+     *
+     * @param value to be parsed
+     * @return DedupBackend enum
+     */
+    public static DedupBackend parse(String value) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Dedup backend is null or blank");
+        }
+        return switch (value.trim().toUpperCase()) {
+            case "MEMORY" -> MEMORY;
+            case "DISK" -> DISK;
+            default -> throw new IllegalArgumentException("Unknown dedup backend: " + value);
+        };
+    }
+}
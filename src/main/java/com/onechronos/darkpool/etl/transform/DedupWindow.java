@@ -0,0 +1,104 @@
+package com.onechronos.darkpool.etl.transform;
+
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Event-time window after which trade IDs expire, for venues whose IDs are only unique within a period.
+ * Event time is split into buckets, and the IDs of a bucket are dropped together once the bucket is out of the window:
+ * - sliding: buckets of a quarter of the window, an ID is kept for at least the window and at most 1.25 windows after
+ * the latest trade timestamp seen
+ * - daily: one bucket per calendar day in a zone, IDs are kept until the first trade of the next day
+ * Bucket keys are computed from epoch seconds with saturating arithmetic, so that any Instant the parsers accept has
+ * a bucket: timestamps beyond the range of epoch milliseconds share the first or last bucket.
+ */
+public final class DedupWindow {
+
+    static final int BUCKETS_PER_WINDOW = 4;
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    private final Duration length;
+    private final ZoneId dayZone;
+    private final long bucketMillis;
+    private final long lengthMillis;
+
+    private DedupWindow(Duration length, ZoneId dayZone) {
+        this.length = length;
+        this.dayZone = dayZone;
+        this.lengthMillis = length == null ? 0 : saturatedMillis(length.getSeconds(), length.getNano());
+        this.bucketMillis = length == null ? 0 : Math.max(1, lengthMillis / BUCKETS_PER_WINDOW);
+    }
+
+    public static DedupWindow sliding(Duration length) {
+        if (length.isNegative() || length.isZero()) {
+            throw new IllegalArgumentException("Invalid dedup window: " + length);
+        }
+        return new DedupWindow(length, null);
+    }
+
+    public static DedupWindow daily(ZoneId zone) {
+        return new DedupWindow(null, zone);
+    }
+
+    /**
+     * @return number of buckets covering a window: BUCKETS_PER_WINDOW for a sliding window, one per day otherwise.
+     * One more bucket is live while the oldest is partly out of the window.
+     */
+    public int bucketsPerWindow() {
+        return dayZone != null ? 1 : BUCKETS_PER_WINDOW;
+    }
+
+    /**
+     * @return key of the bucket holding trades of the timestamp, increasing with time
+     */
+    long bucketOf(Instant timestamp) {
+        return dayZone != null
+                ? epochDay(timestamp)
+                : Math.floorDiv(saturatedMillis(timestamp.getEpochSecond(), timestamp.getNano()), bucketMillis);
+    }
+
+    /**
+     * @param latest latest trade timestamp seen
+     * @return key of the oldest bucket still in the window, older buckets are dropped
+     */
+    long oldestBucket(Instant latest) {
+        return dayZone != null
+                ? bucketOf(latest)
+                : Math.floorDiv(saturatedSubtract(saturatedMillis(latest.getEpochSecond(), latest.getNano()), lengthMillis), bucketMillis);
+    }
+
+    /**
+     * Day in the zone, or in UTC for the few instants past the range of LocalDate, where the offset makes no difference.
+     */
+    private long epochDay(Instant timestamp) {
+        try {
+            return LocalDate.ofInstant(timestamp, dayZone).toEpochDay();
+        } catch (DateTimeException e) {
+            return Math.floorDiv(timestamp.getEpochSecond(), SECONDS_PER_DAY);
+        }
+    }
+
+    private static long saturatedMillis(long seconds, int nanos) {
+        if (seconds >= Long.MAX_VALUE / 1000) {
+            return Long.MAX_VALUE;
+        }
+        if (seconds < Long.MIN_VALUE / 1000) {
+            return Long.MIN_VALUE;
+        }
+        return seconds * 1000 + nanos / 1_000_000;
+    }
+
+    private static long saturatedSubtract(long value, long subtracted) {
+        long result = value - subtracted;
+        // Overflows only when the signs differ and the result's sign is not value's
+        return ((value ^ subtracted) & (value ^ result)) < 0 ? Long.MIN_VALUE : result;
+    }
+
+    @Override
+    public String toString() {
+        return dayZone != null ? "daily in " + dayZone : "sliding over " + length;
+    }
+}
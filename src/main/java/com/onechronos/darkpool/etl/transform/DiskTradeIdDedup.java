@@ -0,0 +1,179 @@
+package com.onechronos.darkpool.etl.transform;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * DISK dedup backend, for runs with more distinct trade IDs than fit in heap.
+ * - A Bloom filter answers "definitely new" for most new IDs without any other lookup
+ * - The latest memoryIds IDs are buffered in a TradeIdSet, then spilled to disk as a SortedRun
+ * - A possible duplicate is looked up in the buffer, then in the runs, newest first
+ * - Once FANOUT runs of the same level exist, they are merged into one run of the next level, so the number of runs
+ * to search grows with the log of the number of IDs
+ * Heap use is bounded by the Bloom filter, the buffer and the block index of the runs (16 bytes per
+ * BLOCK_ENTRIES IDs). The runs live in a temporary directory that is deleted on close.
+ */
+final class DiskTradeIdDedup implements TradeIdDedup {
+    private static final Logger log = LoggerFactory.getLogger(DiskTradeIdDedup.class);
+
+    private static final int FANOUT = 8;
+
+    private final Path directory;
+    private final BloomFilter bloomFilter;
+    private final int memoryIds;
+    private final List<SortedRun> runs = new ArrayList<>(); // Lowest level, i.e. newest, first
+
+    private TradeIdSet buffer = TradeIdSet.build();
+    private long count;
+    private long possibleDuplicates;
+    private long diskLookups;
+    private long falsePositives;
+    private int nextRunId;
+
+    private DiskTradeIdDedup(Path directory, BloomFilter bloomFilter, int memoryIds) {
+        this.directory = directory;
+        this.bloomFilter = bloomFilter;
+        this.memoryIds = memoryIds;
+    }
+
+    /**
+     * @param parent directory under which a temporary directory holds the runs
+     */
+    static DiskTradeIdDedup open(Path parent, long expectedIds, double falsePositiveRate, int memoryIds) throws IOException {
+        if (memoryIds <= 0) {
+            throw new IllegalArgumentException("Invalid number of trade IDs kept in memory: " + memoryIds);
+        }
+        BloomFilter bloomFilter = BloomFilter.build(expectedIds, falsePositiveRate);
+        Files.createDirectories(parent);
+        Path directory = Files.createTempDirectory(parent, "trade-ids-");
+        log.info("Deduplicating trade IDs on disk in {} ({} MiB Bloom filter for {} IDs)",
+                directory, bloomFilter.sizeInBytes() >> 20, expectedIds);
+        return new DiskTradeIdDedup(directory, bloomFilter, memoryIds);
+    }
+
+    @Override
+    public boolean add(String tradeId) {
+        long hash = hash(tradeId);
+        try {
+            if (bloomFilter.mightContain(hash)) {
+                possibleDuplicates++;
+                if (buffer.contains(tradeId) || onDisk(hash, tradeId)) {
+                    return false;
+                }
+                falsePositives++;
+            }
+            bloomFilter.put(hash);
+            buffer.add(tradeId);
+            count++;
+            if (buffer.size() >= memoryIds) {
+                spill();
+            }
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to deduplicate trade ID %s in %s".formatted(tradeId, directory), e);
+        }
+    }
+
+    @Override
+    public boolean contains(String tradeId) {
+        long hash = hash(tradeId);
+        try {
+            return bloomFilter.mightContain(hash) && (buffer.contains(tradeId) || onDisk(hash, tradeId));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to look up trade ID %s in %s".formatted(tradeId, directory), e);
+        }
+    }
+
+    @Override
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.info("Deduplicated {} trade IDs: {} possible duplicates, {} of them new, {} looked up on disk",
+                count, possibleDuplicates, falsePositives, diskLookups);
+        try {
+            for (SortedRun run : runs) {
+                run.close();
+            }
+        } finally {
+            runs.clear();
+            try (Stream<Path> leftovers = Files.list(directory)) {
+                for (Path leftover : (Iterable<Path>) leftovers::iterator) {
+                    Files.deleteIfExists(leftover); // A run whose write failed
+                }
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private boolean onDisk(long hash, String tradeId) throws IOException {
+        if (runs.isEmpty()) {
+            return false;
+        }
+        diskLookups++;
+        for (SortedRun run : runs) {
+            if (run.contains(hash, tradeId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void spill() throws IOException {
+        List<SortedRun.Entry> entries = new ArrayList<>(buffer.size());
+        for (String tradeId : buffer) {
+            entries.add(new SortedRun.Entry(hash(tradeId), tradeId));
+        }
+        entries.sort(null);
+        runs.add(0, SortedRun.write(nextRunFile(), 0, entries.iterator()));
+        buffer = TradeIdSet.build();
+        log.debug("Spilled {} trade IDs to {}", entries.size(), directory);
+
+        for (int level = 0; ; level++) {
+            int runLevel = level;
+            List<SortedRun> sameLevel = runs.stream().filter(run -> run.level() == runLevel).toList();
+            if (sameLevel.size() < FANOUT) {
+                break;
+            }
+            SortedRun merged = SortedRun.merge(nextRunFile(), sameLevel);
+            runs.removeAll(sameLevel);
+            for (SortedRun run : sameLevel) {
+                run.close();
+            }
+            runs.add(merged);
+            runs.sort(Comparator.comparingInt(SortedRun::level));
+            log.debug("Merged {} runs into a run of {} trade IDs", sameLevel.size(), merged.entries());
+        }
+    }
+
+    private Path nextRunFile() {
+        return directory.resolve("run-%06d".formatted(nextRunId++));
+    }
+
+    /**
+     * 64-bit hash of a trade ID: FNV-1a over its chars, then the MurmurHash3 finalizer to spread the bits.
+     */
+    static long hash(String tradeId) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < tradeId.length(); i++) {
+            hash = (hash ^ tradeId.charAt(i)) * 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,33 @@
+package com.onechronos.darkpool.etl.transform;
+
+import com.onechronos.darkpool.etl.model.FillRecord;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Counterparty fills of the trades, looked up by the Transformer in the order it processes trades.
+ * See FillsJoin for the available implementations.
+ */
+public interface FillLookup extends Closeable {
+
+    /**
+     * @return fill whose ourTradeId is the trade ID, null if there is none
+     */
+    FillRecord find(String tradeId);
+
+    /**
+     * Releases the resources of the lookup, e.g. closes the fills file it streams.
+     */
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * @param fills keyed by ourTradeId
+     */
+    static FillLookup of(Map<String, FillRecord> fills) {
+        return fills::get;
+    }
+}
@@ -0,0 +1,37 @@
+package com.onechronos.darkpool.etl.transform;
+
+/**
+ * Enum to represent how trades are joined with their counterparty fills.
+ * - HASH: every fill is loaded into a map keyed by trade ID before the first trade is processed (default)
+ * - MERGE: both files are sorted by trade ID, so the fills are streamed alongside the trades by a MergeJoinFills,
+ * in constant memory
+ * - GRACE: fills and trades are hash-partitioned by trade ID to disk, then joined partition by partition by a
+ * GraceHashJoin, on several workers, with only the fills of the partitions being joined in heap
+ * - STREAM: trades and fills are read concurrently, e.g. as live feeds, and joined by a WatermarkJoin: a trade without
+ * its fill waits until the fill arrives or the fill watermark passes it
+ */
+public enum FillsJoin {
+    HASH,
+    MERGE,
+    GRACE,
+    STREAM;
+
+    /**
+     * Parse string to FillsJoin enum
+     *
+     * @param value to be parsed
+     * @return FillsJoin enum
+     */
+    public static FillsJoin parse(String value) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Fills join is null or blank");
+        }
+        return switch (value.trim().toUpperCase()) {
+            case "HASH" -> HASH;
+            case "MERGE" -> MERGE;
+            case "GRACE" -> GRACE;
+            case "STREAM" -> STREAM;
+            default -> throw new IllegalArgumentException("Unknown fills join: " + value);
+        };
+    }
+}
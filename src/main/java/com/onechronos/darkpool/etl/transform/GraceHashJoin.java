@@ -0,0 +1,402 @@
+package com.onechronos.darkpool.etl.transform;
+
+import com.onechronos.darkpool.etl.model.ExceptionRecord;
+import com.onechronos.darkpool.etl.model.FillRecord;
+import com.onechronos.darkpool.etl.model.TradeRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * GRACE join of the trades with their fills, for fills that do not fit in heap.
+ * - Fills, then trades, are hash-partitioned by trade ID into partition files on disk, so that a trade and its fill
+ * always land in the same partition
+ * - Each partition is then joined on its own by a worker: its fills are loaded into a map, and its trades validated
+ * against them by a Transformer. Only the fills of the partitions being joined are in heap
+ * - Trades, parse failures and results known before the join are numbered in trade row order as they are added, and
+ * the results of every partition are merged back in that order, so the outputs are the same as with a HASH join
+ * Trades are deduplicated by the caller before they are added, in row order, so that the first occurrence of a
+ * trade ID is always the one kept. The partition files live in a temporary directory that is deleted on close.
+ */
+public final class GraceHashJoin implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(GraceHashJoin.class);
+
+    public static final long DEFAULT_MEMORY_BUDGET = 256L << 20;
+
+    public static final int MAX_PARTITIONS = 1024;
+
+    private static final int HEAP_BYTES_PER_FILL_BYTE = 4; // A fill in a HashMap takes about 4 times its CSV line
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private static final byte CLEANED_TRADE = 0;
+    private static final byte REJECTED_TRADE = 1;
+    private static final byte PARSE_FAILURE = 2;
+
+    /**
+     * Receives the outcome of every row added, in the order they were added.
+     */
+    public interface Output {
+        void parseFailure(ExceptionRecord exception);
+
+        void result(TransformerResult result);
+    }
+
+    private final Path directory;
+    private final int partitions;
+    private final List<Path> tradesFiles;
+    private final long[] fillCounts;
+    private final long[] tradeCounts;
+    private final DataOutputStream ready;
+
+    private DataOutputStream[] fillOutputs;
+    private DataOutputStream[] tradeOutputs;
+    private long readyCount;
+    private long nextSequence;
+
+    private GraceHashJoin(Path directory, int partitions, List<Path> tradesFiles, DataOutputStream ready) {
+        this.directory = directory;
+        this.partitions = partitions;
+        this.tradesFiles = tradesFiles;
+        this.fillCounts = new long[partitions];
+        this.tradeCounts = new long[partitions];
+        this.ready = ready;
+    }
+
+    /**
+     * @param parent      directory under which a temporary directory holds the partition files
+     * @param partitions  number of partitions, see partitions()
+     * @param tradesFiles files the trades are added from, in the order they are read
+     */
+    public static GraceHashJoin open(Path parent, int partitions, List<Path> tradesFiles) throws IOException {
+        if (partitions <= 0 || partitions > MAX_PARTITIONS) {
+            throw new IllegalArgumentException("Invalid number of partitions: " + partitions);
+        }
+        Files.createDirectories(parent);
+        Path directory = Files.createTempDirectory(parent, "grace-join-");
+        log.info("Partitioning fills and trades into {} partitions in {}", partitions, directory);
+        GraceHashJoin join = new GraceHashJoin(directory, partitions, List.copyOf(tradesFiles), output(directory.resolve("ready")));
+        join.fillOutputs = join.outputs("fills");
+        return join;
+    }
+
+    /**
+     * Number of partitions such that the fills of one partition per worker fit in the memory budget, estimated from the
+     * size of the fills CSV file.
+     */
+    public static int partitions(long fillsFileBytes, long memoryBudget, int workers) {
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("Invalid memory budget: " + memoryBudget);
+        }
+        double fillsHeapBytes = (double) fillsFileBytes * HEAP_BYTES_PER_FILL_BYTE * workers;
+        return (int) Math.max(1, Math.min(MAX_PARTITIONS, Math.ceil(fillsHeapBytes / memoryBudget)));
+    }
+
+    /**
+     * Adds a fill. Every fill is added before the first trade.
+     */
+    public void addFill(FillRecord fill) throws IOException {
+        if (fillOutputs == null) {
+            throw new IllegalStateException("Fills must be added before trades");
+        }
+        int partition = partition(fill.ourTradeId());
+        PartitionCodec.writeFill(fillOutputs[partition], fill);
+        fillCounts[partition]++;
+    }
+
+    /**
+     * Adds the first occurrence of a trade ID, to be validated against its fill by the join.
+     */
+    public void addTrade(TradeRecord trade, Path file) throws IOException {
+        if (tradeOutputs == null) {
+            closeAll(fillOutputs);
+            fillOutputs = null;
+            tradeOutputs = outputs("trades");
+        }
+        int partition = partition(trade.tradeId());
+        DataOutputStream out = tradeOutputs[partition];
+        out.writeLong(nextSequence++);
+        out.writeInt(tradesFiles.indexOf(file));
+        PartitionCodec.writeTrade(out, trade);
+        tradeCounts[partition]++;
+    }
+
+    /**
+     * Adds a trade row that failed to parse.
+     */
+    public void addParseFailure(ExceptionRecord exception) throws IOException {
+        ready.writeLong(nextSequence++);
+        ready.writeByte(PARSE_FAILURE);
+        PartitionCodec.writeException(ready, exception);
+        readyCount++;
+    }
+
+    /**
+     * Adds the result of a trade already known without its fill, e.g. a duplicate.
+     */
+    public void addResult(TransformerResult result) throws IOException {
+        ready.writeLong(nextSequence++);
+        writeResult(ready, result);
+        readyCount++;
+    }
+
+    /**
+     * Joins every partition, then hands the outcome of every row to the output in the order the rows were added.
+     *
+     * @param workers      number of partitions joined at once
+     * @param transformers builds the Transformer validating the trades of a partition against its fills, called on
+     *                     the worker thread of each partition
+     * @param output       called on the calling thread
+     */
+    public void join(int workers, Function<FillLookup, Transformer> transformers, Output output) throws IOException {
+        closeAll(fillOutputs);
+        closeAll(tradeOutputs);
+        ready.close();
+        fillOutputs = null;
+        tradeOutputs = null;
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(workers, partitions), workerThreadFactory());
+        try {
+            List<Future<?>> joins = new ArrayList<>();
+            for (int partition = 0; partition < partitions; partition++) {
+                int joined = partition;
+                joins.add(pool.submit(() -> {
+                    joinPartition(joined, transformers);
+                    return null;
+                }));
+            }
+            for (Future<?> join : joins) {
+                await(join);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        log.info("Joined {} partitions, merging their results in trade order", partitions);
+        merge(output);
+    }
+
+    /**
+     * Deletes the partition files.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            closeAll(fillOutputs);
+            closeAll(tradeOutputs);
+            ready.close();
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private void joinPartition(int partition, Function<FillLookup, Transformer> transformers) throws IOException {
+        Map<String, FillRecord> fills = new HashMap<>();
+        Path fillsFile = file("fills", partition);
+        try (DataInputStream in = input(fillsFile)) {
+            for (long i = 0; i < fillCounts[partition]; i++) {
+                FillRecord fill = PartitionCodec.readFill(in);
+                if (fills.putIfAbsent(fill.ourTradeId(), fill) != null) {
+                    throw new IllegalStateException("Duplicate fill of trade %s: %s".formatted(fill.ourTradeId(), fill.externalRefId()));
+                }
+            }
+        }
+        Files.delete(fillsFile);
+
+        Transformer transformer = transformers.apply(FillLookup.of(fills));
+        Path tradesFile = file("trades", partition);
+        if (tradeCounts[partition] > 0) {
+            try (DataInputStream in = input(tradesFile); DataOutputStream out = output(file("results", partition))) {
+                for (long i = 0; i < tradeCounts[partition]; i++) {
+                    long sequence = in.readLong();
+                    Path file = tradesFiles.get(in.readInt());
+                    TradeRecord trade = PartitionCodec.readTrade(in);
+                    out.writeLong(sequence);
+                    writeResult(out, transformer.validate(trade, file));
+                }
+            }
+            Files.delete(tradesFile);
+        }
+        log.debug("Joined partition {}: {} trades against {} fills", partition, tradeCounts[partition], fills.size());
+    }
+
+    /**
+     * Merges the results of the partitions and the ready results by sequence number, each file being in sequence order.
+     */
+    private void merge(Output output) throws IOException {
+        PriorityQueue<Cursor> heads = new PriorityQueue<>();
+        try {
+            addHead(heads, new Cursor(input(directory.resolve("ready")), readyCount));
+            for (int partition = 0; partition < partitions; partition++) {
+                if (tradeCounts[partition] > 0) {
+                    addHead(heads, new Cursor(input(file("results", partition)), tradeCounts[partition]));
+                }
+            }
+            while (!heads.isEmpty()) {
+                Cursor head = heads.poll();
+                switch (head.kind) {
+                    case CLEANED_TRADE -> output.result(TransformerResult.clean(PartitionCodec.readCleanedTrade(head.in)));
+                    case REJECTED_TRADE -> output.result(TransformerResult.rejected(PartitionCodec.readException(head.in)));
+                    case PARSE_FAILURE -> output.parseFailure(PartitionCodec.readException(head.in));
+                    default -> throw new IllegalStateException("Invalid result kind in partition: " + head.kind);
+                }
+                addHead(heads, head);
+            }
+        } finally {
+            for (Cursor cursor : heads) {
+                cursor.in.close();
+            }
+        }
+    }
+
+    private static void addHead(PriorityQueue<Cursor> heads, Cursor cursor) throws IOException {
+        if (cursor.advance()) {
+            heads.add(cursor);
+        } else {
+            cursor.in.close();
+        }
+    }
+
+    private static void writeResult(DataOutputStream out, TransformerResult result) throws IOException {
+        if (result.cleanedTrade().isPresent()) {
+            out.writeByte(CLEANED_TRADE);
+            PartitionCodec.writeCleanedTrade(out, result.cleanedTrade().get());
+        } else {
+            out.writeByte(REJECTED_TRADE);
+            PartitionCodec.writeException(out, result.exception().orElseThrow());
+        }
+    }
+
+    /**
+     * Partition of a trade ID, from the same hash as the DISK dedup backend.
+     */
+    private int partition(String tradeId) {
+        return (int) Long.remainderUnsigned(DiskTradeIdDedup.hash(tradeId), partitions);
+    }
+
+    private DataOutputStream[] outputs(String name) throws IOException {
+        DataOutputStream[] outputs = new DataOutputStream[partitions];
+        try {
+            for (int partition = 0; partition < partitions; partition++) {
+                outputs[partition] = output(file(name, partition));
+            }
+        } catch (IOException e) {
+            closeAll(outputs);
+            throw e;
+        }
+        return outputs;
+    }
+
+    private Path file(String name, int partition) {
+        return directory.resolve("%s-%04d".formatted(name, partition));
+    }
+
+    private static DataOutputStream output(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+    }
+
+    private static DataInputStream input(Path file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+    }
+
+    private static void closeAll(DataOutputStream[] outputs) throws IOException {
+        if (outputs == null) {
+            return;
+        }
+        IOException failure = null;
+        for (DataOutputStream output : outputs) {
+            try {
+                if (output != null) {
+                    output.close();
+                }
+            } catch (IOException e) {
+                failure = failure == null ? e : failure;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static void await(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while joining partitions");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Failed to join partition", e.getCause());
+        }
+    }
+
+    private static ThreadFactory workerThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "grace-join-%d".formatted(counter.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Sequential reader of the sequence number and kind of the entries of a file, ordered by the sequence number of
+     * its current entry. The rest of the entry is read by merge.
+     */
+    private static final class Cursor implements Comparable<Cursor> {
+        private final DataInputStream in;
+        private long remaining;
+        private long sequence;
+        private byte kind;
+
+        private Cursor(DataInputStream in, long entries) {
+            this.in = in;
+            this.remaining = entries;
+        }
+
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            sequence = in.readLong();
+            kind = in.readByte();
+            return true;
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.onechronos.darkpool.etl.transform;
+
+import com.onechronos.darkpool.etl.exception.CsvReaderException;
+import com.onechronos.darkpool.etl.exception.TransformerException;
+import com.onechronos.darkpool.etl.model.FillRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * MERGE join of the trades with their fills, when both files are sorted by trade ID (String order, e.g. "TRD000001"
+ * before "TRD000002"). Fills are read one at a time alongside the trades instead of being loaded into a map, so the
+ * join takes constant memory and the first trade is processed without waiting for the fills.
+ * - A lookup advances the fills past every trade ID lower than the one looked up, which then either is the current
+ * fill or has no fill
+ * - Trades looked up out of order would miss fills already passed: the join then falls back to a HASH join of every
+ * fill, loaded once, and keeps giving the same answers as a HASH join
+ * - Fills out of order (or two fills of the same trade) may already have been missed by earlier trades, so they fail
+ * the run with a TransformerException
+ * Not thread-safe, like the Transformer.
+ */
+public final class MergeJoinFills implements FillLookup {
+    private static final Logger log = LoggerFactory.getLogger(MergeJoinFills.class);
+
+    /**
+     * Loads every fill into a map keyed by ourTradeId, for the fallback to a HASH join.
+     */
+    @FunctionalInterface
+    public interface Fallback {
+        Map<String, FillRecord> load() throws CsvReaderException;
+    }
+
+    private final Stream<FillRecord> stream;
+    private final Iterator<FillRecord> fills;
+    private final Fallback fallback;
+
+    private FillRecord current; // Lowest fill not passed yet, null once every fill is passed
+    private String lastTradeId;
+    private Map<String, FillRecord> fallbackFills;
+
+    private MergeJoinFills(Stream<FillRecord> stream, Fallback fallback) {
+        this.stream = stream;
+        this.fills = stream.iterator();
+        this.fallback = fallback;
+    }
+
+    /**
+     * @param fills    parsed fills in file order, closed with the join or as soon as the join falls back
+     * @param fallback loads the fills again if trades turn out not to be sorted
+     */
+    public static MergeJoinFills open(Stream<FillRecord> fills, Fallback fallback) {
+        MergeJoinFills join = new MergeJoinFills(fills, fallback);
+        join.advance();
+        return join;
+    }
+
+    @Override
+    public FillRecord find(String tradeId) {
+        if (Objects.nonNull(fallbackFills)) {
+            return fallbackFills.get(tradeId);
+        }
+        if (Objects.nonNull(lastTradeId) && tradeId.compareTo(lastTradeId) < 0) {
+            log.warn("Trade {} comes after trade {}: trades are not sorted by trade ID, falling back to a hash join of the fills",
+                    tradeId, lastTradeId);
+            fallBack();
+            return fallbackFills.get(tradeId);
+        }
+        lastTradeId = tradeId;
+        while (Objects.nonNull(current) && current.ourTradeId().compareTo(tradeId) < 0) {
+            advance();
+        }
+        return Objects.nonNull(current) && current.ourTradeId().equals(tradeId) ? current : null;
+    }
+
+    /**
+     * Reads the fills left, so that they are all checked for order and counted like in a HASH join, then closes them.
+     */
+    @Override
+    public void close() {
+        try {
+            while (Objects.isNull(fallbackFills) && Objects.nonNull(current)) {
+                advance();
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+    private void advance() {
+        FillRecord next = fills.hasNext() ? fills.next() : null;
+        if (Objects.nonNull(next) && Objects.nonNull(current) && next.ourTradeId().compareTo(current.ourTradeId()) <= 0) {
+            throw new TransformerException(("Fills are not sorted by trade ID: fill %s of trade %s comes after fill %s of trade %s, "
+                    + "earlier trades may have missed their fill. Use fills-join = hash for unsorted fills").formatted(
+                    next.externalRefId(), next.ourTradeId(), current.externalRefId(), current.ourTradeId()));
+        }
+        current = next;
+    }
+
+    private void fallBack() {
+        try {
+            fallbackFills = fallback.load();
+        } catch (CsvReaderException e) {
+            throw new TransformerException("Failed to load fills after trades turned out not to be sorted by trade ID", e);
+        }
+        stream.close();
+        current = null;
+    }
+}
@@ -0,0 +1,208 @@
+package com.onechronos.darkpool.etl.transform;
+
+import com.onechronos.darkpool.etl.model.CleanedTradeRecord;
+import com.onechronos.darkpool.etl.model.ExceptionDetails;
+import com.onechronos.darkpool.etl.model.ExceptionRecord;
+import com.onechronos.darkpool.etl.model.FillRecord;
+import com.onechronos.darkpool.etl.model.RawData;
+import com.onechronos.darkpool.etl.model.TradeRecord;
+import com.onechronos.darkpool.etl.model.enums.TradeStatus;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Binary layout of the records in the partition files of a GraceHashJoin.
+ * Strings are written as a UTF-8 byte length followed by the bytes, with a length of -1 for null, like snapshots.
+ * Partition files only live for one run, so the layout carries no version.
+ */
+final class PartitionCodec {
+
+    private static final int NULL = -1;
+    private static final TradeStatus[] TRADE_STATUSES = TradeStatus.values();
+
+    private PartitionCodec() {
+    }
+
+    static void writeFill(DataOutput out, FillRecord fill) throws IOException {
+        writeString(out, fill.externalRefId());
+        writeString(out, fill.ourTradeId());
+        writeInstant(out, fill.timestamp());
+        writeString(out, fill.symbol());
+        writeInteger(out, fill.quantity());
+        out.writeLong(fill.price());
+        writeString(out, fill.counterpartyId());
+    }
+
+    static FillRecord readFill(DataInput in) throws IOException {
+        return new FillRecord(
+                readString(in),
+                readString(in),
+                readInstant(in),
+                readString(in),
+                readInteger(in),
+                in.readLong(),
+                readString(in)
+        );
+    }
+
+    /**
+     * Writes a trade with its raw row expanded, as the handle may point into a file region that is gone once read back.
+     */
+    static void writeTrade(DataOutput out, TradeRecord trade) throws IOException {
+        writeString(out, trade.tradeId());
+        writeInstant(out, trade.timestamp());
+        writeString(out, trade.symbol());
+        writeInteger(out, trade.quantity());
+        out.writeLong(trade.price());
+        writeString(out, trade.buyerId());
+        writeString(out, trade.sellerId());
+        out.writeByte(trade.tradeStatus() == null ? NULL : trade.tradeStatus().ordinal());
+        writeRawData(out, trade.rawData());
+    }
+
+    static TradeRecord readTrade(DataInput in) throws IOException {
+        String tradeId = readString(in);
+        Instant timestamp = readInstant(in);
+        String symbol = readString(in);
+        Integer quantity = readInteger(in);
+        long price = in.readLong();
+        String buyerId = readString(in);
+        String sellerId = readString(in);
+        int tradeStatus = in.readByte();
+        if (tradeStatus < NULL || tradeStatus >= TRADE_STATUSES.length) {
+            throw new StreamCorruptedException("Invalid trade status in partition: " + tradeStatus);
+        }
+        return new TradeRecord(tradeId, timestamp, symbol, quantity, price, buyerId, sellerId,
+                tradeStatus == NULL ? null : TRADE_STATUSES[tradeStatus], readRawData(in));
+    }
+
+    static void writeCleanedTrade(DataOutput out, CleanedTradeRecord trade) throws IOException {
+        writeString(out, trade.tradeId());
+        writeInstant(out, trade.timestampUtc());
+        writeString(out, trade.symbol());
+        writeInteger(out, trade.quantity());
+        out.writeLong(trade.price());
+        writeString(out, trade.buyerId());
+        writeString(out, trade.sellerId());
+        writeBoolean(out, trade.counterpartyConfirmed());
+        writeBoolean(out, trade.discrepancyFlag());
+    }
+
+    static CleanedTradeRecord readCleanedTrade(DataInput in) throws IOException {
+        return new CleanedTradeRecord(
+                readString(in),
+                readInstant(in),
+                readString(in),
+                readInteger(in),
+                in.readLong(),
+                readString(in),
+                readString(in),
+                readBoolean(in),
+                readBoolean(in)
+        );
+    }
+
+    static void writeException(DataOutput out, ExceptionRecord exception) throws IOException {
+        writeString(out, exception.recordId());
+        writeString(out, exception.sourceFile());
+        writeString(out, exception.exceptionType());
+        writeString(out, exception.details().toString());
+        writeRawData(out, exception.rawData());
+    }
+
+    static ExceptionRecord readException(DataInput in) throws IOException {
+        return new ExceptionRecord(
+                readString(in),
+                readString(in),
+                readString(in),
+                ExceptionDetails.of(readString(in)),
+                readRawData(in)
+        );
+    }
+
+    private static void writeRawData(DataOutput out, RawData rawData) throws IOException {
+        Map<String, String> fields = rawData.expand();
+        out.writeInt(fields.size());
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            writeString(out, field.getKey());
+            writeString(out, field.getValue());
+        }
+    }
+
+    private static RawData readRawData(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            throw new StreamCorruptedException("Invalid raw data size in partition: " + size);
+        }
+        if (size == 0) {
+            return RawData.EMPTY;
+        }
+        Map<String, String> fields = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            fields.put(readString(in), readString(in));
+        }
+        return RawData.of(fields);
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL) {
+            return null;
+        }
+        if (length < 0) {
+            throw new StreamCorruptedException("Invalid string length in partition: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeInteger(DataOutput out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readInteger(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    private static void writeBoolean(DataOutput out, Boolean value) throws IOException {
+        out.writeByte(value == null ? NULL : value ? 1 : 0);
+    }
+
+    private static Boolean readBoolean(DataInput in) throws IOException {
+        int value = in.readByte();
+        return value == NULL ? null : value == 1;
+    }
+
+    private static void writeInstant(DataOutput out, Instant value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.getEpochSecond());
+            out.writeInt(value.getNano());
+        }
+    }
+
+    private static Instant readInstant(DataInput in) throws IOException {
+        return in.readBoolean() ? Instant.ofEpochSecond(in.readLong(), in.readInt()) : null;
+    }
+}
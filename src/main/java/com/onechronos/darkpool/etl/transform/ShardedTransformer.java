@@ -0,0 +1,244 @@
+package com.onechronos.darkpool.etl.transform;
+
+import com.onechronos.darkpool.etl.exception.TransformerException;
+import com.onechronos.darkpool.etl.model.TradeRecord;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parallel transform stage: trades are sharded by a hash of their trade ID over one worker per Transformer, each with
+ * trade IDs seen of its own, so that workers share no mutable state and take no lock.
+ * - Every trade carries its row number, its position among the trades submitted. All the trades of an ID go to the
+ * same shard, so a duplicate always meets the first occurrence of its ID there
+ * - Trades are handed to the shards by a single thread in row order, and each shard transforms them in the order
+ * received, so the trade kept is the one with the lowest row number, like in a sequential run. A shard fails the run
+ * with an IllegalStateException if its row numbers ever go backwards
+ * - Results are emitted in row order on the submitting thread, interleaved with the actions passed to inOrder, so the
+ * outputs are the same as those of a sequential run
+ * - Trades are handed over in batches, and at most IN_FLIGHT_PER_SHARD trades per shard wait for their result,
+ * bounding memory whatever the skew between shards
+ * - With a dedup window, every shard is first moved to the latest timestamp of the trades submitted so far, so trade
+ * IDs expire at the same trades as in a sequential run
+ * The Transformers must not share anything mutable, e.g. their fills must be a HASH join.
+ * Not thread-safe: submit, inOrder and finish are called from one thread.
+ */
+public final class ShardedTransformer implements Closeable {
+
+    static final int BATCH_SIZE = 256;
+    static final int IN_FLIGHT_PER_SHARD = 16 * BATCH_SIZE;
+
+    /**
+     * Receives the results in row order, on the submitting thread.
+     */
+    @FunctionalInterface
+    public interface Output {
+        void result(TransformerResult result);
+    }
+
+    private record Task(long row, TradeRecord trade, Path sourceFile, Instant latest) {
+    }
+
+    /**
+     * Results of a batch of tasks, or the failure that stopped it.
+     */
+    private record Results(List<TransformerResult> results, RuntimeException failure) {
+    }
+
+    private final Shard[] shards;
+    private final ExecutorService workers;
+    private final Output output;
+    private final int maxInFlight;
+    // Step emitting each submitted trade or inOrder action, in row order
+    private final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+    private long nextRow;
+    private Instant latest = Instant.MIN;
+
+    private ShardedTransformer(List<Transformer> transformers, Output output) {
+        this.shards = transformers.stream().map(Shard::new).toArray(Shard[]::new);
+        this.workers = Executors.newFixedThreadPool(shards.length, workerThreadFactory());
+        this.output = output;
+        this.maxInFlight = shards.length * IN_FLIGHT_PER_SHARD;
+    }
+
+    /**
+     * Starts one worker per Transformer.
+     *
+     * @param transformers one per shard, each with trade IDs seen of its own
+     * @param output       receives the results in row order
+     */
+    public static ShardedTransformer start(List<Transformer> transformers, Output output) {
+        if (transformers.isEmpty()) {
+            throw new IllegalArgumentException("At least one Transformer is needed");
+        }
+        ShardedTransformer sharded = new ShardedTransformer(transformers, output);
+        for (Shard shard : sharded.shards) {
+            sharded.workers.execute(shard::work);
+        }
+        return sharded;
+    }
+
+    /**
+     * Hands the next trade to the shard of its trade ID. Its result is emitted once every earlier trade's is.
+     *
+     * @throws TransformerException if an earlier trade failed to transform
+     */
+    public void submit(TradeRecord trade, Path sourceFile) throws TransformerException {
+        if (Objects.nonNull(trade.timestamp()) && trade.timestamp().isAfter(latest)) {
+            latest = trade.timestamp();
+        }
+        Shard shard = shards[(int) Long.remainderUnsigned(DiskTradeIdDedup.hash(trade.tradeId()), shards.length)];
+        shard.add(new Task(nextRow++, trade, sourceFile, latest));
+        pending.add(shard.emitNext);
+        while (pending.size() > maxInFlight) {
+            pending.poll().run();
+        }
+    }
+
+    /**
+     * Runs an action once the results of every trade submitted so far are emitted, e.g. to write a parse failure
+     * between the trades of the rows around it.
+     */
+    public void inOrder(Runnable action) {
+        pending.add(action);
+    }
+
+    /**
+     * Emits the results of every trade submitted so far.
+     *
+     * @throws TransformerException if a trade failed to transform
+     */
+    public void finish() throws TransformerException {
+        for (Shard shard : shards) {
+            shard.dispatch();
+        }
+        while (!pending.isEmpty()) {
+            pending.poll().run();
+        }
+    }
+
+    /**
+     * Stops the workers, dropping the trades whose results were not emitted yet.
+     */
+    @Override
+    public void close() {
+        workers.shutdownNow();
+        try {
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadFactory workerThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "transformer-%d".formatted(counter.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Transformer of a shard, with its queues to and from its worker.
+     */
+    private final class Shard {
+        private final Transformer transformer;
+        private final BlockingQueue<List<Task>> tasks = new LinkedBlockingQueue<>();
+        private final BlockingQueue<Results> results = new LinkedBlockingQueue<>();
+        private final Runnable emitNext = this::emitNext;
+
+        // Submitting thread
+        private List<Task> batch = new ArrayList<>(BATCH_SIZE);
+        private int batchesInFlight;
+        private Iterator<TransformerResult> received = Collections.emptyIterator();
+
+        // Worker thread
+        private long lastRow = -1;
+
+        private Shard(Transformer transformer) {
+            this.transformer = transformer;
+        }
+
+        private void add(Task task) {
+            batch.add(task);
+            if (batch.size() == BATCH_SIZE) {
+                dispatch();
+            }
+        }
+
+        private void dispatch() {
+            if (!batch.isEmpty()) {
+                tasks.add(batch);
+                batchesInFlight++;
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+
+        /**
+         * Emits the result of the oldest trade of the shard not emitted yet, waiting for its batch if needed.
+         */
+        private void emitNext() {
+            if (!received.hasNext()) {
+                if (batchesInFlight == 0) {
+                    dispatch(); // The trade is still in the batch being filled
+                }
+                Results next;
+                try {
+                    next = results.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new TransformerException("Interrupted while waiting for transformed trades", e);
+                }
+                batchesInFlight--;
+                if (Objects.nonNull(next.failure())) {
+                    throw next.failure();
+                }
+                received = next.results().iterator();
+            }
+            output.result(received.next());
+        }
+
+        private void work() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    results.add(transform(tasks.take()));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private Results transform(List<Task> batch) {
+            try {
+                List<TransformerResult> transformed = new ArrayList<>(batch.size());
+                for (Task task : batch) {
+                    if (task.row() <= lastRow) {
+                        throw new IllegalStateException("Trade of row %d reached its shard after row %d: the first occurrence of its ID is unknown"
+                                .formatted(task.row(), lastRow));
+                    }
+                    lastRow = task.row();
+                    transformer.advanceTo(task.latest());
+                    transformed.add(transformer.transform(task.trade(), task.sourceFile()));
+                }
+                return new Results(transformed, null);
+            } catch (RuntimeException e) {
+                return new Results(List.of(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.onechronos.darkpool.etl.transform;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Immutable file of trade IDs sorted by hash, spilled by DiskTradeIdDedup.
+ * - Entries are a 64-bit hash, a UTF-8 byte length and the bytes, sorted by hash then ID
+ * - The first hash and file offset of every block of BLOCK_ENTRIES entries are kept in heap, so a lookup reads a
+ * single block in most cases
+ * - Runs are merged sequentially into larger runs, see {@link #merge}
+ */
+final class SortedRun implements Closeable {
+
+    static final int BLOCK_ENTRIES = 512;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Trade ID and its hash, ordered by hash then ID.
+     */
+    record Entry(long hash, String tradeId) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            int byHash = Long.compare(hash, other.hash);
+            return byHash != 0 ? byHash : tradeId.compareTo(other.tradeId);
+        }
+    }
+
+    private final Path path;
+    private final int level;
+    private final long entries;
+    private final long size;
+    private final long[] blockHashes;
+    private final long[] blockOffsets;
+    private final FileChannel channel;
+    private ByteBuffer block = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private SortedRun(Path path, int level, long entries, long size, long[] blockHashes, long[] blockOffsets, FileChannel channel) {
+        this.path = path;
+        this.level = level;
+        this.entries = entries;
+        this.size = size;
+        this.blockHashes = blockHashes;
+        this.blockOffsets = blockOffsets;
+        this.channel = channel;
+    }
+
+    /**
+     * Writes sorted entries to a new run file.
+     *
+     * @param level   number of merges the entries went through, runs of the same level are about the same size
+     * @param entries in Entry order, without duplicates
+     */
+    static SortedRun write(Path path, int level, Iterator<Entry> entries) throws IOException {
+        long count = 0;
+        long offset = 0;
+        long[] blockHashes = new long[16];
+        long[] blockOffsets = new long[16];
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE))) {
+            while (entries.hasNext()) {
+                Entry entry = entries.next();
+                if (count % BLOCK_ENTRIES == 0) {
+                    int blockIndex = (int) (count / BLOCK_ENTRIES);
+                    if (blockIndex == blockHashes.length) {
+                        blockHashes = Arrays.copyOf(blockHashes, blockIndex * 2);
+                        blockOffsets = Arrays.copyOf(blockOffsets, blockIndex * 2);
+                    }
+                    blockHashes[blockIndex] = entry.hash();
+                    blockOffsets[blockIndex] = offset;
+                }
+                byte[] bytes = entry.tradeId().getBytes(StandardCharsets.UTF_8);
+                out.writeLong(entry.hash());
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                offset += Long.BYTES + Integer.BYTES + bytes.length;
+                count++;
+            }
+        }
+        int blocks = (int) ((count + BLOCK_ENTRIES - 1) / BLOCK_ENTRIES);
+        return new SortedRun(path, level, count, offset,
+                Arrays.copyOf(blockHashes, blocks), Arrays.copyOf(blockOffsets, blocks),
+                FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    /**
+     * Merges runs holding distinct trade IDs into one run of the next level. The merged runs are left untouched.
+     */
+    static SortedRun merge(Path path, List<SortedRun> runs) throws IOException {
+        int level = runs.stream().mapToInt(SortedRun::level).max().orElse(0) + 1;
+        PriorityQueue<Cursor> heads = new PriorityQueue<>();
+        try {
+            for (SortedRun run : runs) {
+                Cursor cursor = run.cursor();
+                if (cursor.advance()) {
+                    heads.add(cursor);
+                } else {
+                    cursor.close();
+                }
+            }
+            Iterator<Entry> merged = new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return !heads.isEmpty();
+                }
+
+                @Override
+                public Entry next() {
+                    Cursor head = heads.poll();
+                    if (head == null) {
+                        throw new NoSuchElementException();
+                    }
+                    Entry entry = head.current;
+                    try {
+                        if (head.advance()) {
+                            heads.add(head);
+                        } else {
+                            head.close();
+                        }
+                    } catch (IOException e) {
+                        closeQuietly(head);
+                        throw new UncheckedIOException(e);
+                    }
+                    return entry;
+                }
+            };
+            return write(path, level, merged);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (Cursor cursor : heads) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * @return true if the run holds the trade ID
+     */
+    boolean contains(long hash, String tradeId) throws IOException {
+        if (entries == 0) {
+            return false;
+        }
+        byte[] expected = tradeId.getBytes(StandardCharsets.UTF_8);
+
+        // Start from the last block whose first hash is lower: entries with this hash may begin at the end of it
+        int low = 0;
+        int high = blockHashes.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (blockHashes[middle] < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        for (int blockIndex = Math.max(0, low - 1); blockIndex < blockHashes.length; blockIndex++) {
+            if (blockHashes[blockIndex] > hash) {
+                return false;
+            }
+            ByteBuffer entriesOfBlock = readBlock(blockIndex);
+            while (entriesOfBlock.hasRemaining()) {
+                long entryHash = entriesOfBlock.getLong();
+                int length = entriesOfBlock.getInt();
+                if (entryHash > hash) {
+                    return false;
+                }
+                if (entryHash == hash && length == expected.length
+                        && entriesOfBlock.slice(entriesOfBlock.position(), length).equals(ByteBuffer.wrap(expected))) {
+                    return true;
+                }
+                entriesOfBlock.position(entriesOfBlock.position() + length);
+            }
+        }
+        return false;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // Already failing on another error
+        }
+    }
+
+    int level() {
+        return level;
+    }
+
+    long entries() {
+        return entries;
+    }
+
+    /**
+     * Closes and deletes the run file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private ByteBuffer readBlock(int blockIndex) throws IOException {
+        long start = blockOffsets[blockIndex];
+        long end = blockIndex + 1 < blockOffsets.length ? blockOffsets[blockIndex + 1] : size;
+        int length = (int) (end - start);
+        if (block.capacity() < length) {
+            block = ByteBuffer.allocate(length);
+        }
+        block.clear().limit(length);
+        while (block.hasRemaining()) {
+            if (channel.read(block, start + block.position()) < 0) {
+                throw new EOFException("%s is shorter than its index".formatted(path));
+            }
+        }
+        return block.flip();
+    }
+
+    private Cursor cursor() throws IOException {
+        return new Cursor(new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE)), entries);
+    }
+
+    /**
+     * Sequential reader of the entries of a run, for merges.
+     */
+    private static final class Cursor implements Comparable<Cursor>, Closeable {
+        private final DataInputStream in;
+        private long remaining;
+        private Entry current;
+
+        private Cursor(DataInputStream in, long entries) {
+            this.in = in;
+            this.remaining = entries;
+        }
+
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                current = null;
+                return false;
+            }
+            remaining--;
+            long hash = in.readLong();
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            current = new Entry(hash, new String(bytes, StandardCharsets.UTF_8));
+            return true;
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            return current.compareTo(other.current);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
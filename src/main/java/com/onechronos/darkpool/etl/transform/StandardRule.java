@@ -0,0 +1,78 @@
+package com.onechronos.darkpool.etl.transform;
+
+import com.onechronos.darkpool.etl.model.ExceptionDetails;
+import com.onechronos.darkpool.etl.model.FillRecord;
+import com.onechronos.darkpool.etl.model.SymbolRefRecord;
+import com.onechronos.darkpool.etl.model.TradeRecord;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Rules of the Transformer, in priority order:
+ * - INVALID_SYMBOL: symbol in trade record not found in symbol references
+ * - INACTIVE_SYMBOL: symbol in trade record is inactive
+ * - FILL_SYMBOL_MISMATCH: trade record and fill record symbols differ
+ * - FILL_TIMESTAMP_INVALID: fill record timestamp is not after trade record timestamp
+ * A trade without a fill passes both fill rules, and is written unconfirmed.
+ */
+public enum StandardRule implements ValidationRule {
+    INVALID_SYMBOL {
+        @Override
+        public Optional<ExceptionDetails> check(ValidationContext context) {
+            return Objects.isNull(context.symbolRef())
+                    ? Optional.of(Details.INVALID_SYMBOL.with(context.trade().symbol()))
+                    : Optional.empty();
+        }
+    },
+    INACTIVE_SYMBOL {
+        @Override
+        public Optional<ExceptionDetails> check(ValidationContext context) {
+            SymbolRefRecord symbolRef = context.symbolRef();
+            return Objects.nonNull(symbolRef) && !symbolRef.isActive()
+                    ? Optional.of(Details.INACTIVE_SYMBOL.with(context.trade().symbol()))
+                    : Optional.empty();
+        }
+    },
+    FILL_SYMBOL_MISMATCH {
+        @Override
+        public Optional<ExceptionDetails> check(ValidationContext context) {
+            FillRecord fill = context.fill();
+            TradeRecord trade = context.trade();
+            return Objects.nonNull(fill) && !fill.symbol().equals(trade.symbol())
+                    ? Optional.of(Details.FILL_SYMBOL_MISMATCH.with(fill.symbol(), trade.symbol()))
+                    : Optional.empty();
+        }
+    },
+    FILL_TIMESTAMP_INVALID {
+        @Override
+        public Optional<ExceptionDetails> check(ValidationContext context) {
+            FillRecord fill = context.fill();
+            TradeRecord trade = context.trade();
+            return Objects.nonNull(fill) && !fill.timestamp().isAfter(trade.timestamp())
+                    ? Optional.of(Details.FILL_TIMESTAMP_INVALID.with(fill.timestamp(), trade.timestamp()))
+                    : Optional.empty();
+        }
+    };
+
+    /**
+     * Every standard rule, in priority order.
+     */
+    public static final List<ValidationRule> ALL = List.of(values());
+
+    @Override
+    public String exceptionType() {
+        return name();
+    }
+
+    /**
+     * Templates of the details of each rule, named after it.
+     */
+    private static final class Details {
+        static final ExceptionDetails.Template INVALID_SYMBOL = ExceptionDetails.template("Symbol in trade record not found in reference data: %s");
+        static final ExceptionDetails.Template INACTIVE_SYMBOL = ExceptionDetails.template("Symbol in trade record is inactive: %s");
+        static final ExceptionDetails.Template FILL_SYMBOL_MISMATCH = ExceptionDetails.template("Fill symbol %s does not match trade symbol %s");
+        static final ExceptionDetails.Template FILL_TIMESTAMP_INVALID = ExceptionDetails.template("Fill timestamp %s is not after trade timestamp %s");
+    }
+}
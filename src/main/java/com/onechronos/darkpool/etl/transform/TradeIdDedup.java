@@ -0,0 +1,76 @@
+package com.onechronos.darkpool.etl.transform;
+
+import com.onechronos.darkpool.etl.config.DedupConfig;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Trade IDs seen so far by the Transformer, to reject duplicate trades.
+ * Implementations decide where the IDs are kept (see DedupBackend), and must tell every ID apart exactly.
+ * IDs can expire after a DedupWindow of trade event time, see WindowedTradeIdDedup.
+ */
+public interface TradeIdDedup extends Closeable {
+
+    /**
+     * Records a trade ID.
+     *
+     * @return true if the trade ID was not seen before, false if it is a duplicate
+     * @throws java.io.UncheckedIOException if a backend keeping IDs on disk fails
+     */
+    boolean add(String tradeId);
+
+    /**
+     * Records a trade ID with the event time of its trade, which backends expiring IDs need.
+     *
+     * @return true if the trade ID was not seen before, false if it is a duplicate
+     */
+    default boolean add(String tradeId, Instant timestamp) {
+        return add(tradeId);
+    }
+
+    /**
+     * Moves the event time of the backend forward without recording a trade ID, e.g. to the latest timestamp of
+     * trades recorded in another backend, which backends expiring IDs need.
+     */
+    default void advanceTo(Instant latest) {
+    }
+
+    /**
+     * @return true if the trade ID was seen before, without recording it
+     */
+    boolean contains(String tradeId);
+
+    /**
+     * @return number of distinct trade IDs kept
+     */
+    long count();
+
+    /**
+     * Releases the resources of the backend, e.g. deletes the IDs it spilled to disk.
+     */
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * Builds the backend of the config. With a window, every bucket of the window gets a backend of its own, sized for
+     * its share of the trade IDs of a window, so that the buckets of a window together take the memory of one backend.
+     */
+    static TradeIdDedup build(DedupConfig config) throws IOException {
+        if (config.window().isPresent()) {
+            DedupWindow window = config.window().get();
+            DedupConfig bucketConfig = config.perBucket(window.bucketsPerWindow());
+            return WindowedTradeIdDedup.build(window, () -> buildBackend(bucketConfig));
+        }
+        return buildBackend(config);
+    }
+
+    private static TradeIdDedup buildBackend(DedupConfig config) throws IOException {
+        return switch (config.backend()) {
+            case MEMORY -> TradeIdSet.build();
+            case DISK -> DiskTradeIdDedup.open(config.directory(), config.expectedIds(), config.falsePositiveRate(), config.memoryIds());
+        };
+    }
+}
@@ -0,0 +1,191 @@
+package com.onechronos.darkpool.etl.transform;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Set of trade IDs specialized for the "TRD" + digits shape of our IDs, the MEMORY dedup backend.
+ * - IDs of that shape are encoded into a long (the digits, and their count so that leading zeros are kept) and stored
+ * in an open-addressing table of longs: about 11 to 21 bytes per ID, against 80+ for a HashSet entry and its String
+ * - Any other ID falls back to a HashSet, so every ID is still told apart exactly
+ * Not thread-safe, like HashSet. Removal is not supported: trade IDs are only ever added.
+ */
+public final class TradeIdSet extends AbstractSet<String> implements TradeIdDedup {
+
+    private static final String PREFIX = "TRD";
+    private static final int MAX_DIGITS = 17; // 10^17 shifted by DIGITS_BITS still fits in a long
+    private static final int DIGITS_BITS = 5;
+    private static final long NOT_ENCODABLE = -1;
+    private static final long EMPTY = 0; // Never a valid encoding: an ID has at least one digit
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] keys;
+    private int encodedSize;
+    private int resizeAt;
+    private Set<String> others;
+
+    private TradeIdSet(int capacity) {
+        this.keys = new long[capacity];
+        this.resizeAt = capacity / 4 * 3;
+    }
+
+    public static TradeIdSet build() {
+        return new TradeIdSet(INITIAL_CAPACITY);
+    }
+
+    @Override
+    public boolean add(String tradeId) {
+        long key = encode(tradeId);
+        if (key == NOT_ENCODABLE) {
+            if (others == null) {
+                others = new HashSet<>();
+            }
+            return others.add(tradeId);
+        }
+
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        if (++encodedSize > resizeAt) {
+            resize();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String tradeId)) {
+            return false;
+        }
+        long key = encode(tradeId);
+        if (key == NOT_ENCODABLE) {
+            return others != null && others.contains(tradeId);
+        }
+
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean contains(String tradeId) {
+        return contains((Object) tradeId);
+    }
+
+    @Override
+    public int size() {
+        return encodedSize + (others == null ? 0 : others.size());
+    }
+
+    @Override
+    public long count() {
+        return size();
+    }
+
+    /**
+     * Iterates the encoded IDs in table order, then the other IDs.
+     */
+    @Override
+    public Iterator<String> iterator() {
+        Iterator<String> otherIds = others == null ? null : others.iterator();
+        return new Iterator<>() {
+            private int slot = nextSlot(0);
+
+            @Override
+            public boolean hasNext() {
+                return slot < keys.length || (otherIds != null && otherIds.hasNext());
+            }
+
+            @Override
+            public String next() {
+                if (slot < keys.length) {
+                    String tradeId = decode(keys[slot]);
+                    slot = nextSlot(slot + 1);
+                    return tradeId;
+                }
+                if (otherIds == null) {
+                    throw new NoSuchElementException();
+                }
+                return otherIds.next();
+            }
+
+            private int nextSlot(int from) {
+                while (from < keys.length && keys[from] == EMPTY) {
+                    from++;
+                }
+                return from;
+            }
+        };
+    }
+
+    private void resize() {
+        long[] previous = keys;
+        keys = new long[previous.length * 2];
+        resizeAt = keys.length / 4 * 3;
+        int mask = keys.length - 1;
+        for (long key : previous) {
+            if (key != EMPTY) {
+                int slot = slot(key, mask);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+
+    /**
+     * Spreads the sequential IDs over the table (multiplicative hashing, keeping the high bits).
+     */
+    private static int slot(long key, int mask) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    /**
+     * @return digits of the ID shifted left by DIGITS_BITS, or'ed with the number of digits, or NOT_ENCODABLE
+     */
+    static long encode(String tradeId) {
+        int length = tradeId.length();
+        int digits = length - PREFIX.length();
+        if (digits < 1 || digits > MAX_DIGITS || !tradeId.startsWith(PREFIX)) {
+            return NOT_ENCODABLE;
+        }
+        long value = 0;
+        for (int i = PREFIX.length(); i < length; i++) {
+            char c = tradeId.charAt(i);
+            if (c < '0' || c > '9') {
+                return NOT_ENCODABLE;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value << DIGITS_BITS | digits;
+    }
+
+    static String decode(long key) {
+        int digits = (int) (key & ((1 << DIGITS_BITS) - 1));
+        long value = key >>> DIGITS_BITS;
+        char[] chars = new char[PREFIX.length() + digits];
+        PREFIX.getChars(0, PREFIX.length(), chars, 0);
+        Arrays.fill(chars, PREFIX.length(), chars.length, '0');
+        for (int i = chars.length - 1; value > 0; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(chars);
+    }
+}
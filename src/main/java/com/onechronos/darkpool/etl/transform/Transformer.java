@@ -6,8 +6,8 @@ import com.onechronos.darkpool.etl.model.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigDecimal;
 import java.nio.file.Path;
+import java.time.Instant;
 import java.util.*;
 
 /**
@@ -20,23 +20,32 @@ import java.util.*;
  * - Validate discrepancies in quantity and price between trade and corresponding fill record (if discrepancy found then set flags as true)
  * - Validate trade record and fill record have matching symbol (include in exception report if not matching symbols)
  * - Validate fill record timestamp occurred after trade record timestamp (include in exception report trade occurred after fill)
+ * Deduplication always runs first, the other checks are ValidationRules applied in priority order (StandardRule by
+ * default).
  */
 public class Transformer {
     private static final Logger log = LoggerFactory.getLogger(Transformer.class);
 
+    private static final ExceptionDetails.Template DUPLICATE_TRADE_ID = ExceptionDetails.template("Duplicate trade_id: %s");
+
     private final ValidationConfig validationConfig;
     private final Map<String, SymbolRefRecord> symbolMap;
-    private final Map<String, FillRecord> fillMap;
-    private final Set<String> seenTradeIds = new HashSet<>();
+    private final FillLookup fills;
+    private final TradeIdDedup seenTradeIds;
+    private final List<ValidationRule> rules;
 
     private Transformer(
             ValidationConfig validationConfig,
             Map<String, SymbolRefRecord> symbolMap,
-            Map<String, FillRecord> fillMap
+            FillLookup fills,
+            TradeIdDedup seenTradeIds,
+            List<ValidationRule> rules
     ) {
         this.validationConfig = validationConfig;
         this.symbolMap = symbolMap;
-        this.fillMap = fillMap;
+        this.fills = fills;
+        this.seenTradeIds = seenTradeIds;
+        this.rules = List.copyOf(rules);
     }
 
     public static Transformer build(
@@ -44,7 +53,47 @@ public class Transformer {
             Map<String, SymbolRefRecord> symbolMap,
             Map<String, FillRecord> fillMap
     ) {
-        return new Transformer(validationConfig, symbolMap, fillMap);
+        return new Transformer(validationConfig, symbolMap, FillLookup.of(fillMap), TradeIdSet.build(), StandardRule.ALL);
+    }
+
+    /**
+     * @param seenTradeIds trade IDs already seen, e.g. restored from a checkpoint; every new trade ID is added to it
+     */
+    public static Transformer build(
+            ValidationConfig validationConfig,
+            Map<String, SymbolRefRecord> symbolMap,
+            Map<String, FillRecord> fillMap,
+            TradeIdDedup seenTradeIds
+    ) {
+        return new Transformer(validationConfig, symbolMap, FillLookup.of(fillMap), seenTradeIds, StandardRule.ALL);
+    }
+
+    /**
+     * @param fills        fills of the trades, looked up once per trade that passes the duplicate and symbol checks
+     * @param seenTradeIds trade IDs already seen, e.g. restored from a checkpoint; every new trade ID is added to it
+     */
+    public static Transformer build(
+            ValidationConfig validationConfig,
+            Map<String, SymbolRefRecord> symbolMap,
+            FillLookup fills,
+            TradeIdDedup seenTradeIds
+    ) {
+        return new Transformer(validationConfig, symbolMap, fills, seenTradeIds, StandardRule.ALL);
+    }
+
+    /**
+     * @param fills        fills of the trades, looked up at most once per trade, by the first rule needing them
+     * @param seenTradeIds trade IDs already seen, e.g. restored from a checkpoint; every new trade ID is added to it
+     * @param rules        rules applied after deduplication, in priority order
+     */
+    public static Transformer build(
+            ValidationConfig validationConfig,
+            Map<String, SymbolRefRecord> symbolMap,
+            FillLookup fills,
+            TradeIdDedup seenTradeIds,
+            List<ValidationRule> rules
+    ) {
+        return new Transformer(validationConfig, symbolMap, fills, seenTradeIds, rules);
     }
 
     /**
@@ -64,68 +113,72 @@ public class Transformer {
      * @throws TransformerException if an unexpected exception occurs
      */
     public TransformerResult transform(TradeRecord trade, Path sourceFile) throws TransformerException {
+        return deduplicate(trade, sourceFile).orElseGet(() -> validate(trade, sourceFile));
+    }
+
+    /**
+     * First step of transform: records the trade ID, and rejects the trade if it is a duplicate.
+     * Trades must be deduplicated in row order, so that the first occurrence of a trade ID is the one kept.
+     *
+     * @return rejected result if the trade ID was seen before, empty otherwise
+     * @throws TransformerException if an unexpected exception occurs
+     */
+    public Optional<TransformerResult> deduplicate(TradeRecord trade, Path sourceFile) throws TransformerException {
         try {
-            // Check for duplicates
-            if (!seenTradeIds.add(trade.tradeId())) {
-                log.debug("Duplicate trade_id: {}", trade.tradeId());
-                return TransformerResult.rejected(new ExceptionRecord(
-                        trade.tradeId(),
-                        sourceFile.toString(),
-                        "DUPLICATE_TRADE_ID",
-                        "Duplicate trade_id: " + trade.tradeId(),
-                        trade.rawData()
-                ));
+            if (seenTradeIds.add(trade.tradeId(), trade.timestamp())) {
+                return Optional.empty();
             }
+            log.debug("Duplicate trade_id: {}", trade.tradeId());
+            return Optional.of(TransformerResult.rejected(new ExceptionRecord(
+                    trade.tradeId(),
+                    sourceFile.toString(),
+                    "DUPLICATE_TRADE_ID",
+                    DUPLICATE_TRADE_ID.with(trade.tradeId()),
+                    trade.rawData()
+            )));
+        } catch (Exception e) {
+            throw new TransformerException("Fatal Error while transforming Trade Record", e);
+        }
+    }
 
-            // Check for Symbol validity
-            SymbolRefRecord tradeSymbolRef = symbolMap.get(trade.symbol());
-            if (Objects.isNull(tradeSymbolRef)) {
-                return TransformerResult.rejected(new ExceptionRecord(
-                        trade.tradeId(),
-                        sourceFile.toString(),
-                        "INVALID_SYMBOL",
-                        "Symbol in trade record not found in reference data: " + trade.symbol(),
-                        trade.rawData()
-                ));
-            }
-            if (!tradeSymbolRef.isActive()) {
-                return TransformerResult.rejected(new ExceptionRecord(
-                        trade.tradeId(),
-                        sourceFile.toString(),
-                        "INACTIVE_SYMBOL",
-                        "Symbol in trade record is inactive: " + trade.symbol(),
-                        trade.rawData()
-                ));
-            }
+    /**
+     * Moves the event time of the trade IDs seen forward, for a Transformer that only sees some of the trades (see
+     * ShardedTransformer) and still has to expire trade IDs with the latest timestamp of all of them.
+     */
+    public void advanceTo(Instant latest) {
+        seenTradeIds.advanceTo(latest);
+    }
 
-            FillRecord fill = fillMap.get(trade.tradeId());
+    /**
+     * Rest of transform, for a trade already deduplicated: applies the rules in priority order, the first one
+     * rejecting the trade being reported, and flags discrepancies with the fill of a valid trade.
+     * Records nothing itself, so that against a map of fills trades can be validated in any order, e.g. partition by
+     * partition.
+     *
+     * @return TransformerResult either containing CleanedTradeRecord or ExceptionRecord
+     * @throws TransformerException if an unexpected exception occurs
+     */
+    public TransformerResult validate(TradeRecord trade, Path sourceFile) throws TransformerException {
+        try {
+            ValidationContext context = new ValidationContext(trade, symbolMap, fills);
+            for (ValidationRule rule : rules) {
+                Optional<ExceptionDetails> details = rule.check(context);
+                if (details.isPresent()) {
+                    return TransformerResult.rejected(new ExceptionRecord(
+                            trade.tradeId(),
+                            sourceFile.toString(),
+                            rule.exceptionType(),
+                            details.get(),
+                            trade.rawData()
+                    ));
+                }
+            }
 
             // Check for discrepancy validity
+            FillRecord fill = context.fill();
             boolean counterpartyConfirmed = Objects.nonNull(fill);
             boolean discrepancyFlag = counterpartyConfirmed && hasDiscrepancy(trade, fill);
 
-            // Validate fill symbol matches trade symbol
-            if (counterpartyConfirmed && !fill.symbol().equals(trade.symbol())) {
-                return TransformerResult.rejected(new ExceptionRecord(
-                        trade.tradeId(),
-                        sourceFile.toString(),
-                        "FILL_SYMBOL_MISMATCH",
-                        "Fill symbol %s does not match trade symbol %s".formatted(fill.symbol(), trade.symbol()),
-                        trade.rawData()
-                ));
-            }
-
-            // Validate fill timestamp is after trade timestamp
-            if (counterpartyConfirmed && !fill.timestamp().isAfter(trade.timestamp())) {
-                return TransformerResult.rejected(new ExceptionRecord(
-                        trade.tradeId(),
-                        sourceFile.toString(),
-                        "FILL_TIMESTAMP_INVALID",
-                        "Fill timestamp %s is not after trade timestamp %s".formatted(fill.timestamp(), trade.timestamp()),
-                        trade.rawData()
-                ));
-            }
-
             return TransformerResult.clean(new CleanedTradeRecord(
                     trade.tradeId(),
                     trade.timestamp(),
@@ -146,9 +199,9 @@ public class Transformer {
      * Validate discrepancies in quantity and price between trade and corresponding fill record
      */
     private boolean hasDiscrepancy(TradeRecord trade, FillRecord fill) {
-        BigDecimal priceDiff = trade.price().subtract(fill.price()).abs();
+        long priceDiff = Math.abs(trade.price() - fill.price());
 
-        boolean priceDiscrepancy = priceDiff.compareTo(validationConfig.priceDiscrepancyThreshold()) > 0;
+        boolean priceDiscrepancy = priceDiff > validationConfig.priceDiscrepancyThreshold();
 
         boolean quantityDiscrepancy = !trade.quantity().equals(fill.quantity());
 
@@ -0,0 +1,56 @@
+package com.onechronos.darkpool.etl.transform;
+
+import com.onechronos.darkpool.etl.model.FillRecord;
+import com.onechronos.darkpool.etl.model.SymbolRefRecord;
+import com.onechronos.darkpool.etl.model.TradeRecord;
+
+import java.util.Map;
+
+/**
+ * Trade validated by the ValidationRules of a Transformer, with its symbol reference and its fill.
+ * Both are looked up the first time a rule asks for them and kept for the next rules, so the fill is only looked up
+ * for trades that pass the rules before the first one needing it.
+ * Not thread-safe: one context per trade.
+ */
+public final class ValidationContext {
+    private final TradeRecord trade;
+    private final Map<String, SymbolRefRecord> symbolMap;
+    private final FillLookup fills;
+
+    private SymbolRefRecord symbolRef;
+    private boolean symbolLooked;
+    private FillRecord fill;
+    private boolean fillLooked;
+
+    ValidationContext(TradeRecord trade, Map<String, SymbolRefRecord> symbolMap, FillLookup fills) {
+        this.trade = trade;
+        this.symbolMap = symbolMap;
+        this.fills = fills;
+    }
+
+    public TradeRecord trade() {
+        return trade;
+    }
+
+    /**
+     * @return reference data of the symbol of the trade, null if the symbol is unknown
+     */
+    public SymbolRefRecord symbolRef() {
+        if (!symbolLooked) {
+            symbolRef = symbolMap.get(trade.symbol());
+            symbolLooked = true;
+        }
+        return symbolRef;
+    }
+
+    /**
+     * @return fill of the trade, null if the counterparty did not confirm it
+     */
+    public FillRecord fill() {
+        if (!fillLooked) {
+            fill = fills.find(trade.tradeId());
+            fillLooked = true;
+        }
+        return fill;
+    }
+}
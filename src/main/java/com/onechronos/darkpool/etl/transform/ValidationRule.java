@@ -0,0 +1,29 @@
+package com.onechronos.darkpool.etl.transform;
+
+import com.onechronos.darkpool.etl.model.ExceptionDetails;
+
+import java.util.Optional;
+
+/**
+ * Check applied by the Transformer to a trade it already deduplicated, rejecting the trade with an exception type of
+ * its own.
+ * - Rules are applied in priority order, and the first rule rejecting a trade is the one reported, so the exception
+ * type of a trade breaking several rules is always the same
+ * - Deduplication is not a rule: it always runs first, since every trade ID has to be recorded, whatever the rules
+ * - Lookups of the symbol and of the fill are shared by every rule of a trade, see ValidationContext
+ * Rules may be called concurrently from several Transformers, so they must be stateless.
+ * Rejections are counted per exception type by AppMetrics.
+ */
+public interface ValidationRule {
+
+    /**
+     * @return exception type of the trades this rule rejects, e.g. "INVALID_SYMBOL"
+     */
+    String exceptionType();
+
+    /**
+     * @return details of the exception report if the trade breaks this rule, empty if it passes; details are best
+     * built from a constant ExceptionDetails.Template, so that they are only rendered when written
+     */
+    Optional<ExceptionDetails> check(ValidationContext context);
+}
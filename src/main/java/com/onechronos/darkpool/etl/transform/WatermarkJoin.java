@@ -0,0 +1,250 @@
+package com.onechronos.darkpool.etl.transform;
+
+import com.onechronos.darkpool.etl.model.FillRecord;
+import com.onechronos.darkpool.etl.model.TradeRecord;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/**
+ * STREAM join of trades with fills read concurrently, e.g. live feeds where the fill of a trade arrives seconds after
+ * it. Neither side is loaded first: trades and fills are added as they arrive, from one thread.
+ * - The fill watermark is the latest fill timestamp minus the lag: every fill before it is assumed to have arrived
+ * - A trade is deduplicated on arrival, in row order. It is validated at once if its fill already arrived or the
+ * watermark already passed it, otherwise it is buffered
+ * - A buffered trade is validated as soon as its fill arrives (matched late), or without a fill, unconfirmed, once the
+ * watermark passes its timestamp
+ * - A fill is kept until the trade watermark (latest trade timestamp minus the lag) passes the latest trade timestamp
+ * when the fill arrived, as its trade cannot arrive after that. Eviction goes by arrival rather than by the fill's own
+ * timestamp, so that a fill timestamped well before its trade still reaches the fill rules
+ * - A fill behind the fill watermark when it arrives is late: its trade may already have been written unconfirmed
+ * - Results are emitted in trade row order, interleaved with the actions passed to inOrder
+ * With a lag longer than the delay of any fill after its trade and than the disorder of either side, the outputs are
+ * those of a HASH join.
+ * Not thread-safe.
+ */
+public final class WatermarkJoin {
+
+    /**
+     * Receives the results in row order.
+     */
+    @FunctionalInterface
+    public interface Output {
+        void result(TransformerResult result);
+    }
+
+    /**
+     * Receives the measures of the join as trades and fills are added.
+     */
+    public interface Metrics {
+        /**
+         * @param trades trades held, waiting for their fill, for the watermark or for an earlier trade
+         * @param fills  fills kept for trades yet to arrive or to match
+         */
+        void buffered(int trades, int fills);
+
+        /**
+         * @param lag how far the fill watermark is behind the latest trade, i.e. how long new trades wait in event time
+         */
+        void watermarkLag(Duration lag);
+
+        /**
+         * A fill arrived behind the fill watermark.
+         */
+        void lateFill();
+
+        /**
+         * A buffered trade was matched by a fill arriving after it.
+         */
+        void matchedLate();
+    }
+
+    /**
+     * Fill with the latest trade timestamp when it arrived, Instant.MIN if no trade had arrived yet.
+     */
+    private record KeptFill(FillRecord fill, Instant arrival) {
+    }
+
+    /**
+     * Trade in row order, with its result once known, or an action run in order.
+     */
+    private static final class Entry {
+        private final TradeRecord trade;
+        private final Path sourceFile;
+        private final Runnable action;
+        private TransformerResult result;
+
+        private Entry(TradeRecord trade, Path sourceFile, Runnable action) {
+            this.trade = trade;
+            this.sourceFile = sourceFile;
+            this.action = action;
+        }
+
+        private boolean isDone() {
+            return Objects.nonNull(action) || Objects.nonNull(result);
+        }
+    }
+
+    private final Duration lag;
+    private final Transformer transformer;
+    private final Output output;
+    private final Metrics metrics;
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private final Map<String, Entry> waiting = new HashMap<>();
+    private final PriorityQueue<Entry> waitingByTime = new PriorityQueue<>(Comparator.comparing((Entry entry) -> entry.trade.timestamp()));
+    private final Map<String, FillRecord> fills = new HashMap<>();
+    // In arrival order, which is also the order of their arrival timestamps
+    private final ArrayDeque<KeptFill> fillsByArrival = new ArrayDeque<>();
+    private Instant firstTrade = Instant.MIN;
+    private Instant latestTrade = Instant.MIN;
+    private Instant latestFill = Instant.MIN;
+    private boolean fillsEnded;
+
+    private WatermarkJoin(Duration lag, Function<FillLookup, Transformer> transformer, Output output, Metrics metrics) {
+        this.lag = lag;
+        this.transformer = transformer.apply(fills::get);
+        this.output = output;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param lag         how far the watermarks trail the latest timestamps, at least the delay of a fill after its trade
+     * @param transformer builds the Transformer validating the trades, from the fills joined so far
+     * @param output      receives the results in row order
+     */
+    public static WatermarkJoin build(Duration lag, Function<FillLookup, Transformer> transformer, Output output, Metrics metrics) {
+        if (lag.isNegative()) {
+            throw new IllegalArgumentException("Negative watermark lag: " + lag);
+        }
+        return new WatermarkJoin(lag, transformer, output, metrics);
+    }
+
+    /**
+     * Adds the next trade, in row order.
+     */
+    public void addTrade(TradeRecord trade, Path sourceFile) {
+        if (trade.timestamp().isAfter(latestTrade)) {
+            if (latestTrade == Instant.MIN) {
+                firstTrade = trade.timestamp();
+            }
+            latestTrade = trade.timestamp();
+            evictFills();
+        }
+        Entry entry = new Entry(trade, sourceFile, null);
+        entries.add(entry);
+        Optional<TransformerResult> duplicate = transformer.deduplicate(trade, sourceFile);
+        if (duplicate.isPresent()) {
+            entry.result = duplicate.get();
+        } else if (fills.containsKey(trade.tradeId()) || trade.timestamp().isBefore(fillWatermark())) {
+            entry.result = transformer.validate(trade, sourceFile);
+        } else {
+            waiting.put(trade.tradeId(), entry);
+            waitingByTime.add(entry);
+        }
+        if (latestFill != Instant.MIN && !fillsEnded) {
+            Duration watermarkLag = Duration.between(fillWatermark(), latestTrade);
+            metrics.watermarkLag(watermarkLag.isNegative() ? Duration.ZERO : watermarkLag);
+        }
+        emit();
+    }
+
+    /**
+     * Adds the next fill, in arrival order.
+     */
+    public void addFill(FillRecord fill) {
+        if (fill.timestamp().isBefore(fillWatermark())) {
+            metrics.lateFill();
+        }
+        if (fills.putIfAbsent(fill.ourTradeId(), fill) == null) {
+            fillsByArrival.add(new KeptFill(fill, latestTrade));
+        }
+        Entry entry = waiting.remove(fill.ourTradeId());
+        if (Objects.nonNull(entry)) {
+            entry.result = transformer.validate(entry.trade, entry.sourceFile);
+            metrics.matchedLate();
+        }
+        if (fill.timestamp().isAfter(latestFill)) {
+            latestFill = fill.timestamp();
+            release();
+        }
+        emit();
+    }
+
+    /**
+     * Runs an action once the results of every trade added so far are emitted, e.g. to write a parse failure between
+     * the trades of the rows around it.
+     */
+    public void inOrder(Runnable action) {
+        entries.add(new Entry(null, null, action));
+        emit();
+    }
+
+    /**
+     * No fill will arrive anymore: every buffered trade is validated unconfirmed, and so are the next trades.
+     */
+    public void endOfFills() {
+        fillsEnded = true;
+        release();
+        emit();
+    }
+
+    private Instant fillWatermark() {
+        if (fillsEnded) {
+            return Instant.MAX;
+        }
+        return latestFill == Instant.MIN ? Instant.MIN : latestFill.minus(lag);
+    }
+
+    /**
+     * Validates the buffered trades the fill watermark passed, which will not be matched anymore.
+     */
+    private void release() {
+        Instant watermark = fillWatermark();
+        while (!waitingByTime.isEmpty() && waitingByTime.peek().trade.timestamp().isBefore(watermark)) {
+            Entry entry = waitingByTime.poll();
+            if (Objects.isNull(entry.result)) {
+                waiting.remove(entry.trade.tradeId(), entry);
+                entry.result = transformer.validate(entry.trade, entry.sourceFile);
+            }
+        }
+    }
+
+    /**
+     * Drops the fills whose arrival the trade watermark passed, whose trade would already have arrived. Fills that
+     * arrived before any trade count as arriving with the first trade.
+     */
+    private void evictFills() {
+        Instant watermark = latestTrade.minus(lag);
+        while (!fillsByArrival.isEmpty()) {
+            KeptFill kept = fillsByArrival.peek();
+            Instant arrival = kept.arrival() == Instant.MIN ? firstTrade : kept.arrival();
+            if (!arrival.isBefore(watermark)) {
+                break;
+            }
+            fillsByArrival.poll();
+            fills.remove(kept.fill().ourTradeId(), kept.fill());
+        }
+    }
+
+    private void emit() {
+        while (!entries.isEmpty() && entries.peek().isDone()) {
+            Entry entry = entries.poll();
+            if (Objects.nonNull(entry.action)) {
+                entry.action.run();
+            } else {
+                output.result(entry.result);
+            }
+        }
+        metrics.buffered(entries.size(), fills.size());
+    }
+}
@@ -0,0 +1,134 @@
+package com.onechronos.darkpool.etl.transform;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Dedup backend whose trade IDs expire after a DedupWindow of trade event time.
+ * - IDs are added to the bucket of their trade timestamp, each bucket being a dedup backend of its own
+ * - A trade is a duplicate if its ID is in any bucket still in the window
+ * - When the latest timestamp moves forward, buckets out of the window are closed and dropped whole
+ * - A late trade whose bucket was already dropped is added to the oldest bucket still in the window
+ * Trade IDs added without a timestamp go to the bucket of the latest timestamp seen.
+ */
+final class WindowedTradeIdDedup implements TradeIdDedup {
+    private static final Logger log = LoggerFactory.getLogger(WindowedTradeIdDedup.class);
+
+    /**
+     * Builds the backend of a new bucket.
+     */
+    @FunctionalInterface
+    interface BucketFactory {
+        TradeIdDedup build() throws IOException;
+    }
+
+    private final DedupWindow window;
+    private final BucketFactory buckets;
+    private final TreeMap<Long, TradeIdDedup> bucketsByKey = new TreeMap<>();
+    private Instant latest = Instant.MIN;
+    private long expired;
+
+    private WindowedTradeIdDedup(DedupWindow window, BucketFactory buckets) {
+        this.window = window;
+        this.buckets = buckets;
+    }
+
+    static WindowedTradeIdDedup build(DedupWindow window, BucketFactory buckets) {
+        log.info("Trade IDs expire {}", window);
+        return new WindowedTradeIdDedup(window, buckets);
+    }
+
+    @Override
+    public boolean add(String tradeId) {
+        return add(tradeId, latest == Instant.MIN ? Instant.EPOCH : latest);
+    }
+
+    @Override
+    public boolean add(String tradeId, Instant timestamp) {
+        advanceTo(timestamp);
+        if (contains(tradeId)) {
+            return false;
+        }
+        return bucket(Math.max(window.bucketOf(timestamp), window.oldestBucket(latest))).add(tradeId, timestamp);
+    }
+
+    @Override
+    public void advanceTo(Instant timestamp) {
+        if (timestamp.isAfter(latest)) {
+            latest = timestamp;
+            expire(window.oldestBucket(latest));
+        }
+    }
+
+    @Override
+    public boolean contains(String tradeId) {
+        // Newest first: duplicates are usually close in time
+        for (TradeIdDedup bucket : bucketsByKey.descendingMap().values()) {
+            if (bucket.contains(tradeId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return number of trade IDs still in the window
+     */
+    @Override
+    public long count() {
+        return bucketsByKey.values().stream().mapToLong(TradeIdDedup::count).sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.info("Expired {} trade IDs, {} still in the window", expired, count());
+        IOException failure = null;
+        for (TradeIdDedup bucket : bucketsByKey.values()) {
+            try {
+                bucket.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        bucketsByKey.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private TradeIdDedup bucket(long key) {
+        TradeIdDedup bucket = bucketsByKey.get(key);
+        if (bucket == null) {
+            try {
+                bucket = buckets.build();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to create a trade ID bucket", e);
+            }
+            bucketsByKey.put(key, bucket);
+        }
+        return bucket;
+    }
+
+    private void expire(long oldestBucket) {
+        Iterator<Map.Entry<Long, TradeIdDedup>> outOfWindow = bucketsByKey.headMap(oldestBucket).entrySet().iterator();
+        while (outOfWindow.hasNext()) {
+            TradeIdDedup bucket = outOfWindow.next().getValue();
+            long count = bucket.count();
+            try {
+                bucket.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to drop an expired trade ID bucket", e);
+            }
+            outOfWindow.remove();
+            expired += count;
+            log.debug("Dropped {} expired trade IDs", count);
+        }
+    }
+}
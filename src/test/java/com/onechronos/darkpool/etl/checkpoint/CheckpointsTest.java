@@ -0,0 +1,130 @@
+package com.onechronos.darkpool.etl.checkpoint;
+
+import com.onechronos.darkpool.etl.config.DedupConfig;
+import com.onechronos.darkpool.etl.extract.ReadPosition;
+import com.onechronos.darkpool.etl.load.JsonWriterPosition;
+import com.onechronos.darkpool.etl.metrics.TradeCounts;
+import com.onechronos.darkpool.etl.model.enums.TimestampFormat;
+import com.onechronos.darkpool.etl.transform.DedupWindow;
+import com.onechronos.darkpool.etl.transform.TradeIdDedup;
+import com.onechronos.darkpool.etl.transform.TradeIdSet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CheckpointsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void resumesFromTheLastCheckpointWithTheTradeIdsSeenBeforeIt() throws IOException {
+        Path trades = Files.writeString(tempDir.resolve("trades.csv"), "trade_id\nT1\nT2\nT1\nT3\n");
+        Path directory = tempDir.resolve("checkpoints");
+
+        try (Checkpoints checkpoints = Checkpoints.build(directory, 2, trades)) {
+            TradeIdDedup seen = checkpoints.start(Optional.empty(), TradeIdSet.build());
+            seen.add("T1");
+            checkpoints.rowProcessed(() -> checkpoint(seen.count()));
+            seen.add("T2");
+            checkpoints.rowProcessed(() -> checkpoint(seen.count())); // Checkpoint after 2 rows
+            seen.add("T1");
+            seen.add("T3");
+            checkpoints.rowProcessed(() -> checkpoint(seen.count())); // Interrupted before the next checkpoint
+        }
+
+        try (Checkpoints checkpoints = Checkpoints.build(directory, 2, trades)) {
+            Optional<Checkpoint> checkpoint = checkpoints.load();
+            assertThat(checkpoint).contains(checkpoint(2));
+
+            TradeIdSet restored = TradeIdSet.build();
+            TradeIdDedup seen = checkpoints.start(checkpoint, restored);
+            assertThat(restored).containsExactlyInAnyOrder("T1", "T2");
+            assertThat(seen.add("T3")).isTrue();
+            assertThat(seen.add("T1")).isFalse();
+
+            checkpoints.complete();
+        }
+
+        assertThat(Checkpoints.build(directory, 2, trades).load()).isEmpty();
+    }
+
+    @Test
+    void restoresTradeIdsWithTimestampsBeyondTheRangeOfEpochMillis() throws IOException {
+        Path trades = Files.writeString(tempDir.resolve("trades.csv"), "trade_id\nT1\nT2\n");
+        Path directory = tempDir.resolve("checkpoints");
+        DedupConfig windowed = new DedupConfig(DedupConfig.MEMORY.backend(), DedupConfig.MEMORY.directory(), DedupConfig.MEMORY.expectedIds(),
+                DedupConfig.MEMORY.falsePositiveRate(), DedupConfig.MEMORY.memoryIds(), Optional.of(DedupWindow.sliding(Duration.ofHours(1))));
+        Instant farFuture = Instant.ofEpochSecond(9_300_000_000_000_000L, 123);
+
+        try (Checkpoints checkpoints = Checkpoints.build(directory, 2, trades);
+             TradeIdDedup backend = TradeIdDedup.build(windowed)) {
+            TradeIdDedup seen = checkpoints.start(Optional.empty(), backend);
+            assertThat(seen.add("T1", farFuture)).isTrue();
+            checkpoints.rowProcessed(() -> checkpoint(seen.count()));
+            assertThat(seen.add("T2", Instant.MAX)).isTrue();
+            checkpoints.rowProcessed(() -> checkpoint(seen.count()));
+        }
+
+        try (Checkpoints checkpoints = Checkpoints.build(directory, 2, trades);
+             TradeIdDedup backend = TradeIdDedup.build(windowed)) {
+            TradeIdDedup seen = checkpoints.start(checkpoints.load(), backend);
+            assertThat(seen.count()).isEqualTo(2);
+            assertThat(seen.add("T1", farFuture)).isFalse();
+            assertThat(seen.add("T2", Instant.MAX)).isFalse();
+        }
+    }
+
+    @Test
+    void refusesACheckpointTakenOnAnotherTradesFile() throws IOException {
+        Path trades = Files.writeString(tempDir.resolve("trades.csv"), "trade_id\nT1\n");
+        Path directory = tempDir.resolve("checkpoints");
+        try (Checkpoints checkpoints = Checkpoints.build(directory, 1, trades)) {
+            checkpoints.start(Optional.empty(), TradeIdSet.build()).add("T1");
+            checkpoints.rowProcessed(() -> checkpoint(1));
+        }
+
+        Files.writeString(trades, "trade_id\nT1\nT2\n");
+
+        assertThatThrownBy(() -> Checkpoints.build(directory, 1, trades).load())
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("has changed");
+    }
+
+    @Test
+    void disabledCheckpointsAreNeverWritten() throws IOException {
+        try (Checkpoints checkpoints = Checkpoints.disabled()) {
+            TradeIdSet tradeIds = TradeIdSet.build();
+            TradeIdDedup seen = checkpoints.start(Optional.empty(), tradeIds);
+            seen.add("T1");
+            checkpoints.rowProcessed(() -> checkpoint(1));
+
+            assertThat(checkpoints.load()).isEmpty();
+            assertThat(seen).isSameAs(tradeIds);
+            assertThat(tradeIds).containsExactly("T1");
+        }
+        try (var files = Files.list(tempDir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    private static Checkpoint checkpoint(long tradeIds) {
+        return new Checkpoint(
+                new ReadPosition(40 + tradeIds, 2 + tradeIds),
+                new JsonWriterPosition(100, 3, 200, 4),
+                tradeIds,
+                new TradeCounts(tradeIds, 1, 3, 4, 0, Map.of("DUPLICATE_TRADE_ID", 4L)),
+                Map.of(TimestampFormat.ISO_8601, tradeIds)
+        );
+    }
+}
@@ -8,6 +8,7 @@ import com.onechronos.darkpool.etl.model.enums.TradeStatus;
 import org.junit.jupiter.api.Test;
 
 import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -33,7 +34,7 @@ class CsvMappersTest {
         TradeRecord trade = result.parsedRow().get();
         assertThat(trade.tradeId()).isEqualTo("TRD001");
         assertThat(trade.symbol()).isEqualTo("AAPL");
-        assertThat(trade.price()).isEqualByComparingTo("150.00");
+        assertThat(trade.price()).isEqualTo(15000);
         assertThat(trade.tradeStatus()).isEqualTo(TradeStatus.EXECUTED);
     }
 
@@ -56,7 +57,7 @@ class CsvMappersTest {
         assertThat(result.exception()).isPresent();
         assertThat(result.exception().get().exceptionType()).isEqualTo("PARSE_ERROR");
         assertThat(result.exception().get().sourceFile()).isEqualTo("test.csv");
-        assertThat(result.exception().get().details()).contains("price");
+        assertThat(result.exception().get().details().toString()).contains("price");
     }
 
     @Test
@@ -78,7 +79,7 @@ class CsvMappersTest {
         assertThat(fill.externalRefId()).isEqualTo("EXT001");
         assertThat(fill.ourTradeId()).isEqualTo("TRD001");
         assertThat(fill.symbol()).isEqualTo("MSFT");
-        assertThat(fill.price()).isEqualByComparingTo("299.99");
+        assertThat(fill.price()).isEqualTo(29999);
     }
 
     @Test
@@ -97,7 +98,7 @@ class CsvMappersTest {
 
         assertThat(result.isSuccess()).isFalse();
         assertThat(result.exception().get().sourceFile()).isEqualTo("test.csv");
-        assertThat(result.exception().get().details()).contains("quantity");
+        assertThat(result.exception().get().details().toString()).contains("quantity");
     }
 
     @Test
@@ -131,7 +132,7 @@ class CsvMappersTest {
 
         assertThat(result.isSuccess()).isFalse();
         assertThat(result.exception().get().sourceFile()).isEqualTo("test.csv");
-        assertThat(result.exception().get().details()).contains("sector");
+        assertThat(result.exception().get().details().toString()).contains("sector");
     }
 
 
@@ -167,6 +168,54 @@ class CsvMappersTest {
         assertThat(CsvMappers.toTradeRecord(row, Path.of("test.csv")).isSuccess()).isTrue();
     }
 
+    @Test
+    void reportsEveryInvalidFieldInColumnOrder() {
+        CsvRow row = row(7L, Map.of(
+                "trade_id", "TRD005",
+                "symbol", "AAPL",
+                "buyer_id", "BUY1",
+                "timestamp", "yesterday",
+                "price", "-1.00",
+                "quantity", "2147483648",
+                "trade_status", "PENDING"
+        ));
+
+        CsvReaderRowResult<TradeRecord> result = CsvMappers.toTradeRecord(row, Path.of("test.csv"));
+
+        assertThat(result.exception().get().recordId()).isEqualTo("TRD005");
+        assertThat(result.exception().get().details()).hasToString("Row 7: "
+                + "Missing required field: seller_id; "
+                + "Field timestamp contains unparsable timestamp: yesterday; "
+                + "Price must be positive: -1.00; "
+                + "Field quantity contains unparsable integer: 2147483648; "
+                + "Field trade_status contains unparsable trade status: PENDING");
+    }
+
+    @Test
+    void matchesOnlyCancelledTradesThatWouldParse() {
+        Map<String, String> cancelled = new HashMap<>(Map.of(
+                "trade_id", "TRD006",
+                "symbol", "AAPL",
+                "buyer_id", "BUY1",
+                "seller_id", "SEL1",
+                "timestamp", "2024-01-15T10:00:00Z",
+                "price", "150.00",
+                "quantity", "100",
+                "trade_status", "cancelled"
+        ));
+        FieldParsers fieldParsers = FieldParsers.build();
+
+        assertThat(CsvMappers.isCancelledTrade(row(2L, cancelled), fieldParsers)).isTrue();
+
+        cancelled.put("price", "abc");
+        assertThat(CsvMappers.isCancelledTrade(row(2L, cancelled), fieldParsers)).isFalse();
+        assertThat(CsvMappers.toTradeRecord(row(2L, cancelled), Path.of("test.csv")).exception()).isPresent();
+
+        cancelled.put("price", "150.00");
+        cancelled.put("trade_status", "EXECUTED");
+        assertThat(CsvMappers.isCancelledTrade(row(2L, cancelled), fieldParsers)).isFalse();
+    }
+
     private CsvRow row(long rowNumber, Map<String, String> data) {
         return new CsvRow(rowNumber, data);
     }
@@ -1,16 +1,34 @@
 package com.onechronos.darkpool.etl.extract;
 
+import com.github.luben.zstd.Zstd;
 import com.onechronos.darkpool.etl.exception.CsvReaderException;
+import com.onechronos.darkpool.etl.model.ExceptionDetails;
 import com.onechronos.darkpool.etl.model.ExceptionRecord;
+import com.onechronos.darkpool.etl.model.RawData;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.GZIPOutputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -123,6 +141,383 @@ class CsvReaderTest {
         assertThat(results.get(0).parsedRow().get().get("value")).isNull();
     }
 
+    @Test
+    void keepsHeaderOrderAndReadsByColumn() throws IOException, CsvReaderException {
+        Path csv = writeCsv("""
+                zeta,alpha,mid
+                1,2,3
+                """);
+        CsvColumn alpha = CsvColumn.named("alpha");
+
+        List<CsvRow> rows;
+        try (var stream = csvReader.readFile(csv, CsvReaderRowResult::success)) {
+            rows = stream.map(r -> r.parsedRow().get()).toList();
+        }
+
+        assertThat(rows.get(0).data().keySet()).containsExactly("zeta", "alpha", "mid");
+        assertThat(rows.get(0).get(alpha)).isEqualTo("2");
+        assertThat(rows.get(0).get(CsvColumn.named("missing"))).isNull();
+    }
+
+    @Test
+    void rawHandleExpandsTheOriginalLine() throws IOException, CsvReaderException {
+        Path csv = writeCsv("""
+                id,name,value
+                1," foo, bar ",
+                """);
+
+        for (CsvReaderEngine engine : CsvReaderEngine.values()) {
+            List<RawData> raw;
+            try (var stream = CsvReader.build(engine).readFile(csv, row -> CsvReaderRowResult.success(row.raw()))) {
+                raw = stream.map(r -> r.parsedRow().get()).toList();
+            }
+
+            Map<String, String> expanded = raw.get(0).expand();
+            assertThat(expanded.keySet()).containsExactly("id", "name", "value");
+            assertThat(expanded.get("name")).isEqualTo("foo, bar");
+            assertThat(expanded.get("value")).isNull();
+        }
+    }
+
+    @Test
+    void skipsRowsMatchingThePredicateWithoutMappingThem() throws IOException, CsvReaderException {
+        Path csv = writeCsv("""
+                id,status
+                1,EXECUTED
+                2,CANCELLED
+                3,EXECUTED
+                """);
+
+        for (CsvReader reader : List.of(CsvReader.build(), CsvReader.build(CsvReaderEngine.MAPPED), CsvReader.build(2, 8))) {
+            List<String> mapped = new ArrayList<>();
+            List<CsvReaderRowResult<String>> results;
+            try (var stream = reader.readFile(
+                    csv,
+                    row -> "CANCELLED".equals(row.get("status")),
+                    row -> {
+                        synchronized (mapped) {
+                            mapped.add(row.get("id"));
+                        }
+                        return CsvReaderRowResult.success(row.get("id"));
+                    })) {
+                results = stream.toList();
+            }
+
+            assertThat(results).hasSize(3);
+            assertThat(results.get(1).isSkipped()).isTrue();
+            assertThat(results.get(2).parsedRow()).contains("3");
+            assertThat(mapped).containsExactlyInAnyOrder("1", "3");
+        }
+    }
+
+    @Test
+    void mappedEngineMatchesBufferedEngine() throws IOException, CsvReaderException {
+        Path csv = writeCsv("id,name,value\r\n1,\"foo, bar\", 100 \r\n\r\n2,bär\n  \n3\n4,\"\",x,extra");
+
+        assertThat(readAll(CsvReader.build(CsvReaderEngine.MAPPED), csv))
+                .isEqualTo(readAll(CsvReader.build(CsvReaderEngine.BUFFERED), csv));
+    }
+
+    @Test
+    void mappedEngineDecodesFieldsAndLineNumbers() throws IOException, CsvReaderException {
+        Path csv = writeCsv("""
+                id,name
+                1,"foo, bar"
+
+                2,bar
+                """);
+
+        List<CsvRow> rows;
+        try (var stream = CsvReader.build(CsvReaderEngine.MAPPED).readFile(csv, CsvReaderRowResult::success)) {
+            rows = stream.map(r -> r.parsedRow().get()).toList();
+        }
+
+        assertThat(rows).hasSize(2);
+        assertThat(rows.get(0).rowNumber()).isEqualTo(2L);
+        assertThat(rows.get(0).data()).containsEntry("name", "foo, bar");
+        assertThat(rows.get(1).rowNumber()).isEqualTo(4L);
+        assertThat(rows.get(1).data().get("value")).isNull();
+    }
+
+    @Test
+    void mappedEngineThrowsOnEmptyFile() throws IOException {
+        Path csv = writeCsv("");
+
+        assertThatThrownBy(() -> CsvReader.build(CsvReaderEngine.MAPPED).readFile(csv, CsvReaderRowResult::success))
+                .isInstanceOf(CsvReaderException.class)
+                .hasMessageContaining("Empty CSV file");
+    }
+
+    @Test
+    void mappedFileRemapsLinesCrossingTheWindow() throws IOException {
+        Path csv = writeCsv("a,b\r\n10,20\r\n30,40\r\n50,60");
+
+        List<String> lines = new ArrayList<>();
+        try (MappedCsvFile file = MappedCsvFile.open(csv, 6)) {
+            while (file.nextLine()) {
+                lines.add(file.lineAsString());
+            }
+        }
+
+        assertThat(lines).containsExactly("a,b", "10,20", "30,40", "50,60");
+    }
+
+    @Test
+    void parallelChunksMatchSequentialRead() throws IOException, CsvReaderException {
+        StringBuilder content = new StringBuilder("id,name,value\n");
+        for (int i = 0; i < 200; i++) {
+            content.append(i).append(",\"name, ").append(i).append("\",").append(i * 10).append(i % 7 == 0 ? "\r\n\n" : "\n");
+        }
+        Path csv = writeCsv(content.toString());
+
+        assertThat(readAll(CsvReader.build(4, 16), csv))
+                .hasSize(200)
+                .isEqualTo(readAll(CsvReader.build(), csv));
+    }
+
+    @Test
+    void parallelReadThrowsOnEmptyFile() throws IOException {
+        Path csv = writeCsv("");
+
+        assertThatThrownBy(() -> CsvReader.build(4, 16).readFile(csv, CsvReaderRowResult::success))
+                .isInstanceOf(CsvReaderException.class)
+                .hasMessageContaining("Empty CSV file");
+    }
+
+    @Test
+    void readsGzipAndZstdFilesLikePlainFiles() throws IOException, CsvReaderException {
+        StringBuilder content = new StringBuilder("id,name,value\n");
+        for (int i = 0; i < 100_000; i++) {
+            content.append(i).append(",\"name, ").append(i).append("\",").append(i * 10).append('\n');
+        }
+        Path csv = writeCsv(content.toString());
+        byte[] bytes = Files.readAllBytes(csv);
+
+        Path gzip = tempDir.resolve("test.csv.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzip))) {
+            out.write(bytes);
+        }
+        Path zstd = tempDir.resolve("test.csv.zst");
+        Files.write(zstd, Zstd.compress(bytes));
+        // Detected from the magic bytes when the extension does not tell
+        Path gzipWithoutExtension = Files.copy(gzip, tempDir.resolve("gzip.csv"));
+
+        List<Map<String, String>> expected = readAll(CsvReader.build(), csv);
+        assertThat(expected).hasSize(100_000);
+        assertThat(readAll(CsvReader.build(), gzip)).isEqualTo(expected);
+        assertThat(readAll(CsvReader.build(CsvReaderEngine.MAPPED), zstd)).isEqualTo(expected);
+        assertThat(readAll(CsvReader.build(4, 1024), gzipWithoutExtension)).isEqualTo(expected);
+    }
+
+    @Test
+    void throwsOnEmptyCompressedFile() throws IOException {
+        Path gzip = tempDir.resolve("empty.csv.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzip))) {
+            out.flush();
+        }
+
+        assertThatThrownBy(() -> csvReader.readFile(gzip, CsvReaderRowResult::success))
+                .isInstanceOf(CsvReaderException.class)
+                .hasMessageContaining("Empty CSV file");
+    }
+
+    @Test
+    void vectorTokenizerReadsLikeScalar() throws IOException, CsvReaderException {
+        Path csv = writeCsv("""
+                id,name,comment
+                1,foo,"a long comment, with a comma, that spans more than one block of sixty four bytes"
+                2,"bar, baz",
+
+                3,"say ""hi"" twice",end
+                """);
+
+        assertThat(readAll(CsvReader.build(CsvReaderEngine.MAPPED, CsvTokenizer.VECTOR), csv))
+                .isEqualTo(readAll(CsvReader.build(CsvReaderEngine.MAPPED, CsvTokenizer.SCALAR), csv))
+                .isEqualTo(readAll(CsvReader.build(), csv));
+    }
+
+    @Test
+    void resumesFromTheProgressOfAnInterruptedRead() throws IOException, CsvReaderException {
+        Path csv = writeCsv("id,name\r\n1,foo\r\n\r\n2,bär\r\n3,baz\r\n4,qux");
+        ReadProgress progress = ReadProgress.from(ReadPosition.START);
+
+        List<String> firstNames;
+        try (var stream = csvReader.readFile(csv, progress, row -> false, row -> CsvReaderRowResult.success(row.get("name")))) {
+            firstNames = stream.limit(2).map(r -> r.parsedRow().get()).toList();
+        }
+        ReadPosition interrupted = progress.position();
+
+        List<CsvRow> rest;
+        try (var stream = csvReader.readFile(csv, ReadProgress.from(interrupted), row -> false, CsvReaderRowResult::success)) {
+            rest = stream.map(r -> r.parsedRow().get()).toList();
+        }
+
+        assertThat(firstNames).containsExactly("foo", "bär");
+        assertThat(interrupted.lineNumber()).isEqualTo(5);
+        assertThat(rest).extracting(row -> row.get("name")).containsExactly("baz", "qux");
+        assertThat(rest).extracting(CsvRow::rowNumber).containsExactly(5L, 6L);
+    }
+
+    @Test
+    void readsSeveralFilesInOrderAsOneStream() throws IOException, CsvReaderException {
+        List<Path> files = new ArrayList<>();
+        StringBuilder expected = new StringBuilder();
+        for (int file = 0; file < 5; file++) {
+            StringBuilder content = new StringBuilder("id,name\n");
+            for (int row = 0; row < 3000; row++) {
+                content.append(row).append(",f").append(file).append('\n');
+            }
+            files.add(Files.writeString(tempDir.resolve("trades-%d.csv".formatted(file)), content));
+            expected.append(content, "id,name\n".length(), content.length());
+        }
+
+        StringBuilder read = new StringBuilder();
+        try (var stream = csvReader.readFiles(files, path -> row -> row.get("id").equals("7"),
+                path -> row -> CsvReaderRowResult.success(row.get("id") + "," + row.get("name") + "\n"))) {
+            stream.forEach(r -> read.append(r.parsedRow().orElse("7,skipped\n")));
+        }
+
+        assertThat(read.toString()).isEqualTo(expected.toString().replaceAll("(?m)^7,f\\d$", "7,skipped"));
+    }
+
+    @Test
+    void readsAColumnByIndexFromFilesWithDifferentHeaders() throws IOException, CsvReaderException {
+        CsvColumn name = CsvColumn.named("name");
+        List<Path> files = new ArrayList<>();
+        for (int file = 0; file < 4; file++) {
+            StringBuilder content = new StringBuilder(file % 2 == 0 ? "id,name\n" : "name,extra,id\n");
+            for (int row = 0; row < 3000; row++) {
+                content.append(file % 2 == 0 ? row + ",f" + file : "f" + file + ",x," + row).append('\n');
+            }
+            files.add(Files.writeString(tempDir.resolve("trades-%d.csv".formatted(file)), content));
+        }
+
+        List<String> names;
+        try (var stream = csvReader.readFiles(files, path -> row -> false, path -> row -> CsvReaderRowResult.success(row.get(name)))) {
+            names = stream.map(r -> r.parsedRow().get()).toList();
+        }
+
+        assertThat(names).hasSize(12_000);
+        for (int file = 0; file < 4; file++) {
+            assertThat(names.subList(file * 3000, (file + 1) * 3000)).containsOnly("f" + file);
+        }
+    }
+
+    @Test
+    void readFilesThrowsOnAMissingOrEmptyFileBeforeReading() throws IOException {
+        Path csv = Files.writeString(tempDir.resolve("trades-0.csv"), "id,name\n1,foo\n");
+        Path empty = Files.writeString(tempDir.resolve("trades-1.csv"), "");
+
+        assertThatThrownBy(() -> csvReader.readFiles(List.of(csv, empty), path -> row -> false, path -> CsvReaderRowResult::success))
+                .isInstanceOf(CsvReaderException.class)
+                .hasMessageContaining("Empty CSV file");
+        assertThatThrownBy(() -> csvReader.readFiles(List.of(csv, tempDir.resolve("missing.csv")), path -> row -> false, path -> CsvReaderRowResult::success))
+                .isInstanceOf(CsvReaderException.class)
+                .hasMessageContaining("missing or unreadable");
+    }
+
+    @Test
+    void followsCompleteLinesAppendedToTheFile() throws IOException, CsvReaderException {
+        Path csv = writeCsv("id,name\n1,foo\n2,b");
+        FollowMode follow = FollowMode.build(Duration.ofMillis(20));
+        List<String> appends = new ArrayList<>(List.of("ar\n3,baz\n", "4,incomplete"));
+        follow.onIdle(() -> {
+            try {
+                if (appends.isEmpty()) {
+                    follow.stop();
+                } else {
+                    Files.writeString(csv, appends.remove(0), StandardOpenOption.APPEND);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        List<String> names;
+        try (var stream = csvReader.followFile(csv, follow, row -> false, row -> CsvReaderRowResult.success(row.get("name")))) {
+            names = stream.map(r -> r.parsedRow().get()).toList();
+        }
+
+        assertThat(names).containsExactly("foo", "bar", "baz");
+    }
+
+    @Test
+    @EnabledOnOs({OS.LINUX, OS.MAC})
+    void failsWhenTheFollowedFileIsReplacedByRename() throws IOException, CsvReaderException {
+        Path csv = writeCsv("id,name\n1,foo\n");
+        Path rotated = Files.writeString(tempDir.resolve("rotated.csv"), "id,name\n2,bar\n");
+        FollowMode follow = FollowMode.build(Duration.ofMillis(20));
+        follow.onIdle(() -> {
+            try {
+                Files.move(rotated, csv, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        List<String> names = new ArrayList<>();
+        assertThatThrownBy(() -> {
+            try (var stream = csvReader.followFile(csv, follow, row -> false, row -> CsvReaderRowResult.success(row.get("name")))) {
+                stream.forEach(r -> names.add(r.parsedRow().get()));
+            }
+        }).hasStackTraceContaining("was replaced by another file");
+        assertThat(names).containsExactly("foo");
+    }
+
+    @Test
+    void readsStandardInput() throws IOException, CsvReaderException {
+        Path csv = writeCsv("""
+                id,name
+                1,foo
+                2,bar
+                """);
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(gzip)) {
+            out.write(Files.readAllBytes(csv));
+        }
+
+        InputStream stdin = System.in;
+        try {
+            System.setIn(new ByteArrayInputStream(gzip.toByteArray()));
+            assertThat(readAll(CsvReader.build(CsvReaderEngine.MAPPED), Path.of(CsvReader.STDIN)))
+                    .isEqualTo(readAll(csvReader, csv));
+        } finally {
+            System.setIn(stdin);
+        }
+    }
+
+    @Test
+    @EnabledOnOs({OS.LINUX, OS.MAC})
+    void readsNamedPipeAsRowsArrive() throws Exception {
+        Path fifo = tempDir.resolve("trades.fifo");
+        assertThat(new ProcessBuilder("mkfifo", fifo.toString()).start().waitFor()).isZero();
+
+        CountDownLatch firstRowMapped = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            try (OutputStream out = Files.newOutputStream(fifo)) {
+                out.write("id,name\n1,foo\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                // The second row is only written once the first one went through the mapper
+                firstRowMapped.await();
+                out.write("2,bar\n".getBytes(StandardCharsets.UTF_8));
+            } catch (IOException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        writer.start();
+
+        List<String> names;
+        try (var stream = CsvReader.build(4, 16).readFile(fifo, row -> {
+            firstRowMapped.countDown();
+            return CsvReaderRowResult.success(row.get("name"));
+        })) {
+            names = stream.map(r -> r.parsedRow().get()).toList();
+        }
+        writer.join();
+
+        assertThat(names).containsExactly("foo", "bar");
+    }
+
     @Test
     void isSuccessAndContainsValue() {
         CsvReaderRowResult<String> result = CsvReaderRowResult.success("hello");
@@ -134,7 +529,7 @@ class CsvReaderTest {
 
     @Test
     void isNotSuccessAndContainsException() {
-        ExceptionRecord ex = new ExceptionRecord("ID1", "trades.csv", "PARSE_ERROR", "bad row", Map.of());
+        ExceptionRecord ex = new ExceptionRecord("ID1", "trades.csv", "PARSE_ERROR", ExceptionDetails.of("bad row"), RawData.EMPTY);
         CsvReaderRowResult<String> result = CsvReaderRowResult.failure(ex);
 
         assertThat(result.isSuccess()).isFalse();
@@ -152,6 +547,16 @@ class CsvReaderTest {
         assertThat(row.data()).containsEntry("id", "1").containsEntry("name", "foo");
     }
 
+    private List<Map<String, String>> readAll(CsvReader reader, Path csv) throws CsvReaderException {
+        try (var stream = reader.readFile(csv, row -> {
+            Map<String, String> data = new HashMap<>(row.data());
+            data.put("#row", String.valueOf(row.rowNumber()));
+            return CsvReaderRowResult.success(data);
+        })) {
+            return stream.map(r -> r.parsedRow().get()).toList();
+        }
+    }
+
     private Path writeCsv(String content) throws IOException {
         Path file = tempDir.resolve("test.csv");
         Files.writeString(file, content);
@@ -0,0 +1,42 @@
+package com.onechronos.darkpool.etl.extract;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PriceParserTest {
+
+    @Test
+    void parsesHundredthsRoundedHalfUp() {
+        for (PriceParser parser : PriceParser.values()) {
+            assertThat(parser.hundredths("171.48")).isEqualTo(17148);
+            assertThat(parser.hundredths("171.475")).isEqualTo(17148);
+            assertThat(parser.hundredths("171.47499999")).isEqualTo(17147);
+            assertThat(parser.hundredths("100.4")).isEqualTo(10040);
+            assertThat(parser.hundredths("42")).isEqualTo(4200);
+            assertThat(parser.hundredths(" -0.005 ")).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void fixedPointMatchesDecimal() {
+        List<String> values = List.of(
+                "0", "0.00", ".5", "5.", "+1.005", "-1.005", "1e2", "1.2345E-1", "12345678901234567.891",
+                "100.14999998999999", "1.2.3", "abc", "", "-", ".", "1,000", "١٢٣"
+        );
+
+        for (String value : values) {
+            assertThat(PriceParser.FIXED_POINT.hundredths(value))
+                    .as(value)
+                    .isEqualTo(PriceParser.DECIMAL.hundredths(value));
+        }
+    }
+
+    @Test
+    void returnsUnparsableForNonNumbers() {
+        assertThat(PriceParser.FIXED_POINT.hundredths("12.3.4")).isEqualTo(PriceParser.UNPARSABLE);
+        assertThat(PriceParser.DECIMAL.hundredths("12.3.4")).isEqualTo(PriceParser.UNPARSABLE);
+    }
+}
@@ -0,0 +1,105 @@
+package com.onechronos.darkpool.etl.extract;
+
+import com.onechronos.darkpool.etl.exception.CsvReaderException;
+import com.onechronos.darkpool.etl.model.FillRecord;
+import com.onechronos.darkpool.etl.model.SymbolRefRecord;
+import com.onechronos.darkpool.etl.model.enums.Sector;
+import com.onechronos.darkpool.etl.model.enums.TimestampFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SnapshotCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicInteger parses = new AtomicInteger();
+
+    @Test
+    void parsesOnceThenLoadsUnchangedSourceFromSnapshot() throws IOException, CsvReaderException {
+        Path fills = Files.writeString(tempDir.resolve("fills.csv"), "header\nrow\n");
+        SnapshotCache cache = SnapshotCache.build(tempDir.resolve("snapshots"), "DECIMAL");
+        Snapshot<FillRecord> parsed = fillsSnapshot();
+
+        Snapshot<FillRecord> first = cache.load(fills, SnapshotCodec.FILLS, () -> parse(parsed));
+        Snapshot<FillRecord> second = cache.load(fills, SnapshotCodec.FILLS, () -> parse(parsed));
+
+        assertThat(parses).hasValue(1);
+        assertThat(first).isSameAs(parsed);
+        assertThat(second).isEqualTo(parsed);
+    }
+
+    @Test
+    void reparsesWhenSourceOrVariantChanges() throws IOException, CsvReaderException {
+        Path symbols = Files.writeString(tempDir.resolve("symbols.csv"), "header\nrow\n");
+        Path directory = tempDir.resolve("snapshots");
+        Snapshot<SymbolRefRecord> parsed = new Snapshot<>(
+                List.of(new SymbolRefRecord("AAPL", "Apple Inc.", Sector.TECHNOLOGY, true),
+                        new SymbolRefRecord("OLD", null, null, false)),
+                3, 1, Map.of());
+
+        SnapshotCache.build(directory, "DECIMAL").load(symbols, SnapshotCodec.SYMBOLS, () -> parse(parsed));
+        SnapshotCache.build(directory, "FIXED_POINT").load(symbols, SnapshotCodec.SYMBOLS, () -> parse(parsed));
+        Files.writeString(symbols, "header\nother row\n");
+        SnapshotCache.build(directory, "FIXED_POINT").load(symbols, SnapshotCodec.SYMBOLS, () -> parse(parsed));
+
+        assertThat(parses).hasValue(3);
+        assertThat(SnapshotCache.build(directory, "FIXED_POINT").load(symbols, SnapshotCodec.SYMBOLS, () -> parse(parsed)))
+                .isEqualTo(parsed);
+        assertThat(parses).hasValue(3);
+    }
+
+    @Test
+    void fallsBackToSourceWhenSnapshotIsCorrupt() throws IOException, CsvReaderException {
+        Path fills = Files.writeString(tempDir.resolve("fills.csv"), "header\nrow\n");
+        Path directory = tempDir.resolve("snapshots");
+        SnapshotCache cache = SnapshotCache.build(directory, "DECIMAL");
+        Snapshot<FillRecord> parsed = fillsSnapshot();
+
+        cache.load(fills, SnapshotCodec.FILLS, () -> parse(parsed));
+        Path snapshotFile = directory.resolve("fills-fills.csv.snapshot");
+        byte[] bytes = Files.readAllBytes(snapshotFile);
+        Files.write(snapshotFile, Arrays.copyOf(bytes, bytes.length - 10));
+
+        assertThat(cache.load(fills, SnapshotCodec.FILLS, () -> parse(parsed))).isSameAs(parsed);
+        assertThat(cache.load(fills, SnapshotCodec.FILLS, () -> parse(parsed))).isEqualTo(parsed);
+        assertThat(parses).hasValue(2);
+    }
+
+    @Test
+    void disabledCacheAlwaysParses() throws IOException, CsvReaderException {
+        Path fills = Files.writeString(tempDir.resolve("fills.csv"), "header\nrow\n");
+        SnapshotCache cache = SnapshotCache.disabled();
+
+        cache.load(fills, SnapshotCodec.FILLS, () -> parse(fillsSnapshot()));
+        cache.load(fills, SnapshotCodec.FILLS, () -> parse(fillsSnapshot()));
+
+        assertThat(parses).hasValue(2);
+        try (var files = Files.list(tempDir)) {
+            assertThat(files).containsExactly(fills);
+        }
+    }
+
+    private <T> Snapshot<T> parse(Snapshot<T> snapshot) {
+        parses.incrementAndGet();
+        return snapshot;
+    }
+
+    private static Snapshot<FillRecord> fillsSnapshot() {
+        return new Snapshot<>(
+                List.of(new FillRecord("EXT1", "TRD1", Instant.parse("2024-01-15T10:00:00.123456789Z"), "AAPL", 100, 17148, "CP1"),
+                        new FillRecord("EXT2", "TRD2", null, "Société", null, -5, null)),
+                4, 2, Map.of(TimestampFormat.ISO_8601, 1L, TimestampFormat.EPOCH, 0L));
+    }
+}
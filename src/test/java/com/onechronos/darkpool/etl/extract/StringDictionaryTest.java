@@ -0,0 +1,84 @@
+package com.onechronos.darkpool.etl.extract;
+
+import com.onechronos.darkpool.etl.exception.CsvReaderException;
+import com.onechronos.darkpool.etl.model.FillRecord;
+import com.onechronos.darkpool.etl.model.TradeRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StringDictionaryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void returnsOneInstancePerValueUpToTheSizeLimit() {
+        StringDictionary dictionary = StringDictionary.build("symbol", 2);
+
+        String aapl = dictionary.canonical(new String("AAPL"));
+        String msft = dictionary.canonical(new String("MSFT"));
+        String goog = new String("GOOG");
+
+        assertThat(dictionary.canonical(new String("AAPL"))).isSameAs(aapl);
+        assertThat(dictionary.canonical(new String("MSFT"))).isSameAs(msft);
+        assertThat(dictionary.canonical(goog)).isSameAs(goog);
+        assertThat(dictionary.canonical(new String("GOOG"))).isNotSameAs(goog).isEqualTo("GOOG");
+        assertThat(dictionary.size()).isEqualTo(2);
+    }
+
+    @Test
+    void findsAsciiBytesWithoutDecodingThem() {
+        StringDictionary dictionary = StringDictionary.build("buyer_id", StringDictionary.DEFAULT_SIZE_LIMIT);
+        for (int i = 1; i <= 30; i++) {
+            dictionary.canonical("BUY" + i);
+        }
+        String buy17 = dictionary.canonical("BUY17");
+        ByteBuffer buffer = ByteBuffer.wrap("x,BUY17,BUY99,Société".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(dictionary.find(buffer, 2, 7)).isSameAs(buy17);
+        assertThat(dictionary.find(buffer, 8, 13)).isNull();
+        assertThat(dictionary.find(buffer, 14, buffer.limit())).isNull();
+        assertThat(StringDictionary.build("buyer_id", 0).canonical(buy17)).isSameAs(buy17);
+    }
+
+    @Test
+    void tradesAndFillsShareSymbolAndIdInstances() throws IOException, CsvReaderException {
+        Path trades = Files.writeString(tempDir.resolve("trades.csv"), """
+                trade_id,symbol,buyer_id,seller_id,timestamp,price,quantity,trade_status
+                TRD1,AAPL,BUY1,SEL1,2024-01-15T10:00:00Z,150.00,100,EXECUTED
+                TRD2,aapl, BUY1 ,"SEL1",2024-01-15T10:00:01Z,150.00,100,EXECUTED
+                """);
+        Path fills = Files.writeString(tempDir.resolve("fills.csv"), """
+                external_ref_id,our_trade_id,symbol,counterparty_id,timestamp,price,quantity
+                EXT1,TRD1,AAPL,CP1,2024-01-15T10:00:00Z,150.00,100
+                """);
+        StringDictionaries dictionaries = StringDictionaries.build();
+        FieldParsers fieldParsers = FieldParsers.build(PriceParser.DECIMAL, dictionaries);
+
+        for (CsvReader reader : List.of(CsvReader.build(), CsvReader.build(CsvReaderEngine.MAPPED))) {
+            List<TradeRecord> tradeRecords = readAll(reader.readFile(trades, row -> CsvMappers.toTradeRecord(row, trades, fieldParsers)));
+            List<FillRecord> fillRecords = readAll(reader.readFile(fills, row -> CsvMappers.toFillRecord(row, fills, fieldParsers)));
+
+            assertThat(tradeRecords.get(1).symbol()).isSameAs(tradeRecords.get(0).symbol()).isSameAs(fillRecords.get(0).symbol());
+            assertThat(tradeRecords.get(1).buyerId()).isSameAs(tradeRecords.get(0).buyerId()).isEqualTo("BUY1");
+            assertThat(tradeRecords.get(1).sellerId()).isSameAs(tradeRecords.get(0).sellerId()).isEqualTo("SEL1");
+        }
+        assertThat(dictionaries.symbols().size()).isEqualTo(2); // AAPL, and aapl as it is spelled in the file
+    }
+
+    private static <T> List<T> readAll(Stream<CsvReaderRowResult<T>> stream) {
+        try (stream) {
+            return stream.map(result -> result.parsedRow().orElseThrow()).toList();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.onechronos.darkpool.etl.extract;
+
+import com.onechronos.darkpool.etl.model.enums.TimestampFormat;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimestampParserTest {
+
+    @Test
+    void parsesEachFormat() {
+        TimestampParser parser = TimestampParser.build();
+
+        assertThat(parser.parse("1705312800")).isEqualTo(Instant.parse("2024-01-15T10:00:00Z"));
+        assertThat(parser.parse("2024-01-15T10:00:00.123Z")).isEqualTo(Instant.parse("2024-01-15T10:00:00.123Z"));
+        assertThat(parser.parse("1/15/2024 10:5:7")).isEqualTo(Instant.parse("2024-01-15T10:05:07Z"));
+        assertThat(parser.parse(" 12/31/2024 23:59:59 ")).isEqualTo(Instant.parse("2024-12-31T23:59:59Z"));
+    }
+
+    @Test
+    void resolvesEdgeCasesLikeJavaTime() {
+        TimestampParser parser = TimestampParser.build();
+
+        assertThat(parser.parse("2024-02-29T23:59:59.123456789Z")).isEqualTo(Instant.parse("2024-02-29T23:59:59.123456789Z"));
+        assertThat(parser.parse("2024-01-15T10:00:00+01:00")).isEqualTo(Instant.parse("2024-01-15T09:00:00Z"));
+        assertThat(parser.parse("2/30/2023 1:1:1")).isEqualTo(Instant.parse("2023-02-28T01:01:01Z"));
+        assertThat(parser.parse("12/31/2024 24:0:0")).isEqualTo(Instant.parse("2025-01-01T00:00:00Z"));
+        assertThat(parser.parse("-1")).isEqualTo(Instant.parse("1969-12-31T23:59:59Z"));
+    }
+
+    @Test
+    void parsesEpochDigitsOfOtherScriptsLikeLongParseLong() {
+        TimestampParser parser = TimestampParser.build();
+
+        assertThat(parser.parse("\u0661\u0667\u0660\u0665\u0663\u0661\u0662\u0660\u0660\u0660")).isEqualTo(Instant.ofEpochSecond(1705312000));
+        assertThat(parser.parse("-\u0967\u0968")).isEqualTo(Instant.ofEpochSecond(-12));
+        assertThat(parser.formatCounts()).containsEntry(TimestampFormat.EPOCH, 2L);
+    }
+
+    @Test
+    void returnsNullForUnparsableValues() {
+        TimestampParser parser = TimestampParser.build();
+
+        assertThat(parser.parse("not-a-date")).isNull();
+        assertThat(parser.parse("2023-02-29T00:00:00Z")).isNull();
+        assertThat(parser.parse("13/1/2024 0:0:0")).isNull();
+        assertThat(parser.parse("1/1/24 0:0:0")).isNull();
+        assertThat(parser.parse("99999999999999999999")).isNull();
+        assertThat(parser.formatCounts()).containsValues(0L, 0L, 0L);
+    }
+
+    @Test
+    void countsFormatsIncludingMemoizedValues() {
+        TimestampParser parser = TimestampParser.build();
+
+        parser.parse("2024-01-15T10:00:00.000Z");
+        parser.parse("2024-01-15T10:00:00.000Z");
+        parser.parse("1705312800");
+
+        assertThat(parser.formatCounts())
+                .containsEntry(TimestampFormat.ISO_8601, 2L)
+                .containsEntry(TimestampFormat.EPOCH, 1L)
+                .containsEntry(TimestampFormat.US_FORMAT, 0L);
+    }
+}
@@ -3,13 +3,16 @@ package com.onechronos.darkpool.etl.load;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.onechronos.darkpool.etl.model.CleanedTradeRecord;
+import com.onechronos.darkpool.etl.model.ExceptionDetails;
 import com.onechronos.darkpool.etl.model.ExceptionRecord;
+import com.onechronos.darkpool.etl.model.RawData;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
-import java.math.BigDecimal;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -31,7 +34,7 @@ class JsonWriterTest {
                 Instant.parse("2024-01-15T10:00:00Z"),
                 "AAPL",
                 100,
-                new BigDecimal("150.00"),
+                15000,
                 "BUY1",
                 "SEL1",
                 true,
@@ -50,6 +53,7 @@ class JsonWriterTest {
         assertThat(record.get("symbol").asText()).isEqualTo("AAPL");
         assertThat(record.get("counterparty_confirmed").asBoolean()).isTrue();
         assertThat(record.get("discrepancy_flag").asBoolean()).isFalse();
+        assertThat(Files.readString(cleanedFile)).contains("\"price\" : 150.00");
     }
 
     @Test
@@ -61,8 +65,8 @@ class JsonWriterTest {
                 "TRD002",
                 "trades.csv",
                 "PARSE_ERROR",
-                "Row 5: Missing required field: price",
-                Map.of("trade_id", "TRD002")
+                ExceptionDetails.template("Row %s: %s").with(5L, List.of(ExceptionDetails.template("Missing required field: %s").with("price"))),
+                RawData.of(Map.of("trade_id", "TRD002"))
         );
 
         try (JsonWriter writer = JsonWriter.open(cleanedFile, exceptionsFile)) {
@@ -76,5 +80,45 @@ class JsonWriterTest {
         assertThat(record.get("source_file").asText()).isEqualTo("trades.csv");
         assertThat(record.get("exception_type").asText()).isEqualTo("PARSE_ERROR");
         assertThat(record.get("details").asText()).contains("price");
+        assertThat(record.get("raw_data").get("trade_id").asText()).isEqualTo("TRD002");
     }
-}
\ No newline at end of file
+
+    @Test
+    void resumedWriterWritesTheSameFilesAsAnUninterruptedOne() throws Exception {
+        Path cleanedFile = tempDir.resolve("cleaned_trades.json");
+        Path exceptionsFile = tempDir.resolve("exceptions_report.json");
+        Path resumedCleanedFile = tempDir.resolve("resumed/cleaned_trades.json");
+        Path resumedExceptionsFile = tempDir.resolve("resumed/exceptions_report.json");
+
+        try (JsonWriter writer = JsonWriter.open(cleanedFile, exceptionsFile)) {
+            writer.writeCleanedTrade(trade("TRD001"));
+            writer.writeCleanedTrade(trade("TRD002"));
+            writer.writeException(exception("TRD003"));
+        }
+
+        JsonWriterPosition position;
+        JsonWriter interrupted = JsonWriter.open(resumedCleanedFile, resumedExceptionsFile);
+        interrupted.writeCleanedTrade(trade("TRD001"));
+        position = interrupted.position();
+        interrupted.writeCleanedTrade(trade("TRD999")); // Written after the position, then dropped on resume
+        interrupted.flush();
+
+        try (JsonWriter writer = JsonWriter.resume(resumedCleanedFile, resumedExceptionsFile, position)) {
+            writer.writeCleanedTrade(trade("TRD002"));
+            writer.writeException(exception("TRD003"));
+        }
+
+        assertThat(position.cleanedTrades()).isEqualTo(1);
+        assertThat(position.exceptions()).isZero();
+        assertThat(Files.readString(resumedCleanedFile)).isEqualTo(Files.readString(cleanedFile));
+        assertThat(Files.readString(resumedExceptionsFile)).isEqualTo(Files.readString(exceptionsFile));
+    }
+
+    private static CleanedTradeRecord trade(String tradeId) {
+        return new CleanedTradeRecord(tradeId, Instant.parse("2024-01-15T10:00:00Z"), "AAPL", 100, 15000, "BUY1", "SEL1", true, false);
+    }
+
+    private static ExceptionRecord exception(String tradeId) {
+        return new ExceptionRecord(tradeId, "trades.csv", "INVALID_SYMBOL", ExceptionDetails.of("Symbol not found"), RawData.of(Map.of("trade_id", tradeId)));
+    }
+}
@@ -0,0 +1,49 @@
+package com.onechronos.darkpool.etl.transform;
+
+import com.onechronos.darkpool.etl.config.DedupConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiskTradeIdDedupTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void makesTheSameDecisionsAsAHashSetAcrossSpillsAndMerges() throws IOException {
+        Set<String> expected = new HashSet<>();
+        Random random = new Random(7);
+
+        // 100 IDs in memory and an undersized Bloom filter: many runs, two levels of merges and false positives
+        try (DiskTradeIdDedup dedup = DiskTradeIdDedup.open(tempDir, 1_000, 0.05, 100)) {
+            for (int i = 0; i < 30_000; i++) {
+                int id = random.nextInt(20_000);
+                String tradeId = id % 10 == 0 ? "TRD-%d-é".formatted(id) : "TRD%06d".formatted(id);
+                assertThat(dedup.add(tradeId)).as(tradeId).isEqualTo(expected.add(tradeId));
+            }
+            assertThat(dedup.count()).isEqualTo(expected.size());
+        }
+
+        try (var files = Files.list(tempDir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void memoryBackendIsATradeIdSet() throws IOException {
+        try (TradeIdDedup dedup = TradeIdDedup.build(DedupConfig.MEMORY)) {
+            assertThat(dedup).isInstanceOf(TradeIdSet.class);
+            assertThat(dedup.add("TRD1")).isTrue();
+            assertThat(dedup.add("TRD1")).isFalse();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.onechronos.darkpool.etl.transform;
+
+import com.onechronos.darkpool.etl.config.DedupConfig;
+import com.onechronos.darkpool.etl.config.ValidationConfig;
+import com.onechronos.darkpool.etl.model.ExceptionDetails;
+import com.onechronos.darkpool.etl.model.ExceptionRecord;
+import com.onechronos.darkpool.etl.model.FillRecord;
+import com.onechronos.darkpool.etl.model.RawData;
+import com.onechronos.darkpool.etl.model.SymbolRefRecord;
+import com.onechronos.darkpool.etl.model.TradeRecord;
+import com.onechronos.darkpool.etl.model.enums.Sector;
+import com.onechronos.darkpool.etl.model.enums.TradeStatus;
+import org.assertj.core.api.recursive.comparison.RecursiveComparisonConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GraceHashJoinTest {
+
+    private static final Path SOURCE_FILE = Path.of("trades.csv");
+    private static final ValidationConfig VALIDATION_CONFIG = new ValidationConfig(1, DedupConfig.MEMORY, 1);
+    private static final Map<String, SymbolRefRecord> SYMBOLS = Map.of(
+            "AAPL", new SymbolRefRecord("AAPL", "Apple Inc.", Sector.TECHNOLOGY, true));
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writesTheSameResultsInTheSameOrderAsAHashJoin() throws IOException {
+        Map<String, FillRecord> fills = new HashMap<>();
+        List<TradeRecord> trades = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            String tradeId = "TRD%06d".formatted(i * 7919 % 2_000); // Not in trade ID order
+            trades.add(new TradeRecord(tradeId, Instant.parse("2024-01-15T10:00:00Z"), i % 10 == 0 ? "MSFT" : "AAPL", 100,
+                    15000, "BUY1", "SEL1", TradeStatus.EXECUTED, RawData.of(Map.of("trade_id", tradeId))));
+            if (i % 3 == 0) {
+                fills.put(tradeId, new FillRecord("EXT" + i, tradeId, Instant.parse("2024-01-15T11:00:00Z"), "AAPL",
+                        i % 2 == 0 ? 100 : 200, 15000, "CP1"));
+            }
+        }
+        trades.add(trades.get(5)); // Duplicate
+        ExceptionRecord parseFailure = new ExceptionRecord("UNKNOWN", SOURCE_FILE.toString(), "PARSE_ERROR", ExceptionDetails.of("Row 42"), RawData.EMPTY);
+
+        List<Object> expected = new ArrayList<>();
+        Transformer hashJoin = Transformer.build(VALIDATION_CONFIG, SYMBOLS, fills);
+        expected.add(parseFailure);
+        trades.forEach(trade -> expected.add(hashJoin.transform(trade, SOURCE_FILE)));
+
+        List<Object> actual = new ArrayList<>();
+        Transformer deduplication = Transformer.build(VALIDATION_CONFIG, SYMBOLS, Map.of());
+        try (GraceHashJoin join = GraceHashJoin.open(tempDir, 7, List.of(SOURCE_FILE))) {
+            for (FillRecord fill : fills.values()) {
+                join.addFill(fill);
+            }
+            join.addParseFailure(parseFailure);
+            for (TradeRecord trade : trades) {
+                Optional<TransformerResult> duplicate = deduplication.deduplicate(trade, SOURCE_FILE);
+                if (duplicate.isPresent()) {
+                    join.addResult(duplicate.get());
+                } else {
+                    join.addTrade(trade, SOURCE_FILE);
+                }
+            }
+            join.join(3, partitionFills -> Transformer.build(VALIDATION_CONFIG, SYMBOLS, partitionFills, TradeIdSet.build()),
+                    new GraceHashJoin.Output() {
+                        @Override
+                        public void parseFailure(ExceptionRecord exception) {
+                            actual.add(exception);
+                        }
+
+                        @Override
+                        public void result(TransformerResult result) {
+                            actual.add(result);
+                        }
+                    });
+        }
+
+        // Partitions keep the details of exception records rendered, compared by their text
+        assertThat(actual).usingRecursiveFieldByFieldElementComparator(RecursiveComparisonConfiguration.builder()
+                        .withIgnoredFields("exception.value.rawData", "rawData")
+                        .withEqualsForType(ExceptionDetails::equals, ExceptionDetails.class)
+                        .build())
+                .containsExactlyElementsOf(expected);
+        try (var files = Files.list(tempDir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void sizesPartitionsToTheMemoryBudget() {
+        assertThat(GraceHashJoin.partitions(1 << 20, 64L << 20, 4)).isEqualTo(1);
+        assertThat(GraceHashJoin.partitions(1L << 30, 64L << 20, 4)).isEqualTo(256);
+        assertThat(GraceHashJoin.partitions(1L << 40, 64L << 20, 4)).isEqualTo(GraceHashJoin.MAX_PARTITIONS);
+    }
+}
@@ -0,0 +1,55 @@
+package com.onechronos.darkpool.etl.transform;
+
+import com.onechronos.darkpool.etl.exception.TransformerException;
+import com.onechronos.darkpool.etl.model.FillRecord;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MergeJoinFillsTest {
+
+    private static final List<FillRecord> SORTED_FILLS = List.of(fill("TRD002"), fill("TRD003"), fill("TRD005"));
+
+    @Test
+    void findsFillsOfSortedTradesAndReadsTheRestOnClose() {
+        AtomicBoolean closed = new AtomicBoolean();
+        MergeJoinFills join = MergeJoinFills.open(SORTED_FILLS.stream().onClose(() -> closed.set(true)), Map::of);
+
+        assertThat(join.find("TRD001")).isNull();
+        assertThat(join.find("TRD003")).isEqualTo(SORTED_FILLS.get(1));
+        assertThat(join.find("TRD004")).isNull();
+        join.close();
+
+        assertThat(closed).isTrue();
+    }
+
+    @Test
+    void fallsBackToAllFillsWhenTradesAreOutOfOrder() {
+        Map<String, FillRecord> allFills = SORTED_FILLS.stream().collect(Collectors.toMap(FillRecord::ourTradeId, f -> f));
+        MergeJoinFills join = MergeJoinFills.open(SORTED_FILLS.stream(), () -> allFills);
+
+        assertThat(join.find("TRD005")).isEqualTo(SORTED_FILLS.get(2));
+        assertThat(join.find("TRD002")).isEqualTo(SORTED_FILLS.get(0));
+        assertThat(join.find("TRD003")).isEqualTo(SORTED_FILLS.get(1));
+    }
+
+    @Test
+    void failsWhenFillsAreOutOfOrder() {
+        MergeJoinFills join = MergeJoinFills.open(List.of(fill("TRD003"), fill("TRD002"), fill("TRD004")).stream(), Map::of);
+
+        assertThatThrownBy(() -> join.find("TRD004"))
+                .isInstanceOf(TransformerException.class)
+                .hasMessageContaining("Fills are not sorted by trade ID");
+    }
+
+    private static FillRecord fill(String tradeId) {
+        return new FillRecord("EXT" + tradeId, tradeId, Instant.parse("2024-01-15T11:00:00Z"), "AAPL", 100, 15000, "CP1");
+    }
+}
@@ -0,0 +1,122 @@
+package com.onechronos.darkpool.etl.transform;
+
+import com.onechronos.darkpool.etl.config.DedupConfig;
+import com.onechronos.darkpool.etl.config.ValidationConfig;
+import com.onechronos.darkpool.etl.exception.TransformerException;
+import com.onechronos.darkpool.etl.model.FillRecord;
+import com.onechronos.darkpool.etl.model.RawData;
+import com.onechronos.darkpool.etl.model.SymbolRefRecord;
+import com.onechronos.darkpool.etl.model.TradeRecord;
+import com.onechronos.darkpool.etl.model.enums.Sector;
+import com.onechronos.darkpool.etl.model.enums.TradeStatus;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShardedTransformerTest {
+
+    private static final Path SOURCE_FILE = Path.of("trades.csv");
+    private static final Map<String, SymbolRefRecord> SYMBOLS = Map.of(
+            "AAPL", new SymbolRefRecord("AAPL", "Apple Inc.", Sector.TECHNOLOGY, true));
+
+    @Test
+    void emitsTheSameResultsInRowOrderAsASingleTransformer() throws IOException {
+        assertSameAsSequential(new ValidationConfig(1, DedupConfig.MEMORY, 4));
+    }
+
+    @Test
+    void expiresTradeIdsAtTheSameTradesAsASingleTransformer() throws IOException {
+        DedupConfig windowed = new DedupConfig(DedupConfig.MEMORY.backend(), DedupConfig.MEMORY.directory(), DedupConfig.MEMORY.expectedIds(),
+                DedupConfig.MEMORY.falsePositiveRate(), DedupConfig.MEMORY.memoryIds(), Optional.of(DedupWindow.sliding(Duration.ofMinutes(30))));
+        assertSameAsSequential(new ValidationConfig(1, windowed, 4));
+    }
+
+    @Test
+    void failsWithTheErrorOfATrade() {
+        Transformer transformer = Transformer.build(new ValidationConfig(1, DedupConfig.MEMORY, 2), SYMBOLS, Map.of());
+        Transformer failing = Transformer.build(new ValidationConfig(1, DedupConfig.MEMORY, 2), SYMBOLS, tradeId -> {
+            throw new IllegalStateException("Fills unavailable");
+        }, TradeIdSet.build());
+
+        try (ShardedTransformer sharded = ShardedTransformer.start(List.of(failing, transformer), result -> {
+        })) {
+            for (int i = 0; i < 100; i++) {
+                sharded.submit(trade("TRD%06d".formatted(i), Instant.parse("2024-01-15T10:00:00Z")), SOURCE_FILE);
+            }
+            assertThatThrownBy(sharded::finish)
+                    .isInstanceOf(TransformerException.class)
+                    .hasMessageContaining("Fatal Error while transforming Trade Record");
+        }
+    }
+
+    /**
+     * Trades with duplicates near and far apart, and parse failures emitted between them.
+     */
+    private static void assertSameAsSequential(ValidationConfig config) throws IOException {
+        Map<String, FillRecord> fills = new HashMap<>();
+        List<TradeRecord> trades = new ArrayList<>();
+        Instant start = Instant.parse("2024-01-15T10:00:00Z");
+        for (int i = 0; i < 10_000; i++) {
+            String tradeId = "TRD%06d".formatted(i % 7 == 0 ? i / 50 : i); // Duplicates of earlier trades
+            trades.add(trade(tradeId, start.plusSeconds(i / 2 + (i % 13 == 0 ? -600 : 0)))); // Some trades late
+            if (i % 3 == 0) {
+                fills.put(tradeId, new FillRecord("EXT" + i, tradeId, start.plus(Duration.ofDays(1)), "AAPL", i % 2 == 0 ? 100 : 200, 15000, "CP1"));
+            }
+        }
+
+        List<Object> expected = new ArrayList<>();
+        try (TradeIdDedup tradeIds = TradeIdDedup.build(config.dedupConfig())) {
+            Transformer sequential = Transformer.build(config, SYMBOLS, FillLookup.of(fills), tradeIds);
+            for (int i = 0; i < trades.size(); i++) {
+                if (i % 1_000 == 0) {
+                    expected.add("Parse failure " + i);
+                }
+                expected.add(sequential.transform(trades.get(i), SOURCE_FILE));
+            }
+        }
+
+        List<Object> actual = new ArrayList<>();
+        List<TradeIdDedup> shardTradeIds = new ArrayList<>();
+        try {
+            List<Transformer> transformers = new ArrayList<>();
+            for (int i = 0; i < config.transformParallelism(); i++) {
+                TradeIdDedup tradeIds = TradeIdDedup.build(config.dedupConfig());
+                shardTradeIds.add(tradeIds);
+                transformers.add(Transformer.build(config, SYMBOLS, FillLookup.of(fills), tradeIds));
+            }
+            try (ShardedTransformer sharded = ShardedTransformer.start(transformers, actual::add)) {
+                for (int i = 0; i < trades.size(); i++) {
+                    if (i % 1_000 == 0) {
+                        String parseFailure = "Parse failure " + i;
+                        sharded.inOrder(() -> actual.add(parseFailure));
+                    }
+                    sharded.submit(trades.get(i), SOURCE_FILE);
+                }
+                sharded.finish();
+            }
+        } finally {
+            for (TradeIdDedup tradeIds : shardTradeIds) {
+                tradeIds.close();
+            }
+        }
+
+        assertThat(expected).anyMatch(result -> result instanceof TransformerResult r && r.exception().isPresent());
+        assertThat(actual).containsExactlyElementsOf(expected);
+    }
+
+    private static TradeRecord trade(String tradeId, Instant timestamp) {
+        return new TradeRecord(tradeId, timestamp, "AAPL", 100, 15000, "BUY1", "SEL1", TradeStatus.EXECUTED,
+                RawData.of(Map.of("trade_id", tradeId)));
+    }
+}
@@ -0,0 +1,46 @@
+package com.onechronos.darkpool.etl.transform;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TradeIdSetTest {
+
+    @Test
+    void makesTheSameDecisionsAsAHashSet() {
+        List<String> tradeIds = new ArrayList<>(List.of(
+                "TRD1", "TRD01", "TRD001", "TRD0", "TRD00", "TRD99999999999999999", "TRD099999999999999999",
+                "TRD", "trd1", "TRD-1", "TRD009977-4", "XYZ123", "", "TRD１"));
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            tradeIds.add("TRD%06d".formatted(random.nextInt(15_000)));
+        }
+
+        Set<String> expected = new HashSet<>();
+        TradeIdSet actual = TradeIdSet.build();
+        for (String tradeId : tradeIds) {
+            assertThat(actual.add(tradeId)).as(tradeId).isEqualTo(expected.add(tradeId));
+        }
+
+        assertThat(actual).hasSameSizeAs(expected);
+        assertThat(new HashSet<>(actual)).isEqualTo(expected);
+        assertThat(actual.contains("TRD1")).isTrue();
+        assertThat(actual.contains("TRD0001")).isFalse();
+        assertThat(actual.contains("TRD-2")).isFalse();
+    }
+
+    @Test
+    void encodesLeadingZerosAndFallsBackForOtherShapes() {
+        assertThat(TradeIdSet.decode(TradeIdSet.encode("TRD000123"))).isEqualTo("TRD000123");
+        assertThat(TradeIdSet.decode(TradeIdSet.encode("TRD0"))).isEqualTo("TRD0");
+        assertThat(TradeIdSet.encode("TRD123")).isNotEqualTo(TradeIdSet.encode("TRD0123"));
+        assertThat(TradeIdSet.encode("TRD123456789012345678")).isEqualTo(-1);
+        assertThat(TradeIdSet.encode("TRD12a")).isEqualTo(-1);
+    }
+}
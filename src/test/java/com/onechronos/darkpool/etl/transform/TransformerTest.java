@@ -1,16 +1,20 @@
 package com.onechronos.darkpool.etl.transform;
 
+import com.onechronos.darkpool.etl.config.DedupConfig;
 import com.onechronos.darkpool.etl.config.ValidationConfig;
+import com.onechronos.darkpool.etl.extract.PriceParser;
 import com.onechronos.darkpool.etl.model.*;
 import com.onechronos.darkpool.etl.model.enums.Sector;
 import com.onechronos.darkpool.etl.model.enums.TradeStatus;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.math.BigDecimal;
 import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -24,7 +28,7 @@ class TransformerTest {
 
     @BeforeEach
     void setUp() {
-        ValidationConfig validationConfig = new ValidationConfig(new BigDecimal("0.01"));
+        ValidationConfig validationConfig = new ValidationConfig(1, DedupConfig.MEMORY, 1);
 
         Map<String, SymbolRefRecord> symbolMap = Map.of(
                 "AAPL", new SymbolRefRecord("AAPL", "Apple Inc.", Sector.TECHNOLOGY, true),
@@ -32,8 +36,8 @@ class TransformerTest {
         );
 
         Map<String, FillRecord> fillMap = Map.of(
-                "TRD001", new FillRecord("EXT001", "TRD001", FILL_TIME, "AAPL", 100, new BigDecimal("150.00"), "CP1"),
-                "TRD003", new FillRecord("EXT003", "TRD003", FILL_TIME, "AAPL", 999, new BigDecimal("999.99"), "CP1")
+                "TRD001", new FillRecord("EXT001", "TRD001", FILL_TIME, "AAPL", 100, 15000, "CP1"),
+                "TRD003", new FillRecord("EXT003", "TRD003", FILL_TIME, "AAPL", 999, 99999, "CP1")
         );
 
         transformer = Transformer.build(validationConfig, symbolMap, fillMap);
@@ -102,11 +106,43 @@ class TransformerTest {
         assertThat(result.cleanedTrade().get().discrepancyFlag()).isFalse();
     }
 
+    @Test
+    void reportsTheFirstRuleBrokenInPriorityOrder() {
+        ValidationRule noSellerOne = new ValidationRule() {
+            @Override
+            public String exceptionType() {
+                return "BLOCKED_SELLER";
+            }
+
+            @Override
+            public Optional<ExceptionDetails> check(ValidationContext context) {
+                return context.trade().sellerId().equals("SEL1") ? Optional.of(ExceptionDetails.of("Seller is blocked")) : Optional.empty();
+            }
+        };
+        List<String> fillsLookedUp = new ArrayList<>();
+        Transformer custom = Transformer.build(new ValidationConfig(1, DedupConfig.MEMORY, 1),
+                Map.of("AAPL", new SymbolRefRecord("AAPL", "Apple Inc.", Sector.TECHNOLOGY, true)),
+                tradeId -> {
+                    fillsLookedUp.add(tradeId);
+                    return null;
+                },
+                TradeIdSet.build(),
+                List.of(StandardRule.INVALID_SYMBOL, noSellerOne, StandardRule.FILL_SYMBOL_MISMATCH));
+
+        TransformerResult invalidSymbol = custom.transform(trade("TRD001", "INVALID", 100, "150.00"), SOURCE_FILE);
+        TransformerResult blocked = custom.transform(trade("TRD002", "AAPL", 100, "150.00"), SOURCE_FILE);
+
+        assertThat(invalidSymbol.exception().get().exceptionType()).isEqualTo("INVALID_SYMBOL");
+        assertThat(blocked.exception().get().exceptionType()).isEqualTo("BLOCKED_SELLER");
+        assertThat(blocked.exception().get().details()).hasToString("Seller is blocked");
+        assertThat(fillsLookedUp).isEmpty();
+    }
+
     private TradeRecord trade(String tradeId, String symbol, int quantity, String price) {
         return new TradeRecord(
                 tradeId, TRADE_TIME, symbol, quantity,
-                new BigDecimal(price), "BUY1", "SEL1",
-                TradeStatus.EXECUTED, Map.of()
+                PriceParser.DECIMAL.hundredths(price), "BUY1", "SEL1",
+                TradeStatus.EXECUTED, RawData.EMPTY
         );
     }
 }
\ No newline at end of file
@@ -0,0 +1,168 @@
+package com.onechronos.darkpool.etl.transform;
+
+import com.onechronos.darkpool.etl.config.DedupConfig;
+import com.onechronos.darkpool.etl.config.ValidationConfig;
+import com.onechronos.darkpool.etl.model.FillRecord;
+import com.onechronos.darkpool.etl.model.RawData;
+import com.onechronos.darkpool.etl.model.SymbolRefRecord;
+import com.onechronos.darkpool.etl.model.TradeRecord;
+import com.onechronos.darkpool.etl.model.enums.Sector;
+import com.onechronos.darkpool.etl.model.enums.TradeStatus;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WatermarkJoinTest {
+
+    private static final Path SOURCE_FILE = Path.of("trades.csv");
+    private static final ValidationConfig VALIDATION_CONFIG = new ValidationConfig(1, DedupConfig.MEMORY, 1);
+    private static final Map<String, SymbolRefRecord> SYMBOLS = Map.of(
+            "AAPL", new SymbolRefRecord("AAPL", "Apple Inc.", Sector.TECHNOLOGY, true));
+    private static final Instant START = Instant.parse("2024-01-15T10:00:00Z");
+
+    private final List<Object> outputs = new ArrayList<>();
+    private final List<String> events = new ArrayList<>();
+    private int bufferedFills;
+
+    @Test
+    void matchesATradeWithAFillArrivingAfterIt() {
+        WatermarkJoin join = join(Duration.ofMinutes(1));
+
+        join.addTrade(trade("TRD1", START), SOURCE_FILE);
+        assertThat(outputs).isEmpty();
+        join.addFill(fill("TRD1", START.plusSeconds(5)));
+
+        assertThat(outputs).singleElement().satisfies(result ->
+                assertThat(((TransformerResult) result).cleanedTrade()).hasValueSatisfying(trade ->
+                        assertThat(trade.counterpartyConfirmed()).isTrue()));
+        assertThat(events).containsExactly("matchedLate");
+    }
+
+    @Test
+    void writesATradeUnconfirmedOnceTheWatermarkPassesIt() {
+        WatermarkJoin join = join(Duration.ofMinutes(1));
+
+        join.addTrade(trade("TRD1", START), SOURCE_FILE);
+        join.addFill(fill("TRD2", START.plusSeconds(30)));
+        assertThat(outputs).isEmpty();
+        join.addFill(fill("TRD3", START.plusSeconds(90)));
+
+        assertThat(outputs).singleElement().satisfies(result ->
+                assertThat(((TransformerResult) result).cleanedTrade()).hasValueSatisfying(trade ->
+                        assertThat(trade.counterpartyConfirmed()).isFalse()));
+
+        // Its fill comes too late
+        join.addFill(fill("TRD1", START.plusSeconds(5)));
+        assertThat(events).containsExactly("lateFill");
+    }
+
+    @Test
+    void keepsAFillTimestampedMoreThanTheLagBeforeItsTrade() {
+        WatermarkJoin join = join(Duration.ofMinutes(1));
+
+        join.addFill(fill("TRD1", START.minusSeconds(120)));
+        join.addTrade(trade("TRD1", START), SOURCE_FILE);
+
+        assertThat(outputs).singleElement().satisfies(result ->
+                assertThat(((TransformerResult) result).exception()).hasValueSatisfying(e ->
+                        assertThat(e.exceptionType()).isEqualTo("FILL_TIMESTAMP_INVALID")));
+
+        // Dropped once the trade watermark passes its arrival
+        join.addTrade(trade("TRD2", START.plusSeconds(61)), SOURCE_FILE);
+        join.addFill(fill("TRD2", START.plusSeconds(62)));
+        assertThat(bufferedFills).isEqualTo(1);
+    }
+
+    @Test
+    void dropsAFillArrivingWellAheadOfItsTrade() {
+        WatermarkJoin join = join(Duration.ofMinutes(1));
+
+        // Read ahead of the trades, as a fills reader not held back by them would
+        join.addFill(fill("TRD9", START.plusSeconds(600)));
+        join.addTrade(trade("TRD1", START), SOURCE_FILE);
+        join.addTrade(trade("TRD2", START.plusSeconds(120)), SOURCE_FILE);
+        assertThat(bufferedFills).isZero();
+
+        join.addTrade(trade("TRD9", START.plusSeconds(590)), SOURCE_FILE);
+        join.endOfFills();
+
+        assertThat(outputs).hasSize(3).last().satisfies(result ->
+                assertThat(((TransformerResult) result).cleanedTrade()).hasValueSatisfying(trade ->
+                        assertThat(trade.counterpartyConfirmed()).isFalse()));
+    }
+
+    @Test
+    void emitsResultsInRowOrder() {
+        WatermarkJoin join = join(Duration.ofMinutes(1));
+
+        join.addTrade(trade("TRD1", START), SOURCE_FILE);
+        join.inOrder(() -> outputs.add("Parse failure"));
+        join.addTrade(trade("TRD2", START.plusSeconds(1)), SOURCE_FILE);
+        join.addTrade(trade("TRD1", START.plusSeconds(2)), SOURCE_FILE); // Duplicate, known at once
+        join.addFill(fill("TRD2", START.plusSeconds(3)));
+        assertThat(outputs).isEmpty();
+
+        join.endOfFills();
+        join.addTrade(trade("TRD3", START.plusSeconds(4)), SOURCE_FILE);
+
+        assertThat(outputs).hasSize(5);
+        assertThat(outputs.get(0)).isInstanceOfSatisfying(TransformerResult.class, result ->
+                assertThat(result.cleanedTrade()).hasValueSatisfying(trade -> assertThat(trade.tradeId()).isEqualTo("TRD1")));
+        assertThat(outputs.get(1)).isEqualTo("Parse failure");
+        assertThat(outputs.get(2)).isInstanceOfSatisfying(TransformerResult.class, result ->
+                assertThat(result.cleanedTrade()).hasValueSatisfying(trade -> assertThat(trade.counterpartyConfirmed()).isTrue()));
+        assertThat(outputs.get(3)).isInstanceOfSatisfying(TransformerResult.class, result ->
+                assertThat(result.exception()).hasValueSatisfying(e -> assertThat(e.exceptionType()).isEqualTo("DUPLICATE_TRADE_ID")));
+        assertThat(outputs.get(4)).isInstanceOfSatisfying(TransformerResult.class, result ->
+                assertThat(result.cleanedTrade()).hasValueSatisfying(trade -> assertThat(trade.tradeId()).isEqualTo("TRD3")));
+    }
+
+    @Test
+    void rejectsANegativeLag() {
+        assertThatThrownBy(() -> join(Duration.ofSeconds(-1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private WatermarkJoin join(Duration lag) {
+        return WatermarkJoin.build(lag,
+                fills -> Transformer.build(VALIDATION_CONFIG, SYMBOLS, fills, TradeIdSet.build()),
+                outputs::add,
+                new WatermarkJoin.Metrics() {
+                    @Override
+                    public void buffered(int trades, int fills) {
+                        bufferedFills = fills;
+                    }
+
+                    @Override
+                    public void watermarkLag(Duration watermarkLag) {
+                    }
+
+                    @Override
+                    public void lateFill() {
+                        events.add("lateFill");
+                    }
+
+                    @Override
+                    public void matchedLate() {
+                        events.add("matchedLate");
+                    }
+                });
+    }
+
+    private static TradeRecord trade(String tradeId, Instant timestamp) {
+        return new TradeRecord(tradeId, timestamp, "AAPL", 100, 15000, "BUY1", "SEL1", TradeStatus.EXECUTED,
+                RawData.of(Map.of("trade_id", tradeId)));
+    }
+
+    private static FillRecord fill(String tradeId, Instant timestamp) {
+        return new FillRecord("EXT" + tradeId, tradeId, timestamp, "AAPL", 100, 15000, "CP1");
+    }
+}
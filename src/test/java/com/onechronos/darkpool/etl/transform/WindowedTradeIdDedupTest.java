@@ -0,0 +1,63 @@
+package com.onechronos.darkpool.etl.transform;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WindowedTradeIdDedupTest {
+
+    private static final Instant START = Instant.parse("2024-01-15T10:00:00Z");
+
+    @Test
+    void slidingWindowExpiresIdsOnceTheirBucketIsOutOfTheWindow() throws IOException {
+        try (WindowedTradeIdDedup dedup = WindowedTradeIdDedup.build(DedupWindow.sliding(Duration.ofHours(4)), TradeIdSet::build)) {
+            assertThat(dedup.add("TRD1", START)).isTrue();
+            assertThat(dedup.add("TRD2", START.plus(Duration.ofHours(2)))).isTrue();
+            assertThat(dedup.add("TRD1", START.plus(Duration.ofHours(3)))).isFalse();
+
+            // TRD1's hour is out of the window, TRD2's is not
+            assertThat(dedup.add("TRD3", START.plus(Duration.ofHours(5)))).isTrue();
+            assertThat(dedup.count()).isEqualTo(2);
+            assertThat(dedup.add("TRD1", START.plus(Duration.ofHours(5)))).isTrue();
+            assertThat(dedup.add("TRD2", START.plus(Duration.ofHours(5)))).isFalse();
+
+            // A late trade is still checked against, and added to, the buckets in the window
+            assertThat(dedup.add("TRD3", START)).isFalse();
+            assertThat(dedup.add("TRD4", START)).isTrue();
+            assertThat(dedup.add("TRD4", START.plus(Duration.ofMinutes(330)))).isFalse();
+        }
+    }
+
+    @Test
+    void dailyWindowExpiresIdsAtTheFirstTradeOfTheNextDay() throws IOException {
+        ZoneId newYork = ZoneId.of("America/New_York");
+        try (WindowedTradeIdDedup dedup = WindowedTradeIdDedup.build(DedupWindow.daily(newYork), TradeIdSet::build)) {
+            assertThat(dedup.add("TRD1", Instant.parse("2024-01-15T14:30:00Z"))).isTrue();
+            assertThat(dedup.add("TRD1", Instant.parse("2024-01-16T04:59:59Z"))).isFalse(); // 23:59:59 in New York
+
+            assertThat(dedup.add("TRD2", Instant.parse("2024-01-16T05:00:00Z"))).isTrue();
+            assertThat(dedup.count()).isEqualTo(1);
+            assertThat(dedup.add("TRD1", Instant.parse("2024-01-16T14:30:00Z"))).isTrue();
+        }
+    }
+
+    @Test
+    void bucketsTimestampsBeyondTheRangeOfEpochMillis() throws IOException {
+        Instant farFuture = Instant.parse("+999999999-01-01T00:00:00Z");
+        for (DedupWindow window : new DedupWindow[]{DedupWindow.sliding(Duration.ofHours(4)), DedupWindow.daily(ZoneId.of("America/New_York"))}) {
+            try (WindowedTradeIdDedup dedup = WindowedTradeIdDedup.build(window, TradeIdSet::build)) {
+                assertThat(dedup.add("TRD1", START)).isTrue();
+                assertThat(dedup.add("TRD2", farFuture)).isTrue();
+                assertThat(dedup.add("TRD2", farFuture.plusSeconds(60))).isFalse();
+                assertThat(dedup.add("TRD3", Instant.MAX.minusSeconds(60))).isTrue();
+                assertThat(dedup.add("TRD3", Instant.MAX)).isFalse();
+                assertThat(dedup.add("TRD4", Instant.MIN)).isTrue();
+            }
+        }
+    }
+}
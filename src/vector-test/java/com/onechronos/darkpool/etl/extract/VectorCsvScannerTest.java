@@ -0,0 +1,59 @@
+package com.onechronos.darkpool.etl.extract;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VectorCsvScannerTest {
+
+    private static final char[] ALPHABET = {'a', '1', ' ', ',', ',', '"', '\n', '\r', 'é'};
+
+    @Test
+    void prefixXorMarksBytesBetweenQuotes() {
+        // Quotes at bytes 0, 3 and 7: bytes 0 to 2 are inside, 3 to 6 outside, and 7 onwards inside again
+        long quotes = 0b1000_1001L;
+
+        assertThat(VectorCsvScanner.prefixXor(quotes)).isEqualTo(0b111L | (-1L << 7));
+        assertThat(VectorCsvScanner.prefixXor(1L)).isEqualTo(-1L);
+    }
+
+    @Test
+    void tokenizesQuotedFieldsAcrossBlocks() {
+        String line = "1,\"" + "x,".repeat(40) + "\",3," + "y".repeat(70) + ",\"a\"\"b\"";
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+
+        int[] bounds = VectorCsvScanner.tokenize(buffer, 0, buffer.limit(), 10);
+
+        assertThat(bounds).hasSize(5 * MappedCsvFile.FIELD_STRIDE);
+        assertThat(MappedCsvFile.decodeField(buffer, bounds, 1)).isEqualTo("x,".repeat(40));
+        assertThat(MappedCsvFile.decodeField(buffer, bounds, 3)).isEqualTo("y".repeat(70));
+        assertThat(MappedCsvFile.decodeField(buffer, bounds, 4)).isEqualTo("ab");
+    }
+
+    @Test
+    void matchesScalarScanOnRandomLines() {
+        Random random = new Random(42);
+        for (int run = 0; run < 20_000; run++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(300);
+            for (int i = 0; i < length; i++) {
+                text.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+            int start = buffer.limit() == 0 ? 0 : random.nextInt(buffer.limit());
+            int end = start + random.nextInt(buffer.limit() - start + 1);
+            int maxFields = 1 + random.nextInt(12);
+
+            assertThat(VectorCsvScanner.tokenize(buffer, start, end, maxFields))
+                    .as("tokenize [%d, %d) of %s", start, end, text)
+                    .isEqualTo(MappedCsvFile.tokenize(buffer, start, end, maxFields));
+            assertThat(VectorCsvScanner.lineEnd(buffer, start, end))
+                    .as("lineEnd [%d, %d) of %s", start, end, text)
+                    .isEqualTo(MappedCsvFile.findLineEnd(buffer, start, end));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.onechronos.darkpool.etl.extract;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Vectorized counterpart of MappedCsvFile.findLineEnd and MappedCsvFile.tokenize, in the way of simdjson and simdcsv.
+ * - Bytes are compared a block of 64 at a time, turning quotes and commas into one bit per byte of the block
+ * - A prefix XOR of the quote bits gives the bytes inside quotes; the last bit is carried over to the next block
+ * - Commas outside quotes are the field boundaries, and are walked with numberOfTrailingZeros
+ * - A field is quoted if a quote bit falls between its start and its boundary
+ * Blocks may read past the end of the line, as long as they stay within the buffer: the bits past the end are masked.
+ * Only the last bytes of a buffer, too close to its limit for a whole block, are left to a scalar loop.
+ * Only compiled by the vector profile, and only called through CsvTokenizer.VECTOR, once the jdk.incubator.vector
+ * module and this class are known to be present.
+ */
+final class VectorCsvScanner {
+
+    static final int BLOCK_SIZE = Long.SIZE;
+
+    // The widest species the CPU supports, capped at one block so that a block is a whole number of vectors
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED.length() <= BLOCK_SIZE
+            ? ByteVector.SPECIES_PREFERRED
+            : ByteVector.SPECIES_512;
+    private static final int LANES = SPECIES.length();
+    private static final VectorSpecies<Long> LONG_SPECIES = SPECIES.withLanes(long.class);
+    private static final ByteOrder ORDER = ByteOrder.nativeOrder();
+
+    // Byte i of a vector weighs 1 << (i % 8), and long lane j is shifted to byte j of the mask, see bits
+    private static final ByteVector ZERO = ByteVector.zero(SPECIES);
+    private static final ByteVector BIT_WEIGHTS = ByteVector.fromArray(SPECIES, bitWeights(), 0);
+    private static final LongVector BYTE_SHIFTS = LongVector.fromArray(LONG_SPECIES, byteShifts(), 0);
+
+    private static final byte QUOTE = '"';
+    private static final byte COMMA = ',';
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private VectorCsvScanner() {
+    }
+
+    /**
+     * @return offset of the first \n or \r in [from, to) of the buffer, or -1 if there is none
+     */
+    static int lineEnd(ByteBuffer buffer, int from, int to) {
+        int position = from;
+        for (; position <= to - LANES; position += LANES) {
+            ByteVector bytes = ByteVector.fromByteBuffer(SPECIES, buffer, position, ORDER);
+            VectorMask<Byte> terminators = bytes.eq(LINE_FEED).or(bytes.eq(CARRIAGE_RETURN));
+            if (terminators.anyTrue()) {
+                return position + terminators.firstTrue();
+            }
+        }
+        return MappedCsvFile.findLineEnd(buffer, position, to);
+    }
+
+    /**
+     * Splits the bytes [start, end) of a buffer into at most maxFields fields, see MappedCsvFile.tokenize.
+     */
+    static int[] tokenize(ByteBuffer buffer, int start, int end, int maxFields) {
+        int[] bounds = new int[maxFields * MappedCsvFile.FIELD_STRIDE];
+        int count = 0;
+        int fieldStart = start;
+        boolean quoted = false;
+        long inQuotes = 0; // All ones while the previous block ended inside quotes
+
+        int position = start;
+        int lastBlock = buffer.limit() - BLOCK_SIZE;
+        while (position < end && position <= lastBlock && count < maxFields) {
+            long quotes = 0;
+            long commas = 0;
+            for (int lane = 0; lane < BLOCK_SIZE; lane += LANES) {
+                ByteVector bytes = ByteVector.fromByteBuffer(SPECIES, buffer, position + lane, ORDER);
+                quotes |= bits(bytes, QUOTE) << lane;
+                commas |= bits(bytes, COMMA) << lane;
+            }
+            if (end - position < BLOCK_SIZE) {
+                long inLine = (1L << (end - position)) - 1;
+                quotes &= inLine;
+                commas &= inLine;
+            }
+
+            // Bits from an opening quote (included) to its closing quote (excluded)
+            long quotedBytes = prefixXor(quotes) ^ inQuotes;
+            inQuotes = quotedBytes >> (BLOCK_SIZE - 1);
+
+            long separators = commas & ~quotedBytes;
+            while (separators != 0 && count < maxFields) {
+                int separator = Long.numberOfTrailingZeros(separators);
+                long beforeSeparator = (1L << separator) - 1;
+                quoted |= (quotes & beforeSeparator) != 0;
+                quotes &= ~beforeSeparator;
+                count = MappedCsvFile.addField(bounds, count, fieldStart, position + separator, quoted);
+                fieldStart = position + separator + 1;
+                quoted = false;
+                separators &= separators - 1;
+            }
+            quoted |= quotes != 0;
+            position += BLOCK_SIZE;
+        }
+
+        // Scalar tail, for the bytes left between the last whole block and the limit of the buffer
+        boolean inQuotesTail = inQuotes != 0;
+        for (; position < end && count < maxFields; position++) {
+            byte b = buffer.get(position);
+            if (b == QUOTE) {
+                inQuotesTail = !inQuotesTail;
+                quoted = true;
+            } else if (b == COMMA && !inQuotesTail) {
+                count = MappedCsvFile.addField(bounds, count, fieldStart, position, quoted);
+                fieldStart = position + 1;
+                quoted = false;
+            }
+        }
+        if (count < maxFields) {
+            count = MappedCsvFile.addField(bounds, count, fieldStart, end, quoted);
+        }
+
+        return count == maxFields ? bounds : Arrays.copyOf(bounds, count * MappedCsvFile.FIELD_STRIDE);
+    }
+
+    /**
+     * One bit per lane equal to value, like VectorMask.toLong, which JDK 17 does not intrinsify and
+     * computes lane by lane. Matching lanes are replaced by their bit weight, the 8 bytes of every long lane are ORed
+     * into its low byte, and the long lanes are shifted into place and ORed together.
+     */
+    private static long bits(ByteVector bytes, byte value) {
+        LongVector weights = ZERO.blend(BIT_WEIGHTS, bytes.eq(value)).reinterpretAsLongs();
+        weights = weights.or(weights.lanewise(VectorOperators.LSHR, 32));
+        weights = weights.or(weights.lanewise(VectorOperators.LSHR, 16));
+        weights = weights.or(weights.lanewise(VectorOperators.LSHR, 8));
+        return weights.and(0xFFL).lanewise(VectorOperators.LSHL, BYTE_SHIFTS).reduceLanes(VectorOperators.OR);
+    }
+
+    private static byte[] bitWeights() {
+        byte[] weights = new byte[LANES];
+        for (int i = 0; i < LANES; i++) {
+            weights[i] = (byte) (1 << (i % Byte.SIZE));
+        }
+        return weights;
+    }
+
+    private static long[] byteShifts() {
+        long[] shifts = new long[LONG_SPECIES.length()];
+        for (int i = 0; i < shifts.length; i++) {
+            shifts[i] = (long) i * Byte.SIZE;
+        }
+        return shifts;
+    }
+
+    /**
+     * Sets every bit to the XOR of itself and all lower bits, i.e. to the parity of the quotes up to that byte.
+     * simdjson does this with a carry-less multiplication by all ones, which Java does not expose.
+     */
+    static long prefixXor(long bits) {
+        bits ^= bits << 1;
+        bits ^= bits << 2;
+        bits ^= bits << 4;
+        bits ^= bits << 8;
+        bits ^= bits << 16;
+        bits ^= bits << 32;
+        return bits;
+    }
+}